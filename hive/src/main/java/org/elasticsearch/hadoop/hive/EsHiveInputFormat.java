@@ -21,10 +21,21 @@ package org.elasticsearch.hadoop.hive;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.hive.ql.exec.Utilities;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedInputFormatInterface;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatchCtx;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.plan.TableScanDesc;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.mapred.FileInputFormat;
@@ -32,12 +43,18 @@ import org.apache.hadoop.mapred.FileSplit;
 import org.apache.hadoop.mapred.InputSplit;
 import org.apache.hadoop.mapred.JobConf;
 import org.apache.hadoop.mapred.Reporter;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
 import org.elasticsearch.hadoop.cfg.HadoopSettingsManager;
 import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
 import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.mr.EsInputFormat;
 import org.elasticsearch.hadoop.mr.security.HadoopUserProvider;
 import org.elasticsearch.hadoop.rest.InitializationUtils;
+import org.elasticsearch.hadoop.util.ClusterInfo;
+import org.elasticsearch.hadoop.util.EsMajorVersion;
+import org.elasticsearch.hadoop.util.FieldAlias;
+import org.elasticsearch.hadoop.util.SettingsUtils;
 import org.elasticsearch.hadoop.util.StringUtils;
 
 /**
@@ -48,7 +65,7 @@ import org.elasticsearch.hadoop.util.StringUtils;
 // A quick example would be {@link org.apache.hadoop.hive.ql.io.HiveInputFormat.HiveInputSplit#getPath()} which, in case the actual InputSplit is not a
 // {@link org.apache.hadoop.mapred.FileSplit}, returns an invalid Path.
 
-public class EsHiveInputFormat extends EsInputFormat<Text, Writable> {
+public class EsHiveInputFormat extends EsInputFormat<Text, Writable> implements VectorizedInputFormatInterface {
 
     static class EsHiveSplit extends FileSplit {
         InputSplit delegate;
@@ -94,6 +111,130 @@ public class EsHiveInputFormat extends EsInputFormat<Text, Writable> {
         }
     }
 
+    static class HiveRowEsInputRecordReader extends AbstractWritableEsInputRecordReader<HiveRowWritable> {
+
+        HiveRowEsInputRecordReader(InputSplit split, JobConf job, Reporter reporter) {
+            super(split, job, reporter);
+        }
+
+        @Override
+        public HiveRowWritable createValue() {
+            return new HiveRowWritable();
+        }
+
+        @Override
+        protected HiveRowWritable setCurrentValue(HiveRowWritable hadoopValue, Object object) {
+            if (hadoopValue != null) {
+                // documents without source are returned as empty maps
+                hadoopValue.setValues(object instanceof HiveRowWritable ? ((HiveRowWritable) object).getValues() : null);
+            }
+            return hadoopValue;
+        }
+    }
+
+    /**
+     * Record reader used under Hive vectorized execution. Fills a batch with the rows read from the scroll (up to the batch
+     * capacity) directly into the column vectors, without going through the SerDe and its object inspectors.
+     */
+    static class VectorizedEsInputRecordReader extends AbstractWritableEsInputRecordReader<VectorizedRowBatch> {
+
+        private final VectorizedRowBatchCtx rbCtx;
+        private final int columns;
+        private final int jsonColumn;
+        private boolean addPartitionCols = true;
+
+        VectorizedEsInputRecordReader(EsHiveSplit split, JobConf job, Reporter reporter) {
+            super(split.delegate, job, reporter);
+
+            rbCtx = new VectorizedRowBatchCtx();
+            try {
+                rbCtx.init(job, split);
+            } catch (Exception ex) {
+                throw new EsHadoopIllegalStateException("Cannot initialize Hive vectorized reader", ex);
+            }
+
+            Settings settings = HadoopSettingsManager.loadFrom(job).copy().load(((EsInputSplit) split.delegate).getPartition().getSerializedSettings());
+            List<String> names = StringUtils.tokenize(settings.getProperty(HiveConstants.COLUMNS), ",");
+            columns = names.size();
+
+            if (settings.getOutputAsJson()) {
+                FieldAlias alias = HiveUtils.alias(settings);
+                String jsonField = HiveUtils.discoverJsonFieldName(settings, alias);
+                int index = -1;
+                for (int i = 0; i < names.size() && index < 0; i++) {
+                    if (jsonField.equals(alias.toES(names.get(i)))) {
+                        index = i;
+                    }
+                }
+                jsonColumn = index;
+            }
+            else {
+                jsonColumn = -1;
+            }
+        }
+
+        @Override
+        public VectorizedRowBatch createValue() {
+            try {
+                return rbCtx.createVectorizedRowBatch();
+            } catch (HiveException ex) {
+                throw new EsHadoopIllegalStateException("Cannot create Hive row batch", ex);
+            }
+        }
+
+        @Override
+        public boolean next(Text key, VectorizedRowBatch batch) throws IOException {
+            // reset only the table columns; the partition and scratch ones are managed by Hive
+            for (int i = 0; i < columns; i++) {
+                if (batch.cols[i] != null) {
+                    batch.cols[i].reset();
+                }
+            }
+            batch.size = 0;
+            batch.selectedInUse = false;
+
+            int capacity = batch.getMaxSize();
+            while (batch.size < capacity && super.next(key, batch)) {
+                // rows are added through setCurrentValue
+            }
+
+            if (batch.size == 0) {
+                return false;
+            }
+
+            if (addPartitionCols) {
+                try {
+                    rbCtx.addPartitionColsToBatch(batch);
+                } catch (HiveException ex) {
+                    throw new EsHadoopIllegalStateException("Cannot add partition columns to Hive row batch", ex);
+                }
+                addPartitionCols = false;
+            }
+            return true;
+        }
+
+        @Override
+        protected VectorizedRowBatch setCurrentValue(VectorizedRowBatch batch, Object object) {
+            if (object instanceof HiveRowWritable) {
+                HiveColumnVectors.addRow(batch, columns, ((HiveRowWritable) object).getValues());
+            }
+            else if (jsonColumn >= 0) {
+                List<Object> row = new ArrayList<Object>(Collections.nCopies(columns, null));
+                row.set(jsonColumn, new Text(object.toString()));
+                HiveColumnVectors.addRow(batch, columns, row);
+            }
+            else if (object instanceof Map && ((Map<?, ?>) object).isEmpty()) {
+                // documents without source are returned as empty maps
+                HiveColumnVectors.addRow(batch, columns, null);
+            }
+            else {
+                throw new EsHadoopIllegalStateException(String.format("Hive vectorized execution requires the [%s] value reader; "
+                        + "either remove the [%s] setting or disable vectorization", HiveRowValueReader.class.getName(), ConfigurationOptions.ES_SERIALIZATION_READER_VALUE_CLASS));
+            }
+            return batch;
+        }
+    }
+
     @Override
     public FileSplit[] getSplits(JobConf job, int numSplits) throws IOException {
         // first, merge input table properties (since there's no access to them ...)
@@ -102,14 +243,15 @@ public class EsHiveInputFormat extends EsInputFormat<Text, Writable> {
 
         Log log = LogFactory.getLog(getClass());
         // move on to initialization
-        InitializationUtils.setValueReaderIfNotSet(settings, HiveValueReader.class, log);
+        InitializationUtils.setValueReaderIfNotSet(settings, HiveRowValueReader.class, log);
         InitializationUtils.setUserProviderIfNotSet(settings, HadoopUserProvider.class, log);
         if (settings.getOutputAsJson() == false) {
             // Only set the fields if we aren't asking for raw JSON
-            settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_TARGET_FIELDS, StringUtils.concatenate(HiveUtils.columnToAlias(settings), ","));
+            settings.setProperty(InternalConfigurationOptions.INTERNAL_ES_TARGET_FIELDS, StringUtils.concatenate(HiveUtils.projectedColumnToAlias(settings), ","));
         }
 
         HiveUtils.init(settings, log);
+        pushDownFilter(job, settings, log);
 
         // decorate original splits as FileSplit
         InputSplit[] shardSplits = super.getSplits(job, numSplits);
@@ -121,10 +263,48 @@ public class EsHiveInputFormat extends EsInputFormat<Text, Writable> {
         return wrappers;
     }
 
+    private void pushDownFilter(JobConf job, Settings settings, Log log) {
+        // the configuration might be reused across table scans
+        SettingsUtils.setFilters(settings);
+
+        // set by Hive for the table scan based on EsStorageHandler#decomposePredicate (or the whole filter if the decomposition is disabled)
+        String serializedFilter = job.get(TableScanDesc.FILTER_EXPR_CONF_STR);
+        if (!StringUtils.hasText(serializedFilter) || settings.getOutputAsJson() || !HivePredicateTranslator.isEnabled(settings)) {
+            return;
+        }
+
+        ClusterInfo clusterInfo = InitializationUtils.discoverClusterInfo(settings, log);
+        if (clusterInfo.getMajorVersion().before(EsMajorVersion.V_2_X)) {
+            log.warn(String.format("Filter push down is not supported on Elasticsearch [%s]; Hive will filter the data instead", clusterInfo.getMajorVersion()));
+            return;
+        }
+
+        ExprNodeGenericFuncDesc filter = Utilities.deserializeExpression(serializedFilter);
+        String query = new HivePredicateTranslator(settings).translate(filter);
+        if (query != null) {
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Translated Hive filter [%s] into query DSL [%s]", filter.getExprString(), query));
+            }
+            SettingsUtils.setFilters(settings, query);
+        }
+    }
+
     @SuppressWarnings({ "unchecked", "rawtypes" })
     @Override
     public AbstractWritableEsInputRecordReader getRecordReader(InputSplit split, JobConf job, Reporter reporter) {
+        if (Utilities.isVectorMode(job)) {
+            return new VectorizedEsInputRecordReader((EsHiveSplit) split, job, reporter);
+        }
         InputSplit delegate = ((EsHiveSplit) split).delegate;
-        return isOutputAsJson(job) ? new JsonWritableEsInputRecordReader(delegate, job, reporter) : new WritableEsInputRecordReader(delegate, job, reporter);
+        if (isOutputAsJson(job)) {
+            return new JsonWritableEsInputRecordReader(delegate, job, reporter);
+        }
+        return (readsRows(delegate, job) ? new HiveRowEsInputRecordReader(delegate, job, reporter) : new WritableEsInputRecordReader(delegate, job, reporter));
+    }
+
+    private boolean readsRows(InputSplit split, JobConf job) {
+        // the value reader is decided when creating the splits
+        Settings settings = HadoopSettingsManager.loadFrom(job).copy().load(((EsInputSplit) split).getPartition().getSerializedSettings());
+        return HiveRowValueReader.class.getName().equals(settings.getSerializerValueReaderClassName());
     }
 }
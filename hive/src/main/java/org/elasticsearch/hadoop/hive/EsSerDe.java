@@ -19,6 +19,7 @@
 package org.elasticsearch.hadoop.hive;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -104,12 +105,22 @@ public class EsSerDe extends AbstractSerDe {
         initialize(conf, tbl, new Properties());
     }
 
+    Settings getSettings() {
+        return settings;
+    }
+
     @Override
     public Object deserialize(Writable blob) throws SerDeException {
         if (blob == null || blob instanceof NullWritable) {
             return null;
         }
 
+        // already read as a row
+        if (blob instanceof HiveRowWritable) {
+            List<Object> values = ((HiveRowWritable) blob).getValues();
+            return (values != null ? values : Collections.nCopies(structTypeInfo.getAllStructFieldNames().size(), null));
+        }
+
         Writable deserialize = blob;
         if (outputJSON) {
             deserialize = wrapJsonData(blob);
@@ -27,7 +27,10 @@ import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hive.metastore.HiveMetaHook;
 import org.apache.hadoop.hive.ql.metadata.DefaultStorageHandler;
+import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
 import org.apache.hadoop.hive.ql.plan.TableDesc;
+import org.apache.hadoop.hive.serde2.Deserializer;
 import org.apache.hadoop.hive.serde2.SerDe;
 import org.apache.hadoop.mapred.InputFormat;
 import org.apache.hadoop.mapred.JobConf;
@@ -58,9 +61,11 @@ import static org.elasticsearch.hadoop.hive.HiveConstants.TABLE_LOCATION;
  *
  * The ElasticSearch host/port can be specified through Hadoop properties (see package description)
  * or passed to {@link EsStorageHandler} through Hive <tt>TBLPROPERTIES</tt>
+ *
+ * Filters on the table are translated (when possible) into query DSL and pushed down to ElasticSearch.
  */
 @SuppressWarnings({ "deprecation", "rawtypes" })
-public class EsStorageHandler extends DefaultStorageHandler {
+public class EsStorageHandler extends DefaultStorageHandler implements HiveStoragePredicateHandler {
 
     private static Log log = LogFactory.getLog(EsStorageHandler.class);
 
@@ -136,6 +141,19 @@ public class EsStorageHandler extends DefaultStorageHandler {
     }
 
 
+    @Override
+    public DecomposedPredicate decomposePredicate(JobConf jobConf, Deserializer deserializer, ExprNodeDesc predicate) {
+        Settings settings = (deserializer instanceof EsSerDe ? ((EsSerDe) deserializer).getSettings() : HadoopSettingsManager.loadFrom(jobConf));
+        if (settings == null || settings.getOutputAsJson() || !HivePredicateTranslator.isEnabled(settings)) {
+            return null;
+        }
+        DecomposedPredicate decomposed = new HivePredicateTranslator(settings).decompose(predicate);
+        if (decomposed != null && log.isDebugEnabled()) {
+            log.debug(String.format("Pushing down predicate [%s] to Elasticsearch", decomposed.pushedPredicate.getExprString()));
+        }
+        return decomposed;
+    }
+
     @Override
     @Deprecated
     public void configureTableJobProperties(TableDesc tableDesc, Map<String, String> jobProperties) {
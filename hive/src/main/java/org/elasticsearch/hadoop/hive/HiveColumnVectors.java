@@ -0,0 +1,172 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.ColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DecimalColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.TimestampUtils;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.serde2.io.DateWritable;
+import org.apache.hadoop.hive.serde2.io.HiveDecimalWritable;
+import org.apache.hadoop.hive.serde2.io.TimestampWritable;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.util.StringUtils;
+
+/**
+ * Copies the Hive rows read from Elasticsearch into the column vectors of a {@link VectorizedRowBatch}.
+ * Follows the Hive 1.x vector layout: integral, boolean, date (days) and timestamp (nanos) values use {@link LongColumnVector},
+ * floating points {@link DoubleColumnVector}, strings/binaries {@link BytesColumnVector} and decimals {@link DecimalColumnVector}.
+ */
+abstract class HiveColumnVectors {
+
+    /**
+     * Adds the given row values at the end of the batch. Only the first (table) columns are touched, the rest (partition
+     * and scratch columns) being handled by Hive; columns without a vector (not projected) are skipped.
+     * A null list of values (document without source) results in a row of nulls.
+     */
+    static void addRow(VectorizedRowBatch batch, int columns, List<Object> values) {
+        int row = batch.size;
+        for (int column = 0; column < columns; column++) {
+            ColumnVector vector = batch.cols[column];
+            if (vector != null) {
+                set(vector, row, (values != null && column < values.size() ? values.get(column) : null));
+            }
+        }
+        batch.size++;
+    }
+
+    static void set(ColumnVector vector, int row, Object value) {
+        if (value == null || value instanceof NullWritable) {
+            setNull(vector, row);
+            return;
+        }
+
+        vector.isNull[row] = false;
+
+        if (vector instanceof LongColumnVector) {
+            ((LongColumnVector) vector).vector[row] = toLong(value);
+        }
+        else if (vector instanceof DoubleColumnVector) {
+            ((DoubleColumnVector) vector).vector[row] = toDouble(value);
+        }
+        else if (vector instanceof BytesColumnVector) {
+            BytesColumnVector bytes = (BytesColumnVector) vector;
+            // the values are created for each document so there's no need to copy them
+            if (value instanceof Text) {
+                Text text = (Text) value;
+                bytes.setRef(row, text.getBytes(), 0, text.getLength());
+            }
+            else if (value instanceof BytesWritable) {
+                BytesWritable binary = (BytesWritable) value;
+                bytes.setRef(row, binary.getBytes(), 0, binary.getLength());
+            }
+            else {
+                byte[] utf8 = StringUtils.toUTF(value.toString());
+                bytes.setRef(row, utf8, 0, utf8.length);
+            }
+        }
+        else if (vector instanceof DecimalColumnVector) {
+            DecimalColumnVector decimal = (DecimalColumnVector) vector;
+            if (value instanceof HiveDecimalWritable) {
+                decimal.set(row, (HiveDecimalWritable) value);
+            }
+            else {
+                decimal.set(row, HiveDecimal.create(value.toString()));
+            }
+        }
+        else {
+            throw new EsHadoopIllegalStateException(String.format("Unsupported column vector [%s] for value [%s]", vector.getClass().getName(), value));
+        }
+    }
+
+    private static void setNull(ColumnVector vector, int row) {
+        vector.isNull[row] = true;
+        vector.noNulls = false;
+
+        // use the same placeholders as Hive for the data of null entries
+        if (vector instanceof LongColumnVector) {
+            ((LongColumnVector) vector).vector[row] = 1L;
+        }
+        else if (vector instanceof DoubleColumnVector) {
+            ((DoubleColumnVector) vector).vector[row] = Double.NaN;
+        }
+        else if (vector instanceof DecimalColumnVector) {
+            ((DecimalColumnVector) vector).setNullDataValue(row);
+        }
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof LongWritable) {
+            return ((LongWritable) value).get();
+        }
+        if (value instanceof IntWritable) {
+            return ((IntWritable) value).get();
+        }
+        if (value instanceof org.apache.hadoop.hive.serde2.io.ShortWritable) {
+            return ((org.apache.hadoop.hive.serde2.io.ShortWritable) value).get();
+        }
+        if (value instanceof org.apache.hadoop.hive.serde2.io.ByteWritable) {
+            return ((org.apache.hadoop.hive.serde2.io.ByteWritable) value).get();
+        }
+        if (value instanceof BooleanWritable) {
+            return (((BooleanWritable) value).get() ? 1L : 0L);
+        }
+        if (value instanceof TimestampWritable) {
+            return TimestampUtils.getTimeNanoSec(((TimestampWritable) value).getTimestamp());
+        }
+        if (value instanceof DateWritable) {
+            return ((DateWritable) value).getDays();
+        }
+        // fall back to the textual representation (covers the remaining numeric types)
+        return new BigDecimal(value.toString()).longValue();
+    }
+
+    private static double toDouble(Object value) {
+        if (value instanceof org.apache.hadoop.hive.serde2.io.DoubleWritable) {
+            return ((org.apache.hadoop.hive.serde2.io.DoubleWritable) value).get();
+        }
+        if (value instanceof org.apache.hadoop.io.DoubleWritable) {
+            return ((org.apache.hadoop.io.DoubleWritable) value).get();
+        }
+        if (value instanceof FloatWritable) {
+            return ((FloatWritable) value).get();
+        }
+        if (value instanceof LongWritable) {
+            return ((LongWritable) value).get();
+        }
+        if (value instanceof IntWritable) {
+            return ((IntWritable) value).get();
+        }
+        return Double.parseDouble(value.toString());
+    }
+}
@@ -36,6 +36,10 @@ interface HiveConstants {
     String MAPPING_NAMES = "es.mapping.names";
     String COLUMN_COMMENTS = "columns.comments";
 
+    // column projection (see ColumnProjectionUtils)
+    String READ_COLUMN_IDS = "hive.io.file.readcolumn.ids";
+    String READ_ALL_COLUMNS = "hive.io.file.read.all.columns";
+
     String INPUT_TBL_PROPERTIES = "es.internal.hive.input.tbl.properties";
     String OUTPUT_TBL_PROPERTIES = "es.internal.hive.output.tbl.properties";
     String[] VIRTUAL_COLUMNS = new String[] { "INPUT__FILE__NAME", "BLOCK__OFFSET__INSIDE__FILE",
@@ -0,0 +1,442 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.hadoop.hive.common.type.HiveChar;
+import org.apache.hadoop.hive.common.type.HiveDecimal;
+import org.apache.hadoop.hive.common.type.HiveVarchar;
+import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler.DecomposedPredicate;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.udf.UDFLike;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFBetween;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFBridge;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFIn;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPAnd;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualNS;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqualOrLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPLessThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNot;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNotEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNotNull;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNull;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPOr;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.typeinfo.PrimitiveTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.rest.query.PushDownFilter;
+import org.elasticsearch.hadoop.util.FieldAlias;
+import org.elasticsearch.hadoop.util.StringUtils;
+import org.elasticsearch.hadoop.util.unit.Booleans;
+
+/**
+ * Translates Hive filter expressions into {es} query DSL (2.x and higher).
+ *
+ * The translation is conservative: the query returned always matches a superset of the rows the
+ * Hive expression accepts, which is why Hive is always asked to re-apply the original predicate
+ * (see {@link #decompose(ExprNodeDesc)}). Conjuncts that cannot be translated are simply dropped.
+ */
+final class HivePredicateTranslator {
+
+    private final FieldAlias alias;
+    private final boolean strict;
+
+    HivePredicateTranslator(Settings settings) {
+        this.alias = HiveUtils.alias(settings);
+        this.strict = isStrict(settings);
+    }
+
+    static boolean isEnabled(Settings settings) {
+        return Booleans.parseBoolean(settings.getProperty(ConfigurationOptions.ES_HIVE_PUSHDOWN, ConfigurationOptions.ES_HIVE_PUSHDOWN_DEFAULT));
+    }
+
+    static boolean isStrict(Settings settings) {
+        return Booleans.parseBoolean(settings.getProperty(ConfigurationOptions.ES_HIVE_PUSHDOWN_STRICT, ConfigurationOptions.ES_HIVE_PUSHDOWN_STRICT_DEFAULT));
+    }
+
+    /**
+     * Splits the given predicate into the conjuncts that can be pushed down to {es} and the residual one.
+     * Since the translation can be a superset, the residual is always the original predicate.
+     *
+     * @return the decomposed predicate or null if nothing can be pushed down
+     */
+    DecomposedPredicate decompose(ExprNodeDesc predicate) {
+        if (!(predicate instanceof ExprNodeGenericFuncDesc)) {
+            return null;
+        }
+
+        List<ExprNodeDesc> conjuncts = new ArrayList<ExprNodeDesc>();
+        flattenAnd(predicate, conjuncts);
+
+        List<ExprNodeDesc> pushed = new ArrayList<ExprNodeDesc>();
+        for (ExprNodeDesc conjunct : conjuncts) {
+            if (conjunct instanceof ExprNodeGenericFuncDesc && filter(conjunct) != null) {
+                pushed.add(conjunct);
+            }
+        }
+
+        if (pushed.isEmpty()) {
+            return null;
+        }
+
+        DecomposedPredicate decomposed = new DecomposedPredicate();
+        decomposed.pushedPredicate = (pushed.size() == 1 ? (ExprNodeGenericFuncDesc) pushed.get(0) :
+                new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo, new GenericUDFOPAnd(), pushed));
+        decomposed.residualPredicate = (ExprNodeGenericFuncDesc) predicate;
+        return decomposed;
+    }
+
+    /**
+     * Translates the given expression into query DSL.
+     *
+     * @return the query DSL or null if the expression cannot be translated
+     */
+    String translate(ExprNodeDesc expression) {
+        PushDownFilter filter = filter(expression);
+        return (filter != null ? filter.dsl() : null);
+    }
+
+    private static void flattenAnd(ExprNodeDesc expression, List<ExprNodeDesc> conjuncts) {
+        if (expression instanceof ExprNodeGenericFuncDesc && ((ExprNodeGenericFuncDesc) expression).getGenericUDF() instanceof GenericUDFOPAnd) {
+            for (ExprNodeDesc child : expression.getChildren()) {
+                flattenAnd(child, conjuncts);
+            }
+        }
+        else {
+            conjuncts.add(expression);
+        }
+    }
+
+    private PushDownFilter filter(ExprNodeDesc expression) {
+        if (!(expression instanceof ExprNodeGenericFuncDesc)) {
+            return null;
+        }
+
+        GenericUDF udf = ((ExprNodeGenericFuncDesc) expression).getGenericUDF();
+        List<ExprNodeDesc> args = expression.getChildren();
+
+        if (udf instanceof GenericUDFOPAnd) {
+            return PushDownFilter.and(filters(args));
+        }
+        if (udf instanceof GenericUDFOPOr) {
+            return PushDownFilter.or(filters(args));
+        }
+        if (udf instanceof GenericUDFOPNot) {
+            return PushDownFilter.not(filter(args.get(0)));
+        }
+        if (udf instanceof GenericUDFOPNull) {
+            return (args.get(0) instanceof ExprNodeColumnDesc ? PushDownFilter.isNull(field(args.get(0))) : null);
+        }
+        if (udf instanceof GenericUDFOPNotNull) {
+            return (args.get(0) instanceof ExprNodeColumnDesc ? PushDownFilter.isNotNull(field(args.get(0))) : null);
+        }
+        if (udf instanceof GenericUDFIn) {
+            return in(args);
+        }
+        if (udf instanceof GenericUDFBetween) {
+            return between(args);
+        }
+        if (udf instanceof GenericUDFBridge && UDFLike.class.getName().equals(((GenericUDFBridge) udf).getUdfClassName())) {
+            return like(args);
+        }
+        if (args.size() == 2) {
+            return compare(udf, args.get(0), args.get(1));
+        }
+        return null;
+    }
+
+    private List<PushDownFilter> filters(List<ExprNodeDesc> args) {
+        List<PushDownFilter> filters = new ArrayList<PushDownFilter>(args.size());
+        for (ExprNodeDesc arg : args) {
+            filters.add(filter(arg));
+        }
+        return filters;
+    }
+
+    private PushDownFilter compare(GenericUDF udf, ExprNodeDesc left, ExprNodeDesc right) {
+        boolean flipped = false;
+        if (left instanceof ExprNodeConstantDesc && right instanceof ExprNodeColumnDesc) {
+            ExprNodeDesc tmp = left;
+            left = right;
+            right = tmp;
+            flipped = true;
+        }
+        if (!(left instanceof ExprNodeColumnDesc) || !(right instanceof ExprNodeConstantDesc)) {
+            return null;
+        }
+
+        ExprNodeColumnDesc column = (ExprNodeColumnDesc) left;
+        Object value = ((ExprNodeConstantDesc) right).getValue();
+
+        // check the subclass first
+        if (udf instanceof GenericUDFOPEqualNS) {
+            return (value == null ? PushDownFilter.isNull(field(column)) : equal(column, value));
+        }
+        // comparisons against null are never true
+        if (value == null) {
+            return null;
+        }
+        if (udf instanceof GenericUDFOPEqual) {
+            return equal(column, value);
+        }
+        if (udf instanceof GenericUDFOPNotEqual) {
+            return PushDownFilter.not(equal(column, value));
+        }
+        if (udf instanceof GenericUDFOPGreaterThan) {
+            return range(column, (flipped ? "lt" : "gt"), value, null, null);
+        }
+        if (udf instanceof GenericUDFOPEqualOrGreaterThan) {
+            return range(column, (flipped ? "lte" : "gte"), value, null, null);
+        }
+        if (udf instanceof GenericUDFOPLessThan) {
+            return range(column, (flipped ? "gt" : "lt"), value, null, null);
+        }
+        if (udf instanceof GenericUDFOPEqualOrLessThan) {
+            return range(column, (flipped ? "gte" : "lte"), value, null, null);
+        }
+        return null;
+    }
+
+    private PushDownFilter equal(ExprNodeColumnDesc column, Object value) {
+        PrimitiveCategory category = category(column);
+        if (category == null) {
+            return null;
+        }
+
+        String field = field(column);
+        if (isText(category)) {
+            String string = string(value);
+            return (string != null ? PushDownFilter.text(field, string, strict) : null);
+        }
+        if (isDate(category)) {
+            Long millis = millis(value);
+            return (millis != null ? PushDownFilter.date(field, millis) : null);
+        }
+        String number = number(category, value);
+        return (number != null ? PushDownFilter.term(field, number) : null);
+    }
+
+    private PushDownFilter range(ExprNodeColumnDesc column, String op, Object value, String otherOp, Object otherValue) {
+        PrimitiveCategory category = category(column);
+        if (category == null || category == PrimitiveCategory.BOOLEAN) {
+            return null;
+        }
+
+        String field = field(column);
+        if (isText(category)) {
+            return PushDownFilter.textRange(field, op, string(value), otherOp, (otherOp != null ? string(otherValue) : null), strict);
+        }
+        if (isDate(category)) {
+            Long from = millis(value);
+            Long to = (otherOp != null ? millis(otherValue) : null);
+            if (from == null || (otherOp != null && to == null)) {
+                return null;
+            }
+            return PushDownFilter.dateRange(field, op, from, otherOp, to);
+        }
+        return PushDownFilter.range(field, op, number(category, value), otherOp, (otherOp != null ? number(category, otherValue) : null));
+    }
+
+    private PushDownFilter between(List<ExprNodeDesc> args) {
+        // invert flag, column, lower bound, upper bound
+        if (args.size() != 4 || !(args.get(0) instanceof ExprNodeConstantDesc) || !(args.get(1) instanceof ExprNodeColumnDesc)
+                || !(args.get(2) instanceof ExprNodeConstantDesc) || !(args.get(3) instanceof ExprNodeConstantDesc)) {
+            return null;
+        }
+        Object low = ((ExprNodeConstantDesc) args.get(2)).getValue();
+        Object high = ((ExprNodeConstantDesc) args.get(3)).getValue();
+        if (low == null || high == null) {
+            return null;
+        }
+
+        PushDownFilter range = range((ExprNodeColumnDesc) args.get(1), "gte", low, "lte", high);
+        return (Boolean.TRUE.equals(((ExprNodeConstantDesc) args.get(0)).getValue()) ? PushDownFilter.not(range) : range);
+    }
+
+    private PushDownFilter in(List<ExprNodeDesc> args) {
+        if (args.size() < 2 || !(args.get(0) instanceof ExprNodeColumnDesc)) {
+            return null;
+        }
+        ExprNodeColumnDesc column = (ExprNodeColumnDesc) args.get(0);
+        PrimitiveCategory category = category(column);
+        if (category == null || isDate(category)) {
+            return null;
+        }
+
+        boolean isText = isText(category);
+        List<String> values = new ArrayList<String>();
+        for (int i = 1; i < args.size(); i++) {
+            if (!(args.get(i) instanceof ExprNodeConstantDesc)) {
+                return null;
+            }
+            Object value = ((ExprNodeConstantDesc) args.get(i)).getValue();
+            // null never matches
+            if (value == null) {
+                continue;
+            }
+            String json = (isText ? string(value) : number(category, value));
+            if (json == null) {
+                return null;
+            }
+            values.add(json);
+        }
+        return PushDownFilter.in(field(column), values, isText, strict);
+    }
+
+    private PushDownFilter like(List<ExprNodeDesc> args) {
+        if (args.size() != 2 || !(args.get(0) instanceof ExprNodeColumnDesc) || !(args.get(1) instanceof ExprNodeConstantDesc)) {
+            return null;
+        }
+        PrimitiveCategory category = category((ExprNodeColumnDesc) args.get(0));
+        if (category == null || !isText(category)) {
+            return null;
+        }
+        Object value = ((ExprNodeConstantDesc) args.get(1)).getValue();
+        if (value == null) {
+            return null;
+        }
+
+        String pattern = (strict ? likeToWildcard(value.toString()) : analyzedLikeToWildcard(value.toString()));
+        if (pattern == null) {
+            return null;
+        }
+        return PushDownFilter.wildcard(field(args.get(0)), pattern, strict);
+    }
+
+    /**
+     * Converts a SQL LIKE pattern (using '\' as escape character) into a wildcard one.
+     */
+    static String likeToWildcard(String like) {
+        StringBuilder sb = new StringBuilder(like.length() + 4);
+        for (int i = 0; i < like.length(); i++) {
+            char c = like.charAt(i);
+            if (c == '\\' && i + 1 < like.length()) {
+                c = like.charAt(++i);
+                appendWildcardLiteral(sb, c);
+            }
+            else if (c == '%') {
+                sb.append('*');
+            }
+            else if (c == '_') {
+                sb.append('?');
+            }
+            else {
+                appendWildcardLiteral(sb, c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private static void appendWildcardLiteral(StringBuilder sb, char c) {
+        if (c == '*' || c == '?' || c == '\\') {
+            sb.append('\\');
+        }
+        sb.append(c);
+    }
+
+    /**
+     * Analyzed fields are matched term by term so only prefix, suffix and infix patterns over a single
+     * alphanumeric token can be (loosely) translated.
+     */
+    static String analyzedLikeToWildcard(String like) {
+        boolean leading = like.startsWith("%");
+        boolean trailing = like.length() > 1 && like.endsWith("%");
+        if (!leading && !trailing) {
+            return null;
+        }
+        String token = like.substring(leading ? 1 : 0, like.length() - (trailing ? 1 : 0));
+        if (token.isEmpty()) {
+            return null;
+        }
+        for (int i = 0; i < token.length(); i++) {
+            if (!Character.isLetterOrDigit(token.charAt(i))) {
+                return null;
+            }
+        }
+        return (leading ? "*" : "") + token.toLowerCase(Locale.ROOT) + (trailing ? "*" : "");
+    }
+
+    private String field(ExprNodeDesc column) {
+        return alias.toES(((ExprNodeColumnDesc) column).getColumn());
+    }
+
+    private static PrimitiveCategory category(ExprNodeColumnDesc column) {
+        TypeInfo type = column.getTypeInfo();
+        return (type instanceof PrimitiveTypeInfo ? ((PrimitiveTypeInfo) type).getPrimitiveCategory() : null);
+    }
+
+    private static boolean isText(PrimitiveCategory category) {
+        return (category == PrimitiveCategory.STRING || category == PrimitiveCategory.VARCHAR || category == PrimitiveCategory.CHAR);
+    }
+
+    private static boolean isDate(PrimitiveCategory category) {
+        return (category == PrimitiveCategory.TIMESTAMP || category == PrimitiveCategory.DATE);
+    }
+
+    private static String string(Object value) {
+        if (value instanceof HiveChar) {
+            // char values are padded
+            value = ((HiveChar) value).getStrippedValue();
+        }
+        if (value instanceof String || value instanceof HiveVarchar) {
+            return StringUtils.toJsonString(value.toString());
+        }
+        return null;
+    }
+
+    private static String number(PrimitiveCategory category, Object value) {
+        switch (category) {
+        case BOOLEAN:
+            return (value instanceof Boolean ? value.toString() : null);
+        case BYTE:
+        case SHORT:
+        case INT:
+        case LONG:
+        case FLOAT:
+        case DOUBLE:
+        case DECIMAL:
+            return (value instanceof Number || value instanceof HiveDecimal ? value.toString() : null);
+        default:
+            return null;
+        }
+    }
+
+    private static Long millis(Object value) {
+        // same conversion used when reading the dates back
+        if (value instanceof Timestamp || value instanceof Date) {
+            return ((java.util.Date) value).getTime();
+        }
+        return null;
+    }
+}
@@ -0,0 +1,358 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector.Category;
+import org.apache.hadoop.hive.serde2.typeinfo.ListTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.MapTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.StructTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.MapWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.serialization.FieldType;
+import org.elasticsearch.hadoop.serialization.Parser;
+import org.elasticsearch.hadoop.serialization.SettingsAware;
+import org.elasticsearch.hadoop.serialization.builder.ValueParsingCallback;
+import org.elasticsearch.hadoop.serialization.builder.ValueReader;
+import org.elasticsearch.hadoop.util.FieldAlias;
+import org.elasticsearch.hadoop.util.StringUtils;
+
+/**
+ * Reads the document source straight into a {@link HiveRowWritable} (as opposed to a {@link MapWritable} converted later on
+ * by {@link EsSerDe}), placing each top-level field in its column and materializing only the columns read by Hive.
+ * Structs, maps and arrays are built directly as the standard Hive objects of their column type; only values
+ * that cannot be typed while parsing (fields read through multi-level aliases or shared by several columns and
+ * the metadata) are read by {@link HiveValueReader} and converted afterwards.
+ */
+public class HiveRowValueReader implements ValueReader, SettingsAware, ValueParsingCallback {
+
+    private static class Column {
+        final int index;
+        final TypeInfo type;
+        // levels (for multi-level aliases) below the top-level field
+        final List<String> path;
+
+        Column(int index, TypeInfo type, List<String> path) {
+            this.index = index;
+            this.type = type;
+            this.path = path;
+        }
+    }
+
+    // columns of a row or struct by their top-level field name
+    private static class Layout {
+        final int size;
+        final Map<String, List<Column>> columns = new LinkedHashMap<String, List<Column>>();
+
+        Layout(List<String> names, List<TypeInfo> types, Set<Integer> projected, FieldAlias alias) {
+            size = names.size();
+            for (int index = 0; index < size; index++) {
+                if (projected != null && !projected.contains(index)) {
+                    continue;
+                }
+                List<String> levels = StringUtils.tokenize(alias.toES(names.get(index)), ".");
+                if (levels.isEmpty()) {
+                    continue;
+                }
+                List<Column> fieldColumns = columns.get(levels.get(0));
+                if (fieldColumns == null) {
+                    fieldColumns = new ArrayList<Column>(1);
+                    columns.put(levels.get(0), fieldColumns);
+                }
+                fieldColumns.add(new Column(index, types.get(index), levels.subList(1, levels.size())));
+            }
+        }
+
+        /**
+         * Returns the type of the given field if it can be built directly, that is if it is read by one column only
+         * and without any multi-level alias.
+         */
+        TypeInfo type(String field) {
+            List<Column> fieldColumns = columns.get(field);
+            if (fieldColumns == null || fieldColumns.size() != 1 || !fieldColumns.get(0).path.isEmpty()) {
+                return null;
+            }
+            return fieldColumns.get(0).type;
+        }
+    }
+
+    // struct being read, turned into a list once complete
+    private static class Struct {
+        final Layout layout;
+        final Object[] values;
+
+        Struct(Layout layout) {
+            this.layout = layout;
+            this.values = new Object[layout.size];
+        }
+    }
+
+    private final HiveValueReader delegate = new HiveValueReader();
+
+    private FieldAlias alias;
+    private int columnCount;
+    private Layout row;
+    private final Map<TypeInfo, Layout> structs = new HashMap<TypeInfo, Layout>();
+
+    // type of the value being read (null if unknown), the row layout standing for the source
+    private final List<Object> types = new ArrayList<Object>();
+
+    private boolean nextMapIsRow = false;
+    private final Text reuse = new Text();
+
+    @Override
+    public void setSettings(Settings settings) {
+        delegate.setSettings(settings);
+
+        alias = HiveUtils.alias(settings);
+        List<String> names = StringUtils.tokenize(settings.getProperty(HiveConstants.COLUMNS), ",");
+        List<TypeInfo> columnTypes = TypeInfoUtils.getTypeInfosFromTypeString(settings.getProperty(HiveConstants.COLUMNS_TYPES));
+
+        columnCount = names.size();
+        row = new Layout(names, columnTypes, HiveUtils.projectedColumns(settings), alias);
+        structs.clear();
+        types.clear();
+    }
+
+    private Layout layout(StructTypeInfo type) {
+        Layout layout = structs.get(type);
+        if (layout == null) {
+            layout = new Layout(type.getAllStructFieldNames(), type.getAllStructFieldTypeInfos(), null, alias);
+            structs.put(type, layout);
+        }
+        return layout;
+    }
+
+    private Object current() {
+        return (types.isEmpty() ? null : types.get(types.size() - 1));
+    }
+
+    private void push(Object type) {
+        types.add(type);
+    }
+
+    private void pop() {
+        types.remove(types.size() - 1);
+    }
+
+    // type of an object, arrays with a single element being unwrapped
+    private static TypeInfo objectType(Object type) {
+        while (type instanceof ListTypeInfo) {
+            type = ((ListTypeInfo) type).getListElementTypeInfo();
+        }
+        return (type instanceof TypeInfo ? (TypeInfo) type : null);
+    }
+
+    private TypeInfo fieldType(String absoluteName) {
+        Object parent = current();
+        String name = absoluteName.substring(absoluteName.lastIndexOf('.') + 1);
+        if (parent instanceof Layout) {
+            return ((Layout) parent).type(name);
+        }
+        TypeInfo type = objectType(parent);
+        if (type == null) {
+            return null;
+        }
+        if (type.getCategory() == Category.STRUCT) {
+            return layout((StructTypeInfo) type).type(name);
+        }
+        if (type.getCategory() == Category.MAP) {
+            return ((MapTypeInfo) type).getMapValueTypeInfo();
+        }
+        return null;
+    }
+
+    // converts the value read into the one expected by Hive
+    private Object hive(TypeInfo type, Object value) {
+        if (value instanceof Struct) {
+            return Arrays.asList(((Struct) value).values);
+        }
+        if (value instanceof Writable) {
+            return EsSerDe.hiveFromWritable(type, (Writable) value, alias);
+        }
+        return value;
+    }
+
+    private void set(Object target, Layout layout, Object key, Object value) {
+        // fields without a (projected) column are simply discarded
+        List<Column> fieldColumns = layout.columns.get(key.toString());
+        if (fieldColumns == null) {
+            return;
+        }
+        for (Column column : fieldColumns) {
+            Object result = value;
+            for (String level : column.path) {
+                if (!(result instanceof MapWritable)) {
+                    result = null;
+                    break;
+                }
+                reuse.set(level);
+                result = ((MapWritable) result).get(reuse);
+            }
+            result = hive(column.type, result);
+            if (target instanceof HiveRowWritable) {
+                ((HiveRowWritable) target).set(column.index, result);
+            }
+            else {
+                ((Struct) target).values[column.index] = result;
+            }
+        }
+    }
+
+    @Override
+    public Object createMap() {
+        if (nextMapIsRow) {
+            nextMapIsRow = false;
+            return new HiveRowWritable(columnCount);
+        }
+        TypeInfo type = objectType(current());
+        if (type != null) {
+            if (type.getCategory() == Category.STRUCT) {
+                return new Struct(layout((StructTypeInfo) type));
+            }
+            if (type.getCategory() == Category.MAP) {
+                return new LinkedHashMap<Object, Object>();
+            }
+        }
+        return delegate.createMap();
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public void addToMap(Object map, Object key, Object value) {
+        if (map instanceof HiveRowWritable) {
+            set(map, row, key, value);
+        }
+        else if (map instanceof Struct) {
+            set(map, ((Struct) map).layout, key, value);
+        }
+        else if (map instanceof MapWritable) {
+            delegate.addToMap(map, key, value);
+        }
+        else {
+            // the value type is the one of the current field
+            ((Map<Object, Object>) map).put(key, hive((TypeInfo) current(), value));
+        }
+    }
+
+    @Override
+    public Object readValue(Parser parser, String value, FieldType esType) {
+        return delegate.readValue(parser, value, esType);
+    }
+
+    @Override
+    public Object wrapString(String value) {
+        return delegate.wrapString(value);
+    }
+
+    @Override
+    public Object createArray(FieldType type) {
+        Object current = current();
+        if (current instanceof ListTypeInfo) {
+            push(((ListTypeInfo) current).getListElementTypeInfo());
+            return new ArrayList<Object>();
+        }
+        push(null);
+        return delegate.createArray(type);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Object addToArray(Object array, List<Object> values) {
+        TypeInfo elementType = (TypeInfo) current();
+        pop();
+        if (elementType == null) {
+            return delegate.addToArray(array, values);
+        }
+        List<Object> list = (List<Object>) array;
+        for (Object value : values) {
+            list.add(hive(elementType, value));
+        }
+        return list;
+    }
+
+    @Override
+    public void beginField(String fieldName) {
+        delegate.beginField(fieldName);
+        push(fieldType(fieldName));
+    }
+
+    @Override
+    public void endField(String fieldName) {
+        pop();
+        delegate.endField(fieldName);
+    }
+
+    @Override
+    public void beginDoc() {
+        nextMapIsRow = false;
+        types.clear();
+    }
+
+    @Override
+    public void beginLeadMetadata() {}
+
+    @Override
+    public void endLeadMetadata() {}
+
+    @Override
+    public void beginSource() {
+        // the source is read as a map
+        nextMapIsRow = true;
+        push(row);
+    }
+
+    @Override
+    public void endSource() {
+        nextMapIsRow = false;
+        pop();
+    }
+
+    @Override
+    public void excludeSource() {
+        // the (empty) source map is created right after
+        nextMapIsRow = true;
+    }
+
+    @Override
+    public void beginTrailMetadata() {}
+
+    @Override
+    public void endTrailMetadata() {}
+
+    @Override
+    public void endDoc() {}
+
+    @Override
+    public void beginGeoField() {}
+
+    @Override
+    public void endGeoField() {}
+}
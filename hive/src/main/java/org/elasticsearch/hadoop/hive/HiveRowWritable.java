@@ -0,0 +1,169 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.elasticsearch.hadoop.serialization.EsHadoopSerializationException;
+import org.elasticsearch.hadoop.util.ObjectUtils;
+
+/**
+ * Hive row (struct) read directly from Elasticsearch by {@link HiveRowValueReader}. Holds the column values (as Hive
+ * expects them) so they can be handed over as they are to Hive without any further conversion.
+ * The values are (primitive) {@link Writable}s, lists (for arrays and structs) and maps of them, each serialized
+ * along with its type.
+ */
+public class HiveRowWritable implements Writable {
+
+    private static final byte NULL = 0;
+    private static final byte WRITABLE = 1;
+    private static final byte LIST = 2;
+    private static final byte MAP = 3;
+
+    private List<Object> values;
+
+    public HiveRowWritable() {
+        values = null;
+    }
+
+    HiveRowWritable(int columns) {
+        values = new ArrayList<Object>(columns);
+        for (int i = 0; i < columns; i++) {
+            values.add(null);
+        }
+    }
+
+    void set(int column, Object value) {
+        values.set(column, value);
+    }
+
+    /**
+     * Returns the column values or null if the document had no source.
+     */
+    public List<Object> getValues() {
+        return values;
+    }
+
+    public void setValues(List<Object> values) {
+        this.values = values;
+    }
+
+    @Override
+    public void write(DataOutput out) throws IOException {
+        // -1 stands for a document without source
+        if (values == null) {
+            WritableUtils.writeVInt(out, -1);
+            return;
+        }
+        WritableUtils.writeVInt(out, values.size());
+        for (Object value : values) {
+            writeValue(out, value);
+        }
+    }
+
+    @Override
+    public void readFields(DataInput in) throws IOException {
+        int size = WritableUtils.readVInt(in);
+        if (size < 0) {
+            values = null;
+            return;
+        }
+        values = new ArrayList<Object>(size);
+        for (int i = 0; i < size; i++) {
+            values.add(readValue(in));
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void writeValue(DataOutput out, Object value) throws IOException {
+        if (value == null || value instanceof NullWritable) {
+            out.writeByte(NULL);
+        }
+        else if (value instanceof Writable) {
+            out.writeByte(WRITABLE);
+            out.writeUTF(value.getClass().getName());
+            ((Writable) value).write(out);
+        }
+        else if (value instanceof List) {
+            List<Object> list = (List<Object>) value;
+            out.writeByte(LIST);
+            WritableUtils.writeVInt(out, list.size());
+            for (Object element : list) {
+                writeValue(out, element);
+            }
+        }
+        else if (value instanceof Map) {
+            Map<Object, Object> map = (Map<Object, Object>) value;
+            out.writeByte(MAP);
+            WritableUtils.writeVInt(out, map.size());
+            for (Entry<Object, Object> entry : map.entrySet()) {
+                writeValue(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        }
+        else {
+            throw new EsHadoopSerializationException(String.format("Cannot serialize Hive row value [%s] of type [%s]", value,
+                    value.getClass().getName()));
+        }
+    }
+
+    private static Object readValue(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+        case NULL:
+            return null;
+        case WRITABLE:
+            Writable writable = ObjectUtils.instantiate(in.readUTF(), HiveRowWritable.class.getClassLoader());
+            writable.readFields(in);
+            return writable;
+        case LIST:
+            int size = WritableUtils.readVInt(in);
+            List<Object> list = new ArrayList<Object>(size);
+            for (int i = 0; i < size; i++) {
+                list.add(readValue(in));
+            }
+            return list;
+        case MAP:
+            int entries = WritableUtils.readVInt(in);
+            Map<Object, Object> map = new LinkedHashMap<Object, Object>();
+            for (int i = 0; i < entries; i++) {
+                Object key = readValue(in);
+                map.put(key, readValue(in));
+            }
+            return map;
+        default:
+            throw new EsHadoopSerializationException(String.format("Unknown Hive row value type [%s]", type));
+        }
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(values);
+    }
+}
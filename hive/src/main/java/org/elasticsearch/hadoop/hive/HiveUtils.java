@@ -19,6 +19,7 @@
 package org.elasticsearch.hadoop.hive;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashSet;
@@ -101,6 +102,43 @@ abstract class HiveUtils {
         return columnNames;
     }
 
+    /**
+     * Returns the indices of the columns read by Hive (as pushed through the projection) or null if all columns are read.
+     */
+    static Set<Integer> projectedColumns(Settings settings) {
+        String ids = settings.getProperty(HiveConstants.READ_COLUMN_IDS);
+        if (ids == null || Booleans.parseBoolean(settings.getProperty(HiveConstants.READ_ALL_COLUMNS, "true"))) {
+            return null;
+        }
+        Set<Integer> columns = new HashSet<Integer>();
+        for (String id : StringUtils.tokenize(ids, ",")) {
+            columns.add(Integer.valueOf(id));
+        }
+        return columns;
+    }
+
+    /**
+     * Same as {@link #columnToAlias(Settings)} but only for the columns read by Hive.
+     * Falls back to all the columns if there is no projection or it is empty.
+     */
+    static Collection<String> projectedColumnToAlias(Settings settings) {
+        Set<Integer> projected = projectedColumns(settings);
+        if (projected == null || projected.isEmpty()) {
+            return columnToAlias(settings);
+        }
+
+        FieldAlias fa = alias(settings);
+        List<String> columnNames = StringUtils.tokenize(settings.getProperty(HiveConstants.COLUMNS), ",");
+        List<String> fields = new ArrayList<String>();
+        for (int i = 0; i < columnNames.size(); i++) {
+            String columnName = columnNames.get(i);
+            if (projected.contains(i) && !Arrays.asList(HiveConstants.VIRTUAL_COLUMNS).contains(columnName)) {
+                fields.add(fa.toES(columnName));
+            }
+        }
+        return fields;
+    }
+
     /**
      * Reads the current aliases, and then the set of hive column names. Remaps the raw hive column names (_col1, _col2)
      * to the names used in the hive table, or, if the mappings exist, the names in the mappings instead.
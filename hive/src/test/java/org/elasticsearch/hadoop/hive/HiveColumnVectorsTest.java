@@ -0,0 +1,96 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+
+import org.apache.hadoop.hive.ql.exec.vector.BytesColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.DoubleColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.LongColumnVector;
+import org.apache.hadoop.hive.ql.exec.vector.VectorizedRowBatch;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.io.TimestampWritable;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HiveColumnVectorsTest {
+
+    private VectorizedRowBatch batch() {
+        VectorizedRowBatch batch = new VectorizedRowBatch(5);
+        batch.cols[0] = new LongColumnVector();
+        batch.cols[1] = new BytesColumnVector();
+        batch.cols[2] = new DoubleColumnVector();
+        batch.cols[3] = new LongColumnVector();
+        // column 4 is not projected
+        batch.size = 0;
+        return batch;
+    }
+
+    @Test
+    public void testAddRows() throws Exception {
+        VectorizedRowBatch batch = batch();
+        Timestamp ts = new Timestamp(1407239910771L);
+
+        HiveColumnVectors.addRow(batch, 5, Arrays.<Object> asList(new LongWritable(42), new Text("costin"), new DoubleWritable(1.5), new TimestampWritable(ts), new Text("ignored")));
+        HiveColumnVectors.addRow(batch, 5, Arrays.<Object> asList(new BooleanWritable(true), null, new LongWritable(2), null, null));
+
+        assertEquals(2, batch.size);
+
+        LongColumnVector longs = (LongColumnVector) batch.cols[0];
+        assertEquals(42L, longs.vector[0]);
+        assertEquals(1L, longs.vector[1]);
+        assertTrue(longs.noNulls);
+
+        BytesColumnVector bytes = (BytesColumnVector) batch.cols[1];
+        assertEquals("costin", new String(bytes.vector[0], bytes.start[0], bytes.length[0], "UTF-8"));
+        assertFalse(bytes.noNulls);
+        assertFalse(bytes.isNull[0]);
+        assertTrue(bytes.isNull[1]);
+
+        DoubleColumnVector doubles = (DoubleColumnVector) batch.cols[2];
+        assertArrayEquals(new double[] { 1.5d, 2d }, Arrays.copyOf(doubles.vector, 2), 0d);
+
+        LongColumnVector timestamps = (LongColumnVector) batch.cols[3];
+        assertEquals(1407239910771L * 1000000L, timestamps.vector[0]);
+        assertTrue(timestamps.isNull[1]);
+
+        assertNull(batch.cols[4]);
+    }
+
+    @Test
+    public void testAddRowWithoutSource() throws Exception {
+        VectorizedRowBatch batch = batch();
+        HiveColumnVectors.addRow(batch, 5, null);
+
+        assertEquals(1, batch.size);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(batch.cols[i].isNull[0]);
+            assertFalse(batch.cols[i].noNulls);
+        }
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.apache.hadoop.hive.ql.metadata.HiveStoragePredicateHandler.DecomposedPredicate;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.udf.UDFLike;
+import org.apache.hadoop.hive.ql.udf.UDFToDouble;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFBetween;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFBridge;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFIn;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPAnd;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPGreaterThan;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNot;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNotEqual;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPNull;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFOPOr;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.PropertiesSettings;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HivePredicateTranslatorTest {
+
+    private static final ExprNodeColumnDesc ID = new ExprNodeColumnDesc(TypeInfoFactory.longTypeInfo, "id", "t", false);
+    private static final ExprNodeColumnDesc NAME = new ExprNodeColumnDesc(TypeInfoFactory.stringTypeInfo, "name", "t", false);
+    private static final ExprNodeColumnDesc TS = new ExprNodeColumnDesc(TypeInfoFactory.timestampTypeInfo, "ts", "t", false);
+
+    private HivePredicateTranslator translator(boolean strict) {
+        Properties tableProperties = new Properties();
+        tableProperties.put(HiveConstants.COLUMNS, "id,name,ts");
+        tableProperties.put(HiveConstants.MAPPING_NAMES, "ts:@timestamp");
+        tableProperties.put(ConfigurationOptions.ES_HIVE_PUSHDOWN_STRICT, String.valueOf(strict));
+        return new HivePredicateTranslator(new PropertiesSettings(tableProperties));
+    }
+
+    private static ExprNodeGenericFuncDesc func(GenericUDF udf, ExprNodeDesc... children) {
+        return new ExprNodeGenericFuncDesc(TypeInfoFactory.booleanTypeInfo, udf, Arrays.asList(children));
+    }
+
+    private static ExprNodeConstantDesc constant(Object value) {
+        return new ExprNodeConstantDesc(value);
+    }
+
+    @Test
+    public void testComparisons() throws Exception {
+        HivePredicateTranslator translator = translator(false);
+        assertEquals("{\"term\":{\"id\":1}}", translator.translate(func(new GenericUDFOPEqual(), ID, constant(1L))));
+        assertEquals("{\"range\":{\"id\":{\"gt\":5}}}", translator.translate(func(new GenericUDFOPGreaterThan(), ID, constant(5L))));
+        // constant on the left side
+        assertEquals("{\"range\":{\"id\":{\"lt\":5}}}", translator.translate(func(new GenericUDFOPGreaterThan(), constant(5L), ID)));
+        assertEquals("{\"bool\":{\"must_not\":{\"term\":{\"id\":1}}}}", translator.translate(func(new GenericUDFOPNotEqual(), ID, constant(1L))));
+        assertEquals("{\"bool\":{\"must_not\":{\"exists\":{\"field\":\"id\"}}}}", translator.translate(func(new GenericUDFOPNull(), ID)));
+        assertEquals("{\"range\":{\"@timestamp\":{\"gte\":1000,\"lte\":1000,\"format\":\"epoch_millis\"}}}",
+                translator.translate(func(new GenericUDFOPEqual(), TS, constant(new Timestamp(1000L)))));
+        assertEquals("{\"range\":{\"id\":{\"gte\":1,\"lte\":10}}}",
+                translator.translate(func(new GenericUDFBetween(), constant(false), ID, constant(1L), constant(10L))));
+        // comparisons against expressions are not translated
+        ExprNodeGenericFuncDesc cast = new ExprNodeGenericFuncDesc(TypeInfoFactory.doubleTypeInfo,
+                new GenericUDFBridge("double", false, UDFToDouble.class.getName()), Arrays.<ExprNodeDesc> asList(ID));
+        assertNull(translator.translate(func(new GenericUDFOPEqual(), cast, constant(1d))));
+    }
+
+    @Test
+    public void testStrings() throws Exception {
+        HivePredicateTranslator translator = translator(false);
+        assertEquals("{\"match\":{\"name\":\"Foo\"}}", translator.translate(func(new GenericUDFOPEqual(), NAME, constant("Foo"))));
+        assertEquals("{\"bool\":{\"should\":[{\"match\":{\"name\":\"a\"}},{\"match\":{\"name\":\"b\"}}]}}",
+                translator.translate(func(new GenericUDFIn(), NAME, constant("a"), new ExprNodeConstantDesc(TypeInfoFactory.stringTypeInfo, null), constant("b"))));
+        // analyzed matches are a superset so they cannot be negated nor used in ranges
+        assertNull(translator.translate(func(new GenericUDFOPNotEqual(), NAME, constant("Foo"))));
+        assertNull(translator.translate(func(new GenericUDFOPGreaterThan(), NAME, constant("Foo"))));
+        GenericUDFBridge like = new GenericUDFBridge("like", true, UDFLike.class.getName());
+        assertEquals("{\"wildcard\":{\"name\":\"foo*\"}}", translator.translate(func(like, NAME, constant("Foo%"))));
+        assertNull(translator.translate(func(like, NAME, constant("Foo Bar%"))));
+
+        translator = translator(true);
+        assertEquals("{\"term\":{\"name\":\"Foo\"}}", translator.translate(func(new GenericUDFOPEqual(), NAME, constant("Foo"))));
+        assertEquals("{\"terms\":{\"name\":[\"a\",\"b\"]}}", translator.translate(func(new GenericUDFIn(), NAME, constant("a"), constant("b"))));
+        assertEquals("{\"wildcard\":{\"name\":\"F?o\\\\*\"}}", translator.translate(func(like, NAME, constant("F_o*"))));
+    }
+
+    @Test
+    public void testLikeToWildcard() throws Exception {
+        assertEquals("a*b?c", HivePredicateTranslator.likeToWildcard("a%b_c"));
+        assertEquals("a%b_c\\*", HivePredicateTranslator.likeToWildcard("a\\%b\\_c*"));
+        assertEquals("*abc*", HivePredicateTranslator.analyzedLikeToWildcard("%ABC%"));
+        assertNull(HivePredicateTranslator.analyzedLikeToWildcard("a%c"));
+        assertNull(HivePredicateTranslator.analyzedLikeToWildcard("%"));
+    }
+
+    @Test
+    public void testBooleanLogic() throws Exception {
+        HivePredicateTranslator translator = translator(false);
+        ExprNodeGenericFuncDesc idEq = func(new GenericUDFOPEqual(), ID, constant(1L));
+        ExprNodeGenericFuncDesc nameEq = func(new GenericUDFOPEqual(), NAME, constant("Foo"));
+        ExprNodeGenericFuncDesc untranslatable = func(new GenericUDFOPEqual(), ID, ID);
+
+        assertEquals("{\"bool\":{\"filter\":[{\"term\":{\"id\":1}},{\"match\":{\"name\":\"Foo\"}}]}}",
+                translator.translate(func(new GenericUDFOPAnd(), idEq, nameEq)));
+        // untranslatable conjuncts are dropped
+        assertEquals("{\"term\":{\"id\":1}}", translator.translate(func(new GenericUDFOPAnd(), idEq, untranslatable)));
+        // but not disjuncts
+        assertNull(translator.translate(func(new GenericUDFOPOr(), idEq, untranslatable)));
+        assertEquals("{\"bool\":{\"should\":[{\"term\":{\"id\":1}},{\"match\":{\"name\":\"Foo\"}}]}}",
+                translator.translate(func(new GenericUDFOPOr(), idEq, nameEq)));
+        assertEquals("{\"bool\":{\"must_not\":{\"term\":{\"id\":1}}}}", translator.translate(func(new GenericUDFOPNot(), idEq)));
+        // negating a partial translation would lose rows
+        assertNull(translator.translate(func(new GenericUDFOPNot(), func(new GenericUDFOPAnd(), idEq, untranslatable))));
+        assertNull(translator.translate(func(new GenericUDFOPNot(), func(new GenericUDFOPNot(), idEq))));
+    }
+
+    @Test
+    public void testDecompose() throws Exception {
+        HivePredicateTranslator translator = translator(false);
+        ExprNodeGenericFuncDesc idEq = func(new GenericUDFOPEqual(), ID, constant(1L));
+        ExprNodeGenericFuncDesc nameEq = func(new GenericUDFOPEqual(), NAME, constant("Foo"));
+        ExprNodeGenericFuncDesc untranslatable = func(new GenericUDFOPEqual(), ID, ID);
+        ExprNodeGenericFuncDesc predicate = func(new GenericUDFOPAnd(), func(new GenericUDFOPAnd(), idEq, untranslatable), nameEq);
+
+        DecomposedPredicate decomposed = translator.decompose(predicate);
+        assertNotNull(decomposed);
+        assertTrue(decomposed.pushedPredicate.getGenericUDF() instanceof GenericUDFOPAnd);
+        assertEquals(Arrays.asList(idEq, nameEq), decomposed.pushedPredicate.getChildren());
+        // the translation might be a superset hence why Hive needs to filter again
+        assertSame(predicate, decomposed.residualPredicate);
+
+        assertSame(idEq, translator.decompose(func(new GenericUDFOPAnd(), idEq, untranslatable)).pushedPredicate);
+        assertNull(translator.decompose(untranslatable));
+    }
+}
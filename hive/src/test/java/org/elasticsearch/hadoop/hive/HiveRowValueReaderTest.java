@@ -0,0 +1,172 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.hive;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.codehaus.jackson.map.ObjectMapper;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.serialization.ScrollReader;
+import org.elasticsearch.hadoop.serialization.ScrollReaderConfigBuilder;
+import org.elasticsearch.hadoop.serialization.dto.mapping.FieldParser;
+import org.elasticsearch.hadoop.serialization.dto.mapping.Mapping;
+import org.elasticsearch.hadoop.util.TestSettings;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class HiveRowValueReaderTest {
+
+    private Settings settings() {
+        Settings settings = new TestSettings();
+        settings.setProperty(HiveConstants.COLUMNS, "id,name,city,tags,missing");
+        settings.setProperty(HiveConstants.COLUMNS_TYPES, "bigint:string:string:array<string>:string");
+        settings.setProperty(HiveConstants.MAPPING_NAMES, "city:address.city");
+        return settings;
+    }
+
+    private List<Object> readRow(Settings settings) throws Exception {
+        HiveRowValueReader valueReader = new HiveRowValueReader();
+        valueReader.setSettings(settings);
+        ScrollReaderConfigBuilder scrollCfg = ScrollReaderConfigBuilder.builder(valueReader, settings)
+                .setResolvedMapping(mapping("hive-row-mappingresponse.json"))
+                .setReadMetadata(false)
+                .setReturnRawJson(false)
+                .setIgnoreUnmappedFields(false);
+        ScrollReader reader = new ScrollReader(scrollCfg);
+        List<Object[]> read = reader.read(getClass().getResourceAsStream("hive-row-source.json")).getHits();
+        assertEquals(1, read.size());
+        Object row = read.get(0)[1];
+        assertTrue(row instanceof HiveRowWritable);
+        return ((HiveRowWritable) row).getValues();
+    }
+
+    @Test
+    public void testReadRow() throws Exception {
+        List<Object> values = readRow(settings());
+        assertEquals(5, values.size());
+        assertEquals(new LongWritable(1), values.get(0));
+        assertEquals(new Text("costin"), values.get(1));
+        assertEquals(new Text("Bucharest"), values.get(2));
+        assertEquals(Arrays.asList(new Text("a"), new Text("b")), values.get(3));
+        assertNull(values.get(4));
+    }
+
+    @Test
+    public void testRowRoundTrip() throws Exception {
+        // bigint, string, array<string>, map<string,bigint>, struct<city:string,zip:int>, string
+        HiveRowWritable row = new HiveRowWritable(6);
+        Map<Object, Object> props = new LinkedHashMap<Object, Object>();
+        props.put(new Text("a"), new LongWritable(1));
+        props.put(new Text("b"), null);
+        row.set(0, new LongWritable(1));
+        row.set(1, new Text("costin"));
+        row.set(2, Arrays.asList(new Text("a"), null, new Text("b")));
+        row.set(3, props);
+        row.set(4, Arrays.<Object> asList(new Text("Bucharest"), new IntWritable(10)));
+
+        HiveRowWritable read = roundTrip(row);
+        assertEquals(row.getValues(), read.getValues());
+
+        // documents without source
+        assertNull(roundTrip(new HiveRowWritable()).getValues());
+    }
+
+    private static HiveRowWritable roundTrip(HiveRowWritable row) throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        row.write(out);
+        out.close();
+        HiveRowWritable read = new HiveRowWritable(2);
+        read.readFields(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        return read;
+    }
+
+    @Test
+    public void testReadProjectedColumnsOnly() throws Exception {
+        Settings settings = settings();
+        settings.setProperty(HiveConstants.READ_ALL_COLUMNS, "false");
+        settings.setProperty(HiveConstants.READ_COLUMN_IDS, "0,2");
+        List<Object> values = readRow(settings);
+        assertEquals(5, values.size());
+        assertEquals(new LongWritable(1), values.get(0));
+        assertNull(values.get(1));
+        assertEquals(new Text("Bucharest"), values.get(2));
+        assertNull(values.get(3));
+
+        assertEquals(Arrays.asList("id", "address.city"), HiveUtils.projectedColumnToAlias(settings));
+    }
+
+    @Test
+    public void testReadComplexColumns() throws Exception {
+        Settings settings = new TestSettings();
+        settings.setProperty(HiveConstants.COLUMNS, "address,people");
+        settings.setProperty(HiveConstants.COLUMNS_TYPES, "struct<city:string,zip:string>:array<struct<name:string,age:bigint>>");
+        List<Object> values = readRow(settings);
+        assertEquals(2, values.size());
+        assertEquals(Arrays.asList(new Text("Bucharest"), new Text("0123")), values.get(0));
+        assertEquals(Arrays.asList(Arrays.asList(new Text("a"), new LongWritable(1)), Arrays.asList(new Text("b"), new LongWritable(2))), values.get(1));
+    }
+
+    @Test
+    public void testReadMapColumn() throws Exception {
+        Settings settings = new TestSettings();
+        settings.setProperty(HiveConstants.COLUMNS, "location");
+        settings.setProperty(HiveConstants.COLUMNS_TYPES, "map<string,string>");
+        settings.setProperty(HiveConstants.MAPPING_NAMES, "location:address");
+        List<Object> values = readRow(settings);
+        assertEquals(Arrays.asList(address()), values);
+    }
+
+    @Test
+    public void testReadFieldSharedByColumns() throws Exception {
+        Settings settings = new TestSettings();
+        settings.setProperty(HiveConstants.COLUMNS, "city,location");
+        settings.setProperty(HiveConstants.COLUMNS_TYPES, "string:map<string,string>");
+        settings.setProperty(HiveConstants.MAPPING_NAMES, "city:address.city,location:address");
+        List<Object> values = readRow(settings);
+        assertEquals(Arrays.asList(new Text("Bucharest"), address()), values);
+    }
+
+    private Map<Object, Object> address() {
+        Map<Object, Object> address = new LinkedHashMap<Object, Object>();
+        address.put(new Text("city"), new Text("Bucharest"));
+        address.put(new Text("zip"), new Text("0123"));
+        return address;
+    }
+
+    @SuppressWarnings("rawtypes")
+    private Mapping mapping(String resource) throws Exception {
+        InputStream stream = getClass().getResourceAsStream(resource);
+        return FieldParser.parseTypelessMappings(new ObjectMapper().readValue(stream, Map.class)).getResolvedView();
+    }
+}
@@ -78,10 +78,34 @@ public interface ConfigurationOptions {
     String ES_BATCH_SIZE_ENTRIES = "es.batch.size.entries";
     String ES_BATCH_SIZE_ENTRIES_DEFAULT = "1000";
 
+    /** Whether to adapt the batch size (up to the configured sizes) to the observed bulk latency and rejections */
+    String ES_BATCH_SIZE_ADAPTIVE = "es.batch.size.adaptive";
+    String ES_BATCH_SIZE_ADAPTIVE_DEFAULT = "false";
+
+    /** Bulk request latency the adaptive batch size aims to stay under */
+    String ES_BATCH_SIZE_ADAPTIVE_TARGET_LATENCY = "es.batch.size.adaptive.target.latency";
+    String ES_BATCH_SIZE_ADAPTIVE_TARGET_LATENCY_DEFAULT = "1s";
+
     /** Elasticsearch disable auto-flush on batch overflow */
     String ES_BATCH_FLUSH_MANUAL = "es.batch.flush.manual";
     String ES_BATCH_FLUSH_MANUAL_DEFAULT = "false";
 
+    /** Number of full batches that can be pending (flushed in the background) while writing continues - 0 disables pipelining */
+    String ES_BATCH_FLUSH_PIPELINE = "es.batch.flush.pipeline";
+    String ES_BATCH_FLUSH_PIPELINE_DEFAULT = "0";
+
+    /** Whether to route each bulk entry to the node holding its target primary shard (single index writes only) */
+    String ES_BATCH_WRITE_SHARD_ROUTING = "es.batch.write.shard.routing";
+    String ES_BATCH_WRITE_SHARD_ROUTING_DEFAULT = "false";
+
+    /** Whether to batch the bulk entries of each target index separately (index pattern writes only) */
+    String ES_BATCH_WRITE_INDEX_GROUPING = "es.batch.write.index.grouping";
+    String ES_BATCH_WRITE_INDEX_GROUPING_DEFAULT = "false";
+
+    /** Maximum number of per-index batches kept by a task - the entries of any other index share a single batch */
+    String ES_BATCH_WRITE_INDEX_GROUPING_MAX = "es.batch.write.index.grouping.max";
+    String ES_BATCH_WRITE_INDEX_GROUPING_MAX_DEFAULT = "10";
+
     /** Whether to trigger an index refresh after doing batch writing */
     String ES_BATCH_WRITE_REFRESH = "es.batch.write.refresh";
     String ES_BATCH_WRITE_REFRESH_DEFAULT = "true";
@@ -108,6 +132,10 @@ public interface ConfigurationOptions {
     String ES_HTTP_RETRIES = "es.http.retries";
     String ES_HTTP_RETRIES_DEFAULT = "3";
 
+    /** HTTP compression (gzip) of request bodies and responses */
+    String ES_HTTP_COMPRESSION = "es.http.compression";
+    String ES_HTTP_COMPRESSION_DEFAULT = "false";
+
     /** Scroll keep-alive */
     String ES_SCROLL_KEEPALIVE = "es.scroll.keepalive";
     String ES_SCROLL_KEEPALIVE_DEFAULT = "5m";
@@ -120,6 +148,20 @@ public interface ConfigurationOptions {
     String ES_SCROLL_LIMIT = "es.scroll.limit";
     String ES_SCROLL_LIMIT_DEFAULT = "-1";
 
+    /** Scroll hits decoded as they are consumed, straight off the response */
+    String ES_SCROLL_STREAM = "es.scroll.stream";
+    String ES_SCROLL_STREAM_DEFAULT = "false";
+
+    /** Number of scroll pages retrieved ahead of the consumer - 0 disables prefetching */
+    String ES_SCROLL_PREFETCH = "es.scroll.prefetch";
+    String ES_SCROLL_PREFETCH_DEFAULT = "0";
+
+    /** How search results are paged through - scroll or search_after */
+    String ES_READ_STRATEGY = "es.read.strategy";
+    String ES_READ_STRATEGY_SCROLL = "scroll";
+    String ES_READ_STRATEGY_SEARCH_AFTER = "search_after";
+    String ES_READ_STRATEGY_DEFAULT = ES_READ_STRATEGY_SCROLL;
+
     /** Scroll fields */
 
     String ES_HEART_BEAT_LEAD = "es.action.heart.beat.lead";
@@ -138,6 +180,8 @@ public interface ConfigurationOptions {
 
     /** Input options **/
     String ES_MAX_DOCS_PER_PARTITION = "es.input.max.docs.per.partition";
+    String ES_MAX_DOCS_PER_PARTITION_COUNT_CONCURRENCY = "es.input.max.docs.per.partition.count.concurrency";
+    String ES_MAX_DOCS_PER_PARTITION_COUNT_CONCURRENCY_DEFAULT = "1";
 
     String ES_INPUT_JSON = "es.input.json";
     String ES_INPUT_JSON_DEFAULT = "no";
@@ -206,6 +250,20 @@ public interface ConfigurationOptions {
     /** Technology Specific **/
     String ES_SPARK_DATAFRAME_WRITE_NULL_VALUES = "es.spark.dataframe.write.null";
     String ES_SPARK_DATAFRAME_WRITE_NULL_VALUES_DEFAULT = "false";
+    String ES_SPARK_DATAFRAME_PUSHDOWN_AGGREGATIONS = "es.spark.dataframe.pushdown.aggregations";
+    String ES_SPARK_DATAFRAME_PUSHDOWN_AGGREGATIONS_DEFAULT = "true";
+    String ES_SPARK_DATAFRAME_PUSHDOWN_AGGREGATIONS_SIZE = "es.spark.dataframe.pushdown.aggregations.size";
+    String ES_SPARK_DATAFRAME_PUSHDOWN_AGGREGATIONS_SIZE_DEFAULT = "1000";
+
+    String ES_HIVE_PUSHDOWN = "es.hive.pushdown";
+    String ES_HIVE_PUSHDOWN_DEFAULT = "true";
+    String ES_HIVE_PUSHDOWN_STRICT = "es.hive.pushdown.strict";
+    String ES_HIVE_PUSHDOWN_STRICT_DEFAULT = "false";
+
+    String ES_PIG_PUSHDOWN = "es.pig.pushdown";
+    String ES_PIG_PUSHDOWN_DEFAULT = "true";
+    String ES_PIG_PUSHDOWN_STRICT = "es.pig.pushdown.strict";
+    String ES_PIG_PUSHDOWN_STRICT_DEFAULT = "false";
 
     /** Read settings */
 
@@ -165,6 +165,10 @@ public abstract class Settings {
         return Integer.valueOf(getProperty(ES_HTTP_RETRIES, ES_HTTP_RETRIES_DEFAULT));
     }
 
+    public boolean getHttpCompression() {
+        return Booleans.parseBoolean(getProperty(ES_HTTP_COMPRESSION, ES_HTTP_COMPRESSION_DEFAULT));
+    }
+
     public int getBatchSizeInBytes() {
         return ByteSizeValue.parseBytesSizeValue(getProperty(ES_BATCH_SIZE_BYTES, ES_BATCH_SIZE_BYTES_DEFAULT)).bytesAsInt();
     }
@@ -173,6 +177,14 @@ public abstract class Settings {
         return Integer.valueOf(getProperty(ES_BATCH_SIZE_ENTRIES, ES_BATCH_SIZE_ENTRIES_DEFAULT));
     }
 
+    public boolean getBatchSizeAdaptive() {
+        return Booleans.parseBoolean(getProperty(ES_BATCH_SIZE_ADAPTIVE, ES_BATCH_SIZE_ADAPTIVE_DEFAULT));
+    }
+
+    public long getBatchSizeAdaptiveTargetLatency() {
+        return TimeValue.parseTimeValue(getProperty(ES_BATCH_SIZE_ADAPTIVE_TARGET_LATENCY, ES_BATCH_SIZE_ADAPTIVE_TARGET_LATENCY_DEFAULT)).getMillis();
+    }
+
     public int getBatchWriteRetryCount() {
         return Integer.parseInt(getProperty(ES_BATCH_WRITE_RETRY_COUNT, ES_BATCH_WRITE_RETRY_COUNT_DEFAULT));
     }
@@ -197,6 +209,22 @@ public abstract class Settings {
         return Booleans.parseBoolean(getProperty(ES_BATCH_FLUSH_MANUAL, ES_BATCH_FLUSH_MANUAL_DEFAULT));
     }
 
+    public int getBatchFlushPipeline() {
+        return Integer.parseInt(getProperty(ES_BATCH_FLUSH_PIPELINE, ES_BATCH_FLUSH_PIPELINE_DEFAULT));
+    }
+
+    public boolean getBatchWriteShardRouting() {
+        return Booleans.parseBoolean(getProperty(ES_BATCH_WRITE_SHARD_ROUTING, ES_BATCH_WRITE_SHARD_ROUTING_DEFAULT));
+    }
+
+    public boolean getBatchWriteIndexGrouping() {
+        return Booleans.parseBoolean(getProperty(ES_BATCH_WRITE_INDEX_GROUPING, ES_BATCH_WRITE_INDEX_GROUPING_DEFAULT));
+    }
+
+    public int getBatchWriteIndexGroupingMax() {
+        return Integer.valueOf(getProperty(ES_BATCH_WRITE_INDEX_GROUPING_MAX, ES_BATCH_WRITE_INDEX_GROUPING_MAX_DEFAULT));
+    }
+
     public long getScrollKeepAlive() {
         return TimeValue.parseTimeValue(getProperty(ES_SCROLL_KEEPALIVE, ES_SCROLL_KEEPALIVE_DEFAULT)).getMillis();
     }
@@ -209,6 +237,18 @@ public abstract class Settings {
         return Long.valueOf(getProperty(ES_SCROLL_LIMIT, ES_SCROLL_LIMIT_DEFAULT));
     }
 
+    public boolean getScrollStream() {
+        return Booleans.parseBoolean(getProperty(ES_SCROLL_STREAM, ES_SCROLL_STREAM_DEFAULT));
+    }
+
+    public int getScrollPrefetch() {
+        return Integer.parseInt(getProperty(ES_SCROLL_PREFETCH, ES_SCROLL_PREFETCH_DEFAULT));
+    }
+
+    public String getReadStrategy() {
+        return getProperty(ES_READ_STRATEGY, ES_READ_STRATEGY_DEFAULT).toLowerCase(Locale.ROOT);
+    }
+
     public String getScrollFields() {
         return getProperty(INTERNAL_ES_TARGET_FIELDS);
     }
@@ -651,6 +691,10 @@ public abstract class Settings {
         return null;
     }
 
+    public int getMaxDocsPerPartitionCountConcurrency() {
+        return Integer.parseInt(getProperty(ES_MAX_DOCS_PER_PARTITION_COUNT_CONCURRENCY, ES_MAX_DOCS_PER_PARTITION_COUNT_CONCURRENCY_DEFAULT));
+    }
+
     public boolean getReadMetadata() {
         return Booleans.parseBoolean(getProperty(ES_READ_METADATA, ES_READ_METADATA_DEFAULT));
     }
@@ -671,6 +715,14 @@ public abstract class Settings {
         return Booleans.parseBoolean(getProperty(ES_SPARK_DATAFRAME_WRITE_NULL_VALUES, ES_SPARK_DATAFRAME_WRITE_NULL_VALUES_DEFAULT));
     }
 
+    public boolean getDataFramePushDownAggregations() {
+        return Booleans.parseBoolean(getProperty(ES_SPARK_DATAFRAME_PUSHDOWN_AGGREGATIONS, ES_SPARK_DATAFRAME_PUSHDOWN_AGGREGATIONS_DEFAULT));
+    }
+
+    public int getDataFramePushDownAggregationsSize() {
+        return Integer.valueOf(getProperty(ES_SPARK_DATAFRAME_PUSHDOWN_AGGREGATIONS_SIZE, ES_SPARK_DATAFRAME_PUSHDOWN_AGGREGATIONS_SIZE_DEFAULT));
+    }
+
     public AuthenticationMethod getSecurityAuthenticationMethod() {
         AuthenticationMethod authMode = null;
         String authSetting = getProperty(ConfigurationOptions.ES_SECURITY_AUTHENTICATION);
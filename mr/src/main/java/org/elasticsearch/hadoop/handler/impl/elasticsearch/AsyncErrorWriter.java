@@ -0,0 +1,180 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.handler.impl.elasticsearch;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.hadoop.EsHadoopException;
+import org.elasticsearch.hadoop.rest.RestRepository;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.StringUtils;
+
+/**
+ * Writes error documents in bulk from a background thread. Documents are queued (up to a bounded number) and drained into
+ * the bulk buffer of the given repository, which is flushed once full, after the flush interval or on close. The repository
+ * is only used from the writer thread until {@link #close()} returns.
+ * <p>
+ * Once a write fails, all subsequent documents are rejected and the failure is rethrown on {@link #close()}.
+ */
+class AsyncErrorWriter {
+
+    private static final Log LOG = LogFactory.getLog(AsyncErrorWriter.class);
+
+    private static final byte[] BULK_HEADER = StringUtils.toUTF("{\"index\":{}}\n");
+    // marks the end of the queue
+    private static final BytesArray CLOSE = new BytesArray(0);
+    // how often a producer blocked on a full queue checks whether the writer gave up
+    private static final long MIN_OFFER_WAIT_MILLIS = 100;
+
+    private final RestRepository repository;
+    private final BlockingQueue<BytesArray> queue;
+    private final boolean dropOnOverflow;
+    private final long flushIntervalMillis;
+    private final Thread writer;
+    private volatile Exception writeFailure;
+
+    AsyncErrorWriter(RestRepository repository, int queueSize, boolean dropOnOverflow, long flushIntervalMillis) {
+        this.repository = repository;
+        this.queue = new ArrayBlockingQueue<BytesArray>(queueSize);
+        this.dropOnOverflow = dropOnOverflow;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.writer = new Thread(new Writer(), "es-hadoop-error-handler");
+        this.writer.setDaemon(true);
+        this.writer.start();
+    }
+
+    /**
+     * Queues the given document for writing.
+     *
+     * @return <code>true</code> if the document was queued, <code>false</code> if it was dropped because the queue is full
+     * (when dropping on overflow) or because a previous write failed
+     */
+    boolean write(BytesArray document) throws InterruptedException {
+        if (writeFailure != null) {
+            return false;
+        }
+        if (dropOnOverflow) {
+            return queue.offer(document);
+        }
+        // wait for room unless the writer gave up
+        long wait = Math.max(flushIntervalMillis, MIN_OFFER_WAIT_MILLIS);
+        while (!queue.offer(document, wait, TimeUnit.MILLISECONDS)) {
+            if (writeFailure != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    Exception failure() {
+        return writeFailure;
+    }
+
+    /**
+     * Writes the queued documents and waits for the writer thread to finish.
+     *
+     * @throws EsHadoopException if writing any of the documents failed
+     */
+    void close() {
+        try {
+            queue.put(CLOSE);
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            writer.interrupt();
+        }
+        if (writeFailure != null) {
+            throw new EsHadoopException("Could not write error handling data to ES", writeFailure);
+        }
+    }
+
+    private class Writer implements Runnable {
+
+        private final BytesArray entry = new BytesArray(512);
+        private long oldestBuffered = -1;
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    BytesArray document;
+                    if (oldestBuffered < 0) {
+                        // nothing to flush
+                        document = queue.take();
+                    } else {
+                        long wait = oldestBuffered + flushIntervalMillis - System.currentTimeMillis();
+                        document = (wait > 0 ? queue.poll(wait, TimeUnit.MILLISECONDS) : queue.poll());
+                    }
+                    if (document == CLOSE) {
+                        flush();
+                        return;
+                    }
+                    if (document != null) {
+                        write(document);
+                    }
+                    if (oldestBuffered >= 0 && System.currentTimeMillis() - oldestBuffered >= flushIntervalMillis) {
+                        flush();
+                    }
+                }
+            } catch (InterruptedException ex) {
+                flush();
+            }
+        }
+
+        private void write(BytesArray document) {
+            // once a write failed, drain the queue without writing so that callers are never blocked
+            if (writeFailure != null) {
+                return;
+            }
+            entry.reset();
+            entry.add(BULK_HEADER);
+            entry.add(document.bytes(), document.offset(), document.length());
+            entry.add('\n');
+            try {
+                repository.writeProcessedToIndex(entry);
+                if (oldestBuffered < 0) {
+                    oldestBuffered = System.currentTimeMillis();
+                }
+            } catch (Exception ex) {
+                fail(ex);
+            }
+        }
+
+        private void flush() {
+            if (oldestBuffered < 0 || writeFailure != null) {
+                return;
+            }
+            oldestBuffered = -1;
+            try {
+                repository.flush();
+            } catch (Exception ex) {
+                fail(ex);
+            }
+        }
+
+        private void fail(Exception ex) {
+            LOG.error("Could not send error handling data to ES; subsequent errors will not be written", ex);
+            writeFailure = ex;
+        }
+    }
+}
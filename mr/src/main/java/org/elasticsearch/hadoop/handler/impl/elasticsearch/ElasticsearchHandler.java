@@ -27,6 +27,7 @@ import java.util.UUID;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
 import org.elasticsearch.hadoop.cfg.CompositeSettings;
 import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
 import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
@@ -41,6 +42,7 @@ import org.elasticsearch.hadoop.rest.Resource;
 import org.elasticsearch.hadoop.rest.RestClient;
 import org.elasticsearch.hadoop.rest.RestRepository;
 import org.elasticsearch.hadoop.rest.RestService;
+import org.elasticsearch.hadoop.rest.bulk.handler.impl.BulkWriteHandlerLoader;
 import org.elasticsearch.hadoop.serialization.field.IndexExtractor;
 import org.elasticsearch.hadoop.util.Assert;
 import org.elasticsearch.hadoop.util.BytesArray;
@@ -51,6 +53,7 @@ import org.elasticsearch.hadoop.util.ecs.ElasticCommonSchema;
 import org.elasticsearch.hadoop.util.ecs.ElasticCommonSchema.TemplateBuilder;
 import org.elasticsearch.hadoop.util.ecs.MessageTemplate;
 import org.elasticsearch.hadoop.util.unit.Booleans;
+import org.elasticsearch.hadoop.util.unit.TimeValue;
 
 /**
  * Generic Error Handler that converts error events into JSON documents, and stores them in an Elasticsearch index.
@@ -59,6 +62,11 @@ import org.elasticsearch.hadoop.util.unit.Booleans;
  * Elasticsearch it returns HANDLED by default and if the event cannot be written for any reason it returns ABORT by
  * default.
  * <p>
+ * Optionally, the error documents can be written asynchronously: events are queued (up to a bounded number) and a background
+ * thread writes them to Elasticsearch through a bulk request, flushed once the batch is full, after a configurable interval
+ * or on close. In this mode an event is considered written once it is queued; if a write fails, all subsequent events
+ * are treated as failures and the failure is rethrown when the handler is closed.
+ * <p>
  *
  * @param <I> type of error event
  * @param <O> in case of retries, this is the type of the retry value
@@ -82,6 +90,17 @@ public class ElasticsearchHandler<I extends Exceptional, O, C extends ErrorColle
     public static final String CONF_LABEL = "label";
     public static final String CONF_TAGS = "tags";
 
+    /// Async writing
+    public static final String CONF_ASYNC = "async";
+    public static final String CONF_ASYNC_DEFAULT = "false";
+    public static final String CONF_QUEUE_SIZE = "queue.size";
+    public static final String CONF_QUEUE_SIZE_DEFAULT = "1000";
+    public static final String CONF_QUEUE_OVERFLOW = "queue.overflow";
+    public static final String CONF_QUEUE_OVERFLOW_DEFAULT = "block";
+    public static final String CONF_QUEUE_OVERFLOW_DROP = "drop";
+    public static final String CONF_FLUSH_INTERVAL = "flush.interval";
+    public static final String CONF_FLUSH_INTERVAL_DEFAULT = "1s";
+
     /// Client configuration
     public static final String CONF_CLIENT_NODES = "client.nodes";
     public static final String CONF_CLIENT_PORT = "client.port";
@@ -94,6 +113,10 @@ public class ElasticsearchHandler<I extends Exceptional, O, C extends ErrorColle
     private String successReason;
     private HandlerResult returnError;
     private String errorReason;
+    private boolean async;
+    private int queueSize;
+    private boolean dropOnOverflow;
+    private long flushIntervalMillis;
 
     // State
     private Settings rootSettings;
@@ -101,8 +124,10 @@ public class ElasticsearchHandler<I extends Exceptional, O, C extends ErrorColle
     private EventConverter<I> eventConverter;
     private MessageTemplate messageTemplate;
     private boolean initialized;
+    private boolean closed;
     private Resource endpoint;
     private RestRepository writeClient;
+    private AsyncErrorWriter asyncWriter;
 
     public static <I extends Exceptional, O, C extends ErrorCollector<O>> ElasticsearchHandler<I, O, C> create(Settings rootSettings, EventConverter<I> converter) {
         return new ElasticsearchHandler<I, O, C>(rootSettings, converter);
@@ -138,6 +163,11 @@ public class ElasticsearchHandler<I extends Exceptional, O, C extends ErrorColle
         resolveProperty(CONF_CLIENT_RESOURCE, CONF_CLIENT_CONF + "." + ConfigurationOptions.ES_RESOURCE_WRITE, handlerSettings);
         resolveProperty(CONF_CLIENT_RESOURCE, CONF_CLIENT_CONF + "." + ConfigurationOptions.ES_RESOURCE, handlerSettings);
 
+        // The errors are written in bulk - make sure these are flushed automatically and that their own failures are not
+        // sent back to the (potentially same) error handlers
+        setPropertyIfMissing(CONF_CLIENT_CONF + "." + ConfigurationOptions.ES_BATCH_FLUSH_MANUAL, Boolean.FALSE.toString(), handlerSettings);
+        setPropertyIfMissing(CONF_CLIENT_CONF + "." + BulkWriteHandlerLoader.ES_WRITE_REST_ERROR_HANDLERS, "", handlerSettings);
+
         // Inherit the original configuration or not
         this.clientSettings = handlerSettings.getSettingsView(CONF_CLIENT_CONF);
 
@@ -189,6 +219,19 @@ public class ElasticsearchHandler<I extends Exceptional, O, C extends ErrorColle
         } else {
             this.errorReason = null;
         }
+
+        // Determine how the error documents are written
+        this.async = Booleans.parseBoolean(handlerSettings.getProperty(CONF_ASYNC, CONF_ASYNC_DEFAULT));
+        this.queueSize = Integer.parseInt(handlerSettings.getProperty(CONF_QUEUE_SIZE, CONF_QUEUE_SIZE_DEFAULT));
+        Assert.isTrue(queueSize > 0, String.format("[%s] must be positive but was [%s]", CONF_QUEUE_SIZE, queueSize));
+        this.dropOnOverflow = CONF_QUEUE_OVERFLOW_DROP.equalsIgnoreCase(handlerSettings.getProperty(CONF_QUEUE_OVERFLOW, CONF_QUEUE_OVERFLOW_DEFAULT));
+        this.flushIntervalMillis = TimeValue.parseTimeValue(handlerSettings.getProperty(CONF_FLUSH_INTERVAL, CONF_FLUSH_INTERVAL_DEFAULT)).millis();
+    }
+
+    private void setPropertyIfMissing(String property, String value, Settings subject) {
+        if (subject.getProperty(property) == null) {
+            subject.setProperty(property, value);
+        }
     }
 
     private void resolveProperty(String highLevelProperty, String explicitProperty, Settings subject) {
@@ -214,15 +257,27 @@ public class ElasticsearchHandler<I extends Exceptional, O, C extends ErrorColle
         if (!initialized) {
             this.initialized = true;
             this.writeClient = RestService.createWriter(clientSettings, -1, 0, LOG).repository;
+            if (async) {
+                this.asyncWriter = new AsyncErrorWriter(writeClient, queueSize, dropOnOverflow, flushIntervalMillis);
+            }
         }
     }
 
     @Override
     public HandlerResult onError(I entry, C collector) throws Exception {
+        if (closed) {
+            throw new EsHadoopIllegalStateException("Elasticsearch error handler is closed; cannot handle further errors");
+        }
         HandlerResult result;
         try {
             lazyInitWrite();
-            if (isOpen()) {
+            if (isOpen() && async) {
+                if (asyncWriter.write(createErrorDocument(entry))) {
+                    result = generateResult(returnDefault, successReason, collector);
+                } else {
+                    result = generateResult(returnError, errorReason, collector);
+                }
+            } else if (isOpen()) {
                 putDocument(writeClient.getRestClient(), createErrorDocument(entry));
                 result = generateResult(returnDefault, successReason, collector);
             } else {
@@ -257,12 +312,22 @@ public class ElasticsearchHandler<I extends Exceptional, O, C extends ErrorColle
 
     @Override
     public void close() {
-        if (isOpen()) {
-            // TODO: look at collecting these stats some other way later.
-            if (clientSettings.getBatchRefreshAfterWrite()) {
-                writeClient.getRestClient().refresh(endpoint);
+        closed = true;
+        try {
+            if (asyncWriter != null) {
+                AsyncErrorWriter writer = asyncWriter;
+                asyncWriter = null;
+                // rethrows any failure of the queued documents
+                writer.close();
+            }
+        } finally {
+            if (isOpen()) {
+                // TODO: look at collecting these stats some other way later.
+                if (clientSettings.getBatchRefreshAfterWrite()) {
+                    writeClient.getRestClient().refresh(endpoint);
+                }
+                writeClient.close();
             }
-            writeClient.close();
         }
     }
 }
@@ -76,6 +76,18 @@ public enum Counter {
             return stats.docsReceived;
         }
     },
+    COMPRESSED_BYTES_SENT {
+        @Override
+        public long get(Stats stats) {
+            return stats.compressedBytesSent;
+        }
+    },
+    COMPRESSED_BYTES_RECEIVED {
+        @Override
+        public long get(Stats stats) {
+            return stats.compressedBytesReceived;
+        }
+    },
     BULK_TOTAL {
         @Override
         public long get(Stats stats) {
@@ -88,6 +100,24 @@ public enum Counter {
             return stats.bulkRetries;
         }
     },
+    BULK_DOCS_REJECTED {
+        @Override
+        public long get(Stats stats) {
+            return stats.bulkDocsRejected;
+        }
+    },
+    BULK_SIZE_INCREASES {
+        @Override
+        public long get(Stats stats) {
+            return stats.bulkSizeIncreases;
+        }
+    },
+    BULK_SIZE_DECREASES {
+        @Override
+        public long get(Stats stats) {
+            return stats.bulkSizeDecreases;
+        }
+    },
     NODE_RETRIES {
         @Override
         public long get(Stats stats) {
@@ -118,6 +148,12 @@ public enum Counter {
             return stats.bulkRetriesTotalTime;
         }
     },
+    BULK_THROTTLE_TOTAL_TIME_MS {
+        @Override
+        public long get(Stats stats) {
+            return stats.bulkThrottleTotalTime;
+        }
+    },
     SCROLL_TOTAL {
         @Override
         public long get(Stats stats) {
@@ -31,15 +31,18 @@ class SafeWritableConverter {
         Text.class.getName(); // force class to be loaded
     }
 
-    public void invoke(Object from, BytesArray to) {
+    public boolean invoke(Object from, BytesArray to) {
         // handle common cases
         if (from instanceof Text) {
             Text t = (Text) from;
             to.bytes(t.getBytes(), t.getLength());
+            return true;
         }
         if (from instanceof BytesWritable) {
             BytesWritable b = (BytesWritable) from;
             to.bytes(b.getBytes(), b.getLength());
+            return true;
         }
+        return false;
     }
 }
@@ -36,8 +36,9 @@ public class WritableBytesConverter extends JdkBytesConverter {
     @Override
     public void convert(Object from, BytesArray to) {
 
-        if (safeWritableConverter != null)
-            safeWritableConverter.invoke(from, to);
+        if (safeWritableConverter != null && safeWritableConverter.invoke(from, to)) {
+            return;
+        }
 
         super.convert(from, to);
     }
@@ -27,10 +27,15 @@ import org.elasticsearch.hadoop.rest.stats.StatsAware;
 public class DelegatingInputStream extends InputStream implements StatsAware {
 
     private final InputStream delegate;
-    private final Stats stats = new Stats();
+    private final Stats stats;
 
     public DelegatingInputStream(InputStream delegate) {
+        this(delegate, new Stats());
+    }
+
+    protected DelegatingInputStream(InputStream delegate, Stats stats) {
         this.delegate = delegate;
+        this.stats = stats;
     }
 
     @Override
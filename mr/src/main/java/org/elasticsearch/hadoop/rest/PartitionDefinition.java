@@ -20,26 +20,49 @@ package org.elasticsearch.hadoop.rest;
 
 import org.elasticsearch.hadoop.cfg.PropertiesSettings;
 import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.serialization.EsHadoopSerializationException;
 import org.elasticsearch.hadoop.serialization.dto.mapping.Mapping;
+import org.elasticsearch.hadoop.util.FastByteArrayOutputStream;
 import org.elasticsearch.hadoop.util.IOUtils;
 import org.elasticsearch.hadoop.util.StringUtils;
 
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
 import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import javax.xml.bind.DatatypeConverter;
 
 import static org.elasticsearch.hadoop.util.StringUtils.EMPTY_ARRAY;
 
 /**
  * Represents a logical split of an elasticsearch query.
+ * <p>
+ * The settings and mapping are identical across all the partitions of a job; partitions created through
+ * {@link #builder(Settings, Mapping)} share a single serialized copy of them and on the wire both are written
+ * as compressed blobs which are deduplicated (by content) when read back. The blobs of the latest few jobs are
+ * kept around so that concurrent jobs within the same JVM do not evict one another.
  */
 public class PartitionDefinition implements Serializable, Comparable<PartitionDefinition> {
+
+    private static final long serialVersionUID = 1L;
+
+    // blobs recently written/read - all partitions of a job carry the same settings and mapping
+    private static final BlobCache SETTINGS = new BlobCache();
+    private static final BlobCache MAPPINGS = new BlobCache();
+
     private final String index;
     private final int shardId;
     private final Slice slice;
-    private final String serializedSettings, serializedMapping;
+    private transient String serializedSettings, serializedMapping;
     private final String[] locations;
 
     public PartitionDefinition(Settings settings, Mapping mapping, String index, int shardId) {
@@ -64,18 +87,16 @@ public class PartitionDefinition implements Serializable, Comparable<PartitionDe
      * @param locations The locations where to find nodes (hostname:port or ip:port) that can execute the partition locally
      */
     public PartitionDefinition(Settings settings, Mapping mapping, String index, int shardId, Slice slice, String[] locations) {
+        this(settings != null ? settings.save() : null, mapping != null ? IOUtils.serializeToBase64(mapping) : null,
+                index, shardId, slice, locations);
+    }
+
+    private PartitionDefinition(String serializedSettings, String serializedMapping, String index, int shardId, Slice slice,
+                                String[] locations) {
         this.index = index;
         this.shardId = shardId;
-        if (settings != null) {
-            this.serializedSettings = settings.save();
-        } else {
-            this.serializedSettings = null;
-        }
-        if (mapping != null) {
-            this.serializedMapping = IOUtils.serializeToBase64(mapping);
-        } else {
-            this.serializedMapping = null;
-        }
+        this.serializedSettings = serializedSettings;
+        this.serializedMapping = serializedMapping;
         this.slice = slice;
         this.locations = locations;
     }
@@ -89,22 +110,7 @@ public class PartitionDefinition implements Serializable, Comparable<PartitionDe
             this.slice = null;
         }
 
-        if (in.readBoolean()) {
-            int length = in.readInt();
-            byte[] utf = new byte[length];
-            in.readFully(utf);
-            this.serializedSettings = StringUtils.asUTFString(utf);
-        } else {
-            this.serializedSettings = null;
-        }
-        if (in.readBoolean()) {
-            int length = in.readInt();
-            byte[] utf = new byte[length];
-            in.readFully(utf);
-            this.serializedMapping = StringUtils.asUTFString(utf);
-        } else {
-            this.serializedMapping = null;
-        }
+        readSettingsAndMapping(in);
 
         int length = in.readInt();
         locations = new String[length];
@@ -122,24 +128,102 @@ public class PartitionDefinition implements Serializable, Comparable<PartitionDe
             out.writeInt(slice.max);
         }
 
+        writeSettingsAndMapping(out);
+
+        out.writeInt(locations.length);
+        for (String location : locations) {
+            out.writeUTF(location);
+        }
+    }
+
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        out.defaultWriteObject();
+        writeSettingsAndMapping(out);
+    }
+
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        in.defaultReadObject();
+        readSettingsAndMapping(in);
+    }
+
+    private void writeSettingsAndMapping(DataOutput out) throws IOException {
         out.writeBoolean(serializedSettings != null);
         if (serializedSettings != null) {
-            // same goes for settings
-            byte[] utf = StringUtils.toUTF(serializedSettings);
-            out.writeInt(utf.length);
-            out.write(utf);
+            Blob blob = SETTINGS.byValue(serializedSettings);
+            if (blob == null) {
+                blob = SETTINGS.add(new Blob(serializedSettings, deflate(StringUtils.toUTF(serializedSettings))));
+            }
+            blob.write(out);
         }
         out.writeBoolean(serializedMapping != null);
         if (serializedMapping != null) {
-            // avoid using writeUTF since the mapping can be longer than 65K
-            byte[] utf = StringUtils.toUTF(serializedMapping);
-            out.writeInt(utf.length);
-            out.write(utf);
+            Blob blob = MAPPINGS.byValue(serializedMapping);
+            if (blob == null) {
+                // the mapping is already serialized; compress the raw bytes and not their base64 form
+                blob = MAPPINGS.add(new Blob(serializedMapping, deflate(DatatypeConverter.parseBase64Binary(serializedMapping))));
+            }
+            blob.write(out);
         }
+    }
 
-        out.writeInt(locations.length);
-        for (String location : locations) {
-            out.writeUTF(location);
+    private void readSettingsAndMapping(DataInput in) throws IOException {
+        if (in.readBoolean()) {
+            byte[] compressed = Blob.read(in);
+            Blob blob = SETTINGS.byCompressed(compressed);
+            if (blob == null) {
+                blob = SETTINGS.add(new Blob(StringUtils.asUTFString(inflate(compressed)), compressed));
+            }
+            this.serializedSettings = blob.value;
+        } else {
+            this.serializedSettings = null;
+        }
+        if (in.readBoolean()) {
+            byte[] compressed = Blob.read(in);
+            Blob blob = MAPPINGS.byCompressed(compressed);
+            if (blob == null) {
+                blob = MAPPINGS.add(new Blob(DatatypeConverter.printBase64Binary(inflate(compressed)), compressed));
+            }
+            this.serializedMapping = blob.value;
+        } else {
+            this.serializedMapping = null;
+        }
+    }
+
+    private static byte[] deflate(byte[] data) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+            FastByteArrayOutputStream out = new FastByteArrayOutputStream(Math.max(64, data.length / 4));
+            byte[] buffer = new byte[4096];
+            while (!deflater.finished()) {
+                int count = deflater.deflate(buffer);
+                out.write(buffer, 0, count);
+            }
+            return Arrays.copyOf(out.bytes().bytes(), out.bytes().length());
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] data) throws IOException {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(data);
+            FastByteArrayOutputStream out = new FastByteArrayOutputStream(data.length * 4);
+            byte[] buffer = new byte[4096];
+            while (!inflater.finished()) {
+                int count = inflater.inflate(buffer);
+                if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new EsHadoopSerializationException("Truncated partition definition");
+                }
+                out.write(buffer, 0, count);
+            }
+            return Arrays.copyOf(out.bytes().bytes(), out.bytes().length());
+        } catch (DataFormatException ex) {
+            throw new EsHadoopSerializationException("Corrupted partition definition", ex);
+        } finally {
+            inflater.end();
         }
     }
 
@@ -227,6 +311,107 @@ public class PartitionDefinition implements Serializable, Comparable<PartitionDe
                 '}';
     }
 
+    /**
+     * Creates a builder that serializes the given settings and mapping once and shares them
+     * between all the partitions it builds.
+     */
+    public static PartitionDefinitionBuilder builder(Settings settings, Mapping mapping) {
+        return new PartitionDefinitionBuilder(settings, mapping);
+    }
+
+    public static class PartitionDefinitionBuilder {
+        private final String serializedSettings;
+        private final String serializedMapping;
+
+        private PartitionDefinitionBuilder(Settings settings, Mapping mapping) {
+            this.serializedSettings = settings != null ? settings.save() : null;
+            this.serializedMapping = mapping != null ? IOUtils.serializeToBase64(mapping) : null;
+        }
+
+        public PartitionDefinition build(String index, int shardId) {
+            return build(index, shardId, null, EMPTY_ARRAY);
+        }
+
+        public PartitionDefinition build(String index, int shardId, String[] locations) {
+            return build(index, shardId, null, locations);
+        }
+
+        public PartitionDefinition build(String index, int shardId, Slice slice, String[] locations) {
+            return new PartitionDefinition(serializedSettings, serializedMapping, index, shardId, slice, locations);
+        }
+    }
+
+    static class Blob {
+        private final String value;
+        private final byte[] compressed;
+        private final int compressedHash;
+
+        Blob(String value, byte[] compressed) {
+            this.value = value;
+            this.compressed = compressed;
+            this.compressedHash = Arrays.hashCode(compressed);
+        }
+
+        void write(DataOutput out) throws IOException {
+            out.writeInt(compressed.length);
+            out.write(compressed);
+        }
+
+        static byte[] read(DataInput in) throws IOException {
+            byte[] data = new byte[in.readInt()];
+            in.readFully(data);
+            return data;
+        }
+    }
+
+    /**
+     * Bounded (least recently used) set of blobs, looked up either by their value or by their compressed content.
+     */
+    static class BlobCache {
+        static final int MAX_BLOBS = 8;
+
+        private final LinkedList<Blob> blobs = new LinkedList<Blob>();
+
+        synchronized Blob byValue(String value) {
+            for (Iterator<Blob> it = blobs.iterator(); it.hasNext();) {
+                Blob blob = it.next();
+                if (blob.value.equals(value)) {
+                    return touch(it, blob);
+                }
+            }
+            return null;
+        }
+
+        synchronized Blob byCompressed(byte[] compressed) {
+            int hash = Arrays.hashCode(compressed);
+            for (Iterator<Blob> it = blobs.iterator(); it.hasNext();) {
+                Blob blob = it.next();
+                if (blob.compressedHash == hash && Arrays.equals(blob.compressed, compressed)) {
+                    return touch(it, blob);
+                }
+            }
+            return null;
+        }
+
+        synchronized Blob add(Blob blob) {
+            blobs.addFirst(blob);
+            if (blobs.size() > MAX_BLOBS) {
+                blobs.removeLast();
+            }
+            return blob;
+        }
+
+        synchronized int size() {
+            return blobs.size();
+        }
+
+        private Blob touch(Iterator<Blob> it, Blob blob) {
+            it.remove();
+            blobs.addFirst(blob);
+            return blob;
+        }
+    }
+
     public static class Slice implements Serializable, Comparable<Slice> {
         public final int id;
         public final int max;
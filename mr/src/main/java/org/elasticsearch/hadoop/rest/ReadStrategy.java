@@ -0,0 +1,171 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest;
+
+import java.io.IOException;
+
+import org.elasticsearch.hadoop.serialization.ScrollReader;
+import org.elasticsearch.hadoop.serialization.ScrollReader.Scroll;
+import org.elasticsearch.hadoop.util.Assert;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.StringUtils;
+
+/**
+ * Pages through the results of a search on behalf of a {@link ScrollQuery}, either through the scroll API
+ * or through search_after within a point in time.
+ * <p>
+ * Keeps track of the current position hence why an instance serves only one query. The pages are retrieved
+ * sequentially though not necessarily by the thread that releases the strategy.
+ */
+abstract class ReadStrategy {
+
+    protected final RestRepository repository;
+
+    ReadStrategy(RestRepository repository) {
+        this.repository = repository;
+    }
+
+    /**
+     * Executes the search, returning its first page.
+     */
+    abstract Scroll first(ScrollReader reader) throws IOException;
+
+    /**
+     * Returns the page following the one previously returned (which needs to be entirely read).
+     */
+    abstract Scroll next(ScrollReader reader) throws IOException;
+
+    /**
+     * Releases the search resources held on the cluster (if any).
+     */
+    abstract void release();
+
+    static ReadStrategy scroll(RestRepository repository, String query, BytesArray body) {
+        return new Scrolling(repository, query, body);
+    }
+
+    static ReadStrategy searchAfter(RestRepository repository, SearchRequestBuilder request) {
+        return new SearchAfter(repository, request);
+    }
+
+    /**
+     * Paging through the scroll API - the search context is kept alive on the cluster until the scroll is
+     * exhausted or released.
+     */
+    private static class Scrolling extends ReadStrategy {
+        private String query;
+        private BytesArray body;
+        private String scrollId;
+
+        Scrolling(RestRepository repository, String query, BytesArray body) {
+            super(repository);
+            this.query = query;
+            this.body = body;
+        }
+
+        @Override
+        Scroll first(ScrollReader reader) throws IOException {
+            Scroll scroll = repository.scroll(query, body, reader);
+            scrollId = scroll.getScrollId();
+            // no longer needed
+            query = null;
+            body = null;
+            return scroll;
+        }
+
+        @Override
+        Scroll next(ScrollReader reader) throws IOException {
+            Scroll scroll = repository.scroll(scrollId, reader);
+            scrollId = scroll.getScrollId();
+            return scroll;
+        }
+
+        @Override
+        void release() {
+            // typically the scroll is closed after it is consumed so this will trigger a 404
+            // however we're closing it either way
+            if (StringUtils.hasText(scrollId)) {
+                repository.getRestClient().deleteScroll(scrollId);
+            }
+        }
+
+        @Override
+        public String toString() {
+            return (query != null ? query + "/" + body : scrollId);
+        }
+    }
+
+    /**
+     * Paging through search_after within a point in time, over its (unique) shard document order. Each page
+     * is a standalone search that continues after the sort values of the previous page while the point in time
+     * keeps the pages on the same snapshot of the data.
+     */
+    private static class SearchAfter extends ReadStrategy {
+        private final SearchRequestBuilder request;
+        private final String uri;
+        private final String nextUri;
+        private String pointInTimeId;
+        private Scroll last;
+
+        SearchAfter(RestRepository repository, SearchRequestBuilder request) {
+            super(repository);
+            this.request = request;
+            this.uri = request.assemble();
+            this.nextUri = request.assembleNextPage();
+        }
+
+        @Override
+        Scroll first(ScrollReader reader) throws IOException {
+            pointInTimeId = repository.getRestClient().openPointInTime(request.assemblePointInTime());
+            return page(uri, reader, null);
+        }
+
+        @Override
+        Scroll next(ScrollReader reader) throws IOException {
+            Assert.notNull(last, "No page to continue from");
+            BytesArray after = last.getLastSort();
+            Assert.notNull(after, "No sort values found in the previous page");
+            return page(nextUri, reader, after);
+        }
+
+        private Scroll page(String pageUri, ScrollReader reader, BytesArray after) throws IOException {
+            Scroll page = repository.scroll(pageUri, request.assembleBody(pointInTimeId, after), reader);
+            // the point in time id might change between requests
+            if (StringUtils.hasText(page.getScrollId())) {
+                pointInTimeId = page.getScrollId();
+            }
+            last = page;
+            return page;
+        }
+
+        @Override
+        void release() {
+            last = null;
+            if (pointInTimeId != null) {
+                repository.getRestClient().closePointInTime(pointInTimeId);
+                pointInTimeId = null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return uri + (pointInTimeId != null ? " within " + pointInTimeId : "");
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package org.elasticsearch.hadoop.rest;
 
 import org.codehaus.jackson.JsonParser;
+import org.codehaus.jackson.JsonToken;
 import org.codehaus.jackson.map.DeserializationConfig;
 import org.codehaus.jackson.map.ObjectMapper;
 import org.codehaus.jackson.map.SerializationConfig;
@@ -32,14 +33,10 @@ import org.elasticsearch.hadoop.rest.query.QueryBuilder;
 import org.elasticsearch.hadoop.rest.stats.Stats;
 import org.elasticsearch.hadoop.rest.stats.StatsAware;
 import org.elasticsearch.hadoop.security.EsToken;
-import org.elasticsearch.hadoop.serialization.ParsingUtils;
 import org.elasticsearch.hadoop.serialization.dto.NodeInfo;
 import org.elasticsearch.hadoop.serialization.dto.mapping.FieldParser;
 import org.elasticsearch.hadoop.serialization.dto.mapping.MappingSet;
 import org.elasticsearch.hadoop.serialization.json.JacksonJsonGenerator;
-import org.elasticsearch.hadoop.serialization.json.JacksonJsonParser;
-import org.elasticsearch.hadoop.serialization.json.JsonFactory;
-import org.elasticsearch.hadoop.serialization.json.ObjectReader;
 import org.elasticsearch.hadoop.util.Assert;
 import org.elasticsearch.hadoop.util.ByteSequence;
 import org.elasticsearch.hadoop.util.BytesArray;
@@ -60,11 +57,14 @@ import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.NoSuchElementException;
 
 import static org.elasticsearch.hadoop.rest.Request.Method.DELETE;
 import static org.elasticsearch.hadoop.rest.Request.Method.GET;
@@ -75,6 +75,7 @@ import static org.elasticsearch.hadoop.rest.Request.Method.PUT;
 public class RestClient implements Closeable, StatsAware {
 
     private final static int MAX_BULK_ERROR_MESSAGES = 5;
+    private final static String BULK_RESPONSE_FILTER = "errors,items.*.status,items.*.error";
 
     private NetworkClient network;
     private final ObjectMapper mapper;
@@ -223,7 +224,7 @@ public class RestClient implements Closeable, StatsAware {
     public BulkActionResponse bulk(Resource resource, TrackingBytesArray data) {
         // NB: dynamically get the stats since the transport can change
         long start = network.transportStats().netTotalTime;
-        Response response = execute(PUT, resource.bulk(), data);
+        Response response = execute(PUT, bulkPath(resource), data);
         long spent = network.transportStats().netTotalTime - start;
 
         stats.bulkTotal++;
@@ -234,19 +235,46 @@ public class RestClient implements Closeable, StatsAware {
         return new BulkActionResponse(parseBulkActionResponse(response), response.status(), spent);
     }
 
+    /**
+     * Trims the bulk response (when supported) down to what is needed for figuring out which entries failed:
+     * the per-item metadata (index, id, version, shards, sequence numbers...) is discarded on the server.
+     */
+    String bulkPath(Resource resource) {
+        String path = resource.bulk();
+        if (clusterInfo.getMajorVersion().onOrAfter(EsMajorVersion.V_2_X)) {
+            path += (path.indexOf('?') >= 0 ? "&" : "?") + "filter_path=" + BULK_RESPONSE_FILTER;
+        }
+        return path;
+    }
+
+    /**
+     * Streams through the bulk response. If the response reports no errors, the items are never read, otherwise
+     * they are decoded one at a time and only the failed ones are materialized (with their status and error);
+     * successful items are returned as shared, read-only entries holding just their status.
+     */
     @SuppressWarnings("rawtypes")
     Iterator<Map> parseBulkActionResponse(Response response) {
         InputStream content = response.body();
         // Check for failed writes
         try {
-            ObjectReader r = JsonFactory.objectReader(mapper, Map.class);
             JsonParser parser = mapper.getJsonFactory().createJsonParser(content);
             try {
-                if (ParsingUtils.seek(new JacksonJsonParser(parser), "items") == null) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
                     return Collections.<Map>emptyList().iterator();
-                } else {
-                    return r.readValues(parser);
                 }
+                for (JsonToken token = parser.nextToken(); token == JsonToken.FIELD_NAME; token = parser.nextToken()) {
+                    String name = parser.getCurrentName();
+                    token = parser.nextToken();
+                    if ("errors".equals(name) && token == JsonToken.VALUE_FALSE) {
+                        // every item succeeded - no need to look at them
+                        return Collections.<Map>emptyList().iterator();
+                    }
+                    if ("items".equals(name) && token == JsonToken.START_ARRAY) {
+                        return new BulkItemIterator(parser, mapper);
+                    }
+                    parser.skipChildren();
+                }
+                return Collections.<Map>emptyList().iterator();
             } finally {
                 countStreamStats(content);
             }
@@ -255,6 +283,98 @@ public class RestClient implements Closeable, StatsAware {
         }
     }
 
+    /**
+     * Lazily decodes the (operation -> document info) entries of the bulk response items.
+     */
+    @SuppressWarnings("rawtypes")
+    private static class BulkItemIterator implements Iterator<Map> {
+
+        private final JsonParser parser;
+        private final ObjectMapper mapper;
+        // successful entries only differ by their operation and status
+        private final Map<String, Map> successes = new HashMap<String, Map>();
+
+        private Map next;
+        private boolean finished = false;
+
+        BulkItemIterator(JsonParser parser, ObjectMapper mapper) {
+            this.parser = parser;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (next == null && !finished) {
+                try {
+                    next = readItem();
+                } catch (IOException ex) {
+                    throw new EsHadoopParsingException(ex);
+                }
+                finished = (next == null);
+            }
+            return next != null;
+        }
+
+        @Override
+        public Map next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            Map item = next;
+            next = null;
+            return item;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @SuppressWarnings("unchecked")
+        private Map readItem() throws IOException {
+            if (parser.nextToken() != JsonToken.START_OBJECT || parser.nextToken() != JsonToken.FIELD_NAME) {
+                return null;
+            }
+            String operation = parser.getCurrentName();
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new EsHadoopParsingException("Unexpected bulk response item for operation [" + operation + "]");
+            }
+
+            Integer status = null;
+            Object error = null;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if ("status".equals(name) && token == JsonToken.VALUE_NUMBER_INT) {
+                    status = parser.getIntValue();
+                } else if ("error".equals(name) && token != JsonToken.VALUE_NULL) {
+                    error = mapper.readValue(parser, Object.class);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            // close the item
+            parser.nextToken();
+
+            if (error == null) {
+                String key = operation + status;
+                Map success = successes.get(key);
+                if (success == null) {
+                    success = Collections.singletonMap(operation, Collections.singletonMap("status", status));
+                    successes.put(key, success);
+                }
+                return success;
+            }
+
+            Map<String, Object> values = new LinkedHashMap<String, Object>();
+            if (status != null) {
+                values.put("status", status);
+            }
+            values.put("error", error);
+            return Collections.singletonMap(operation, values);
+        }
+    }
+
     public String postDocument(Resource resource, BytesArray document) throws IOException {
         // If untyped, the type() method returns '_doc'
         Request request = new SimpleRequest(Method.POST, null, resource.index() + "/" + resource.type(), null, document);
@@ -300,6 +420,23 @@ public class RestClient implements Closeable, StatsAware {
         return shardsJson;
     }
 
+    /**
+     * Returns the shard related metadata (<code>routing_num_shards</code> and the <code>number_of_shards</code> and
+     * <code>routing_partition_size</code> index settings) of the given concrete index, as found in the cluster state.
+     * @return the index metadata or <code>null</code> if the index is not found
+     */
+    @SuppressWarnings("unchecked")
+    public Map<String, Object> getIndexShardMetadata(String index) {
+        String target = "_cluster/state/metadata/" + index + "?filter_path=metadata.indices.*.routing_num_shards," +
+                "metadata.indices.*.settings.index.number_of_shards,metadata.indices.*.settings.index.routing_partition_size";
+        Map<String, Object> metadata = get(target, "metadata");
+        if (metadata == null) {
+            return null;
+        }
+        Map<String, Object> indices = (Map<String, Object>) metadata.get("indices");
+        return (indices != null ? (Map<String, Object>) indices.get(index) : null);
+    }
+
     public MappingSet getMappings(Resource indexResource) {
         if (indexResource.isTyped()) {
             return getMappings(indexResource.index() + "/_mapping/" + indexResource.type(), true);
@@ -371,6 +508,20 @@ public class RestClient implements Closeable, StatsAware {
         return fieldInfo;
     }
 
+    /**
+     * Executes a search (typically with no hits but aggregations) against the given resource
+     * and returns its aggregations.
+     */
+    public Map<String, Object> searchAggregations(Resource resource, BytesArray body) {
+        String endpoint = resource.index();
+        if (resource.isTyped()) {
+            endpoint = resource.index() + "/" + resource.type();
+        }
+
+        Map<String, Object> aggregations = parseContent(execute(POST, endpoint + "/_search", body).body(), "aggregations");
+        return (aggregations != null ? aggregations : Collections.<String, Object> emptyMap());
+    }
+
     @Override
     public void close() {
         if (network != null) {
@@ -502,6 +653,26 @@ public class RestClient implements Closeable, StatsAware {
         return (res.status() == HttpStatus.OK ? true : false);
     }
 
+    /**
+     * Opens a point in time through the given uri (holding the indices, keep-alive, preference and routing).
+     *
+     * @return the id of the point in time
+     */
+    public String openPointInTime(String uri) {
+        Object id = parseContent(execute(POST, uri), "id");
+        if (id == null || !StringUtils.hasText(id.toString())) {
+            throw new EsHadoopIllegalStateException(String.format("Cannot open point in time [%s]", uri));
+        }
+        return id.toString();
+    }
+
+    public boolean closePointInTime(String pointInTimeId) {
+        BytesArray body = new BytesArray(("{\"id\":\"" + pointInTimeId + "\"}").getBytes(StringUtils.UTF_8));
+        Request req = new SimpleRequest(DELETE, null, "_pit", body);
+        Response res = executeNotFoundAllowed(req);
+        return (res.status() == HttpStatus.OK ? true : false);
+    }
+
     public boolean documentExists(String index, String type, String id) {
         return exists(index + "/" + type + "/" + id);
     }
@@ -24,6 +24,8 @@ import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
 import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.rest.bulk.BulkProcessor;
 import org.elasticsearch.hadoop.rest.bulk.BulkResponse;
+import org.elasticsearch.hadoop.rest.bulk.IndexRouter;
+import org.elasticsearch.hadoop.rest.bulk.ShardRouter;
 import org.elasticsearch.hadoop.rest.query.QueryUtils;
 import org.elasticsearch.hadoop.rest.stats.Stats;
 import org.elasticsearch.hadoop.rest.stats.StatsAware;
@@ -54,6 +56,7 @@ import org.elasticsearch.hadoop.util.unit.TimeValue;
 import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
@@ -82,6 +85,16 @@ public class RestRepository implements Closeable, StatsAware {
     private BulkEntryWriter bulkEntryWriter;
     private BulkProcessor bulkProcessor;
 
+    // optional client-side routing of the bulk entries to the nodes holding their primary shards
+    private ShardRouter shardRouter;
+    private String pinnedNode;
+    // optional grouping of the bulk entries per target index (index pattern writes)
+    private IndexRouter indexRouter;
+    private int maxIndexGroups;
+    // extra bulk processors, keyed by target node or index, each with its own connection
+    private Map<String, BulkProcessor> groupBulkProcessors;
+    private List<RestClient> groupClients;
+
     // Internal
     private static class Resources {
         private final Settings resourceSettings;
@@ -114,6 +127,8 @@ public class RestRepository implements Closeable, StatsAware {
     private final Settings settings;
     private Resources resources;
     private final Stats stats = new Stats();
+    // response of the last scroll request
+    private InputStream scrollContent;
 
     public RestRepository(Settings settings) {
         this.settings = settings;
@@ -151,13 +166,47 @@ public class RestRepository implements Closeable, StatsAware {
      * @return a scroll query
      */
     ScrollQuery scanLimit(String query, BytesArray body, long limit, ScrollReader reader) {
-        return new ScrollQuery(this, query, body, limit, reader);
+        return new ScrollQuery(this, query, body, limit, reader, settings.getScrollPrefetch());
+    }
+
+    ScrollQuery scanLimit(ReadStrategy strategy, long limit, ScrollReader reader) {
+        return new ScrollQuery(strategy, limit, reader, settings.getScrollPrefetch());
     }
 
     public void addRuntimeFieldExtractor(MetadataExtractor metaExtractor) {
         this.metaExtractor = metaExtractor;
     }
 
+    /**
+     * Sends the bulk entries that can be routed by the given router directly to the node holding their primary shard,
+     * each node using its own connection and bulk buffer. The remaining entries go through the pinned node as usual.
+     *
+     * @param shardRouter router for the write index
+     */
+    public void setWriteShardRouter(ShardRouter shardRouter) {
+        Assert.isTrue(!writeInitialized, "Cannot enable shard routing once writing has started");
+        this.shardRouter = shardRouter;
+        this.pinnedNode = (SettingsUtils.hasPinnedNode(settings) ? SettingsUtils.getPinnedNode(settings) : null);
+        this.groupBulkProcessors = new LinkedHashMap<String, BulkProcessor>();
+        this.groupClients = new ArrayList<RestClient>();
+    }
+
+    /**
+     * Keeps the bulk entries of each target index in their own bulk buffer (and connection), flushed independently of the others
+     * so that a slow or rejecting index does not hold back the batches of the rest. At most <code>maxGroups</code> indices get a
+     * buffer of their own; the entries of any other index share the default one.
+     *
+     * @param maxGroups maximum number of per-index bulk buffers
+     */
+    public void setWriteIndexGrouping(int maxGroups) {
+        Assert.isTrue(!writeInitialized, "Cannot enable index grouping once writing has started");
+        Assert.isTrue(shardRouter == null, "Cannot combine index grouping with shard routing");
+        this.indexRouter = new IndexRouter();
+        this.maxIndexGroups = maxGroups;
+        this.groupBulkProcessors = new LinkedHashMap<String, BulkProcessor>();
+        this.groupClients = new ArrayList<RestClient>();
+    }
+
     /**
      * Writes the objects to index.
      *
@@ -189,17 +238,84 @@ public class RestRepository implements Closeable, StatsAware {
     }
 
     private void doWriteToIndex(BytesRef payload) {
-        bulkProcessor.add(payload);
+        bulkProcessorFor(payload).add(payload);
         payload.reset();
     }
 
+    private BulkProcessor bulkProcessorFor(BytesRef payload) {
+        if (indexRouter != null) {
+            return indexBulkProcessorFor(payload);
+        }
+        if (shardRouter == null) {
+            return bulkProcessor;
+        }
+        String node = shardRouter.node(payload);
+        if (node == null || node.equals(pinnedNode)) {
+            return bulkProcessor;
+        }
+        BulkProcessor processor = groupBulkProcessors.get(node);
+        if (processor == null) {
+            Settings nodeSettings = settings.copy();
+            SettingsUtils.pinNode(nodeSettings, node);
+            processor = groupBulkProcessor(node, nodeSettings);
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Routing bulk entries for [%s] to node [%s]", resources.getResourceWrite(), node));
+            }
+        }
+        return processor;
+    }
+
+    private BulkProcessor indexBulkProcessorFor(BytesRef payload) {
+        String index = indexRouter.index(payload);
+        if (index == null) {
+            return bulkProcessor;
+        }
+        BulkProcessor processor = groupBulkProcessors.get(index);
+        if (processor == null) {
+            if (groupBulkProcessors.size() >= maxIndexGroups) {
+                return bulkProcessor;
+            }
+            processor = groupBulkProcessor(index, settings.copy());
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Batching bulk entries for index [%s] separately", index));
+            }
+        }
+        return processor;
+    }
+
+    private BulkProcessor groupBulkProcessor(String key, Settings groupSettings) {
+        RestClient groupClient = new RestClient(groupSettings);
+        groupClients.add(groupClient);
+        BulkProcessor processor = new BulkProcessor(groupClient, resources.getResourceWrite(), groupSettings);
+        groupBulkProcessors.put(key, processor);
+        return processor;
+    }
+
+    /**
+     * Attempts to flush the pending bulk entries, returning any document errors. When shard routing or index grouping is
+     * enabled, the responses of all bulk buffers are combined, the position of each document error being relative to its
+     * own buffer.
+     */
     public BulkResponse tryFlush() {
         Assert.isTrue(writeInitialized, "Cannot flush non-initialized write operation");
-        return bulkProcessor.tryFlush();
+        if (groupBulkProcessors == null || groupBulkProcessors.isEmpty()) {
+            return bulkProcessor.tryFlush();
+        }
+        List<BulkResponse> responses = new ArrayList<BulkResponse>(groupBulkProcessors.size() + 1);
+        for (BulkProcessor processor : groupBulkProcessors.values()) {
+            responses.add(processor.tryFlush());
+        }
+        responses.add(bulkProcessor.tryFlush());
+        return BulkResponse.combine(responses);
     }
 
     public void flush() {
         Assert.isTrue(writeInitialized, "Cannot flush non-initialized write operation");
+        if (groupBulkProcessors != null) {
+            for (BulkProcessor processor : groupBulkProcessors.values()) {
+                processor.flush();
+            }
+        }
         bulkProcessor.flush();
     }
 
@@ -215,6 +331,12 @@ public class RestRepository implements Closeable, StatsAware {
         }
 
         try {
+            aggregateScrollStats();
+
+            if (groupBulkProcessors != null) {
+                closeGroupBulkProcessors();
+            }
+
             if (bulkProcessor != null) {
                 bulkProcessor.close();
                 // Aggregate stats before discarding them.
@@ -234,6 +356,22 @@ public class RestRepository implements Closeable, StatsAware {
         }
     }
 
+    private void closeGroupBulkProcessors() {
+        try {
+            for (BulkProcessor processor : groupBulkProcessors.values()) {
+                processor.close();
+                stats.aggregate(processor.stats());
+            }
+        } finally {
+            for (RestClient groupClient : groupClients) {
+                groupClient.close();
+                stats.aggregate(groupClient.stats());
+            }
+            groupBulkProcessors = null;
+            groupClients = null;
+        }
+    }
+
     public RestClient getRestClient() {
         return client;
     }
@@ -289,6 +427,43 @@ public class RestRepository implements Closeable, StatsAware {
         return shards;
     }
 
+    /**
+     * Creates a router sending the bulk entries for the write index to the nodes holding their primary shards.
+     *
+     * @param primaryShards the primary shards of the write index and the nodes holding them
+     * @return the router or <code>null</code> if the index routing cannot be reproduced on the client side
+     */
+    public ShardRouter getWriteShardRouter(Map<ShardInfo, NodeInfo> primaryShards) {
+        // murmur3 routing is used since 2.0
+        if (client.clusterInfo.getMajorVersion().before(EsMajorVersion.V_2_X)) {
+            return null;
+        }
+        String index = resources.getResourceWrite().index();
+        Map<String, Object> metadata = client.getIndexShardMetadata(index);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> settingsMetadata = (metadata != null ? (Map<String, Object>) metadata.get("settings") : null);
+        @SuppressWarnings("unchecked")
+        Map<String, Object> indexSettings = (settingsMetadata != null ? (Map<String, Object>) settingsMetadata.get("index") : null);
+        if (indexSettings == null || indexSettings.get("number_of_shards") == null) {
+            log.warn(String.format("Cannot find the shard metadata of index [%s]; disabling shard routing", index));
+            return null;
+        }
+        int numShards = Integer.parseInt(indexSettings.get("number_of_shards").toString());
+        Object partitionSize = indexSettings.get("routing_partition_size");
+        if (partitionSize != null && Integer.parseInt(partitionSize.toString()) > 1) {
+            log.warn(String.format("Index [%s] uses routing partitions; disabling shard routing", index));
+            return null;
+        }
+        // indices created before 6.1 do not report their routing shards, which are the same as their shards
+        Object routingNumShards = metadata.get("routing_num_shards");
+
+        Map<Integer, String> primaryNodes = new HashMap<Integer, String>();
+        for (Entry<ShardInfo, NodeInfo> entry : primaryShards.entrySet()) {
+            primaryNodes.put(entry.getKey().getName(), entry.getValue().getPublishAddress());
+        }
+        return new ShardRouter(numShards, (routingNumShards != null ? ((Number) routingNumShards).intValue() : numShards), primaryNodes);
+    }
+
     public MappingSet getMappings() {
         return client.getMappings(resources.getResourceRead());
     }
@@ -308,26 +483,26 @@ public class RestRepository implements Closeable, StatsAware {
 
     // used to initialize a scroll (based on a query)
     Scroll scroll(String query, BytesArray body, ScrollReader reader) throws IOException {
+        aggregateScrollStats();
         InputStream scroll = client.execute(POST, query, body).body();
-        try {
-            return reader.read(scroll);
-        } finally {
-            if (scroll instanceof StatsAware) {
-                stats.aggregate(((StatsAware) scroll).stats());
-            }
-        }
+        scrollContent = scroll;
+        return reader.read(scroll);
     }
     
     // consume the scroll
     Scroll scroll(String scrollId, ScrollReader reader) throws IOException {
+        aggregateScrollStats();
         InputStream scroll = client.scroll(scrollId);
-        try {
-            return reader.read(scroll);
-        } finally {
-            if (scroll instanceof StatsAware) {
-                stats.aggregate(((StatsAware) scroll).stats());
-            }
+        scrollContent = scroll;
+        return reader.read(scroll);
+    }
+
+    // the scroll content stats are aggregated lazily since the hits might still be streamed after reading a scroll
+    private void aggregateScrollStats() {
+        if (scrollContent instanceof StatsAware) {
+            stats.aggregate(((StatsAware) scrollContent).stats());
         }
+        scrollContent = null;
     }
 
     public boolean resourceExists(boolean read) {
@@ -477,6 +652,9 @@ public class RestRepository implements Closeable, StatsAware {
     @Override
     public Stats stats() {
         Stats copy = new Stats(stats);
+        if (scrollContent instanceof StatsAware) {
+            copy.aggregate(((StatsAware) scrollContent).stats());
+        }
         if (client != null) {
             // Aggregate stats if it's not already discarded
             copy.aggregate(client.stats());
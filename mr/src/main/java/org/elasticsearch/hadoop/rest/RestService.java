@@ -19,10 +19,12 @@
 package org.elasticsearch.hadoop.rest;
 
 import org.apache.commons.logging.Log;
+import org.elasticsearch.hadoop.EsHadoopException;
 import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
 import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
 import org.elasticsearch.hadoop.cfg.FieldPresenceValidation;
 import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.rest.bulk.ShardRouter;
 import org.elasticsearch.hadoop.rest.query.BoolQueryBuilder;
 import org.elasticsearch.hadoop.rest.query.ConstantScoreQueryBuilder;
 import org.elasticsearch.hadoop.rest.query.QueryBuilder;
@@ -47,6 +49,7 @@ import org.elasticsearch.hadoop.util.ObjectUtils;
 import org.elasticsearch.hadoop.util.SettingsUtils;
 import org.elasticsearch.hadoop.util.StringUtils;
 import org.elasticsearch.hadoop.util.Version;
+import org.elasticsearch.hadoop.util.unit.TimeValue;
 
 import java.io.Closeable;
 import java.io.IOException;
@@ -63,6 +66,14 @@ import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 public abstract class RestService implements Serializable {
     public static class PartitionReader implements Closeable {
@@ -265,12 +276,15 @@ public abstract class RestService implements Serializable {
                     nodesMap.put(node.getId(), node);
                 }
             }
+            long planningStart = System.nanoTime();
             final List<PartitionDefinition> partitions;
             if (clusterInfo.getMajorVersion().onOrAfter(EsMajorVersion.V_5_X) && settings.getMaxDocsPerPartition() != null) {
                 partitions = findSlicePartitions(client.getRestClient(), settings, mapping, nodesMap, shards, log);
             } else {
                 partitions = findShardPartitions(settings, mapping, nodesMap, shards, log);
             }
+            log.info(String.format("Planned [%d] partitions for [%s] in [%s]", partitions.size(), settings.getResourceRead(),
+                    TimeValue.timeValueNanos(System.nanoTime() - planningStart)));
             Collections.shuffle(partitions);
             return partitions;
         } finally {
@@ -284,6 +298,7 @@ public abstract class RestService implements Serializable {
     static List<PartitionDefinition> findShardPartitions(Settings settings, MappingSet mappingSet, Map<String, NodeInfo> nodes,
                                                          List<List<Map<String, Object>>> shards, Log log) {
         Mapping resolvedMapping = mappingSet == null ? null : mappingSet.getResolvedView();
+        PartitionDefinition.PartitionDefinitionBuilder partitionBuilder = PartitionDefinition.builder(settings, resolvedMapping);
         List<PartitionDefinition> partitions = new ArrayList<PartitionDefinition>(shards.size());
         for (List<Map<String, Object>> group : shards) {
             String index = null;
@@ -308,8 +323,7 @@ public abstract class RestService implements Serializable {
                             "Check your cluster status to see if it is unstable!");
                 }
             } else {
-                PartitionDefinition partition = new PartitionDefinition(settings, resolvedMapping, index, shardId,
-                        locationList.toArray(new String[0]));
+                PartitionDefinition partition = partitionBuilder.build(index, shardId, locationList.toArray(new String[0]));
                 partitions.add(partition);
             }
         }
@@ -327,7 +341,7 @@ public abstract class RestService implements Serializable {
         Resource readResource = new Resource(settings, true);
         Mapping resolvedMapping = mappingSet == null ? null : mappingSet.getResolvedView();
 
-        List<PartitionDefinition> partitions = new ArrayList<PartitionDefinition>(shards.size());
+        List<ShardTarget> targets = new ArrayList<ShardTarget>(shards.size());
         for (List<Map<String, Object>> group : shards) {
             String index = null;
             int shardId = -1;
@@ -340,7 +354,6 @@ public abstract class RestService implements Serializable {
                     locationList.add(nodes.get(shard.getNode()).getPublishAddress());
                 }
             }
-            String[] locations = locationList.toArray(new String[0]);
             if (index == null) {
                 // Could not find shards for this partition. Continue anyway?
                 if (settings.getIndexReadAllowRedStatus()) {
@@ -352,23 +365,124 @@ public abstract class RestService implements Serializable {
                             "Check your cluster status to see if it is unstable!");
                 }
             } else {
-                // TODO applyAliasMetaData should be called in order to ensure that the count are exact (alias filters and routing may change the number of documents)
-                long numDocs;
-                if (readResource.isTyped()) {
-                    numDocs = client.count(index, readResource.type(), Integer.toString(shardId), query);
-                } else {
-                    numDocs = client.countIndexShard(index, Integer.toString(shardId), query);
-                }
-                int numPartitions = (int) Math.max(1, numDocs / maxDocsPerPartition);
-                for (int i = 0; i < numPartitions; i++) {
-                    PartitionDefinition.Slice slice = new PartitionDefinition.Slice(i, numPartitions);
-                    partitions.add(new PartitionDefinition(settings, resolvedMapping, index, shardId, slice, locations));
-                }
+                targets.add(new ShardTarget(index, shardId, locationList.toArray(new String[0])));
+            }
+        }
+
+        // each count runs on its own client since the clients are not thread-safe
+        int concurrency = Math.min(settings.getMaxDocsPerPartitionCountConcurrency(), targets.size());
+        List<RestClient> clients = new ArrayList<RestClient>();
+        clients.add(client);
+        try {
+            for (int i = 1; i < concurrency; i++) {
+                clients.add(new RestClient(settings));
+            }
+            countShards(clients, readResource, query, targets);
+        } finally {
+            for (int i = 1; i < clients.size(); i++) {
+                clients.get(i).close();
+            }
+        }
+
+        PartitionDefinition.PartitionDefinitionBuilder partitionBuilder = PartitionDefinition.builder(settings, resolvedMapping);
+        List<PartitionDefinition> partitions = new ArrayList<PartitionDefinition>(targets.size());
+        for (ShardTarget target : targets) {
+            int numPartitions = (int) Math.max(1, target.numDocs / maxDocsPerPartition);
+            for (int i = 0; i < numPartitions; i++) {
+                PartitionDefinition.Slice slice = new PartitionDefinition.Slice(i, numPartitions);
+                partitions.add(partitionBuilder.build(target.index, target.shardId, slice, target.locations));
             }
         }
         return partitions;
     }
 
+    /**
+     * Counts the documents of each shard target. With more than one client the counts are executed
+     * concurrently, each client being used by at most one count at a time.
+     */
+    static void countShards(List<RestClient> clients, Resource readResource, QueryBuilder query, List<ShardTarget> targets) {
+        if (clients.size() < 2 || targets.size() < 2) {
+            for (ShardTarget target : targets) {
+                target.numDocs = countShard(clients.get(0), readResource, query, target);
+            }
+            return;
+        }
+
+        final BlockingQueue<RestClient> available = new ArrayBlockingQueue<RestClient>(clients.size(), false, clients);
+        ExecutorService executor = Executors.newFixedThreadPool(clients.size(), new CountThreadFactory());
+        try {
+            List<Future<Long>> counts = new ArrayList<Future<Long>>(targets.size());
+            for (final ShardTarget target : targets) {
+                counts.add(executor.submit(new Callable<Long>() {
+                    @Override
+                    public Long call() throws Exception {
+                        RestClient client = available.take();
+                        try {
+                            return countShard(client, readResource, query, target);
+                        } finally {
+                            available.add(client);
+                        }
+                    }
+                }));
+            }
+            for (int i = 0; i < targets.size(); i++) {
+                try {
+                    targets.get(i).numDocs = counts.get(i).get();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                    throw new EsHadoopException("Thread interrupted - giving up on counting shard documents...", ex);
+                } catch (ExecutionException ex) {
+                    Throwable cause = ex.getCause();
+                    if (cause instanceof RuntimeException) {
+                        throw (RuntimeException) cause;
+                    }
+                    if (cause instanceof Error) {
+                        throw (Error) cause;
+                    }
+                    throw new EsHadoopException("Cannot count documents for shard " + targets.get(i), cause);
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static long countShard(RestClient client, Resource readResource, QueryBuilder query, ShardTarget target) {
+        // TODO applyAliasMetaData should be called in order to ensure that the count are exact (alias filters and routing may change the number of documents)
+        if (readResource.isTyped()) {
+            return client.count(target.index, readResource.type(), Integer.toString(target.shardId), query);
+        } else {
+            return client.countIndexShard(target.index, Integer.toString(target.shardId), query);
+        }
+    }
+
+    static class ShardTarget {
+        final String index;
+        final int shardId;
+        final String[] locations;
+        long numDocs;
+
+        ShardTarget(String index, int shardId, String[] locations) {
+            this.index = index;
+            this.shardId = shardId;
+            this.locations = locations;
+        }
+
+        @Override
+        public String toString() {
+            return "[" + index + "][" + shardId + "]";
+        }
+    }
+
+    private static class CountThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "es-hadoop-partition-count");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
     /**
      * Returns the first address in {@code locations} that is equals to a public IP of the system
      * @param locations The list of address (hostname:port or ip:port) to check
@@ -427,7 +541,15 @@ public abstract class RestService implements Serializable {
             log.warn(String.format("No mapping found for [%s] - either no index exists or the partition configuration has been corrupted", partition));
         }
 
-        ScrollReader scrollReader = new ScrollReader(ScrollReaderConfigBuilder.builder(reader, fieldMapping, settings));
+        String readStrategy = settings.getReadStrategy();
+        boolean searchAfter = ConfigurationOptions.ES_READ_STRATEGY_SEARCH_AFTER.equals(readStrategy);
+        if (!searchAfter && !ConfigurationOptions.ES_READ_STRATEGY_SCROLL.equals(readStrategy)) {
+            throw new EsHadoopIllegalArgumentException(String.format("Invalid read strategy [%s]; expected [%s] or [%s]",
+                    readStrategy, ConfigurationOptions.ES_READ_STRATEGY_SCROLL, ConfigurationOptions.ES_READ_STRATEGY_SEARCH_AFTER));
+        }
+
+        ScrollReader scrollReader = new ScrollReader(ScrollReaderConfigBuilder.builder(reader, fieldMapping, settings)
+                .setSearchAfter(searchAfter));
         if (settings.getNodesClientOnly()) {
             String clientNode = repository.getRestClient().getCurrentNode();
             if (log.isDebugEnabled()) {
@@ -455,7 +577,8 @@ public abstract class RestService implements Serializable {
                         .readMetadata(settings.getReadMetadata())
                         .local(true)
                         .preference(settings.getShardPreference())
-                        .excludeSource(settings.getExcludeSource());
+                        .excludeSource(settings.getExcludeSource())
+                        .searchAfter(searchAfter);
         if (partition.getSlice() != null && partition.getSlice().max > 1) {
             requestBuilder.slice(partition.getSlice().id, partition.getSlice().max);
         }
@@ -686,6 +809,12 @@ public abstract class RestService implements Serializable {
 
         // no routing necessary; select the relevant target shard/node
         Map<ShardInfo, NodeInfo> targetShards = repository.getWriteTargetPrimaryShards(settings.getNodesClientOnly());
+        ShardRouter shardRouter = null;
+        // manual flushing relies on the position of the entries inside a single bulk buffer
+        if (settings.getBatchWriteShardRouting() && !settings.getBatchFlushManual() && SettingsUtils.getFixedRouting(settings) == null
+                && !targetShards.isEmpty()) {
+            shardRouter = repository.getWriteShardRouter(targetShards);
+        }
         repository.close();
 
         Assert.isTrue(!targetShards.isEmpty(),
@@ -711,6 +840,13 @@ public abstract class RestService implements Serializable {
         SettingsUtils.pinNode(settings, targetNode.getPublishAddress());
         String node = SettingsUtils.getPinnedNode(settings);
         repository = new RestRepository(settings);
+        if (shardRouter != null) {
+            repository.setWriteShardRouter(shardRouter);
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Partition writer instance [%s] routing bulk entries to primary shards using %s",
+                        currentInstance, shardRouter));
+            }
+        }
 
         if (log.isDebugEnabled()) {
             log.debug(String.format("Partition writer instance [%s] assigned to primary shard [%s] at address [%s]",
@@ -740,7 +876,17 @@ public abstract class RestService implements Serializable {
             log.debug(String.format("Partition writer instance [%s] assigned to [%s]", currentInstance, node));
         }
 
-        return new RestRepository(settings);
+        RestRepository repository = new RestRepository(settings);
+        // manual flushing relies on the position of the entries inside a single bulk buffer
+        if (settings.getBatchWriteIndexGrouping() && !settings.getBatchFlushManual()) {
+            int maxGroups = settings.getBatchWriteIndexGroupingMax();
+            repository.setWriteIndexGrouping(maxGroups);
+            if (log.isDebugEnabled()) {
+                log.debug(String.format("Partition writer instance [%s] batching bulk entries per index (up to [%s] indices)",
+                        currentInstance, maxGroups));
+            }
+        }
+        return repository;
     }
 
     /**
@@ -20,30 +20,40 @@ package org.elasticsearch.hadoop.rest;
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+import org.elasticsearch.hadoop.EsHadoopException;
 import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
 import org.elasticsearch.hadoop.rest.stats.Stats;
 import org.elasticsearch.hadoop.rest.stats.StatsAware;
 import org.elasticsearch.hadoop.serialization.ScrollReader;
 import org.elasticsearch.hadoop.serialization.ScrollReader.Scroll;
 import org.elasticsearch.hadoop.util.BytesArray;
-import org.elasticsearch.hadoop.util.StringUtils;
 
 /**
- * Result streaming data from a ElasticSearch query using the scan/scroll. Performs batching underneath to retrieve data in chunks.
+ * Result streaming data from a ElasticSearch query using the scan/scroll (or search_after, see {@link ReadStrategy}).
+ * Performs batching underneath to retrieve data in chunks.
+ * <p>
+ * With a positive prefetch depth, the scroll pages following the initial one are retrieved and decoded by a background
+ * thread which keeps up to that many pages queued ahead of the consumer.
  */
 public class ScrollQuery implements Iterator<Object>, Closeable, StatsAware {
 
-    private RestRepository repository;
-    private String scrollId;
-    private List<Object[]> batch = Collections.emptyList();
+    private static final Log log = LogFactory.getLog(ScrollQuery.class);
+
+    private final ReadStrategy strategy;
+    private Scroll scroll;
+    private Iterator<Object[]> batch = Collections.<Object[]>emptyList().iterator();
     private boolean finished = false;
 
-    private int batchIndex = 0;
     private long read = 0;
     // how many docs to read - in most cases, all the docs that match
     private long size;
@@ -54,15 +64,24 @@ public class ScrollQuery implements Iterator<Object>, Closeable, StatsAware {
 
     private boolean closed = false;
     private boolean initialized = false;
-    private String query;
-    private BytesArray body;
+
+    // how many pages to fetch ahead of the consumer - 0 disables prefetching
+    private final int prefetch;
+    private Prefetcher prefetcher;
 
     ScrollQuery(RestRepository client, String query, BytesArray body, long size, ScrollReader reader) {
-        this.repository = client;
+        this(client, query, body, size, reader, 0);
+    }
+
+    ScrollQuery(RestRepository client, String query, BytesArray body, long size, ScrollReader reader, int prefetch) {
+        this(ReadStrategy.scroll(client, query, body), size, reader, prefetch);
+    }
+
+    ScrollQuery(ReadStrategy strategy, long size, ScrollReader reader, int prefetch) {
+        this.strategy = strategy;
         this.size = size;
         this.reader = reader;
-        this.query = query;
-        this.body = body;
+        this.prefetch = prefetch;
     }
 
     @Override
@@ -70,12 +89,16 @@ public class ScrollQuery implements Iterator<Object>, Closeable, StatsAware {
         if (!closed) {
             closed = true;
             finished = true;
-            batch = Collections.emptyList();
+            batch = Collections.<Object[]>emptyList().iterator();
+            // the prefetcher shares the connection and the reader so stop it first
+            if (prefetcher != null) {
+                prefetcher.stop();
+                prefetcher = null;
+            }
+            closeBatch();
             reader.close();
-            // typically the scroll is closed after it is consumed so this will trigger a 404
-            // however we're closing it either way
-            if (StringUtils.hasText(scrollId)) {
-                repository.getRestClient().deleteScroll(scrollId);
+            if (initialized) {
+                strategy.release();
             }
         }
     }
@@ -90,45 +113,181 @@ public class ScrollQuery implements Iterator<Object>, Closeable, StatsAware {
             initialized = true;
             
             try {
-                Scroll scroll = repository.scroll(query, body, reader);
+                scroll = strategy.first(reader);
                 // size is passed as a limit (since we can't pass it directly into the request) - if it's not specified (<1) just scroll the whole index
                 size = (size < 1 ? scroll.getTotalHits() : size);
-                scrollId = scroll.getScrollId();
-                batch = scroll.getHits();
+                batch = scroll.iterator();
                 finished = scroll.isConcluded();
             } catch (IOException ex) {
-                throw new EsHadoopIllegalStateException(String.format("Cannot create scroll for query [%s/%s]", query, body), ex);
+                throw new EsHadoopIllegalStateException(String.format("Cannot create scroll for query [%s]", strategy), ex);
             }
 
-            // no longer needed
-            body = null;
-            query = null;
+            if (prefetch > 0 && !finished) {
+                // the pages are decoded in the background hence the initial page has to be read out first
+                List<Object[]> hits = drain(scroll);
+                closeBatch();
+                batch = hits.iterator();
+
+                prefetcher = new Prefetcher(hits.size());
+                prefetcher.start();
+            }
+        }
+
+        // limit reached - release the scroll right away instead of waiting for the current page to be consumed
+        if (read >= size) {
+            close();
+            return false;
         }
 
-        while (!finished && (batch.isEmpty() || batchIndex >= batch.size())) {
-            if (read >= size) {
-                finished = true;
-                return false;
+        while (!finished && !batch.hasNext()) {
+            closeBatch();
+
+            if (prefetcher != null) {
+                Page page = prefetcher.take();
+                batch = page.hits.iterator();
+                finished = page.concluded;
+                continue;
             }
 
             try {
-                Scroll scroll = repository.scroll(scrollId, reader);
-                scrollId = scroll.getScrollId();
-                batch = scroll.getHits();
+                scroll = strategy.next(reader);
+                batch = scroll.iterator();
                 finished = scroll.isConcluded();
             } catch (IOException ex) {
-                throw new EsHadoopIllegalStateException("Cannot retrieve scroll [" + scrollId + "]", ex);
+                throw new EsHadoopIllegalStateException("Cannot retrieve scroll [" + strategy + "]", ex);
             }
-            read += batch.size();
-            stats.docsReceived += batch.size();
-
-            // reset index
-            batchIndex = 0;
         }
 
         return !finished;
     }
 
+    // release the current scroll response (relevant only when hits are streamed)
+    private void closeBatch() {
+        if (scroll != null) {
+            scroll.close();
+            scroll = null;
+        }
+    }
+
+    private static List<Object[]> drain(Scroll scroll) {
+        List<Object[]> hits = new ArrayList<Object[]>();
+        for (Iterator<Object[]> iterator = scroll.iterator(); iterator.hasNext();) {
+            hits.add(iterator.next());
+        }
+        return hits;
+    }
+
+    /**
+     * A decoded scroll page handed over by the prefetcher.
+     */
+    private static class Page {
+        static final Page CONCLUDED = new Page(Collections.<Object[]>emptyList(), true, null);
+
+        final List<Object[]> hits;
+        final boolean concluded;
+        final Throwable error;
+
+        Page(List<Object[]> hits, boolean concluded, Throwable error) {
+            this.hits = hits;
+            this.concluded = concluded;
+            this.error = error;
+        }
+    }
+
+    /**
+     * Retrieves and decodes the scroll pages in the background. The bounded queue provides back-pressure: once
+     * it is full, the fetching stops until the consumer catches up.
+     * Only the prefetcher thread uses the strategy and the reader until it is stopped.
+     */
+    private class Prefetcher implements Runnable {
+        private final BlockingQueue<Page> pages = new ArrayBlockingQueue<Page>(prefetch);
+        private final Thread thread;
+        private volatile boolean stopped = false;
+        private long fetched;
+
+        Prefetcher(long fetched) {
+            this.fetched = fetched;
+            this.thread = new Thread(this, "es-hadoop-scroll-prefetch");
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                boolean concluded = false;
+                while (!stopped && !concluded) {
+                    if (fetched >= size) {
+                        pages.put(Page.CONCLUDED);
+                        break;
+                    }
+                    Scroll page = strategy.next(reader);
+                    List<Object[]> hits;
+                    try {
+                        hits = drain(page);
+                    } finally {
+                        page.close();
+                    }
+                    concluded = page.isConcluded();
+                    fetched += hits.size();
+                    pages.put(new Page(hits, concluded, null));
+                }
+            } catch (InterruptedException ex) {
+                // stopped by the consumer
+            } catch (Throwable th) {
+                if (!stopped) {
+                    try {
+                        pages.put(new Page(Collections.<Object[]>emptyList(), true, th));
+                    } catch (InterruptedException ex) {
+                        // stopped by the consumer
+                    }
+                }
+            }
+        }
+
+        Page take() {
+            Page page;
+            try {
+                page = pages.take();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new EsHadoopException("Interrupted while waiting for scroll [" + strategy + "]", ex);
+            }
+            if (page.error != null) {
+                Throwable error = page.error;
+                if (error instanceof IOException) {
+                    throw new EsHadoopIllegalStateException("Cannot retrieve scroll [" + strategy + "]", error);
+                }
+                if (error instanceof RuntimeException) {
+                    throw (RuntimeException) error;
+                }
+                if (error instanceof Error) {
+                    throw (Error) error;
+                }
+                throw new EsHadoopException(error);
+            }
+            return page;
+        }
+
+        /**
+         * Stops the prefetching, waiting for any in-flight request to complete.
+         */
+        void stop() {
+            stopped = true;
+            thread.interrupt();
+            try {
+                thread.join();
+            } catch (InterruptedException ex) {
+                log.warn("Interrupted while stopping scroll prefetching");
+                Thread.currentThread().interrupt();
+            }
+            pages.clear();
+        }
+    }
+
     public long getSize() {
         return size;
     }
@@ -142,7 +301,9 @@ public class ScrollQuery implements Iterator<Object>, Closeable, StatsAware {
         if (!hasNext()) {
             throw new NoSuchElementException("No more documents available");
         }
-        return batch.get(batchIndex++);
+        read++;
+        stats.docsReceived++;
+        return batch.next();
     }
 
     @Override
@@ -157,13 +318,13 @@ public class ScrollQuery implements Iterator<Object>, Closeable, StatsAware {
     }
 
     public RestRepository repository() {
-        return repository;
+        return strategy.repository;
     }
 
     @Override
     public String toString() {
         StringBuilder builder = new StringBuilder();
-        builder.append("ScrollQuery [scrollId=").append(scrollId).append("]");
+        builder.append("ScrollQuery [").append(strategy).append("]");
         return builder.toString();
     }
 }
\ No newline at end of file
@@ -18,12 +18,17 @@
  */
 package org.elasticsearch.hadoop.rest;
 
+import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
 import org.elasticsearch.hadoop.rest.query.BoolQueryBuilder;
 import org.elasticsearch.hadoop.rest.query.FilteredQueryBuilder;
 import org.elasticsearch.hadoop.rest.query.MatchAllQueryBuilder;
 import org.elasticsearch.hadoop.rest.query.QueryBuilder;
+import org.elasticsearch.hadoop.serialization.Generator;
+import org.elasticsearch.hadoop.serialization.Parser;
+import org.elasticsearch.hadoop.serialization.Parser.Token;
 import org.elasticsearch.hadoop.serialization.ScrollReader;
 import org.elasticsearch.hadoop.serialization.json.JacksonJsonGenerator;
+import org.elasticsearch.hadoop.serialization.json.JacksonJsonParser;
 import org.elasticsearch.hadoop.util.Assert;
 import org.elasticsearch.hadoop.util.BytesArray;
 import org.elasticsearch.hadoop.util.EsMajorVersion;
@@ -71,6 +76,7 @@ public class SearchRequestBuilder {
     private String preference = "";
     private boolean excludeSource = false;
     private boolean readMetadata = false;
+    private boolean searchAfter = false;
 
     public SearchRequestBuilder(EsMajorVersion version, boolean includeVersion) {
         this.version = version;
@@ -184,7 +190,28 @@ public class SearchRequestBuilder {
         return this;
     }
 
-    private String assemble() {
+    /**
+     * Pages through the results with search_after within a point in time (kept alive as long as a scroll would)
+     * instead of scroll.
+     */
+    public SearchRequestBuilder searchAfter(boolean value) {
+        this.searchAfter = value;
+        return this;
+    }
+
+    String assemble() {
+        return assemble(true);
+    }
+
+    /**
+     * Assembles the uri of the search_after pages following the first one; these do not track the total hits
+     * as only the first page is consulted for it.
+     */
+    String assembleNextPage() {
+        return assemble(false);
+    }
+
+    private String assemble(boolean trackTotalHits) {
         if (limit > 0) {
             if (size > limit) {
                 size = limit;
@@ -192,28 +219,67 @@ public class SearchRequestBuilder {
         }
         Map<String, String> uriParams = new LinkedHashMap<String, String>();
         StringBuilder sb = new StringBuilder();
-        sb.append(indices);
-        if (StringUtils.hasLength(types)) {
+        // the indices, preference and routing of a point in time are set when opening it
+        if (!searchAfter) {
+            sb.append(indices);
+            if (StringUtils.hasLength(types)) {
+                sb.append("/");
+                sb.append(types);
+            }
             sb.append("/");
-            sb.append(types);
         }
-        sb.append("/_search?");
+        sb.append("_search?");
 
         // override infrastructure params
         if (version.onOrAfter(EsMajorVersion.V_5_X)) {
             // scan type was removed
             // default to sorting by indexing/doc order
-            uriParams.put("sort", "_doc");
+            if (!searchAfter) {
+                uriParams.put("sort", "_doc");
+            }
         }
         else {
             uriParams.put("search_type", "scan");
         }
-        uriParams.put("scroll", String.valueOf(scroll.toString()));
+        if (!searchAfter) {
+            uriParams.put("scroll", String.valueOf(scroll.toString()));
+        }
         uriParams.put("size", String.valueOf(size));
         if (includeVersion) {
             uriParams.put("version", "true");
         }
 
+        if (!searchAfter) {
+            appendRouting(uriParams);
+        }
+
+        // Always track total hits on versions that support it (except for the search_after pages following the first).
+        // 7.0+ will return lower bounded hit counts if this is not set, and we want them to be accurate for scroll bookkeeping.
+        if (version.onOrAfter(EsMajorVersion.V_6_X)) {
+            uriParams.put("track_total_hits", String.valueOf(trackTotalHits));
+        }
+
+        if (readMetadata) {
+            uriParams.put("track_scores", "true");
+        }
+
+        appendParams(sb, uriParams);
+        return sb.toString();
+    }
+
+    String assemblePointInTime() {
+        Map<String, String> uriParams = new LinkedHashMap<String, String>();
+        StringBuilder sb = new StringBuilder();
+        sb.append(indices);
+        sb.append("/_pit?");
+        uriParams.put("keep_alive", String.valueOf(scroll.toString()));
+        appendRouting(uriParams);
+        appendParams(sb, uriParams);
+        return sb.toString();
+    }
+
+    // shard preference and routing
+    private void appendRouting(Map<String, String> uriParams) {
         // set shard preference
         StringBuilder pref = new StringBuilder();
         if (StringUtils.hasText(shard)) {
@@ -243,18 +309,9 @@ public class SearchRequestBuilder {
         if (routing != null) {
             uriParams.put("routing", HttpEncodingTools.encode(routing));
         }
+    }
 
-        // Always track total hits on versions that support it. 7.0+ will return lower bounded
-        // hit counts if this is not set, and we want them to be accurate for scroll bookkeeping.
-        if (version.onOrAfter(EsMajorVersion.V_6_X)) {
-            uriParams.put("track_total_hits", "true");
-        }
-
-        if (readMetadata) {
-            uriParams.put("track_scores", "true");
-        }
-
-        // append params
+    private static void appendParams(StringBuilder sb, Map<String, String> uriParams) {
         for (Iterator<Entry<String, String>> it = uriParams.entrySet().iterator(); it.hasNext();) {
             Entry<String, String> entry = it.next();
             sb.append(entry.getKey());
@@ -266,11 +323,17 @@ public class SearchRequestBuilder {
                 sb.append("&");
             }
         }
-
-        return sb.toString();
     }
 
     private BytesArray assembleBody() {
+        return assembleBody(null, null);
+    }
+
+    /**
+     * Assembles the search body, for search_after paging within the given point in time (if any) and after
+     * the given sort values (if any).
+     */
+    BytesArray assembleBody(String pointInTimeId, BytesArray after) {
         QueryBuilder root = query;
         if (root == null) {
             root = MatchAllQueryBuilder.MATCH_ALL;
@@ -312,6 +375,24 @@ public class SearchRequestBuilder {
                 generator.writeFieldName("_source");
                 generator.writeBoolean(false);
             }
+            if (pointInTimeId != null) {
+                generator.writeFieldName("pit");
+                generator.writeBeginObject();
+                generator.writeFieldName("id");
+                generator.writeString(pointInTimeId);
+                generator.writeFieldName("keep_alive");
+                generator.writeString(scroll.toString());
+                generator.writeEndObject();
+                // the cheapest total order within a point in time
+                generator.writeFieldName("sort");
+                generator.writeBeginArray();
+                generator.writeString("_shard_doc");
+                generator.writeEndArray();
+            }
+            if (after != null) {
+                generator.writeFieldName("search_after");
+                writeSortValues(after, generator);
+            }
             generator.writeEndObject();
         } finally {
             generator.close();
@@ -319,7 +400,54 @@ public class SearchRequestBuilder {
         return out.bytes();
     }
 
+    // copies the sort values (a JSON array of scalars) of the previous page
+    private static void writeSortValues(BytesArray sortValues, Generator generator) {
+        Parser parser = new JacksonJsonParser(sortValues.bytes(), sortValues.offset(), sortValues.length());
+        try {
+            if (parser.nextToken() != Token.START_ARRAY) {
+                throw new EsHadoopIllegalArgumentException(String.format("Invalid sort values [%s]; expected an array", sortValues));
+            }
+            generator.writeBeginArray();
+            for (Token token = parser.nextToken(); token != Token.END_ARRAY; token = parser.nextToken()) {
+                switch (token) {
+                case VALUE_NUMBER:
+                    Number number = parser.numberValue();
+                    if (number instanceof Integer || number instanceof Long) {
+                        generator.writeNumber(number.longValue());
+                    } else if (number instanceof Float || number instanceof Double) {
+                        generator.writeNumber(number.doubleValue());
+                    } else {
+                        // beyond long/double (such as unsigned_long values) - Elasticsearch parses these from strings as well
+                        generator.writeString(parser.text());
+                    }
+                    break;
+                case VALUE_STRING:
+                    generator.writeString(parser.text());
+                    break;
+                case VALUE_BOOLEAN:
+                    generator.writeBoolean(parser.booleanValue());
+                    break;
+                case VALUE_NULL:
+                    generator.writeNull();
+                    break;
+                default:
+                    throw new EsHadoopIllegalArgumentException(String.format("Invalid sort values [%s]; expected scalars", sortValues));
+                }
+            }
+            generator.writeEndArray();
+        } finally {
+            parser.close();
+        }
+    }
+
     public ScrollQuery build(RestRepository client, ScrollReader reader) {
+        if (searchAfter) {
+            // the pages are sorted through the (unique) shard doc order of a point in time
+            if (!version.onOrAfter(EsMajorVersion.V_7_X)) {
+                throw new EsHadoopIllegalArgumentException(String.format("search_after requires a point in time hence Elasticsearch 7.x (7.12) or higher; found %s", version));
+            }
+            return client.scanLimit(ReadStrategy.searchAfter(client, this), limit, reader);
+        }
         String scrollUri = assemble();
         BytesArray requestBody = assembleBody();
         return client.scanLimit(scrollUri, requestBody, limit, reader);
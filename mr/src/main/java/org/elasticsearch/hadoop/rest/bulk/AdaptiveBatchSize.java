@@ -0,0 +1,117 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest.bulk;
+
+/**
+ * Additive-increase/multiplicative-decrease controller of the effective size of the bulk batches.
+ * <p>
+ * The batches start at the configured (maximum) size. A bulk request that is slower than the target latency or that
+ * has documents rejected by an overloaded cluster (HTTP 429) halves the batch size, while a fast, clean one grows it
+ * back by a fixed step. Rejections also introduce an increasing pause before the next batch is sent, which decays
+ * as soon as requests go through again.
+ * <p>
+ * Updated by the thread flushing the batches and read by the one filling them.
+ */
+class AdaptiveBatchSize {
+
+    // the batch size never goes below 1/16th of the configured one
+    static final int MIN_FRACTION = 16;
+    // and grows back in steps of 1/8th of the configured one
+    static final int STEP_FRACTION = 8;
+    // the initial pause is 1/10th of the target latency
+    static final int PAUSE_FRACTION = 10;
+
+    private final int maxBytes;
+    private final int minBytes;
+    private final int stepBytes;
+    private final int maxEntries;
+    private final int minEntries;
+    private final int stepEntries;
+    private final long targetLatency;
+    private final long minPause;
+
+    private volatile int bytes;
+    private volatile int entries;
+    private volatile long pause = 0L;
+
+    /**
+     * @param maxBytes configured batch size in bytes
+     * @param maxEntries configured batch size in entries (0 meaning unbounded)
+     * @param targetLatency bulk request latency (in millis) to stay under
+     */
+    AdaptiveBatchSize(int maxBytes, int maxEntries, long targetLatency) {
+        this.maxBytes = maxBytes;
+        this.minBytes = Math.max(maxBytes / MIN_FRACTION, 1);
+        this.stepBytes = Math.max(maxBytes / STEP_FRACTION, 1);
+        this.maxEntries = Math.max(maxEntries, 0);
+        this.minEntries = (maxEntries > 0 ? Math.max(maxEntries / MIN_FRACTION, 1) : 0);
+        this.stepEntries = (maxEntries > 0 ? Math.max(maxEntries / STEP_FRACTION, 1) : 0);
+        this.targetLatency = targetLatency;
+        this.minPause = Math.max(targetLatency / PAUSE_FRACTION, 1L);
+
+        this.bytes = maxBytes;
+        this.entries = this.maxEntries;
+    }
+
+    /**
+     * @return the current batch size in bytes
+     */
+    int bytes() {
+        return bytes;
+    }
+
+    /**
+     * @return the current batch size in entries (0 meaning unbounded)
+     */
+    int entries() {
+        return entries;
+    }
+
+    /**
+     * @return the time (in millis) to wait before sending the next batch
+     */
+    long pause() {
+        return pause;
+    }
+
+    /**
+     * Adjusts the batch size and pause based on the outcome of a bulk request.
+     *
+     * @param timeSpent time (in millis) the bulk request took
+     * @param docsRejected number of documents rejected because the cluster was overloaded
+     * @return a positive number if the batch size was increased, a negative one if it was decreased, 0 otherwise
+     */
+    int onBulkResponse(long timeSpent, int docsRejected) {
+        if (docsRejected > 0) {
+            pause = (pause == 0L ? minPause : Math.min(pause * 2, Math.max(targetLatency, minPause)));
+        } else {
+            pause = (pause / 2 < minPause ? 0L : pause / 2);
+        }
+
+        int oldBytes = bytes, oldEntries = entries;
+        if (docsRejected > 0 || timeSpent > targetLatency) {
+            bytes = Math.max(oldBytes / 2, minBytes);
+            entries = Math.max(oldEntries / 2, minEntries);
+            return (bytes < oldBytes || entries < oldEntries ? -1 : 0);
+        }
+        bytes = Math.min(oldBytes + stepBytes, maxBytes);
+        entries = Math.min(oldEntries + stepEntries, maxEntries);
+        return (bytes > oldBytes || entries > oldEntries ? 1 : 0);
+    }
+}
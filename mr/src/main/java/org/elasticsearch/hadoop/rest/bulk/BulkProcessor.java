@@ -3,8 +3,16 @@ package org.elasticsearch.hadoop.rest.bulk;
 import java.io.Closeable;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -16,6 +24,7 @@ import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.handler.EsHadoopAbortHandlerException;
 import org.elasticsearch.hadoop.handler.HandlerResult;
 import org.elasticsearch.hadoop.rest.ErrorExtractor;
+import org.elasticsearch.hadoop.rest.HttpStatus;
 import org.elasticsearch.hadoop.rest.Resource;
 import org.elasticsearch.hadoop.rest.RestClient;
 import org.elasticsearch.hadoop.rest.bulk.handler.BulkWriteErrorCollector;
@@ -36,6 +45,15 @@ import org.elasticsearch.hadoop.util.unit.TimeValue;
 /**
  * Oversees the addition of bulk entries into an internal buffer, the flushing of documents to Elasticsearch,
  * and the handling of failures in bulk operations.
+ * <p>
+ * When {@link ConfigurationOptions#ES_BATCH_FLUSH_PIPELINE} is set, full buffers filled through {@link #add(BytesRef)}
+ * are handed off to a single background thread and the writer continues on a spare buffer, overlapping serialization
+ * with the bulk round trip. Bulk requests are still sent (and their failures handled) one at a time and in order since
+ * the underlying {@link RestClient} is not thread-safe; the pipeline depth bounds how many full buffers can be pending.
+ * <p>
+ * When {@link ConfigurationOptions#ES_BATCH_SIZE_ADAPTIVE} is set, buffers are flushed once they reach the size decided by
+ * an {@link AdaptiveBatchSize} (never more than the configured one) based on the latency and rejections of the previous
+ * bulk requests.
  */
 public class BulkProcessor implements Closeable, StatsAware {
 
@@ -47,19 +65,28 @@ public class BulkProcessor implements Closeable, StatsAware {
     private final Stats stats = new Stats();
     private final ErrorExtractor errorExtractor;
 
-    // Buffers and state of content
-    private BytesArray ba;
-    private TrackingBytesArray data;
-    private int dataEntries = 0;
+    // Buffer and state of content currently being filled
+    private BulkBuffer buffer;
 
     // Configs
     private int bufferEntriesThreshold;
     private boolean autoFlush = true;
     private int retryLimit;
+    private final int pipelineDepth;
+    // Adaptive batch sizing - only used when enabled and auto-flushing
+    private final AdaptiveBatchSize adaptiveSize;
+
+    // Pipelined flushing state - only used when the pipeline depth is positive
+    private ExecutorService flushExecutor;
+    private final LinkedList<PendingFlush> pendingFlushes = new LinkedList<PendingFlush>();
+    private final LinkedList<BulkBuffer> spareBuffers = new LinkedList<BulkBuffer>();
 
     // Processor writing state flags
-    private boolean executedBulkWrite = false;
+    private volatile boolean executedBulkWrite = false;
+    // set by the writing thread only, once a failure has been reported to it
     private boolean hadWriteErrors = false;
+    // set by the flushing thread so the batches queued after a failed one are not sent
+    private volatile boolean pipelineFailed = false;
     private boolean requiresRefreshAfterBulk = false;
 
     // Bulk write error handlers.
@@ -83,8 +110,23 @@ public class BulkProcessor implements Closeable, StatsAware {
         this.retryLimit = (limit < retryCount || retryCount < 0) ? retryCount : limit;
 
         // Backing data array
-        this.ba = new BytesArray(new byte[settings.getBatchSizeInBytes()], 0);
-        this.data = new TrackingBytesArray(ba);
+        this.buffer = new BulkBuffer(settings.getBatchSizeInBytes());
+
+        // Pipelining only makes sense when the processor decides when to flush
+        this.pipelineDepth = (autoFlush ? Math.max(settings.getBatchFlushPipeline(), 0) : 0);
+        if (pipelineDepth > 0) {
+            this.flushExecutor = Executors.newSingleThreadExecutor(new FlushThreadFactory());
+            if (LOG.isDebugEnabled()) {
+                LOG.debug(String.format("Pipelining bulk flushes with up to [%s] pending batches", pipelineDepth));
+            }
+        }
+
+        if (autoFlush && settings.getBatchSizeAdaptive()) {
+            this.adaptiveSize = new AdaptiveBatchSize(settings.getBatchSizeInBytes(), bufferEntriesThreshold,
+                    settings.getBatchSizeAdaptiveTargetLatency());
+        } else {
+            this.adaptiveSize = null;
+        }
 
         // Create error handlers
         BulkWriteErrorHandler httpRetryHandler = new HttpRetryHandler(settings);
@@ -108,27 +150,33 @@ public class BulkProcessor implements Closeable, StatsAware {
     public void add(BytesRef payload) {
         // check space first
         // ba is the backing array for data
-        if (payload.length() > ba.available()) {
+        if (payload.length() > buffer.ba.available()) {
             if (autoFlush) {
-                flush();
+                autoFlush();
             }
             else {
                 throw new EsHadoopIllegalStateException(
                         String.format("Auto-flush disabled and bulk buffer full; disable manual flush or increase " +
-                                "capacity [current size %s]; bailing out", ba.capacity()));
+                                "capacity [current size %s]; bailing out", buffer.ba.capacity()));
             }
         }
 
-        data.copyFrom(payload);
+        buffer.data.copyFrom(payload);
 
-        dataEntries++;
-        if (bufferEntriesThreshold > 0 && dataEntries >= bufferEntriesThreshold) {
+        buffer.entries++;
+        if (adaptiveSize != null) {
+            int entriesThreshold = adaptiveSize.entries();
+            if ((entriesThreshold > 0 && buffer.entries >= entriesThreshold) || buffer.data.length() >= adaptiveSize.bytes()) {
+                autoFlush();
+            }
+        }
+        else if (bufferEntriesThreshold > 0 && buffer.entries >= bufferEntriesThreshold) {
             if (autoFlush) {
-                flush();
+                autoFlush();
             }
             else {
                 // handle the corner case of manual flush that occurs only after the buffer is completely full (think size of 1)
-                if (dataEntries > bufferEntriesThreshold) {
+                if (buffer.entries > bufferEntriesThreshold) {
                     throw new EsHadoopIllegalStateException(
                             String.format(
                                     "Auto-flush disabled and maximum number of entries surpassed; disable manual " +
@@ -153,16 +201,162 @@ public class BulkProcessor implements Closeable, StatsAware {
         private int originalPosition;
     }
 
+    /**
+     * A backing byte array along with the tracking information of the bulk entries written into it.
+     */
+    private static class BulkBuffer {
+        private final int initialSize;
+        private BytesArray ba;
+        private TrackingBytesArray data;
+        private int entries = 0;
+
+        BulkBuffer(int initialSize) {
+            this.initialSize = initialSize;
+            this.ba = new BytesArray(new byte[initialSize], 0);
+            this.data = new TrackingBytesArray(ba);
+        }
+
+        void reset(boolean expanded) {
+            // during retry operations, the tracking bytes array may grow. In that case, do a hard reset.
+            if (expanded) {
+                ba = new BytesArray(new byte[initialSize], 0);
+                data = new TrackingBytesArray(ba);
+            } else {
+                data.reset();
+            }
+            entries = 0;
+        }
+    }
+
+    /**
+     * A full buffer handed off to the flushing thread along with the eventual result of flushing it and the stats
+     * recorded meanwhile (aggregated by the writing thread once the flush completes).
+     */
+    private static class PendingFlush {
+        private final BulkBuffer buffer;
+        private final Stats stats;
+        private final Future<BulkResponse> response;
+
+        PendingFlush(BulkBuffer buffer, Stats stats, Future<BulkResponse> response) {
+            this.buffer = buffer;
+            this.stats = stats;
+            this.response = response;
+        }
+    }
+
+    private static class FlushThreadFactory implements ThreadFactory {
+        @Override
+        public Thread newThread(Runnable runnable) {
+            Thread thread = new Thread(runnable, "es-hadoop-bulk-flush");
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
     /**
      * Attempts a flush operation, handling failed documents based on configured error listeners.
+     * Any pipelined flushes still pending are completed (and checked) first.
      * @return A result object detailing the success or failure of the request, including information about any
      * failed documents.
      * @throws EsHadoopException in the event that the bulk operation fails or is aborted.
      */
     public BulkResponse tryFlush() {
+        awaitPendingFlushes(0);
+        try {
+            return doFlush(buffer, stats);
+        } catch (EsHadoopException ex) {
+            hadWriteErrors = true;
+            throw ex;
+        }
+    }
+
+    /**
+     * Flushes the current buffer either in place or, if pipelining is enabled, on the flushing thread.
+     */
+    private void autoFlush() {
+        if (pipelineDepth > 0) {
+            flushInBackground();
+        } else {
+            flush();
+        }
+    }
+
+    /**
+     * Hands off the current buffer to the flushing thread and continues on a spare one, waiting for the
+     * oldest pending flush if the pipeline is full.
+     */
+    private void flushInBackground() {
+        awaitPendingFlushes(pipelineDepth - 1);
+
+        final BulkBuffer full = buffer;
+        final Stats flushStats = new Stats();
+        Future<BulkResponse> response = flushExecutor.submit(new Callable<BulkResponse>() {
+            @Override
+            public BulkResponse call() throws Exception {
+                if (pipelineFailed) {
+                    throw new EsHadoopIllegalStateException("Previous bulk flush failed; skipping pending batch");
+                }
+                try {
+                    BulkResponse response = doFlush(full, flushStats);
+                    if (!response.getDocumentErrors().isEmpty()) {
+                        pipelineFailed = true;
+                    }
+                    return response;
+                } catch (RuntimeException ex) {
+                    pipelineFailed = true;
+                    throw ex;
+                }
+            }
+        });
+        pendingFlushes.add(new PendingFlush(full, flushStats, response));
+
+        buffer = (spareBuffers.isEmpty() ? new BulkBuffer(settings.getBatchSizeInBytes()) : spareBuffers.removeFirst());
+    }
+
+    /**
+     * Waits for the oldest pending flushes to complete until at most the given number remains, validating their results.
+     */
+    private void awaitPendingFlushes(int maxPending) {
+        while (pendingFlushes.size() > maxPending) {
+            PendingFlush pending = pendingFlushes.removeFirst();
+            BulkResponse bulk;
+            try {
+                bulk = pending.response.get();
+            } catch (InterruptedException ex) {
+                hadWriteErrors = true;
+                Thread.currentThread().interrupt();
+                throw new EsHadoopException("Thread interrupted - giving up on pending bulk flush...", ex);
+            } catch (ExecutionException ex) {
+                hadWriteErrors = true;
+                stats.aggregate(pending.stats);
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new EsHadoopException("Pending bulk flush failed", cause);
+            }
+            stats.aggregate(pending.stats);
+            if (!bulk.getDocumentErrors().isEmpty()) {
+                hadWriteErrors = true;
+            }
+            checkResponse(bulk);
+            spareBuffers.add(pending.buffer);
+        }
+    }
+
+    /**
+     * Attempts a flush operation on the given buffer, handling failed documents based on configured error listeners
+     * and recording the outcome in the given stats.
+     */
+    private BulkResponse doFlush(BulkBuffer batch, Stats batchStats) {
         BulkResponse bulkResult = null;
         boolean trackingArrayExpanded = false;
         String bulkLoggingID = createDebugTxnID();
+        BytesArray ba = batch.ba;
+        TrackingBytesArray data = batch.data;
 
         try {
             // double check data - it might be a false flush (called on clean-up)
@@ -189,7 +383,7 @@ public class BulkProcessor implements Closeable, StatsAware {
                     }
 
                     // Log messages, and if wait time is set, perform the thread sleep.
-                    initFlushOperation(bulkLoggingID, retryOperation, retries.size(), waitTime);
+                    initFlushOperation(bulkLoggingID, batch, batchStats, retryOperation, retries.size(), waitTime);
 
                     // Exec bulk operation to ES, get response.
                     debugLog(bulkLoggingID, "Submitting request");
@@ -197,25 +391,31 @@ public class BulkProcessor implements Closeable, StatsAware {
                     debugLog(bulkLoggingID, "Response received");
                     totalAttempts++;
                     totalTime += bar.getTimeSpent();
+                    int docsRejected = 0;
 
                     // Log retry stats if relevant
                     if (retryOperation) {
-                        stats.docsRetried += data.entries();
-                        stats.bytesRetried += data.length();
-                        stats.bulkRetries++;
-                        stats.bulkRetriesTotalTime += bar.getTimeSpent();
+                        batchStats.docsRetried += data.entries();
+                        batchStats.bytesRetried += data.length();
+                        batchStats.bulkRetries++;
+                        batchStats.bulkRetriesTotalTime += bar.getTimeSpent();
                     }
                     executedBulkWrite = true;
 
                     // Handle bulk write failures
                     if (!bar.getEntries().hasNext()) {
-                        // Legacy Case:
-                        // If no items on response, assume all documents made it in.
+                        // No Errors/Legacy Case:
+                        // If the response reports no errors or has no items, assume all (remaining) documents made it in.
                         // Recorded bytes are ack'd here
-                        stats.bytesAccepted += data.length();
-                        stats.docsAccepted += data.entries();
+                        batchStats.bytesAccepted += data.length();
+                        batchStats.docsAccepted += data.entries();
+                        docsSent += data.entries();
                         retryOperation = false;
-                        bulkResult = BulkResponse.complete(bar.getResponseCode(), totalTime, totalDocs, totalDocs, 0);
+                        if (docsAborted > 0) {
+                            bulkResult = BulkResponse.partial(bar.getResponseCode(), totalTime, totalDocs, docsSent, docsSkipped, docsAborted, abortErrors);
+                        } else {
+                            bulkResult = BulkResponse.complete(bar.getResponseCode(), totalTime, totalDocs, docsSent, docsSkipped);
+                        }
                     } else {
                         // Base Case:
                         // Iterate over the response and the data in the tracking bytes array at the same time, passing
@@ -243,11 +443,14 @@ public class BulkProcessor implements Closeable, StatsAware {
                             Map values = (Map) map.values().iterator().next();
                             Integer docStatus = (Integer) values.get("status");
                             EsHadoopException error = errorExtractor.extractError(values);
+                            if (docStatus != null && docStatus == HttpStatus.TOO_MANY_REQUESTS) {
+                                docsRejected++;
+                            }
 
                             if (error == null){
                                 // Write operation for this entry succeeded
-                                stats.bytesAccepted += data.length(trackingBytesPosition);
-                                stats.docsAccepted += 1;
+                                batchStats.bytesAccepted += data.length(trackingBytesPosition);
+                                batchStats.docsAccepted += 1;
                                 docsSent += 1;
                                 data.remove(trackingBytesPosition);
                             } else {
@@ -355,6 +558,8 @@ public class BulkProcessor implements Closeable, StatsAware {
                             documentNumber++;
                         }
 
+                        batchStats.bulkDocsRejected += docsRejected;
+
                         // Place any new documents that have been added at the end of the data buffer at the end of the retry list.
                         retries.addAll(newDocumentRetries);
 
@@ -370,6 +575,9 @@ public class BulkProcessor implements Closeable, StatsAware {
                             }
                         }
                     }
+                    if (adaptiveSize != null) {
+                        adaptBatchSize(bulkLoggingID, batchStats, bar.getTimeSpent(), docsRejected);
+                    }
                 } while (retryOperation);
 
                 debugLog(bulkLoggingID, "Completed. [%d] Original Entries. [%d] Attempts. [%d/%d] Docs Sent. [%d/%d] Docs Skipped. [%d/%d] Docs Aborted.",
@@ -384,24 +592,32 @@ public class BulkProcessor implements Closeable, StatsAware {
             }
         } catch (EsHadoopException ex) {
             debugLog(bulkLoggingID, "Failed. %s", ex.getMessage());
-            hadWriteErrors = true;
             throw ex;
         }
 
         // always discard data since there's no code path that uses the in flight data
-        // during retry operations, the tracking bytes array may grow. In that case, do a hard reset.
         // TODO: Perhaps open an issue to limit the expansion of a single byte array (for repeated rewrite-retries)
-        if (trackingArrayExpanded) {
-            ba = new BytesArray(new byte[settings.getBatchSizeInBytes()], 0);
-            data = new TrackingBytesArray(ba);
-        } else {
-            data.reset();
-            dataEntries = 0;
-        }
+        batch.reset(trackingArrayExpanded);
 
         return bulkResult;
     }
 
+    /**
+     * Feeds the outcome of a bulk request to the adaptive batch size, recording its decision.
+     */
+    private void adaptBatchSize(String bulkLoggingID, Stats batchStats, long timeSpent, int docsRejected) {
+        int decision = adaptiveSize.onBulkResponse(timeSpent, docsRejected);
+        if (decision > 0) {
+            batchStats.bulkSizeIncreases++;
+        } else if (decision < 0) {
+            batchStats.bulkSizeDecreases++;
+        }
+        if (decision != 0) {
+            debugLog(bulkLoggingID, "Request took [%s] with [%d] rejected entries; batch size now [%d] bytes/[%d] entries",
+                    TimeValue.timeValueMillis(timeSpent), docsRejected, adaptiveSize.bytes(), adaptiveSize.entries());
+        }
+    }
+
     /**
      * Validate the byte contents of a bulk entry that has been edited before being submitted for retry.
      * @param retryDataBuffer The new entry contents
@@ -449,7 +665,7 @@ public class BulkProcessor implements Closeable, StatsAware {
     /**
      * Logs flushing messages and performs backoff waiting if there is a wait time for retry.
      */
-    private void initFlushOperation(String bulkLoggingID, boolean retryOperation, long retriedDocs, long waitTime) {
+    private void initFlushOperation(String bulkLoggingID, BulkBuffer batch, Stats batchStats, boolean retryOperation, long retriedDocs, long waitTime) {
         if (retryOperation) {
             if (waitTime > 0L) {
                 debugLog(bulkLoggingID, "Retrying [%d] entries after backing off for [%s] ms",
@@ -464,7 +680,18 @@ public class BulkProcessor implements Closeable, StatsAware {
                 debugLog(bulkLoggingID, "Retrying [%d] entries immediately (without backoff)", retriedDocs);
             }
         } else {
-            debugLog(bulkLoggingID, "Sending batch of [%d] bytes/[%s] entries", data.length(), dataEntries);
+            long pause = (adaptiveSize != null ? adaptiveSize.pause() : 0L);
+            if (pause > 0L) {
+                debugLog(bulkLoggingID, "Throttling for [%s] before sending the next batch", TimeValue.timeValueMillis(pause));
+                try {
+                    Thread.sleep(pause);
+                } catch (InterruptedException e) {
+                    debugLog(bulkLoggingID, "Thread interrupted - giving up on sending...");
+                    throw new EsHadoopException("Thread interrupted - giving up on sending...", e);
+                }
+                batchStats.bulkThrottleTotalTime += pause;
+            }
+            debugLog(bulkLoggingID, "Sending batch of [%d] bytes/[%s] entries", batch.data.length(), batch.entries);
         }
     }
 
@@ -496,7 +723,13 @@ public class BulkProcessor implements Closeable, StatsAware {
      * @throws EsHadoopException in the event that the bulk operation fails, is aborted, or its errors could not be handled.
      */
     public void flush() {
-        BulkResponse bulk = tryFlush();
+        checkResponse(tryFlush());
+    }
+
+    /**
+     * Fails in case the given bulk response contains document errors.
+     */
+    private void checkResponse(BulkResponse bulk) {
         if (!bulk.getDocumentErrors().isEmpty()) {
             int maxErrors = 5;
             String header = String.format("Could not write all entries for bulk operation [%s/%s]. Error " +
@@ -554,12 +787,35 @@ public class BulkProcessor implements Closeable, StatsAware {
                 }
             }
         } finally {
+            shutdownFlushExecutor();
             for (IBulkWriteErrorHandler handler : documentBulkErrorHandlers) {
                 handler.close();
             }
         }
     }
 
+    /**
+     * Stops the flushing thread (if any), abandoning the pending flushes in case of a dirty close.
+     */
+    private void shutdownFlushExecutor() {
+        if (flushExecutor == null) {
+            return;
+        }
+        for (PendingFlush pending : pendingFlushes) {
+            pending.response.cancel(true);
+        }
+        pendingFlushes.clear();
+        flushExecutor.shutdownNow();
+        try {
+            if (!flushExecutor.awaitTermination(settings.getHttpTimeout(), TimeUnit.MILLISECONDS)) {
+                LOG.warn("Bulk flushing thread did not terminate in time; proceeding with close...");
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        flushExecutor = null;
+    }
+
     @Override
     public Stats stats() {
         return new Stats(stats);
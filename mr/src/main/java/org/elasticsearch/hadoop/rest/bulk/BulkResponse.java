@@ -19,6 +19,7 @@
 
 package org.elasticsearch.hadoop.rest.bulk;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
@@ -45,6 +46,34 @@ public class BulkResponse {
         return new BulkResponse(BulkStatus.PARTIAL, httpStatus, spent, totalWrites, docsSent, docsSkipped, docsAborted, errors);
     }
 
+    /**
+     * Combines the responses of batches flushed separately (but together) into a single one, the document errors of each batch
+     * keeping their position within their own batch.
+     */
+    public static BulkResponse combine(List<BulkResponse> responses) {
+        if (responses.size() == 1) {
+            return responses.get(0);
+        }
+        BulkStatus status = BulkStatus.COMPLETE;
+        int httpStatus = HttpStatus.OK;
+        long spent = 0;
+        int totalDocs = 0, docsSent = 0, docsSkipped = 0, docsAborted = 0;
+        List<BulkError> errors = new ArrayList<BulkError>();
+        for (BulkResponse response : responses) {
+            if (response.status == BulkStatus.PARTIAL && status == BulkStatus.COMPLETE) {
+                status = BulkStatus.PARTIAL;
+                httpStatus = response.httpStatus;
+            }
+            spent += response.spent;
+            totalDocs += response.totalDocs;
+            docsSent += response.docsSent;
+            docsSkipped += response.docsSkipped;
+            docsAborted += response.docsAborted;
+            errors.addAll(response.documentErrors);
+        }
+        return new BulkResponse(status, httpStatus, spent, totalDocs, docsSent, docsSkipped, docsAborted, errors);
+    }
+
     public enum BulkStatus {
         /**
          * The bulk operation was completed successfully with all documents accepted
@@ -0,0 +1,67 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest.bulk;
+
+import java.util.List;
+
+import org.elasticsearch.hadoop.serialization.ParsingUtils;
+import org.elasticsearch.hadoop.serialization.json.JsonValueScanner;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.BytesRef;
+
+/**
+ * Determines the index targeted by a bulk entry, as resolved by the bulk command into the entry header. Used when
+ * writing to an index pattern to keep the entries of each index in their own batch.
+ * <p>
+ * Not thread-safe.
+ */
+public class IndexRouter {
+
+    private static final String[] ACTIONS = { "index", "create", "update", "delete" };
+
+    private final JsonValueScanner scanner;
+
+    // scratch space for reading the entry header
+    private final BytesArray header = new BytesArray(256);
+
+    public IndexRouter() {
+        String[] paths = new String[ACTIONS.length];
+        for (int i = 0; i < ACTIONS.length; i++) {
+            paths[i] = ACTIONS[i] + "._index";
+        }
+        this.scanner = new JsonValueScanner(paths);
+    }
+
+    /**
+     * Returns the index targeted by the given bulk entry (header and document) or <code>null</code> if the header does not specify one.
+     */
+    public String index(BytesRef entry) {
+        header.reset();
+        // only the header line is needed
+        entry.copyTo(header, (byte) '\n');
+
+        List<Object> values = scanner.values(header.bytes(), header.offset(), header.length());
+        for (Object value : values) {
+            if (value != ParsingUtils.NOT_FOUND && value instanceof String) {
+                return (String) value;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest.bulk;
+
+import java.util.Arrays;
+import java.util.Map;
+
+import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
+import org.elasticsearch.hadoop.serialization.Parser;
+import org.elasticsearch.hadoop.serialization.Parser.Token;
+import org.elasticsearch.hadoop.serialization.json.JacksonJsonParser;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.BytesRef;
+import org.elasticsearch.hadoop.util.Murmur3HashFunction;
+
+/**
+ * Determines, on the client side, the primary shard targeted by a bulk entry and the node holding it, following
+ * the routing Elasticsearch applies (murmur3 over the routing value, falling back to the parent and then to the document id).
+ * <p>
+ * Entries without any of these (whose id is generated by Elasticsearch) cannot be routed and are left to the caller.
+ * Not thread-safe.
+ */
+public class ShardRouter {
+
+    private final int numShards;
+    private final int routingNumShards;
+    private final int routingFactor;
+    // node address holding the primary of each shard
+    private final String[] primaryNodes;
+
+    // scratch space for reading the entry header
+    private final BytesArray header = new BytesArray(256);
+
+    /**
+     * @param numShards number of primary shards of the target index
+     * @param routingNumShards number of routing shards of the target index (equal to numShards for indices created before 7.0)
+     * @param primaryNodes the address of the node holding each primary shard, keyed by shard id
+     */
+    public ShardRouter(int numShards, int routingNumShards, Map<Integer, String> primaryNodes) {
+        if (numShards < 1 || routingNumShards < numShards || routingNumShards % numShards != 0) {
+            throw new EsHadoopIllegalArgumentException(String.format(
+                    "Invalid shard routing; [%s] routing shards is not a multiple of [%s] shards", routingNumShards, numShards));
+        }
+        this.numShards = numShards;
+        this.routingNumShards = routingNumShards;
+        this.routingFactor = routingNumShards / numShards;
+        this.primaryNodes = new String[numShards];
+        for (Map.Entry<Integer, String> entry : primaryNodes.entrySet()) {
+            int shard = entry.getKey();
+            if (shard < 0 || shard >= numShards) {
+                throw new EsHadoopIllegalArgumentException(String.format("Invalid shard [%s] for an index with [%s] shards", shard, numShards));
+            }
+            this.primaryNodes[shard] = entry.getValue();
+        }
+    }
+
+    /**
+     * Returns the id of the shard the given routing value (or document id if no routing is used) resolves to.
+     */
+    public int shardId(String routing) {
+        int hash = Murmur3HashFunction.hash(routing);
+        return Math.floorMod(hash, routingNumShards) / routingFactor;
+    }
+
+    /**
+     * Returns the address of the node holding the primary shard targeted by the given bulk entry (header and document)
+     * or <code>null</code> if it cannot be determined.
+     */
+    public String node(BytesRef entry) {
+        String routing = routingValue(entry);
+        return (routing != null ? primaryNodes[shardId(routing)] : null);
+    }
+
+    String routingValue(BytesRef entry) {
+        header.reset();
+        // only the header line is needed
+        entry.copyTo(header, (byte) '\n');
+
+        String id = null, routing = null, parent = null;
+
+        Parser parser = new JacksonJsonParser(header.bytes(), header.offset(), header.length());
+        try {
+            // { "<action>" : { ...
+            if (parser.nextToken() != Token.START_OBJECT || parser.nextToken() != Token.FIELD_NAME || parser.nextToken() != Token.START_OBJECT) {
+                return null;
+            }
+            for (Token token = parser.nextToken(); token == Token.FIELD_NAME; token = parser.nextToken()) {
+                String name = parser.currentName();
+                token = parser.nextToken();
+                if (token == Token.START_OBJECT || token == Token.START_ARRAY) {
+                    parser.skipChildren();
+                }
+                else if (token != Token.VALUE_NULL) {
+                    if ("_id".equals(name)) {
+                        id = parser.text();
+                    }
+                    else if ("routing".equals(name) || "_routing".equals(name)) {
+                        routing = parser.text();
+                    }
+                    else if ("parent".equals(name) || "_parent".equals(name)) {
+                        parent = parser.text();
+                    }
+                }
+            }
+        } finally {
+            parser.close();
+        }
+
+        return (routing != null ? routing : (parent != null ? parent : id));
+    }
+
+    public int getNumShards() {
+        return numShards;
+    }
+
+    public int getRoutingNumShards() {
+        return routingNumShards;
+    }
+
+    @Override
+    public String toString() {
+        return "ShardRouter [numShards=" + numShards + ", routingNumShards=" + routingNumShards + ", primaryNodes="
+                + Arrays.toString(primaryNodes) + "]";
+    }
+}
@@ -50,12 +50,15 @@ import org.elasticsearch.hadoop.security.SecureSettings;
 import org.elasticsearch.hadoop.security.User;
 import org.elasticsearch.hadoop.security.UserProvider;
 import org.elasticsearch.hadoop.util.ByteSequence;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.FastByteArrayOutputStream;
 import org.elasticsearch.hadoop.util.ReflectionUtils;
 import org.elasticsearch.hadoop.util.StringUtils;
 import org.elasticsearch.hadoop.util.encoding.HttpEncodingTools;
 
 import java.io.ByteArrayInputStream;
 import java.io.Closeable;
+import java.io.FilterInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.lang.reflect.Method;
@@ -65,6 +68,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import javax.security.auth.kerberos.KerberosPrincipal;
 
 /**
@@ -73,6 +78,9 @@ import javax.security.auth.kerberos.KerberosPrincipal;
 public class CommonsHttpTransport implements Transport, StatsAware {
 
     private static final String WWW_AUTHENTICATE = "WWW-Authenticate";
+    private static final String CONTENT_ENCODING = "Content-Encoding";
+    private static final String ACCEPT_ENCODING = "Accept-Encoding";
+    private static final String GZIP = "gzip";
 
     private static Log log = LogFactory.getLog(CommonsHttpTransport.class);
     private static final Method GET_SOCKET;
@@ -91,6 +99,7 @@ public class CommonsHttpTransport implements Transport, StatsAware {
     private final String httpInfo;
     private final boolean sslEnabled;
     private final String pathPrefix;
+    private final boolean compression;
     private final Settings settings;
     private final SecureSettings secureSettings;
     private final String clusterName;
@@ -108,11 +117,18 @@ public class CommonsHttpTransport implements Transport, StatsAware {
 
         private final HttpMethod method;
         private final boolean reusable;
+        private final boolean compressed;
 
         public ResponseInputStream(HttpMethod http) throws IOException {
-            super(http.getResponseBodyAsStream());
+            this(http, http.getResponseBodyAsStream(), isGzipEncoded(http), new Stats());
+        }
+
+        private ResponseInputStream(HttpMethod http, InputStream body, boolean compressed, Stats stats) throws IOException {
+            // the compressed bytes are counted before inflating, the raw ones by the delegating stream itself
+            super(body != null && compressed ? new GZIPInputStream(new CompressedBytesCountingInputStream(body, stats)) : body, stats);
             this.method = http;
-            reusable = (delegate() instanceof ByteArrayInputStream);
+            this.compressed = compressed;
+            reusable = (body instanceof ByteArrayInputStream);
         }
 
         @Override
@@ -128,7 +144,11 @@ public class CommonsHttpTransport implements Transport, StatsAware {
         @Override
         public InputStream copy() {
             try {
-                return (reusable ? method.getResponseBodyAsStream() : null);
+                if (!reusable) {
+                    return null;
+                }
+                InputStream body = method.getResponseBodyAsStream();
+                return (compressed ? new GZIPInputStream(body) : body);
             } catch (IOException ex) {
                 throw new EsHadoopIllegalStateException(ex);
             }
@@ -147,6 +167,39 @@ public class CommonsHttpTransport implements Transport, StatsAware {
         }
     }
 
+    private static class CompressedBytesCountingInputStream extends FilterInputStream {
+
+        private final Stats stats;
+
+        CompressedBytesCountingInputStream(InputStream in, Stats stats) {
+            super(in);
+            this.stats = stats;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int result = super.read();
+            if (result >= 0) {
+                stats.compressedBytesReceived++;
+            }
+            return result;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int result = super.read(b, off, len);
+            if (result > 0) {
+                stats.compressedBytesReceived += result;
+            }
+            return result;
+        }
+    }
+
+    private static boolean isGzipEncoded(HttpMethod http) {
+        Header encoding = http.getResponseHeader(CONTENT_ENCODING);
+        return encoding != null && GZIP.equalsIgnoreCase(StringUtils.trimWhitespace(encoding.getValue()));
+    }
+
     private class SocketTrackingConnectionManager extends SimpleHttpConnectionManager {
 
         @Override
@@ -190,6 +243,7 @@ public class CommonsHttpTransport implements Transport, StatsAware {
 
         String pathPref = settings.getNodesPathPrefix();
         pathPrefix = (StringUtils.hasText(pathPref) ? addLeadingSlashIfNeeded(StringUtils.trimWhitespace(pathPref)) : StringUtils.trimWhitespace(pathPref));
+        compression = settings.getHttpCompression();
 
         HttpClientParams params = new HttpClientParams();
         params.setParameter(HttpMethodParams.RETRY_HANDLER, new DefaultHttpMethodRetryHandler(
@@ -600,17 +654,29 @@ public class CommonsHttpTransport implements Transport, StatsAware {
         }
 
         ByteSequence ba = request.body();
+        BytesArray compressedBody = null;
         if (ba != null && ba.length() > 0) {
             if (!(http instanceof EntityEnclosingMethod)) {
                 throw new IllegalStateException(String.format("Method %s cannot contain body - implementation bug", request.method().name()));
             }
             EntityEnclosingMethod entityMethod = (EntityEnclosingMethod) http;
-            entityMethod.setRequestEntity(new BytesArrayRequestEntity(ba));
+            if (compression) {
+                // compressed upfront so the entity keeps a known length and can be replayed on retries
+                compressedBody = gzip(ba);
+                entityMethod.setRequestEntity(new BytesArrayRequestEntity(compressedBody));
+                entityMethod.setRequestHeader(CONTENT_ENCODING, GZIP);
+            } else {
+                entityMethod.setRequestEntity(new BytesArrayRequestEntity(ba));
+            }
             entityMethod.setContentChunked(false);
         }
 
         headers.applyTo(http);
 
+        if (compression) {
+            http.setRequestHeader(ACCEPT_ENCODING, GZIP);
+        }
+
         // We don't want a token added from a proxy user to collide with the
         // run_as mechanism from a real user impersonating said proxy, so
         // make these conditions mutually exclusive.
@@ -667,7 +733,12 @@ public class CommonsHttpTransport implements Transport, StatsAware {
         if (log.isTraceEnabled()) {
             Socket sk = ReflectionUtils.invoke(GET_SOCKET, conn, (Object[]) null);
             String addr = sk.getLocalAddress().getHostAddress();
-            log.trace(String.format("Rx %s@[%s] [%s-%s] [%s]", proxyInfo, addr, http.getStatusCode(), HttpStatus.getStatusText(http.getStatusCode()), http.getResponseBodyAsString()));
+            log.trace(String.format("Rx %s@[%s] [%s-%s] [%s]", proxyInfo, addr, http.getStatusCode(), HttpStatus.getStatusText(http.getStatusCode()),
+                    isGzipEncoded(http) ? "gzip content of " + http.getResponseBody().length + " bytes" : http.getResponseBodyAsString()));
+        }
+
+        if (compressedBody != null) {
+            stats.compressedBytesSent += compressedBody.length();
         }
 
         // the request URI is not set (since it is retried across hosts), so use the http info instead for source
@@ -755,6 +826,17 @@ public class CommonsHttpTransport implements Transport, StatsAware {
         return escaped.contains("://") ? escaped : (ssl ? "https://" : "http://") + escaped;
     }
 
+    private static BytesArray gzip(ByteSequence data) throws IOException {
+        FastByteArrayOutputStream out = new FastByteArrayOutputStream(Math.max(128, data.length() / 4));
+        GZIPOutputStream gzip = new GZIPOutputStream(out);
+        try {
+            data.writeTo(gzip);
+        } finally {
+            gzip.close();
+        }
+        return out.bytes();
+    }
+
     private static String addLeadingSlashIfNeeded(String string) {
         return string.startsWith("/") ? string : "/" + string;
     }
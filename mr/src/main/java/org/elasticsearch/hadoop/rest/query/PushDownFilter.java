@@ -0,0 +1,209 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.elasticsearch.hadoop.util.StringUtils;
+
+/**
+ * Query DSL (2.x and higher) translated from a filter expression pushed down by an integration (such as Hive or Pig),
+ * along with whether it matches exactly the rows the expression accepts or a superset of them.
+ * <p>
+ * The integrations walk their own expressions and combine the filters created here; since a superset is always
+ * acceptable (the integration re-applies its filter), anything that cannot be translated exactly is either loosened
+ * or dropped (<code>null</code>). Field names are the {es} ones and values are JSON encoded.
+ */
+public final class PushDownFilter {
+
+    private final String dsl;
+    private final boolean exact;
+
+    private PushDownFilter(String dsl, boolean exact) {
+        this.dsl = dsl;
+        this.exact = exact;
+    }
+
+    public String dsl() {
+        return dsl;
+    }
+
+    /**
+     * Whether the query matches exactly the rows for which the expression is true (and not a superset).
+     */
+    public boolean isExact() {
+        return exact;
+    }
+
+    /**
+     * Conjunction of the given filters, <code>null</code> entries being the conjuncts that could not be translated.
+     */
+    public static PushDownFilter and(List<PushDownFilter> filters) {
+        // dropping the untranslatable conjuncts still results in a superset
+        List<String> dsl = new ArrayList<String>(filters.size());
+        boolean exact = true;
+        for (PushDownFilter filter : filters) {
+            if (filter == null) {
+                exact = false;
+            }
+            else {
+                dsl.add(filter.dsl);
+                exact &= filter.exact;
+            }
+        }
+
+        if (dsl.isEmpty()) {
+            return null;
+        }
+        if (dsl.size() == 1) {
+            return new PushDownFilter(dsl.get(0), exact);
+        }
+        return new PushDownFilter("{\"bool\":{\"filter\":[" + StringUtils.concatenate(dsl, ",") + "]}}", exact);
+    }
+
+    /**
+     * Disjunction of the given filters or <code>null</code> if any of them could not be translated.
+     */
+    public static PushDownFilter or(List<PushDownFilter> filters) {
+        List<String> dsl = new ArrayList<String>(filters.size());
+        boolean exact = true;
+        for (PushDownFilter filter : filters) {
+            if (filter == null) {
+                return null;
+            }
+            dsl.add(filter.dsl);
+            exact &= filter.exact;
+        }
+        return new PushDownFilter("{\"bool\":{\"should\":[" + StringUtils.concatenate(dsl, ",") + "]}}", exact);
+    }
+
+    public static PushDownFilter not(PushDownFilter filter) {
+        // negating a superset would exclude rows the integration expects
+        if (filter == null || !filter.exact) {
+            return null;
+        }
+        // documents with a missing field match must_not while the negation in SQL-like languages is null, hence the superset
+        return new PushDownFilter("{\"bool\":{\"must_not\":" + filter.dsl + "}}", false);
+    }
+
+    public static PushDownFilter isNull(String field) {
+        return new PushDownFilter("{\"bool\":{\"must_not\":{\"exists\":{\"field\":" + StringUtils.toJsonString(field) + "}}}}", true);
+    }
+
+    public static PushDownFilter isNotNull(String field) {
+        return new PushDownFilter("{\"exists\":{\"field\":" + StringUtils.toJsonString(field) + "}}", true);
+    }
+
+    /**
+     * Equality on a (JSON encoded) non-textual value.
+     */
+    public static PushDownFilter term(String field, String value) {
+        return new PushDownFilter("{\"term\":{" + StringUtils.toJsonString(field) + ":" + value + "}}", true);
+    }
+
+    /**
+     * Equality on a (JSON encoded) textual value; unless strict, the field is assumed to be analyzed.
+     */
+    public static PushDownFilter text(String field, String value, boolean strict) {
+        if (strict) {
+            return term(field, value);
+        }
+        // a match query returns a superset on analyzed fields
+        return new PushDownFilter("{\"match\":{" + StringUtils.toJsonString(field) + ":" + value + "}}", false);
+    }
+
+    /**
+     * Membership among (JSON encoded) values; textual ones are matched as in {@link #text(String, String, boolean)}.
+     */
+    public static PushDownFilter in(String field, List<String> values, boolean textual, boolean strict) {
+        if (values.isEmpty()) {
+            return null;
+        }
+        if (textual && !strict) {
+            List<String> matches = new ArrayList<String>(values.size());
+            for (String value : values) {
+                matches.add("{\"match\":{" + StringUtils.toJsonString(field) + ":" + value + "}}");
+            }
+            return new PushDownFilter("{\"bool\":{\"should\":[" + StringUtils.concatenate(matches, ",") + "]}}", false);
+        }
+        return new PushDownFilter("{\"terms\":{" + StringUtils.toJsonString(field) + ":[" + StringUtils.concatenate(values, ",") + "]}}", true);
+    }
+
+    /**
+     * Range over (JSON encoded) non-textual values with the given operator (gt, gte, lt or lte) and optionally a second
+     * bound (<code>null</code> otherwise).
+     */
+    public static PushDownFilter range(String field, String op, String value, String otherOp, String otherValue) {
+        return range(field, op, value, otherOp, otherValue, null);
+    }
+
+    /**
+     * Range over dates, expressed in milliseconds since the epoch.
+     */
+    public static PushDownFilter dateRange(String field, String op, long millis, String otherOp, Long otherMillis) {
+        return range(field, op, String.valueOf(millis), otherOp, (otherMillis != null ? String.valueOf(otherMillis) : null), "epoch_millis");
+    }
+
+    /**
+     * Equality on a date, expressed in milliseconds since the epoch.
+     */
+    public static PushDownFilter date(String field, long millis) {
+        return dateRange(field, "gte", millis, "lte", millis);
+    }
+
+    /**
+     * Range over (JSON encoded) textual values; unless strict, the field is assumed to be analyzed.
+     */
+    public static PushDownFilter textRange(String field, String op, String value, String otherOp, String otherValue, boolean strict) {
+        // ranges on analyzed fields are meaningless
+        if (!strict) {
+            return null;
+        }
+        return range(field, op, value, otherOp, otherValue);
+    }
+
+    private static PushDownFilter range(String field, String op, String value, String otherOp, String otherValue, String format) {
+        if (value == null || (otherOp != null && otherValue == null)) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder("{\"range\":{").append(StringUtils.toJsonString(field)).append(":{");
+        sb.append("\"").append(op).append("\":").append(value);
+        if (otherOp != null) {
+            sb.append(",\"").append(otherOp).append("\":").append(otherValue);
+        }
+        if (format != null) {
+            sb.append(",\"format\":\"").append(format).append("\"");
+        }
+        sb.append("}}}");
+        return new PushDownFilter(sb.toString(), true);
+    }
+
+    /**
+     * Wildcard pattern over a field; the caller decides whether the pattern translates its expression exactly.
+     */
+    public static PushDownFilter wildcard(String field, String pattern, boolean exact) {
+        return new PushDownFilter("{\"wildcard\":{" + StringUtils.toJsonString(field) + ":" + StringUtils.toJsonString(pattern) + "}}", exact);
+    }
+
+    @Override
+    public String toString() {
+        return dsl;
+    }
+}
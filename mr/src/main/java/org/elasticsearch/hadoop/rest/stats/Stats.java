@@ -36,9 +36,16 @@ public class Stats {
     /** reads */
     public long bytesReceived;
     public long docsReceived;
+    /** compression (bytes on the wire) */
+    public long compressedBytesSent;
+    public long compressedBytesReceived;
     /** bulk */
     public long bulkTotal;
     public long bulkRetries;
+    /** adaptive bulk sizing */
+    public long bulkDocsRejected;
+    public long bulkSizeIncreases;
+    public long bulkSizeDecreases;
     /** fall overs */
     public int nodeRetries;
     public int netRetries;
@@ -46,6 +53,7 @@ public class Stats {
     public long netTotalTime;
     public long bulkTotalTime;
     public long bulkRetriesTotalTime;
+    public long bulkThrottleTotalTime;
     /** scroll */
     public long scrollTotalTime;
     public long scrollTotal;
@@ -65,18 +73,26 @@ public class Stats {
         this.bytesRetried = stats.bytesRetried;
         this.bulkRetries = stats.bulkRetries;
 
+        this.bulkDocsRejected = stats.bulkDocsRejected;
+        this.bulkSizeIncreases = stats.bulkSizeIncreases;
+        this.bulkSizeDecreases = stats.bulkSizeDecreases;
+
         this.bytesAccepted = stats.bytesAccepted;
         this.docsAccepted = stats.docsAccepted;
 
         this.bytesReceived = stats.bytesReceived;
         this.docsReceived = stats.docsReceived;
 
+        this.compressedBytesSent = stats.compressedBytesSent;
+        this.compressedBytesReceived = stats.compressedBytesReceived;
+
         this.nodeRetries = stats.nodeRetries;
         this.netRetries = stats.netRetries;
 
         this.netTotalTime = stats.netTotalTime;
         this.bulkTotalTime = stats.bulkTotalTime;
         this.bulkRetriesTotalTime = stats.bulkRetriesTotalTime;
+        this.bulkThrottleTotalTime = stats.bulkThrottleTotalTime;
 
         this.scrollTotal = stats.scrollTotal;
         this.scrollTotalTime = stats.scrollTotalTime;
@@ -93,18 +109,25 @@ public class Stats {
         docsRetried += other.docsRetried;
         bytesRetried += other.bytesRetried;
         bulkRetries += other.bulkRetries;
+        bulkDocsRejected += other.bulkDocsRejected;
+        bulkSizeIncreases += other.bulkSizeIncreases;
+        bulkSizeDecreases += other.bulkSizeDecreases;
         bytesAccepted += other.bytesAccepted;
         docsAccepted += other.docsAccepted;
 
         bytesReceived += other.bytesReceived;
         docsReceived += other.docsReceived;
 
+        compressedBytesSent += other.compressedBytesSent;
+        compressedBytesReceived += other.compressedBytesReceived;
+
         nodeRetries += other.nodeRetries;
         netRetries += other.netRetries;
 
         netTotalTime += other.netTotalTime;
         bulkTotalTime += other.bulkTotalTime;
         bulkRetriesTotalTime += other.bulkRetriesTotalTime;
+        bulkThrottleTotalTime += other.bulkThrottleTotalTime;
 
         scrollTotal += other.scrollTotal;
         scrollTotalTime += other.scrollTotalTime;
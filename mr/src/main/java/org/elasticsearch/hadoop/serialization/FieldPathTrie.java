@@ -0,0 +1,136 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.serialization;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.elasticsearch.hadoop.serialization.field.FieldFilter;
+import org.elasticsearch.hadoop.serialization.field.FieldFilter.NumberedInclude;
+
+/**
+ * Trie of the field paths read by a {@link ScrollReader}, walked in lockstep with the parser.
+ * <p>
+ * Each node caches the absolute name of its path along with its mapped type and whether it is filtered out or
+ * read as an array. Nodes are compiled the first time their path is encountered, after which reading the same
+ * field in the following hits requires neither string concatenation nor include/exclude pattern matching.
+ * <p>
+ * Not thread-safe.
+ */
+final class FieldPathTrie {
+
+    // bound the number of cached paths under a single object (think of unmapped objects used as maps with random keys)
+    static final int MAX_CACHED_CHILDREN = 1024;
+
+    final class Node {
+        private final String path;
+        private final FieldType type;
+        private final boolean filtered;
+        private final boolean array;
+        private Map<String, Node> children;
+
+        private Node(String path) {
+            this.path = path;
+            if (path != null) {
+                this.type = mapping.get(path);
+                this.filtered = (ignoreUnmappedFields ? !mapping.containsKey(path) : !FieldFilter.filter(path, includeFields, excludeFields).matched);
+                this.array = (includeArrayFields != null && !includeArrayFields.isEmpty() && FieldFilter.filter(path, includeArrayFields, null, false).matched);
+            } else {
+                this.type = null;
+                this.filtered = false;
+                this.array = false;
+            }
+        }
+
+        /**
+         * @return the node of the given field underneath this one
+         */
+        Node child(String name) {
+            if (children == null) {
+                children = new HashMap<String, Node>();
+            }
+            Node child = children.get(name);
+            if (child == null) {
+                child = new Node(path != null ? path + "." + name : name);
+                if (children.size() < MAX_CACHED_CHILDREN) {
+                    children.put(name, child);
+                }
+            }
+            return child;
+        }
+
+        /**
+         * @return the absolute name of the field (<code>null</code> for the root)
+         */
+        String path() {
+            return path;
+        }
+
+        /**
+         * @return the mapped type of the field or <code>null</code> if it is not mapped
+         */
+        FieldType type() {
+            return type;
+        }
+
+        /**
+         * @return whether the field is filtered out (unmapped or not matching the includes/excludes)
+         */
+        boolean filtered() {
+            return filtered;
+        }
+
+        /**
+         * @return whether the field is to be read as an array
+         */
+        boolean array() {
+            return array;
+        }
+    }
+
+    private final Map<String, FieldType> mapping;
+    private final boolean ignoreUnmappedFields;
+    private final List<NumberedInclude> includeFields;
+    private final Collection<String> excludeFields;
+    private final List<NumberedInclude> includeArrayFields;
+    private final Node root;
+
+    /**
+     * @param mapping flattened mapping (already filtered when ignoring unmapped fields)
+     * @param ignoreUnmappedFields whether fields missing from the mapping are filtered out
+     * @param includeFields fields to include (when not ignoring unmapped fields)
+     * @param excludeFields fields to exclude (when not ignoring unmapped fields)
+     * @param includeArrayFields fields to read as arrays
+     */
+    FieldPathTrie(Map<String, FieldType> mapping, boolean ignoreUnmappedFields, List<NumberedInclude> includeFields,
+                  Collection<String> excludeFields, List<NumberedInclude> includeArrayFields) {
+        this.mapping = mapping;
+        this.ignoreUnmappedFields = ignoreUnmappedFields;
+        this.includeFields = includeFields;
+        this.excludeFields = excludeFields;
+        this.includeArrayFields = includeArrayFields;
+        this.root = new Node(null);
+    }
+
+    Node root() {
+        return root;
+    }
+}
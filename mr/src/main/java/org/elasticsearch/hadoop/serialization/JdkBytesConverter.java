@@ -30,7 +30,8 @@ public class JdkBytesConverter implements BytesConverter {
             return;
         }
         if (from instanceof BytesArray) {
-            ((BytesArray) from).copyTo(to);
+            // reference the content, no need to copy it
+            to.bytes((BytesArray) from);
             return;
         }
         // fall back toString()
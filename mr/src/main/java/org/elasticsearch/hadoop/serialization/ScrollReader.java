@@ -23,9 +23,11 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -40,7 +42,6 @@ import org.elasticsearch.hadoop.serialization.builder.ValueParsingCallback;
 import org.elasticsearch.hadoop.serialization.builder.ValueReader;
 import org.elasticsearch.hadoop.serialization.dto.mapping.Mapping;
 import org.elasticsearch.hadoop.serialization.field.FieldFilter;
-import org.elasticsearch.hadoop.serialization.field.FieldFilter.NumberedInclude;
 import org.elasticsearch.hadoop.serialization.handler.read.DeserializationErrorHandler;
 import org.elasticsearch.hadoop.serialization.handler.read.DeserializationFailure;
 import org.elasticsearch.hadoop.serialization.handler.SerdeErrorCollector;
@@ -137,7 +138,7 @@ public class ScrollReader implements Closeable {
         }
     }
 
-    public static class Scroll {
+    public static class Scroll implements Closeable {
         static Scroll empty(String scrollId) {
             return new Scroll(scrollId, 0L, true);
         }
@@ -145,28 +146,47 @@ public class ScrollReader implements Closeable {
         private final String scrollId;
         private final long total;
         private final List<Object[]> hits;
+        private final HitStream hitStream;
         private final boolean concluded;
         private final int numberOfHits;
         private final int numberOfSkippedHits;
+        private BytesArray lastSort;
 
         public Scroll(String scrollId, long total, boolean concluded) {
             this.scrollId = scrollId;
             this.total = total;
             this.hits = Collections.emptyList();
+            this.hitStream = null;
             this.concluded = concluded;
             this.numberOfHits = 0;
             this.numberOfSkippedHits = 0;
         }
 
         public Scroll(String scrollId, long total, List<Object[]> hits, int responseHits, int skippedHits) {
+            this(scrollId, total, hits, responseHits, skippedHits, null);
+        }
+
+        public Scroll(String scrollId, long total, List<Object[]> hits, int responseHits, int skippedHits, BytesArray lastSort) {
+            this.lastSort = lastSort;
             this.scrollId = scrollId;
             this.hits = hits;
+            this.hitStream = null;
             this.total = total;
             this.concluded = false;
             this.numberOfHits = responseHits;
             this.numberOfSkippedHits = skippedHits;
         }
 
+        private Scroll(String scrollId, long total, HitStream hitStream) {
+            this.scrollId = scrollId;
+            this.hits = null;
+            this.hitStream = hitStream;
+            this.total = total;
+            this.concluded = false;
+            this.numberOfHits = 0;
+            this.numberOfSkippedHits = 0;
+        }
+
         public String getScrollId() {
             return scrollId;
         }
@@ -175,20 +195,199 @@ public class ScrollReader implements Closeable {
             return total;
         }
 
+        /**
+         * Returns the sort values (as a json array) of the last hit in this response, available only when
+         * paging through search_after. For streamed scrolls, these are known only once all the hits have been read.
+         */
+        public BytesArray getLastSort() {
+            return (hitStream != null ? hitStream.lastSort : lastSort);
+        }
+
+        /**
+         * Returns the decoded hits of this scroll. Not available for streamed scrolls which decode their hits
+         * on demand; use {@link #iterator()} instead.
+         */
         public List<Object[]> getHits() {
+            Assert.isTrue(hitStream == null, "Hits of a streamed scroll can only be iterated");
             return hits;
         }
 
+        /**
+         * Iterates over the hits of this scroll. For streamed scrolls, each hit is decoded off the response
+         * as the iteration advances.
+         */
+        public Iterator<Object[]> iterator() {
+            return (hitStream != null ? hitStream : hits.iterator());
+        }
+
         public boolean isConcluded() {
             return concluded;
         }
 
         public int getNumberOfHits() {
-            return numberOfHits;
+            return (hitStream != null ? hitStream.responseHits : numberOfHits);
         }
 
         public int getNumberOfSkippedHits() {
-            return numberOfSkippedHits;
+            return (hitStream != null ? hitStream.skippedHits : numberOfSkippedHits);
+        }
+
+        /**
+         * Releases the underlying response of a streamed scroll, discarding any hits not yet read.
+         */
+        @Override
+        public void close() {
+            if (hitStream != null) {
+                hitStream.close();
+            }
+        }
+    }
+
+    /**
+     * Input stream recording the response bytes consumed by the parser, so that hits can be sliced out of the
+     * response (for error handling or raw json extraction). Unless the entire content is retained, the bytes
+     * preceding the hit currently parsed are discarded - this keeps the footprint to roughly one hit instead
+     * of the entire response.
+     */
+    private static class ResponseContent extends InputStream {
+        private final InputStream in;
+        private final BytesArray window;
+        private final boolean record;
+        private final boolean retainAll;
+        // absolute position of the first byte inside the window
+        private int windowStart = 0;
+
+        static ResponseContent buffered(BytesArray content) {
+            return new ResponseContent(new FastByteArrayInputStream(content), content, false, true);
+        }
+
+        static ResponseContent streaming(InputStream in, boolean retainAll) {
+            return new ResponseContent(in, new BytesArray(8 * 1024), true, retainAll);
+        }
+
+        private ResponseContent(InputStream in, BytesArray window, boolean record, boolean retainAll) {
+            this.in = in;
+            this.window = window;
+            this.record = record;
+            this.retainAll = retainAll;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = in.read();
+            if (record && b >= 0) {
+                window.add(b);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int read = in.read(b, off, len);
+            if (record && read > 0) {
+                window.add(b, off, read);
+            }
+            return read;
+        }
+
+        @Override
+        public int available() throws IOException {
+            return in.available();
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+
+        void discardBefore(int position) {
+            if (retainAll || position <= windowStart) {
+                return;
+            }
+            int discard = Math.min(position - windowStart, window.length());
+            byte[] bytes = window.bytes();
+            System.arraycopy(bytes, discard, bytes, 0, window.length() - discard);
+            window.size(window.length() - discard);
+            windowStart += discard;
+        }
+
+        // copies the given section since the window is reused once the parser moves on
+        BytesArray copy(int start, int stop) {
+            int length = stop - start;
+            byte[] section = new byte[length];
+            System.arraycopy(window.bytes(), window.offset() + start - windowStart, section, 0, length);
+            return new BytesArray(section);
+        }
+
+        BytesArray content() {
+            Assert.isTrue(retainAll, "Response content not retained");
+            return window;
+        }
+    }
+
+    /**
+     * Hits of a scroll response decoded one by one as they are requested, directly off the response stream.
+     * Expects the parser to be positioned on the first hit.
+     */
+    private class HitStream implements Iterator<Object[]>, Closeable {
+        private final Parser parser;
+        private final ResponseContent content;
+        private Object[] nextHit;
+        private boolean advance = false;
+        private boolean done = false;
+        private int responseHits = 0;
+        private int skippedHits = 0;
+        private int lastHitStart = -1;
+        private BytesArray lastSort;
+
+        HitStream(Parser parser, ResponseContent content) {
+            this.parser = parser;
+            this.content = content;
+        }
+
+        @Override
+        public boolean hasNext() {
+            while (nextHit == null && !done) {
+                Token token = (advance ? parser.nextToken() : parser.currentToken());
+                advance = true;
+                if (token == Token.END_ARRAY) {
+                    if (searchAfter && lastHitStart >= 0) {
+                        lastSort = sortValues(content, lastHitStart, parser.tokenCharOffset());
+                    }
+                    close();
+                    break;
+                }
+                responseHits++;
+                lastHitStart = parser.tokenCharOffset();
+                nextHit = readHit(parser, content);
+                if (nextHit == null) {
+                    skippedHits++;
+                }
+            }
+            return nextHit != null;
+        }
+
+        @Override
+        public Object[] next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException("No more hits available");
+            }
+            Object[] hit = nextHit;
+            nextHit = null;
+            return hit;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException("read-only operator");
+        }
+
+        @Override
+        public void close() {
+            if (!done) {
+                done = true;
+                parser.close();
+            }
         }
     }
 
@@ -196,28 +395,30 @@ public class ScrollReader implements Closeable {
 
     private final ValueReader reader;
     private final ValueParsingCallback parsingCallback;
-    private final Map<String, FieldType> esMapping;
+    private final FieldPathTrie fieldTrie;
     private final boolean trace = log.isTraceEnabled();
     private final boolean readMetadata;
     private boolean inMetadataSection;
     private final String metadataField;
     private final boolean returnRawJson;
     private final boolean ignoreUnmappedFields;
+    private final boolean streamHits;
+    private final boolean searchAfter;
 
     private boolean insideGeo = false;
 
-    private final List<NumberedInclude> includeFields;
-    private final List<String> excludeFields;
-    private final List<NumberedInclude> includeArrayFields;
     private List<IDeserializationErrorHandler> deserializationErrorHandlers;
 
     private static final String[] SCROLL_ID = new String[] { "_scroll_id" };
+    private static final String[] PIT_ID = new String[] { "pit_id" };
+    private static final String[] SORT = new String[] { "sort" };
     private static final String[] HITS = new String[] { "hits" };
     private static final String ID_FIELD = "_id";
     private static final String[] ID = new String[] { ID_FIELD };
     private static final String[] FIELDS = new String[] { "fields" };
     private static final String[] SOURCE = new String[] { "_source" };
     private static final String[] TOTAL = new String[] { "hits", "total" };
+    private static final String[] TOTAL_FIELD = new String[] { "total" };
 
     public ScrollReader(ScrollReaderConfigBuilder scrollConfig) {
         this.reader = scrollConfig.getReader();
@@ -227,69 +428,115 @@ public class ScrollReader implements Closeable {
         this.metadataField = scrollConfig.getMetadataName();
         this.returnRawJson = scrollConfig.getReturnRawJson();
         this.ignoreUnmappedFields = scrollConfig.getIgnoreUnmappedFields();
-        this.includeFields = FieldFilter.toNumberedFilter(scrollConfig.getIncludeFields());
-        this.excludeFields = scrollConfig.getExcludeFields();
-        this.includeArrayFields = FieldFilter.toNumberedFilter(scrollConfig.getIncludeArrayFields());
+        // raw json extraction needs the entire response to slice the hits out of it
+        this.streamHits = scrollConfig.getStreamHits() && !returnRawJson;
+        this.searchAfter = scrollConfig.getSearchAfter();
 
+        Map<String, FieldType> esMapping;
         Mapping mapping = scrollConfig.getResolvedMapping();
         if (mapping != null) {
             // optimize filtering
             if (ignoreUnmappedFields) {
                 mapping = mapping.filter(scrollConfig.getIncludeFields(), scrollConfig.getExcludeFields());
             }
-            this.esMapping = mapping.flatten();
+            esMapping = mapping.flatten();
         } else {
-            this.esMapping = Collections.emptyMap();
+            esMapping = Collections.emptyMap();
         }
+        // resolve the mapping and filters once per field path instead of once per field
+        this.fieldTrie = new FieldPathTrie(esMapping, ignoreUnmappedFields, FieldFilter.toNumberedFilter(scrollConfig.getIncludeFields()),
+                scrollConfig.getExcludeFields(), FieldFilter.toNumberedFilter(scrollConfig.getIncludeArrayFields()));
 
         this.deserializationErrorHandlers = scrollConfig.getErrorHandlerLoader().loadHandlers();
     }
 
+    /**
+     * Reads the given scroll response. Unless raw json is returned, the response is parsed as it is read
+     * from the stream without being copied first.
+     * If hits are streamed (see {@link ScrollReaderConfigBuilder#getStreamHits()}), only the scroll header is
+     * parsed upfront; the hits are decoded as the returned scroll is iterated and the stream is kept open
+     * until the hits are exhausted or the scroll is closed.
+     */
     public Scroll read(InputStream content) throws IOException {
         Assert.notNull(content);
 
-        //copy content
-        BytesArray copy = IOUtils.asBytes(content);
-        content = new FastByteArrayInputStream(copy);
+        ResponseContent responseContent;
+        if (returnRawJson) {
+            //copy content
+            BytesArray copy = IOUtils.asBytes(content);
 
-        if (log.isTraceEnabled()) {
-            log.trace("About to parse scroll content " + copy);
+            if (trace) {
+                log.trace("About to parse scroll content " + copy);
+            }
+            responseContent = ResponseContent.buffered(copy);
+        } else {
+            // when tracing retain the content to log it afterwards
+            responseContent = ResponseContent.streaming(content, trace && !streamHits);
         }
 
-        Parser parser = new JacksonJsonParser(content);
+        Parser parser = new JacksonJsonParser(responseContent);
 
+        boolean streaming = false;
         try {
-            return read(parser, copy);
+            Scroll scroll = read(parser, responseContent);
+            streaming = (scroll.hitStream != null);
+            if (trace && !returnRawJson && !streamHits) {
+                log.trace("Parsed scroll content " + responseContent.content());
+            }
+            return scroll;
         } finally {
-            parser.close();
+            if (!streaming) {
+                parser.close();
+            }
         }
     }
 
-    private Scroll read(Parser parser, BytesArray input) {
-        // get scroll_id
-        Token token = ParsingUtils.seek(parser, SCROLL_ID);
+    private Scroll read(Parser parser, ResponseContent content) {
+        // get scroll_id (or pit_id)
+        Token token = ParsingUtils.seek(parser, searchAfter ? PIT_ID : SCROLL_ID);
         Assert.isTrue(token == Token.VALUE_STRING, "invalid response");
         String scrollId = parser.text();
 
-        long totalHits = hitsTotal(parser);
+        long totalHits;
+        if (searchAfter) {
+            // the pages following the first one do not track the total hits hence why it might be missing
+            ParsingUtils.seek(parser, HITS);
+            token = ParsingUtils.seek(parser, TOTAL_FIELD, HITS);
+            // unknown total - already on hits/hits
+            totalHits = (token == Token.START_ARRAY ? -1 : hitsTotal(parser, token));
+        } else {
+            totalHits = hitsTotal(parser, ParsingUtils.seek(parser, TOTAL));
+        }
         // check hits/total
         if (totalHits == 0) {
             return Scroll.empty(scrollId);
         }
 
-        // move to hits/hits
-        token = ParsingUtils.seek(parser, HITS);
+        if (totalHits > 0) {
+            // move to hits/hits
+            token = ParsingUtils.seek(parser, HITS);
+        }
 
         // move through the list and for each hit, extract the _id and _source
         Assert.isTrue(token == Token.START_ARRAY, "invalid response");
 
+        if (streamHits) {
+            // Streamed scrolls conclude once a response has no hits
+            if (parser.nextToken() == Token.END_ARRAY) {
+                return new Scroll(scrollId, totalHits, true);
+            }
+            return new Scroll(scrollId, totalHits, new HitStream(parser, content));
+        }
+
         List<Object[]> results = new ArrayList<Object[]>();
         int responseHits = 0;
         int skippedHits = 0;
         int readHits = 0;
+        int lastHitStart = -1;
         for (token = parser.nextToken(); token != Token.END_ARRAY; token = parser.nextToken()) {
             responseHits++;
-            Object[] hit = readHit(parser, input);
+            lastHitStart = parser.tokenCharOffset();
+            Object[] hit = readHit(parser, content);
             if (hit != null) {
                 readHits++;
                 results.add(hit);
@@ -298,8 +545,15 @@ public class ScrollReader implements Closeable {
             }
         }
 
+        // the last hit (even if skipped) is still available in the content
+        BytesArray lastSort = null;
+        if (searchAfter && lastHitStart >= 0) {
+            lastSort = sortValues(content, lastHitStart, parser.tokenCharOffset());
+        }
+
         // convert the char positions into actual content
         if (returnRawJson) {
+            BytesArray input = content.content();
             // get all the longs
             int[] pos = new int[results.size() * 6];
             int offset = 0;
@@ -395,17 +649,49 @@ public class ScrollReader implements Closeable {
         }
 
         if (responseHits > 0) {
-            return new Scroll(scrollId, totalHits, results, responseHits, skippedHits);
+            return new Scroll(scrollId, totalHits, results, responseHits, skippedHits, lastSort);
         } else {
             // Scroll had no hits in the response, it must have concluded.
             return new Scroll(scrollId, totalHits, true);
         }
     }
 
-    private Object[] readHit(Parser parser, BytesArray input) {
+    // extracts the (raw) sort values of the hit within the given section
+    private static BytesArray sortValues(ResponseContent content, int hitStart, int hitStop) {
+        BytesArray section = content.copy(hitStart, hitStop);
+        // the token offset of an array element includes its leading separator
+        int begin = 0;
+        while (begin < section.length() && section.bytes()[begin] != '{') {
+            begin++;
+        }
+        BytesArray hit = new BytesArray(section.length() - begin);
+        hit.add(section.bytes(), begin, section.length() - begin);
+        Parser parser = new JacksonJsonParser(hit.bytes(), 0, hit.length());
+        try {
+            if (ParsingUtils.seek(parser, SORT) != Token.START_ARRAY) {
+                throw new EsHadoopParsingException("Paging through search_after requires sorted hits, found none in " + hit);
+            }
+            // the token offset might point to the preceding field
+            int start = parser.tokenCharOffset();
+            while (hit.bytes()[start] != '[') {
+                start++;
+            }
+            parser.skipChildren();
+            int stop = parser.tokenCharOffset() + 1;
+            byte[] sort = new byte[stop - start];
+            System.arraycopy(hit.bytes(), start, sort, 0, sort.length);
+            return new BytesArray(sort);
+        } finally {
+            parser.close();
+        }
+    }
+
+    private Object[] readHit(Parser parser, ResponseContent content) {
         Token t = parser.currentToken();
         Assert.isTrue(t == Token.START_OBJECT, "expected object, found " + t);
         int hitStartPos = parser.tokenCharOffset();
+        // previous hits are not needed anymore
+        content.discardBefore(hitStartPos);
         // Wrap the parser in a block aware parser so we can skip a hit if its parsing fails.
         BlockAwareJsonParser blockAwareJsonParser = new BlockAwareJsonParser(parser);
         // This is the parser that we will be using to parse a hit. Starts with the block parser and the main scroll,
@@ -435,7 +721,7 @@ public class ScrollReader implements Closeable {
 
                 // slice input data to create an input stream for the handler event
                 int hitEndPos = parser.tokenCharOffset();
-                BytesArray hitSection = new BytesArray(input.bytes(), hitStartPos, hitEndPos - hitStartPos + 1);
+                BytesArray hitSection = content.copy(hitStartPos, hitEndPos + 1);
 
                 // Make error event
                 List<String> passReasons = new ArrayList<String>();
@@ -556,7 +842,7 @@ public class ScrollReader implements Closeable {
                 if (t == Token.FIELD_NAME) {
                     if (!("fields".equals(name) || "_source".equals(name))) {
                         reader.beginField(absoluteName);
-                        value = read(absoluteName, parser.nextToken(), null, parser);
+                        value = read(absoluteName, parser.nextToken(), fieldTrie.root(), parser);
                         if (ID_FIELD.equals(name)) {
                             id = value;
                         }
@@ -599,7 +885,7 @@ public class ScrollReader implements Closeable {
                 parsingCallback.beginSource();
             }
 
-            data = read(StringUtils.EMPTY, t, null, parser);
+            data = read(StringUtils.EMPTY, t, fieldTrie.root(), parser);
 
             if (parsingCallback != null) {
                 parsingCallback.endSource();
@@ -636,7 +922,7 @@ public class ScrollReader implements Closeable {
             if (readMetadata) {
                 // skip sort (useless and is an array which triggers the row mapping which does not apply)
                 if (!"sort".equals(name)) {
-                    reader.addToMap(data, reader.wrapString(name), read(absoluteName, parser.nextToken(), null, parser));
+                    reader.addToMap(data, reader.wrapString(name), read(absoluteName, parser.nextToken(), fieldTrie.root(), parser));
                 }
                 else {
                     parser.nextToken();
@@ -669,20 +955,15 @@ public class ScrollReader implements Closeable {
         return result;
     }
 
-    private boolean shouldSkip(String absoluteName) {
+    private boolean shouldSkip(FieldPathTrie.Node field) {
         // when parsing geo structures, ignore filtering as depending on the
         // type, JSON can have an object structure
         // especially for geo shapes
         if (insideGeo) {
             return false;
         }
-        // if ignoring unmapped fields, the filters are already applied
-        if (ignoreUnmappedFields) {
-            return !esMapping.containsKey(absoluteName);
-        }
-        else {
-            return !FieldFilter.filter(absoluteName, includeFields, excludeFields).matched;
-        }
+        // if ignoring unmapped fields, the filters are already applied to the mapping
+        return field.filtered();
     }
 
     private Object[] readHitAsJson(Parser parser) {
@@ -822,13 +1103,10 @@ public class ScrollReader implements Closeable {
 
     }
 
-    private long hitsTotal(Parser parser) {
-        ParsingUtils.seek(parser, TOTAL);
-
+    private long hitsTotal(Parser parser, Token token) {
         // In ES 7.0, the "hits.total" field changed to be an object
         // with nested field "hits.total.value" holding the number.
         long hits = Long.MIN_VALUE;
-        Token token = parser.currentToken();
         if (token == Token.START_OBJECT) {
             String relation = null;
             token = parser.nextToken();
@@ -871,31 +1149,31 @@ public class ScrollReader implements Closeable {
         return hits;
     }
 
-    protected Object read(String fieldName, Token t, String fieldMapping, Parser parser) {
+    protected Object read(String fieldName, Token t, FieldPathTrie.Node field, Parser parser) {
         if (t == Token.START_ARRAY) {
-            return list(fieldName, fieldMapping, parser);
+            return list(fieldName, field, parser);
         }
 
         // handle nested nodes first
         else if (t == Token.START_OBJECT) {
             // Check if the object field is a nested object or a field that should be considered an array.
-            FieldType esType = mapping(fieldMapping, parser);
-            if ((esType != null && esType.equals(FieldType.NESTED)) || isArrayField(fieldMapping)) {
+            FieldType esType = mapping(field, parser);
+            if ((esType != null && esType.equals(FieldType.NESTED)) || field.array()) {
                 // If this field has the nested data type, then this object we are
                 // about to read is using the abbreviated single value syntax (no array brackets needed for nested fields
                 // that only have one nested element.)
-                return singletonList(fieldMapping, map(fieldMapping, parser), parser);
+                return singletonList(field, map(field, parser), parser);
             } else {
-                return map(fieldMapping, parser);
+                return map(field, parser);
             }
         }
-        FieldType esType = mapping(fieldMapping, parser);
+        FieldType esType = mapping(field, parser);
 
         if (t.isValue()) {
             String rawValue = parser.text();
             try {
-                if (isArrayField(fieldMapping)) {
-                    return singletonList(fieldMapping, parseValue(parser, esType), parser);
+                if (field.array()) {
+                    return singletonList(field, parseValue(parser, esType), parser);
                 } else {
                     return parseValue(parser, esType);
                 }
@@ -907,17 +1185,17 @@ public class ScrollReader implements Closeable {
     }
 
     // Same as read(String, Token, String) above, but does not include checking the current field name to see if it's an array.
-    protected Object readListItem(String fieldName, Token t, String fieldMapping, Parser parser) {
+    protected Object readListItem(String fieldName, Token t, FieldPathTrie.Node field, Parser parser) {
         if (t == Token.START_ARRAY) {
-            return list(fieldName, fieldMapping, parser);
+            return list(fieldName, field, parser);
         }
 
         // handle nested nodes first
         else if (t == Token.START_OBJECT) {
             // Don't need special handling for nested fields since this field is already in an array.
-            return map(fieldMapping, parser);
+            return map(field, parser);
         }
-        FieldType esType = mapping(fieldMapping, parser);
+        FieldType esType = mapping(field, parser);
 
         if (t.isValue()) {
             String rawValue = parser.text();
@@ -930,16 +1208,6 @@ public class ScrollReader implements Closeable {
         return null;
     }
 
-    private boolean isArrayField(String fieldName) {
-        // Test if the current field is marked as an array field in the include array property
-        if (fieldName != null) {
-            if (includeArrayFields != null && !includeArrayFields.isEmpty()) {
-                return FieldFilter.filter(fieldName, includeArrayFields, null, false).matched;
-            }
-        }
-        return false;
-    }
-
     private Object parseValue(Parser parser, FieldType esType) {
         Object obj;
         // special case of handing null (as text() will return "null")
@@ -953,7 +1221,7 @@ public class ScrollReader implements Closeable {
         return obj;
     }
 
-    protected Object list(String fieldName, String fieldMapping, Parser parser) {
+    protected Object list(String fieldName, FieldPathTrie.Node field, Parser parser) {
         Token t = parser.currentToken();
 
         if (t == null) {
@@ -963,11 +1231,11 @@ public class ScrollReader implements Closeable {
             t = parser.nextToken();
         }
 
-        Object array = reader.createArray(mapping(fieldMapping, parser));
+        Object array = reader.createArray(mapping(field, parser));
         // create only one element since with fields, we always get arrays which create unneeded allocations
         List<Object> content = new ArrayList<Object>(1);
         for (; parser.currentToken() != Token.END_ARRAY;) {
-            content.add(readListItem(fieldName, parser.currentToken(), fieldMapping, parser));
+            content.add(readListItem(fieldName, parser.currentToken(), field, parser));
         }
 
         // eliminate END_ARRAY
@@ -977,8 +1245,8 @@ public class ScrollReader implements Closeable {
         return array;
     }
 
-    protected Object singletonList(String fieldMapping, Object value, Parser parser) {
-        Object array = reader.createArray(mapping(fieldMapping, parser));
+    protected Object singletonList(FieldPathTrie.Node field, Object value, Parser parser) {
+        Object array = reader.createArray(mapping(field, parser));
         // create only one element since with fields, we always get arrays which create unneeded allocations
         List<Object> content = new ArrayList<Object>(1);
         content.add(value);
@@ -986,7 +1254,7 @@ public class ScrollReader implements Closeable {
         return array;
     }
 
-    protected Object map(String fieldMapping, Parser parser) {
+    protected Object map(FieldPathTrie.Node field, Parser parser) {
         Token t = parser.currentToken();
 
         if (t == null) {
@@ -998,9 +1266,9 @@ public class ScrollReader implements Closeable {
 
         boolean toggleGeo = false;
 
-        if (fieldMapping != null) {
+        if (field.path() != null) {
             // parse everything underneath without mapping
-            if (FieldType.isGeo(mapping(fieldMapping, parser))) {
+            if (FieldType.isGeo(mapping(field, parser))) {
                 toggleGeo = true;
                 insideGeo = true;
                 if (parsingCallback != null) {
@@ -1012,22 +1280,9 @@ public class ScrollReader implements Closeable {
 
         for (; parser.currentToken() != Token.END_OBJECT;) {
             String currentName = parser.currentName();
-            String nodeMapping = fieldMapping;
-
-            if (nodeMapping != null) {
-                nodeMapping = fieldMapping + "." + currentName;
-            }
-            else {
-                nodeMapping = currentName;
-            }
-
-            String absoluteName = StringUtils.stripFieldNameSourcePrefix(parser.absoluteName());
-
-            if (!absoluteName.equals(nodeMapping)) {
-                throw new EsHadoopParsingException("Different node mapping " + absoluteName + "|" + nodeMapping);
-            }
+            FieldPathTrie.Node child = field.child(currentName);
 
-            if (shouldSkip(absoluteName)) {
+            if (shouldSkip(child)) {
                 Token nt = parser.nextToken();
                 if (nt.isValue()) {
                     // consume and move on
@@ -1039,12 +1294,13 @@ public class ScrollReader implements Closeable {
                 }
             }
             else {
+                String absoluteName = child.path();
                 reader.beginField(absoluteName);
 
                 // Must point to field name
                 Object fieldName = reader.readValue(parser, currentName, FieldType.STRING);
                 // And then the value...
-                reader.addToMap(map, fieldName, read(absoluteName, parser.nextToken(), nodeMapping, parser));
+                reader.addToMap(map, fieldName, read(absoluteName, parser.nextToken(), child, parser));
                 reader.endField(absoluteName);
             }
         }
@@ -1063,8 +1319,8 @@ public class ScrollReader implements Closeable {
         return map;
     }
 
-    private FieldType mapping(String fieldMapping, Parser parser) {
-        FieldType esType = esMapping.get(fieldMapping);
+    private FieldType mapping(FieldPathTrie.Node field, Parser parser) {
+        FieldType esType = field.type();
 
         if (esType != null) {
             return esType;
@@ -46,6 +46,12 @@ public class ScrollReaderConfigBuilder {
     // Record Typing
     private boolean returnRawJson;
 
+    // Decode hits on demand
+    private boolean streamHits;
+
+    // Paging through search_after within a point in time instead of scroll
+    private boolean searchAfter = false;
+
     // Mappings
     private Mapping resolvedMapping;
     private boolean ignoreUnmappedFields;
@@ -66,6 +72,7 @@ public class ScrollReaderConfigBuilder {
 
         // Source defaults from Settings
         this.returnRawJson = settings.getOutputAsJson();
+        this.streamHits = settings.getScrollStream();
         this.ignoreUnmappedFields = settings.getReadMappingMissingFieldsIgnore();
         this.readMetadata = settings.getReadMetadata();
         this.metadataName = settings.getReadMetadataField();
@@ -94,6 +101,24 @@ public class ScrollReaderConfigBuilder {
         return this;
     }
 
+    public boolean getStreamHits() {
+        return streamHits;
+    }
+
+    public ScrollReaderConfigBuilder setStreamHits(boolean streamHits) {
+        this.streamHits = streamHits;
+        return this;
+    }
+
+    public boolean getSearchAfter() {
+        return searchAfter;
+    }
+
+    public ScrollReaderConfigBuilder setSearchAfter(boolean searchAfter) {
+        this.searchAfter = searchAfter;
+        return this;
+    }
+
     public Mapping getResolvedMapping() {
         return resolvedMapping;
     }
@@ -40,11 +40,12 @@ class JsonScriptTemplateBulk extends JsonTemplatedBulk {
 
     @Override
     protected Object preProcess(Object object, BytesArray storage) {
-        // serialize the json early on and copy it to storage
+        // serialize the json early on
         Assert.notNull(object, "Empty/null JSON document given...");
 
+        boolean upsert = ConfigurationOptions.ES_OPERATION_UPSERT.equals(settings.getOperation());
         BytesArray ba = null;
-        if (ConfigurationOptions.ES_OPERATION_UPSERT.equals(settings.getOperation())) {
+        if (upsert) {
             ba = storage;
         }
         else {
@@ -53,13 +54,14 @@ class JsonScriptTemplateBulk extends JsonTemplatedBulk {
         }
 
         // write the doc to a temporary space
-        jsonWriter.convert(object, ba);
+        ba = convert(object, ba);
 
         if (log.isTraceEnabled()) {
             log.trace(String.format("About to extract information from [%s]", ba));
         }
 
         jsonExtractors.process(ba);
-        return storage;
+        // only upserts send the document itself
+        return (upsert ? ba : storage);
     }
 }
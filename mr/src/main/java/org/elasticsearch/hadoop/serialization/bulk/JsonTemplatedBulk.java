@@ -41,6 +41,7 @@ class JsonTemplatedBulk extends TemplatedBulk {
     protected final JsonFieldExtractors jsonExtractors;
     protected final BytesConverter jsonWriter;
     protected final Settings settings;
+    private final BytesArray document = new BytesArray(0);
 
     public JsonTemplatedBulk(Collection<Object> beforeObject, Collection<Object> afterObject,
             JsonFieldExtractors jsonExtractors, Settings settings) {
@@ -52,21 +53,37 @@ class JsonTemplatedBulk extends TemplatedBulk {
 
     @Override
     protected Object preProcess(Object object, BytesArray storage) {
-        // serialize the json early on and copy it to storage
+        // serialize the json early on
         Assert.notNull(object, "Empty/null JSON document given...");
 
-        jsonWriter.convert(object, storage);
+        BytesArray json = convert(object, storage);
 
         if (log.isTraceEnabled()) {
-            log.trace(String.format("About to extract information from [%s]", storage));
+            log.trace(String.format("About to extract information from [%s]", json));
         }
 
-        jsonExtractors.process(storage);
-        return storage;
+        jsonExtractors.process(json);
+        return json;
+    }
+
+    /**
+     * Converts the JSON document using the given (empty) storage. Documents already available as bytes are
+     * referenced by the converter instead of being copied, in which case the returned array points to them and
+     * the storage is left untouched (so it is never written into on the next document).
+     */
+    protected BytesArray convert(Object object, BytesArray storage) {
+        document.bytes(storage);
+        jsonWriter.convert(object, document);
+        if (document.bytes() != storage.bytes() && document.bytes().length > storage.capacity()) {
+            // grow the storage alongside the documents so the conversions don't have to allocate every time
+            storage.bytes(new byte[document.bytes().length], 0);
+        }
+        return document;
     }
 
     @Override
-    protected void doWriteObject(Object object, BytesArray storage, ValueWriter<?> writer) {
-        // no-op - the object has been already serialized to storage
+    protected BytesArray doWriteObject(Object object, BytesArray storage, ValueWriter<?> writer) {
+        // the object has been already serialized
+        return (BytesArray) object;
     }
 }
@@ -36,9 +36,10 @@ class ScriptTemplateBulk extends TemplatedBulk {
     }
 
     @Override
-    protected void doWriteObject(Object object, BytesArray storage, ValueWriter<?> writer) {
+    protected BytesArray doWriteObject(Object object, BytesArray storage, ValueWriter<?> writer) {
         if (ConfigurationOptions.ES_OPERATION_UPSERT.equals(settings.getOperation())) {
-            super.doWriteObject(object, storage, writer);
+            return super.doWriteObject(object, storage, writer);
         }
+        return storage;
     }
 }
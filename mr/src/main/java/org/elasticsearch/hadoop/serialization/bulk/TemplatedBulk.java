@@ -55,8 +55,7 @@ class TemplatedBulk implements BulkCommand {
         // write before object
         writeTemplate(beforeObject, processed);
         // write object
-        doWriteObject(processed, scratchPad, valueWriter);
-        ref.add(scratchPad);
+        ref.add(doWriteObject(processed, scratchPad, valueWriter));
         // writer after object
         writeTemplate(afterObject, processed);
         return ref;
@@ -66,9 +65,13 @@ class TemplatedBulk implements BulkCommand {
         return object;
     }
 
-    protected void doWriteObject(Object object, BytesArray storage, ValueWriter<?> writer) {
+    /**
+     * Writes the object and returns the bytes holding it (typically the given storage).
+     */
+    protected BytesArray doWriteObject(Object object, BytesArray storage, ValueWriter<?> writer) {
         FastByteArrayOutputStream bos = new FastByteArrayOutputStream(storage);
         ContentBuilder.generate(bos, writer).value(object).flush().close();
+        return storage;
     }
 
     private void writeTemplate(Collection<Object> template, Object object) {
@@ -32,6 +32,7 @@ public class Field implements Serializable {
     private final String name;
     private final FieldType type;
     private final Field[] properties;
+    private final boolean verbatim;
 
     public Field(String name, FieldType type) {
         this(name, type, NO_FIELDS);
@@ -42,9 +43,14 @@ public class Field implements Serializable {
     }
 
     Field(String name, FieldType type, Field[] properties) {
+        this(name, type, properties, true);
+    }
+
+    Field(String name, FieldType type, Field[] properties, boolean verbatim) {
         this.name = name;
         this.type = type;
         this.properties = properties;
+        this.verbatim = verbatim;
     }
 
     public Field[] properties() {
@@ -59,6 +65,14 @@ public class Field implements Serializable {
         return name;
     }
 
+    /**
+     * Whether the indexed values (and thus the doc values) are those of the source. Not the case for keywords
+     * with a normalizer or an ignore_above limit.
+     */
+    public boolean verbatim() {
+        return verbatim;
+    }
+
     @Override
     public String toString() {
         return String.format("%s=%s", name, ((type == FieldType.OBJECT || type == FieldType.NESTED) ? Arrays.toString(properties) : type));
@@ -112,7 +112,8 @@ public final class FieldParser {
                     // primitive types are handled on the spot
                     // while compound ones are not
                     if (!FieldType.isCompound(fieldType)) {
-                        return new Field(key, fieldType);
+                        boolean verbatim = !content.containsKey("normalizer") && !content.containsKey("ignore_above");
+                        return new Field(key, fieldType, Field.NO_FIELDS, verbatim);
                     }
                 }
                 else {
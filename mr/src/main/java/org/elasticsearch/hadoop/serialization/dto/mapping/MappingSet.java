@@ -102,10 +102,15 @@ public class MappingSet implements Serializable {
                 FieldType resolvedType = resolveTypeConflict(fullName, previousField.type(), field.type());
                 // If successful, update the previous field entry with the updated field type
                 if (!previousField.type().equals(resolvedType)) {
-                    previousField = new Field(previousField.name(), resolvedType, previousField.properties());
+                    previousField = new Field(previousField.name(), resolvedType, previousField.properties(), previousField.verbatim());
                     entry[0] = previousField;
                 }
             }
+            // the values are verbatim only if they are in every mapping
+            if (previousField.verbatim() && !field.verbatim()) {
+                previousField = new Field(previousField.name(), previousField.type(), previousField.properties(), false);
+                entry[0] = previousField;
+            }
             // If it does not conflict, visit it's children if it has them
             if (FieldType.isCompound(field.type())) {
                 Map<String, Object[]> subTable = (Map<String, Object[]>)entry[1];
@@ -18,49 +18,124 @@
  */
 package org.elasticsearch.hadoop.serialization.field;
 
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.zone.ZoneRules;
 import java.util.Calendar;
 
-import org.elasticsearch.hadoop.util.Constants;
+import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
 import org.elasticsearch.hadoop.util.DateUtils;
 import org.elasticsearch.hadoop.util.StringUtils;
 
-
+/**
+ * Formats ISO8601 dates through a {@link DateTimeFormatter} pattern (in the JVM default time zone).
+ * Since consecutive documents typically fall within the same index, the last formatted value is cached along
+ * with its time bucket (day, hour, minute... based on the finest field in the pattern) and reused for any date
+ * within it - common ISO8601 dates being checked against it without any parsing or allocation.
+ * Thread-safe.
+ */
 public class DateIndexFormatter implements IndexFormatter {
 
+    private static final long MILLIS_PER_SECOND = 1000L;
+    private static final long MILLIS_PER_MINUTE = 60 * MILLIS_PER_SECOND;
+    private static final long MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+    private static final long MILLIS_PER_DAY = 24 * MILLIS_PER_HOUR;
+
+    private static class Bucket {
+        // local (wall clock) time range
+        final long start;
+        final long end;
+        final String value;
+
+        Bucket(long start, long end, String value) {
+            this.start = start;
+            this.end = end;
+            this.value = value;
+        }
+    }
+
+    private final ZoneId zone;
+    private final ZoneRules zoneRules;
+    private final ZoneOffset fixedOffset;
+
     private String format;
-    private SimpleDateFormat dateFormat;
+    private DateTimeFormatter dateFormat;
+    // 0 means no caching
+    private long bucketSize;
+    private volatile Bucket last;
+
+    public DateIndexFormatter() {
+        this(ZoneId.systemDefault());
+    }
+
+    DateIndexFormatter(ZoneId zone) {
+        this.zone = zone;
+        this.zoneRules = zone.getRules();
+        this.fixedOffset = (zoneRules.isFixedOffset() ? zoneRules.getOffset(Instant.EPOCH) : null);
+    }
 
     @Override
     public void configure(String format) {
         this.format = format;
-        format = fixDateForJdk(format);
-        this.dateFormat = new SimpleDateFormat(format);
+        try {
+            this.dateFormat = DateTimeFormatter.ofPattern(format);
+        } catch (IllegalArgumentException ex) {
+            throw new EsHadoopIllegalArgumentException(String.format("Invalid date format [%s] - %s", format, ex.getMessage()), ex);
+        }
+        this.bucketSize = bucketSize(format);
+        this.last = null;
     }
 
     /**
-     * Work-around for year formatting in JDK 6 vs 7+.
-     * JDK6: does not know about 'YYYY' (only 'yyyy'). Considers 'y' and 'yyy' as 'yy'.
-     * JDK7: understands both 'YYYY' and 'yyyy'. Considers 'y' and 'yyy' as 'yyyy'
-     *
-     * This method checks the pattern and converts it into JDK7 when running on JDK6.
+     * Returns the time range (in millis) covered by the finest field of the pattern.
      */
-    private String fixDateForJdk(String format) {
-        if (Constants.JRE_IS_MINIMUM_JAVA7) {
-            return format;
+    static long bucketSize(String format) {
+        long size = MILLIS_PER_DAY;
+        boolean quoted = false;
+        for (int i = 0; i < format.length(); i++) {
+            char c = format.charAt(i);
+            if (c == '\'') {
+                quoted = !quoted;
+                continue;
+            }
+            if (quoted) {
+                continue;
+            }
+            switch (c) {
+            case 'S':
+            case 'n':
+            case 'N':
+            case 'A':
+            // time zone names and offsets
+            case 'z':
+            case 'Z':
+            case 'X':
+            case 'x':
+            case 'V':
+            case 'O':
+            case 'v':
+                return 0;
+            case 's':
+                size = Math.min(size, MILLIS_PER_SECOND);
+                break;
+            case 'm':
+                size = Math.min(size, MILLIS_PER_MINUTE);
+                break;
+            case 'H':
+            case 'h':
+            case 'K':
+            case 'k':
+            case 'a':
+                size = Math.min(size, MILLIS_PER_HOUR);
+                break;
+            default:
+                // date fields
+            }
         }
-        // JDK 6 - fix year formatting
-
-        // a. lower case Y to y
-        if (format.contains("Y")) {
-            format = format.replace("Y", "y");
-        }
-
-        // gotta love regex
-        // use lookahead to match isolated y/yyy with yyyy
-        format = format.replaceAll("((?<!y)(?:y|yyy)(?!y))", "yyyy");
-
-        return format;
+        return size;
     }
 
     @Override
@@ -69,8 +144,150 @@ public class DateIndexFormatter implements IndexFormatter {
             return null;
         }
 
+        long local = localMillis(value);
+        Bucket bucket = last;
+        if (bucket != null && local >= bucket.start && local < bucket.end) {
+            return bucket.value;
+        }
+
+        LocalDateTime dateTime = LocalDateTime.ofEpochSecond(Math.floorDiv(local, MILLIS_PER_SECOND),
+                (int) Math.floorMod(local, MILLIS_PER_SECOND) * 1000000, ZoneOffset.UTC);
+        String formatted = dateFormat.format(dateTime.atZone(zone));
+        if (bucketSize > 0) {
+            long start = Math.floorDiv(local, bucketSize) * bucketSize;
+            last = new Bucket(start, start + bucketSize, formatted);
+        }
+        return formatted;
+    }
+
+    /**
+     * Returns the wall clock time (in the formatter time zone) of the given date as millis since the epoch.
+     * Handles the common ISO8601 forms (yyyy-MM-dd['T'HH[:mm[:ss[.SSS]]][offset]]) directly, falling back to
+     * {@link DateUtils#parseDate(String)} for the rest.
+     */
+    private long localMillis(String value) {
+        int length = value.length();
+        if (length < 10 || value.charAt(4) != '-' || value.charAt(7) != '-') {
+            return parseFallback(value);
+        }
+        int year = digits(value, 0, 4);
+        int month = digits(value, 5, 2);
+        int day = digits(value, 8, 2);
+        if (year < 0 || month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)) {
+            return parseFallback(value);
+        }
+
+        long millisOfDay = 0;
+        int pos = 10;
+        if (pos < length) {
+            if (value.charAt(pos) != 'T') {
+                return parseFallback(value);
+            }
+            int hour = digits(value, pos + 1, 2);
+            int minute = 0, second = 0, millis = 0;
+            pos += 3;
+            if (pos < length && value.charAt(pos) == ':') {
+                minute = digits(value, pos + 1, 2);
+                pos += 3;
+                if (pos < length && value.charAt(pos) == ':') {
+                    second = digits(value, pos + 1, 2);
+                    pos += 3;
+                    if (pos < length && (value.charAt(pos) == '.' || value.charAt(pos) == ',')) {
+                        int start = ++pos;
+                        int scale = 100;
+                        for (; pos < length && Character.isDigit(value.charAt(pos)); pos++) {
+                            millis += (value.charAt(pos) - '0') * scale;
+                            scale /= 10;
+                        }
+                        if (pos == start) {
+                            return parseFallback(value);
+                        }
+                    }
+                }
+            }
+            if (hour < 0 || hour > 23 || minute < 0 || minute > 59 || second < 0 || second > 59) {
+                return parseFallback(value);
+            }
+            millisOfDay = hour * MILLIS_PER_HOUR + minute * MILLIS_PER_MINUTE + second * MILLIS_PER_SECOND + millis;
+
+            if (pos < length) {
+                long offset;
+                char c = value.charAt(pos);
+                if (c == 'Z' && pos + 1 == length) {
+                    offset = 0;
+                }
+                else if (c == '+' || c == '-') {
+                    int hours = digits(value, pos + 1, 2);
+                    int minutes = 0;
+                    pos += 3;
+                    if (pos < length) {
+                        if (value.charAt(pos) == ':') {
+                            pos++;
+                        }
+                        minutes = digits(value, pos, 2);
+                        pos += 2;
+                    }
+                    if (hours < 0 || hours > 18 || minutes < 0 || minutes > 59 || pos != length) {
+                        return parseFallback(value);
+                    }
+                    offset = (hours * MILLIS_PER_HOUR + minutes * MILLIS_PER_MINUTE) * (c == '-' ? -1 : 1);
+                }
+                else {
+                    return parseFallback(value);
+                }
+                return toLocal(daysSinceEpoch(year, month, day) * MILLIS_PER_DAY + millisOfDay - offset);
+            }
+        }
+        return daysSinceEpoch(year, month, day) * MILLIS_PER_DAY + millisOfDay;
+    }
+
+    private long parseFallback(String value) {
         Calendar calendar = DateUtils.parseDate(value);
-        dateFormat.setCalendar(calendar);
-        return dateFormat.format(calendar.getTime());
+        return toLocal(calendar.getTimeInMillis());
+    }
+
+    private long toLocal(long epochMillis) {
+        ZoneOffset offset = (fixedOffset != null ? fixedOffset : zoneRules.getOffset(Instant.ofEpochMilli(epochMillis)));
+        return epochMillis + offset.getTotalSeconds() * MILLIS_PER_SECOND;
+    }
+
+    // returns -1 if the characters are not all digits
+    private static int digits(String value, int start, int count) {
+        if (start + count > value.length()) {
+            return -1;
+        }
+        int result = 0;
+        for (int i = start; i < start + count; i++) {
+            char c = value.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            result = result * 10 + (c - '0');
+        }
+        return result;
+    }
+
+    private static int daysInMonth(int year, int month) {
+        switch (month) {
+        case 2:
+            return ((year % 4 == 0 && year % 100 != 0) || year % 400 == 0) ? 29 : 28;
+        case 4:
+        case 6:
+        case 9:
+        case 11:
+            return 30;
+        default:
+            return 31;
+        }
+    }
+
+    // days since 1970-01-01 for the given proleptic Gregorian date
+    private static long daysSinceEpoch(int year, int month, int day) {
+        long y = (month <= 2 ? year - 1 : year);
+        long era = Math.floorDiv(y, 400);
+        long yearOfEra = y - era * 400;
+        long dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        long dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
     }
 }
@@ -28,7 +28,7 @@ import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.rest.Resource;
 import org.elasticsearch.hadoop.serialization.ParsingUtils;
 import org.elasticsearch.hadoop.serialization.dto.mapping.MappingUtils;
-import org.elasticsearch.hadoop.serialization.json.JacksonJsonParser;
+import org.elasticsearch.hadoop.serialization.json.JsonValueScanner;
 import org.elasticsearch.hadoop.util.BytesArray;
 import org.elasticsearch.hadoop.util.ObjectUtils;
 import org.elasticsearch.hadoop.util.StringUtils;
@@ -44,6 +44,7 @@ public class JsonFieldExtractors {
 
     private final List<Object> results = new ArrayList<Object>(6);
     private String[] paths;
+    private JsonValueScanner scanner;
 
     private FieldExtractor id, parent, routing, ttl, version, timestamp;
     private AbstractIndexExtractor indexExtractor;
@@ -135,6 +136,7 @@ public class JsonFieldExtractors {
         }
 
         paths = jsonPaths.toArray(new String[jsonPaths.size()]);
+        scanner = new JsonValueScanner(paths);
     }
 
     private void initAndAdd(String fieldName, List<String> pathList, List<FieldExtractor> results) {
@@ -210,7 +212,7 @@ public class JsonFieldExtractors {
             log.trace(String.format("About to look for paths [%s] in doc [%s]", Arrays.toString(paths), storage));
         }
 
-        results.addAll(ParsingUtils.values(new JacksonJsonParser(storage.bytes(), 0, storage.length()), paths));
+        results.addAll(scanner.values(storage.bytes(), storage.offset(), storage.length()));
     }
 
     public FieldExtractor params() {
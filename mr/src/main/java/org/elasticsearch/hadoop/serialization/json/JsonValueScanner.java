@@ -0,0 +1,409 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.serialization.json;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.elasticsearch.hadoop.serialization.EsHadoopSerializationException;
+import org.elasticsearch.hadoop.serialization.ParsingUtils;
+import org.elasticsearch.hadoop.serialization.bulk.RawJson;
+import org.elasticsearch.hadoop.util.StringUtils;
+
+/**
+ * Byte-level scanner extracting the values of a fixed set of (dot separated) paths out of a JSON document.
+ * Unlike {@link ParsingUtils#values(org.elasticsearch.hadoop.serialization.Parser, String...)} no tokens are created:
+ * field names are compared against the paths as raw bytes, the content that is not looked for is skipped without being
+ * decoded and the scanning stops as soon as all the paths have been found.
+ * Values are returned as {@link String}, {@link Number}, {@link Boolean}, <code>null</code> or {@link RawJson}
+ * (for objects and arrays), {@link ParsingUtils#NOT_FOUND} marking the missing paths.
+ * Not thread-safe.
+ */
+public class JsonValueScanner {
+
+    private final String[][] paths;
+    private final byte[][][] rawPaths;
+    private final int[] allPaths;
+
+    private final Object[] values;
+    private final boolean[] found;
+    private int remaining;
+
+    private byte[] bytes;
+    private int pos;
+    private int limit;
+
+    public JsonValueScanner(String... paths) {
+        int count = paths.length;
+        this.paths = new String[count][];
+        this.rawPaths = new byte[count][][];
+        this.allPaths = new int[count];
+        for (int i = 0; i < count; i++) {
+            List<String> tokens = StringUtils.tokenize(paths[i], ".");
+            this.paths[i] = tokens.toArray(new String[tokens.size()]);
+            this.rawPaths[i] = new byte[this.paths[i].length][];
+            for (int level = 0; level < this.paths[i].length; level++) {
+                this.rawPaths[i][level] = StringUtils.toUTF(this.paths[i][level]);
+            }
+            allPaths[i] = i;
+        }
+        this.values = new Object[count];
+        this.found = new boolean[count];
+    }
+
+    public List<Object> values(byte[] bytes, int offset, int length) {
+        this.bytes = bytes;
+        this.pos = offset;
+        this.limit = offset + length;
+
+        Arrays.fill(values, null);
+        Arrays.fill(found, false);
+        remaining = paths.length;
+
+        try {
+            if (remaining > 0) {
+                skipWhitespace();
+                if (pos < limit && bytes[pos] == '{') {
+                    scanObject(allPaths, allPaths.length, 0);
+                }
+            }
+        } finally {
+            this.bytes = null;
+        }
+
+        List<Object> matches = new ArrayList<Object>(paths.length);
+        for (int i = 0; i < paths.length; i++) {
+            matches.add(found[i] ? values[i] : ParsingUtils.NOT_FOUND);
+        }
+        return matches;
+    }
+
+    /**
+     * Scans the object starting at the current position for the candidate paths (matching the document up to this level).
+     * Returns false once all paths have been found (and the scanning can stop).
+     */
+    private boolean scanObject(int[] candidates, int candidateCount, int level) {
+        // skip '{'
+        pos++;
+        while (true) {
+            skipWhitespace();
+            byte b = bytes[pos];
+            if (b == '}') {
+                pos++;
+                return true;
+            }
+            if (b == ',') {
+                pos++;
+                continue;
+            }
+            if (b != '"') {
+                throw unexpected("field name");
+            }
+
+            int nameStart = pos + 1;
+            boolean escaped = skipString();
+            int nameEnd = pos - 1;
+
+            skipWhitespace();
+            if (bytes[pos] != ':') {
+                throw unexpected("':'");
+            }
+            pos++;
+            skipWhitespace();
+
+            int[] nextLevel = null;
+            int nextCount = 0;
+            boolean valueRead = false;
+            Object value = null;
+
+            for (int c = 0; c < candidateCount; c++) {
+                int path = candidates[c];
+                if (found[path] || !nameMatches(path, level, nameStart, nameEnd, escaped)) {
+                    continue;
+                }
+                if (paths[path].length - 1 == level) {
+                    if (!valueRead) {
+                        value = readValue();
+                        valueRead = true;
+                    }
+                    values[path] = value;
+                    found[path] = true;
+                    remaining--;
+                } else {
+                    if (nextLevel == null) {
+                        nextLevel = new int[candidateCount];
+                    }
+                    nextLevel[nextCount++] = path;
+                }
+            }
+
+            if (remaining == 0) {
+                return false;
+            }
+            if (!valueRead) {
+                if (nextLevel != null && bytes[pos] == '{') {
+                    if (!scanObject(nextLevel, nextCount, level + 1)) {
+                        return false;
+                    }
+                } else {
+                    skipValue();
+                }
+            }
+        }
+    }
+
+    private boolean nameMatches(int path, int level, int start, int end, boolean escaped) {
+        if (level >= paths[path].length) {
+            return false;
+        }
+        if (escaped) {
+            return paths[path][level].equals(decodeString(start, end));
+        }
+        byte[] name = rawPaths[path][level];
+        if (name.length != end - start) {
+            return false;
+        }
+        for (int i = 0; i < name.length; i++) {
+            if (name[i] != bytes[start + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private Object readValue() {
+        byte b = bytes[pos];
+        switch (b) {
+        case '"':
+            int start = pos + 1;
+            boolean escaped = skipString();
+            return (escaped ? decodeString(start, pos - 1) : StringUtils.asUTFString(bytes, start, pos - 1 - start));
+        case '{':
+        case '[':
+            int from = pos;
+            skipValue();
+            return new RawJson(compact(from, pos));
+        case 't':
+            return literal("true", Boolean.TRUE);
+        case 'f':
+            return literal("false", Boolean.FALSE);
+        case 'n':
+            return literal("null", null);
+        default:
+            return readNumber();
+        }
+    }
+
+    private Object literal(String literal, Object value) {
+        if (limit - pos < literal.length()) {
+            throw endOfDocument();
+        }
+        for (int i = 0; i < literal.length(); i++) {
+            if (bytes[pos + i] != literal.charAt(i)) {
+                throw unexpected("value");
+            }
+        }
+        pos += literal.length();
+        return value;
+    }
+
+    // same number types as Jackson: int, long, BigInteger or double
+    private Number readNumber() {
+        int start = pos;
+        boolean integral = true;
+        while (pos < limit) {
+            byte b = bytes[pos];
+            if (b >= '0' && b <= '9' || b == '-' || b == '+') {
+                pos++;
+            } else if (b == '.' || b == 'e' || b == 'E') {
+                integral = false;
+                pos++;
+            } else {
+                break;
+            }
+        }
+        if (start == pos) {
+            throw unexpected("value");
+        }
+        String number = StringUtils.asUTFString(bytes, start, pos - start);
+        try {
+            if (integral) {
+                if (pos - start <= 18) {
+                    long value = Long.parseLong(number);
+                    if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                        return Integer.valueOf((int) value);
+                    }
+                    return Long.valueOf(value);
+                }
+                BigInteger value = new BigInteger(number);
+                return (value.bitLength() < 64 ? (Number) Long.valueOf(value.longValue()) : value);
+            }
+            return Double.valueOf(number);
+        } catch (NumberFormatException ex) {
+            throw new EsHadoopSerializationException(String.format("Invalid number [%s] in JSON document", number), ex);
+        }
+    }
+
+    /**
+     * Skips the string starting at the current position (on the opening quote), placing it after the closing quote.
+     * Returns whether the string contains escape sequences.
+     */
+    private boolean skipString() {
+        boolean escaped = false;
+        pos++;
+        while (pos < limit) {
+            byte b = bytes[pos++];
+            if (b == '"') {
+                return escaped;
+            }
+            if (b == '\\') {
+                escaped = true;
+                pos++;
+            }
+        }
+        throw endOfDocument();
+    }
+
+    private void skipValue() {
+        byte b = bytes[pos];
+        if (b == '"') {
+            skipString();
+        } else if (b == '{' || b == '[') {
+            int depth = 0;
+            do {
+                if (pos >= limit) {
+                    throw endOfDocument();
+                }
+                b = bytes[pos];
+                if (b == '"') {
+                    skipString();
+                    continue;
+                }
+                if (b == '{' || b == '[') {
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                }
+                pos++;
+            } while (depth > 0);
+        } else {
+            // scalar - read up to the next separator
+            while (pos < limit) {
+                b = bytes[pos];
+                if (b == ',' || b == '}' || b == ']' || isWhitespace(b)) {
+                    break;
+                }
+                pos++;
+            }
+        }
+    }
+
+    private void skipWhitespace() {
+        while (pos < limit && isWhitespace(bytes[pos])) {
+            pos++;
+        }
+        if (pos >= limit) {
+            throw endOfDocument();
+        }
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\n' || b == '\r' || b == '\t';
+    }
+
+    // raw JSON of an object/array, minus the insignificant whitespace
+    private String compact(int start, int end) {
+        byte[] out = new byte[end - start];
+        int length = 0;
+        boolean inString = false;
+        for (int i = start; i < end; i++) {
+            byte b = bytes[i];
+            if (inString) {
+                if (b == '\\') {
+                    out[length++] = b;
+                    b = bytes[++i];
+                } else if (b == '"') {
+                    inString = false;
+                }
+            } else if (b == '"') {
+                inString = true;
+            } else if (isWhitespace(b)) {
+                continue;
+            }
+            out[length++] = b;
+        }
+        return StringUtils.asUTFString(out, 0, length);
+    }
+
+    private String decodeString(int start, int end) {
+        String raw = StringUtils.asUTFString(bytes, start, end - start);
+        StringBuilder sb = new StringBuilder(raw.length());
+        for (int i = 0; i < raw.length(); i++) {
+            char c = raw.charAt(i);
+            if (c != '\\') {
+                sb.append(c);
+                continue;
+            }
+            c = raw.charAt(++i);
+            switch (c) {
+            case 'b':
+                sb.append('\b');
+                break;
+            case 'f':
+                sb.append('\f');
+                break;
+            case 'n':
+                sb.append('\n');
+                break;
+            case 'r':
+                sb.append('\r');
+                break;
+            case 't':
+                sb.append('\t');
+                break;
+            case 'u':
+                if (i + 5 > raw.length()) {
+                    throw new EsHadoopSerializationException(String.format("Invalid unicode escape in JSON string [%s]", raw));
+                }
+                try {
+                    sb.append((char) Integer.parseInt(raw.substring(i + 1, i + 5), 16));
+                } catch (NumberFormatException ex) {
+                    throw new EsHadoopSerializationException(String.format("Invalid unicode escape in JSON string [%s]", raw), ex);
+                }
+                i += 4;
+                break;
+            default:
+                // '"', '\\' and '/'
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    private EsHadoopSerializationException endOfDocument() {
+        return new EsHadoopSerializationException(String.format("Unexpected end of JSON document at position [%d]", limit));
+    }
+
+    private EsHadoopSerializationException unexpected(String expected) {
+        return new EsHadoopSerializationException(String.format("Invalid JSON document; expected %s at position [%d] but found [%s]",
+                expected, pos, (pos < limit ? String.valueOf((char) bytes[pos]) : "EOF")));
+    }
+}
@@ -69,6 +69,38 @@ public class BytesRef {
         }
     }
 
+    /**
+     * Copies the bytes up to (and excluding) the first occurrence of the given delimiter or all of them if there is none.
+     * Used for reading just the header line of a bulk entry.
+     */
+    public void copyTo(BytesArray to, byte delimiter) {
+        if (list == null) {
+            return;
+        }
+        for (Object ref : list) {
+            byte[] bytes;
+            int offset, length;
+            if (ref instanceof BytesArray) {
+                BytesArray ba = (BytesArray) ref;
+                bytes = ba.bytes();
+                offset = ba.offset();
+                length = ba.length();
+            }
+            else {
+                bytes = (byte[]) ref;
+                offset = 0;
+                length = bytes.length;
+            }
+            for (int i = offset; i < offset + length; i++) {
+                if (bytes[i] == delimiter) {
+                    to.add(bytes, offset, i - offset);
+                    return;
+                }
+            }
+            to.add(bytes, offset, length);
+        }
+    }
+
     public void reset() {
         if (list != null) {
             list.clear();
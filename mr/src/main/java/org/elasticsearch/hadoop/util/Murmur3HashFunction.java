@@ -0,0 +1,97 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.util;
+
+// taken from org.elasticsearch.cluster.routing.Murmur3HashFunction and org.apache.lucene.util.StringHelper
+/**
+ * Hash function used by Elasticsearch (2.0 and higher) to compute the shard a routing value (by default the document id)
+ * resolves to.
+ */
+public abstract class Murmur3HashFunction {
+
+    /**
+     * Hashes the given routing value the same way Elasticsearch does, namely by applying murmur3 (x86, 32 bits, seed 0)
+     * over the little-endian UTF-16 representation of the string.
+     */
+    public static int hash(String routing) {
+        final byte[] bytesToHash = new byte[routing.length() * 2];
+        for (int i = 0; i < routing.length(); ++i) {
+            final char c = routing.charAt(i);
+            final byte b1 = (byte) c, b2 = (byte) (c >>> 8);
+            assert ((b1 & 0xFF) | ((b2 & 0xFF) << 8)) == c; // no information loss
+            bytesToHash[i * 2] = b1;
+            bytesToHash[i * 2 + 1] = b2;
+        }
+        return murmurhash3_x86_32(bytesToHash, 0, bytesToHash.length, 0);
+    }
+
+    /**
+     * Returns the MurmurHash3_x86_32 hash.
+     * Original source/tests at https://github.com/yonik/java_util/
+     */
+    public static int murmurhash3_x86_32(byte[] data, int offset, int len, int seed) {
+        final int c1 = 0xcc9e2d51;
+        final int c2 = 0x1b873593;
+
+        int h1 = seed;
+        int roundedEnd = offset + (len & 0xfffffffc); // round down to 4 byte block
+
+        for (int i = offset; i < roundedEnd; i += 4) {
+            // little endian load order
+            int k1 = (data[i] & 0xff) | ((data[i + 1] & 0xff) << 8) | ((data[i + 2] & 0xff) << 16) | (data[i + 3] << 24);
+            k1 *= c1;
+            k1 = Integer.rotateLeft(k1, 15);
+            k1 *= c2;
+
+            h1 ^= k1;
+            h1 = Integer.rotateLeft(h1, 13);
+            h1 = h1 * 5 + 0xe6546b64;
+        }
+
+        // tail
+        int k1 = 0;
+
+        switch (len & 0x03) {
+            case 3:
+                k1 = (data[roundedEnd + 2] & 0xff) << 16;
+                // fallthrough
+            case 2:
+                k1 |= (data[roundedEnd + 1] & 0xff) << 8;
+                // fallthrough
+            case 1:
+                k1 |= (data[roundedEnd] & 0xff);
+                k1 *= c1;
+                k1 = Integer.rotateLeft(k1, 15);
+                k1 *= c2;
+                h1 ^= k1;
+        }
+
+        // finalization
+        h1 ^= len;
+
+        // fmix(h1);
+        h1 ^= h1 >>> 16;
+        h1 *= 0x85ebca6b;
+        h1 ^= h1 >>> 13;
+        h1 *= 0xc2b2ae35;
+        h1 ^= h1 >>> 16;
+
+        return h1;
+    }
+}
@@ -20,58 +20,39 @@ package org.elasticsearch.hadoop.util;
 
 import java.io.IOException;
 import java.io.OutputStream;
+import java.util.Arrays;
 import java.util.BitSet;
-import java.util.LinkedList;
-import java.util.List;
 
 /**
  *  Wrapper class around a {@link BytesArray} with 'awareness' around the underlying content.
  *  Considers each addition an entry and allows removal of specific entries (and by that skipping their backing content).
  *  Meant to be used as a buffer that is first filled, then emptied (in chunks) then cleaned-up.
+ *  <p>
+ *  Entries are tracked through primitive arrays (offset/length/initial position per slot). Removed entries are
+ *  tombstoned and the slots compacted once they outnumber the live ones, while positional look-ups resume from
+ *  the last one - walking the entries in order (as done when processing a bulk response) is linear overall.
  */
 public class TrackingBytesArray implements ByteSequence {
 
-    private static class Entry {
-        final int offset;
-        final int length;
-        final int initialPosition;
-
-        Entry(int offset, int length, int initialPosition) {
-            this.offset = offset;
-            this.length = length;
-            this.initialPosition = initialPosition;
-        }
-
-        @Override
-        public int hashCode() {
-            final int prime = 31;
-            int result = 1;
-            result = prime * result + length;
-            result = prime * result + offset;
-            return result;
-        }
-
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj)
-                return true;
-            if (obj == null)
-                return false;
-            if (getClass() != obj.getClass())
-                return false;
-            Entry other = (Entry) obj;
-            if (length != other.length)
-                return false;
-            if (offset != other.offset)
-                return false;
-            return true;
-        }
-    }
+    private static final int INITIAL_SLOTS = 16;
+    private static final int REMOVED = -1;
 
     private final BytesArray data;
     private int maxEntries = 0;
     private int size = 0;
-    private List<Entry> entries = new LinkedList<TrackingBytesArray.Entry>();
+
+    // per slot info - a removed entry has its length set to REMOVED
+    private int[] offsets = new int[INITIAL_SLOTS];
+    private int[] lengths = new int[INITIAL_SLOTS];
+    private int[] positions = new int[INITIAL_SLOTS];
+    // used slots (live or removed)
+    private int slots = 0;
+    // live entries
+    private int count = 0;
+
+    // last positional look-up: cursorIndex live entries sit before cursorSlot
+    private int cursorIndex = 0;
+    private int cursorSlot = 0;
 
     public TrackingBytesArray(BytesArray data) {
         this.data = data;
@@ -92,45 +73,125 @@ public class TrackingBytesArray implements ByteSequence {
     }
 
     public int entries() {
-        return entries.size();
+        return count;
     }
 
     public BitSet leftoversPosition() {
         BitSet bitSet = new BitSet(maxEntries);
-        for (Entry entry : entries) {
-            bitSet.set(entry.initialPosition);
+        for (int slot = 0; slot < slots; slot++) {
+            if (lengths[slot] != REMOVED) {
+                bitSet.set(positions[slot]);
+            }
         }
 
         return bitSet;
     }
 
     private void addEntry(int length) {
+        if (slots == offsets.length) {
+            if (count < slots / 2) {
+                compact();
+            } else {
+                grow();
+            }
+        }
         // implied offset - data.size
-        entries.add(new Entry(data.size, length, entries.size()));
+        offsets[slots] = data.size;
+        lengths[slots] = length;
+        positions[slots] = count;
+        slots++;
+        count++;
         size += length;
-        maxEntries = size;
+        maxEntries = Math.max(maxEntries, count);
+    }
+
+    private void grow() {
+        int capacity = offsets.length << 1;
+        offsets = Arrays.copyOf(offsets, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        positions = Arrays.copyOf(positions, capacity);
+    }
+
+    /**
+     * Drops the removed slots, keeping the live ones in order.
+     */
+    private void compact() {
+        int live = 0;
+        for (int slot = 0; slot < slots; slot++) {
+            if (lengths[slot] != REMOVED) {
+                offsets[live] = offsets[slot];
+                lengths[live] = lengths[slot];
+                positions[live] = positions[slot];
+                live++;
+            }
+        }
+        slots = live;
+        cursorIndex = 0;
+        cursorSlot = 0;
+    }
+
+    /**
+     * Finds the slot of the live entry at the given index, starting from the previous look-up when possible.
+     */
+    private int slot(int index) {
+        if (index < 0 || index >= count) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + count);
+        }
+        if (index < cursorIndex) {
+            cursorIndex = 0;
+            cursorSlot = 0;
+        }
+        int slot = cursorSlot;
+        int current = cursorIndex;
+        while (true) {
+            if (lengths[slot] != REMOVED) {
+                if (current == index) {
+                    break;
+                }
+                current++;
+            }
+            slot++;
+        }
+        cursorSlot = slot;
+        cursorIndex = current;
+        return slot;
+    }
+
+    private int removeSlot(int index) {
+        int slot = slot(index);
+        int length = lengths[slot];
+        lengths[slot] = REMOVED;
+        size -= length;
+        count--;
+        if (count == 0) {
+            slots = 0;
+            cursorIndex = 0;
+            cursorSlot = 0;
+        }
+        return slot;
     }
 
     public void remove(int index) {
-        Entry entry = entries.remove(index);
-        size -= entry.length;
+        removeSlot(index);
     }
 
     public BytesArray entry(int index) {
-        Entry entry = entries.get(index);
-        return new BytesArray(data.bytes, entry.offset, entry.length);
+        int slot = slot(index);
+        return new BytesArray(data.bytes, offsets[slot], lengths[slot]);
     }
 
     public BytesArray pop() {
-        Entry entry = entries.remove(0);
-        size -= entry.length;
-        byte[] entryData = new byte[entry.length];
-        System.arraycopy(data.bytes(), entry.offset, entryData, 0, entry.length);
-        return new BytesArray(entryData, entry.length);
+        int slot = slot(0);
+        int offset = offsets[slot];
+        int length = lengths[slot];
+        removeSlot(0);
+        byte[] entryData = new byte[length];
+        System.arraycopy(data.bytes(), offset, entryData, 0, length);
+        return new BytesArray(entryData, length);
     }
 
     public int length(int index) {
-        return entries.get(index).length;
+        return lengths[slot(index)];
     }
 
     public void writeTo(OutputStream out) throws IOException {
@@ -138,8 +199,25 @@ public class TrackingBytesArray implements ByteSequence {
             return;
         }
 
-        for (Entry entry : entries) {
-            out.write(data.bytes, entry.offset, entry.length);
+        // gather adjacent entries into a single write - without any removal, the whole buffer goes out at once
+        int start = -1;
+        int end = -1;
+        for (int slot = 0; slot < slots; slot++) {
+            int length = lengths[slot];
+            if (length == REMOVED) {
+                continue;
+            }
+            int offset = offsets[slot];
+            if (offset != end) {
+                if (start >= 0) {
+                    out.write(data.bytes, start, end - start);
+                }
+                start = offset;
+            }
+            end = offset + length;
+        }
+        if (start >= 0) {
+            out.write(data.bytes, start, end - start);
         }
         out.flush();
     }
@@ -147,16 +225,21 @@ public class TrackingBytesArray implements ByteSequence {
     public void reset() {
         size = 0;
         maxEntries = 0;
-        entries.clear();
+        slots = 0;
+        count = 0;
+        cursorIndex = 0;
+        cursorSlot = 0;
         data.reset();
     }
 
     @Override
     public String toString() {
         StringBuilder sb = new StringBuilder((int) length());
-        for (Entry entry : entries) {
-            sb.append(new String(data.bytes, entry.offset, entry.length, StringUtils.UTF_8));
+        for (int slot = 0; slot < slots; slot++) {
+            if (lengths[slot] != REMOVED) {
+                sb.append(new String(data.bytes, offsets[slot], lengths[slot], StringUtils.UTF_8));
+            }
         }
         return sb.toString();
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,220 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.handler.impl.elasticsearch;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.elasticsearch.hadoop.EsHadoopException;
+import org.elasticsearch.hadoop.rest.RestRepository;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class AsyncErrorWriterTest {
+
+    private static final long NO_INTERVAL = TimeUnit.HOURS.toMillis(1);
+
+    private RestRepository repository;
+    private List<String> written;
+
+    @Before
+    public void setup() {
+        repository = Mockito.mock(RestRepository.class);
+        written = new CopyOnWriteArrayList<String>();
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                // the entry is reused by the writer so copy it
+                written.add(invocation.getArguments()[0].toString());
+                return null;
+            }
+        }).when(repository).writeProcessedToIndex(any(BytesArray.class));
+    }
+
+    @Test
+    public void testCloseWritesQueuedDocuments() throws Exception {
+        AsyncErrorWriter writer = new AsyncErrorWriter(repository, 10, false, NO_INTERVAL);
+        assertTrue(writer.write(new BytesArray("{\"a\":1}")));
+        assertTrue(writer.write(new BytesArray("{\"b\":2}")));
+        writer.close();
+
+        assertEquals(2, written.size());
+        assertEquals("{\"index\":{}}\n{\"a\":1}\n", written.get(0));
+        assertEquals("{\"index\":{}}\n{\"b\":2}\n", written.get(1));
+        verify(repository, times(1)).flush();
+    }
+
+    @Test
+    public void testCloseWithoutDocuments() throws Exception {
+        AsyncErrorWriter writer = new AsyncErrorWriter(repository, 10, false, NO_INTERVAL);
+        writer.close();
+        verify(repository, never()).flush();
+    }
+
+    @Test
+    public void testFlushAfterInterval() throws Exception {
+        AsyncErrorWriter writer = new AsyncErrorWriter(repository, 10, false, 50);
+        assertTrue(writer.write(new BytesArray("{}")));
+        // flushed by the writer thread without closing
+        verify(repository, timeout(5000).times(1)).flush();
+        writer.close();
+        verify(repository, times(1)).flush();
+    }
+
+    @Test
+    public void testDropOnOverflow() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        blockFirstWrite(writing, release);
+
+        AsyncErrorWriter writer = new AsyncErrorWriter(repository, 1, true, NO_INTERVAL);
+        assertTrue(writer.write(new BytesArray("{\"a\":1}")));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        // the writer is busy, the queue holds one document and the next one is dropped
+        assertTrue(writer.write(new BytesArray("{\"b\":2}")));
+        assertFalse(writer.write(new BytesArray("{\"c\":3}")));
+
+        release.countDown();
+        writer.close();
+        assertEquals(2, written.size());
+    }
+
+    @Test
+    public void testBlockOnOverflow() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        blockFirstWrite(writing, release);
+
+        final AsyncErrorWriter writer = new AsyncErrorWriter(repository, 1, false, 10);
+        assertTrue(writer.write(new BytesArray("{\"a\":1}")));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        assertTrue(writer.write(new BytesArray("{\"b\":2}")));
+
+        final AtomicBoolean queued = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(1);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    queued.set(writer.write(new BytesArray("{\"c\":3}")));
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                done.countDown();
+            }
+        });
+        producer.start();
+        // waits for room in the queue
+        assertFalse(done.await(200, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(queued.get());
+        writer.close();
+        assertEquals(3, written.size());
+    }
+
+    @Test
+    public void testFailedWriteRejectsSubsequentDocuments() throws Exception {
+        Mockito.doThrow(new EsHadoopException("boom")).when(repository).writeProcessedToIndex(any(BytesArray.class));
+
+        AsyncErrorWriter writer = new AsyncErrorWriter(repository, 10, false, NO_INTERVAL);
+        assertTrue(writer.write(new BytesArray("{}")));
+        for (int i = 0; i < 500 && writer.failure() == null; i++) {
+            Thread.sleep(10);
+        }
+        assertNotNull(writer.failure());
+        assertFalse(writer.write(new BytesArray("{}")));
+        try {
+            writer.close();
+            fail("the write failure should be rethrown on close");
+        } catch (EsHadoopException ex) {
+            assertSame(writer.failure(), ex.getCause());
+        }
+        verify(repository, never()).flush();
+    }
+
+    @Test
+    public void testCloseRethrowsFlushFailure() throws Exception {
+        Mockito.doThrow(new EsHadoopException("boom")).when(repository).flush();
+
+        AsyncErrorWriter writer = new AsyncErrorWriter(repository, 10, false, NO_INTERVAL);
+        // the documents are accepted and fail only once flushed on close
+        assertTrue(writer.write(new BytesArray("{}")));
+        try {
+            writer.close();
+            fail("the flush failure should be rethrown on close");
+        } catch (EsHadoopException ex) {
+            assertEquals("boom", ex.getCause().getMessage());
+        }
+    }
+
+    @Test
+    public void testWithoutFlushInterval() throws Exception {
+        CountDownLatch writing = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        blockFirstWrite(writing, release);
+
+        AsyncErrorWriter writer = new AsyncErrorWriter(repository, 1, false, 0);
+        assertTrue(writer.write(new BytesArray("{\"a\":1}")));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        assertTrue(writer.write(new BytesArray("{\"b\":2}")));
+        release.countDown();
+        // blocks (instead of spinning) until there is room
+        assertTrue(writer.write(new BytesArray("{\"c\":3}")));
+        writer.close();
+
+        assertEquals(3, written.size());
+        // each document is flushed right away
+        verify(repository, times(3)).flush();
+    }
+
+    private void blockFirstWrite(final CountDownLatch writing, final CountDownLatch release) {
+        Mockito.doAnswer(new Answer<Void>() {
+            @Override
+            public Void answer(InvocationOnMock invocation) throws Throwable {
+                written.add(invocation.getArguments()[0].toString());
+                if (writing.getCount() > 0) {
+                    writing.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                }
+                return null;
+            }
+        }).when(repository).writeProcessedToIndex(any(BytesArray.class));
+    }
+}
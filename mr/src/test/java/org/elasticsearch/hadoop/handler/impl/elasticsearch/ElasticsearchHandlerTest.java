@@ -0,0 +1,38 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.handler.impl.elasticsearch;
+
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException;
+import org.elasticsearch.hadoop.handler.ErrorCollector;
+import org.elasticsearch.hadoop.handler.Exceptional;
+import org.elasticsearch.hadoop.util.TestSettings;
+import org.junit.Test;
+import org.mockito.Mockito;
+
+public class ElasticsearchHandlerTest {
+
+    @Test(expected = EsHadoopIllegalStateException.class)
+    @SuppressWarnings("unchecked")
+    public void testErrorAfterClose() throws Exception {
+        ElasticsearchHandler<Exceptional, Object, ErrorCollector<Object>> handler =
+                ElasticsearchHandler.create(new TestSettings(), Mockito.mock(EventConverter.class));
+        handler.close();
+        handler.onError(Mockito.mock(Exceptional.class), Mockito.mock(ErrorCollector.class));
+    }
+}
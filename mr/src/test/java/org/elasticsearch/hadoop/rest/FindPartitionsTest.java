@@ -148,4 +148,31 @@ public class FindPartitionsTest {
             assertEquals(new HashSet(partitions).size(), 34);
         }
     }
+
+    @Test
+    public void testConcurrentShardCounts() {
+        Settings settings = new PropertiesSettings();
+        settings.setInternalVersion(EsMajorVersion.LATEST);
+        settings.setProperty(ES_RESOURCE_READ, "index1/type1");
+        Resource resource = new Resource(settings, true);
+
+        List<RestClient> clients = new ArrayList<RestClient>();
+        for (int c = 0; c < 3; c++) {
+            RestClient client = Mockito.mock(RestClient.class);
+            for (int i = 0; i < 20; i++) {
+                Mockito.when(client.count("index1", "type1", Integer.toString(i), MATCH_ALL)).thenReturn(i * 100L);
+            }
+            clients.add(client);
+        }
+        List<RestService.ShardTarget> targets = new ArrayList<RestService.ShardTarget>();
+        for (int i = 0; i < 20; i++) {
+            targets.add(new RestService.ShardTarget("index1", i, new String[0]));
+        }
+
+        RestService.countShards(clients, resource, MATCH_ALL, targets);
+
+        for (int i = 0; i < 20; i++) {
+            assertEquals(i * 100L, targets.get(i).numDocs);
+        }
+    }
 }
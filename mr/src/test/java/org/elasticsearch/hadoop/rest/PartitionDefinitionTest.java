@@ -37,6 +37,10 @@ import java.util.Map;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class PartitionDefinitionTest {
 
@@ -102,6 +106,79 @@ public class PartitionDefinitionTest {
         assertPartitionEquals(expected, def);
     }
 
+    @Test
+    public void testBuilderSharesSettingsAndMapping() throws IOException, ClassNotFoundException {
+        Mapping mapping = getTestMapping();
+        PropertiesSettings settings = new PropertiesSettings();
+        settings.setProperty("setting1", "value1");
+        PartitionDefinition.PartitionDefinitionBuilder builder = PartitionDefinition.builder(settings, mapping);
+        PartitionDefinition first = builder.build("foo", 1, new PartitionDefinition.Slice(0, 2), new String[] {"localhost:9200"});
+        PartitionDefinition second = builder.build("foo", 1, new PartitionDefinition.Slice(1, 2), new String[] {"localhost:9200"});
+        assertSame(first.getSerializedSettings(), second.getSerializedSettings());
+        assertSame(first.getSerializedMapping(), second.getSerializedMapping());
+        assertPartitionEquals(new PartitionDefinition(settings, mapping, "foo", 1, new PartitionDefinition.Slice(0, 2),
+                new String[] {"localhost:9200"}), first);
+
+        // partitions read back share the deserialized settings and mapping as well
+        PartitionDefinition firstRead = readWritablePartition(writeWritablePartition(first));
+        PartitionDefinition secondRead = readWritablePartition(writeWritablePartition(second));
+        assertPartitionEquals(first, firstRead);
+        assertPartitionEquals(second, secondRead);
+        assertSame(firstRead.getSerializedSettings(), secondRead.getSerializedSettings());
+        assertSame(firstRead.getSerializedMapping(), secondRead.getSerializedMapping());
+
+        firstRead = readSerializablePartition(writeSerializablePartition(first));
+        assertPartitionEquals(first, firstRead);
+    }
+
+    @Test
+    public void testInterleavedJobsShareSettings() throws IOException {
+        Mapping mapping = getTestMapping();
+        PropertiesSettings settings = new PropertiesSettings();
+        settings.setProperty("setting1", "value1");
+        PropertiesSettings otherSettings = new PropertiesSettings();
+        otherSettings.setProperty("setting1", "value2");
+        PartitionDefinition first = new PartitionDefinition(settings, mapping, "foo", 1);
+        PartitionDefinition other = new PartitionDefinition(otherSettings, mapping, "bar", 1);
+
+        // partitions of two jobs read alternately still share their (deserialized) settings
+        PartitionDefinition firstRead = readWritablePartition(writeWritablePartition(first));
+        PartitionDefinition otherRead = readWritablePartition(writeWritablePartition(other));
+        PartitionDefinition firstReadAgain = readWritablePartition(writeWritablePartition(first));
+        assertPartitionEquals(first, firstRead);
+        assertPartitionEquals(other, otherRead);
+        assertSame(firstRead.getSerializedSettings(), firstReadAgain.getSerializedSettings());
+        assertSame(firstRead.getSerializedMapping(), otherRead.getSerializedMapping());
+    }
+
+    @Test
+    public void testBlobCacheIsBounded() throws IOException {
+        Mapping mapping = getTestMapping();
+        for (int i = 0; i < PartitionDefinition.BlobCache.MAX_BLOBS * 2; i++) {
+            PropertiesSettings settings = new PropertiesSettings();
+            settings.setProperty("setting1", "value" + i);
+            PartitionDefinition partition = new PartitionDefinition(settings, mapping, "foo", i);
+            assertPartitionEquals(partition, readWritablePartition(writeWritablePartition(partition)));
+        }
+        PartitionDefinition.BlobCache cache = new PartitionDefinition.BlobCache();
+        for (int i = 0; i < PartitionDefinition.BlobCache.MAX_BLOBS * 2; i++) {
+            cache.add(new PartitionDefinition.Blob("value" + i, new byte[] { (byte) i }));
+        }
+        assertEquals(PartitionDefinition.BlobCache.MAX_BLOBS, cache.size());
+        assertNull(cache.byValue("value0"));
+        assertNotNull(cache.byCompressed(new byte[] { (byte) (PartitionDefinition.BlobCache.MAX_BLOBS * 2 - 1) }));
+    }
+
+    @Test
+    public void testWritableIsCompressed() throws IOException {
+        Mapping mapping = getTestMapping();
+        PropertiesSettings settings = new PropertiesSettings();
+        settings.setProperty("setting1", "value1");
+        PartitionDefinition partition = new PartitionDefinition(settings, mapping, "foo", 12);
+        int raw = partition.getSerializedSettings().length() + partition.getSerializedMapping().length();
+        assertTrue(writeWritablePartition(partition).length() < raw);
+    }
+
     static PartitionDefinition readSerializablePartition(BytesArray bytes) throws IOException, ClassNotFoundException {
         FastByteArrayInputStream in = new FastByteArrayInputStream(bytes);
         ObjectInputStream ois = new ObjectInputStream(in);
@@ -19,6 +19,11 @@
 
 package org.elasticsearch.hadoop.rest;
 
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
 import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.rest.query.MatchAllQueryBuilder;
 import org.elasticsearch.hadoop.util.BytesArray;
@@ -30,6 +35,8 @@ import org.junit.Test;
 import org.mockito.Mockito;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.fail;
 
 public class RestClientTest {
@@ -406,4 +413,62 @@ public class RestClientTest {
 
         assertEquals(5L, count);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testBulkRequestFiltersResponse() throws Exception {
+        Settings settings = new TestSettings();
+        settings.setInternalVersion(EsMajorVersion.V_7_X);
+        settings.setResourceWrite("index");
+        Resource writeResource = new Resource(settings, false);
+
+        RestClient client = new RestClient(settings, Mockito.mock(NetworkClient.class));
+        assertEquals("index/_bulk?filter_path=errors,items.*.status,items.*.error", client.bulkPath(writeResource));
+
+        settings.setProperty(ConfigurationOptions.ES_INGEST_PIPELINE, "pipeline");
+        writeResource = new Resource(settings, false);
+        assertEquals("index/_bulk?pipeline=pipeline&filter_path=errors,items.*.status,items.*.error", client.bulkPath(writeResource));
+    }
+
+    @Test
+    public void testBulkResponseWithoutErrors() throws Exception {
+        String response = "{\"took\":3,\"errors\":false,\"items\":[" +
+                "{\"index\":{\"_index\":\"index\",\"_id\":\"1\",\"_shards\":{\"total\":2,\"successful\":1,\"failed\":0},\"status\":201}}," +
+                "{\"index\":{\"_index\":\"index\",\"_id\":\"2\",\"_shards\":{\"total\":2,\"successful\":1,\"failed\":0},\"status\":201}}" +
+                "]}";
+
+        RestClient client = new RestClient(new TestSettings(), Mockito.mock(NetworkClient.class));
+        Iterator<Map> entries = client.parseBulkActionResponse(
+                new SimpleResponse(200, new FastByteArrayInputStream(new BytesArray(response)), "localhost:9200"));
+
+        assertFalse(entries.hasNext());
+    }
+
+    @Test
+    public void testBulkResponseWithErrors() throws Exception {
+        String response = "{\"errors\":true,\"items\":[" +
+                "{\"index\":{\"_index\":\"index\",\"_id\":\"1\",\"_shards\":{\"total\":2,\"successful\":1,\"failed\":0},\"status\":201}}," +
+                "{\"index\":{\"status\":429,\"error\":{\"type\":\"es_rejected_execution_exception\",\"reason\":\"queue full\"}}}," +
+                "{\"create\":{\"status\":409,\"error\":\"DocumentAlreadyExistsException[[index][2] [type][3]: document already exists]\"}}," +
+                "{\"index\":{\"status\":201}}" +
+                "]}";
+
+        RestClient client = new RestClient(new TestSettings(), Mockito.mock(NetworkClient.class));
+        Iterator<Map> entries = client.parseBulkActionResponse(
+                new SimpleResponse(200, new FastByteArrayInputStream(new BytesArray(response)), "localhost:9200"));
+
+        Map first = entries.next();
+        assertEquals(Collections.singletonMap("index", Collections.singletonMap("status", 201)), first);
+
+        Map values = (Map) entries.next().get("index");
+        assertEquals(429, values.get("status"));
+        assertEquals("queue full", ((Map) values.get("error")).get("reason"));
+
+        values = (Map) entries.next().get("create");
+        assertEquals(409, values.get("status"));
+        assertEquals("DocumentAlreadyExistsException[[index][2] [type][3]: document already exists]", values.get("error"));
+
+        // successful entries are shared
+        assertSame(first, entries.next());
+        assertFalse(entries.hasNext());
+    }
+}
@@ -29,8 +29,10 @@ import org.elasticsearch.hadoop.rest.stats.Stats;
 import org.elasticsearch.hadoop.serialization.JsonUtils;
 import org.elasticsearch.hadoop.serialization.ScrollReader;
 import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.EsMajorVersion;
 import org.junit.Assert;
 import org.junit.Test;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Matchers;
 import org.mockito.Mockito;
 
@@ -55,6 +57,117 @@ public class ScrollQueryTest {
         Assert.assertEquals(1, stats.docsReceived);
     }
 
+    @Test
+    public void testPrefetch() throws Exception {
+        RestRepository repository = mockRepository();
+        ScrollReader scrollReader = Mockito.mock(ScrollReader.class);
+
+        String query = "/index/type/_search?scroll=10m&etc=etc";
+        BytesArray body = new BytesArray("{}");
+        long size = 100;
+
+        ScrollQuery scrollQuery = new ScrollQuery(repository, query, body, size, scrollReader, 2);
+
+        Assert.assertTrue(scrollQuery.hasNext());
+        Assert.assertEquals("value", JsonUtils.query("field").apply(scrollQuery.next()[1]));
+        Assert.assertFalse(scrollQuery.hasNext());
+        scrollQuery.close();
+        Stats stats = scrollQuery.stats();
+        Assert.assertEquals(1, stats.docsReceived);
+        Mockito.verify(repository.getRestClient()).deleteScroll("mnop");
+    }
+
+    @Test
+    public void testLimitReleasesScrollEarly() throws Exception {
+        Object[] hit = new Object[]{"1", Collections.singletonMap("field", "value")};
+        RestRepository repository = Mockito.mock(RestRepository.class);
+        ScrollReader.Scroll start = new ScrollReader.Scroll("abcd", 10, Lists.<Object[]>newArrayList(hit, hit, hit), 3, 0);
+        Mockito.doReturn(start).when(repository).scroll(Matchers.anyString(), Matchers.any(BytesArray.class), Matchers.any(ScrollReader.class));
+        RestClient client = Mockito.mock(RestClient.class);
+        Mockito.doReturn(client).when(repository).getRestClient();
+
+        ScrollQuery scrollQuery = new ScrollQuery(repository, "/index/type/_search?scroll=10m", new BytesArray("{}"), 2, Mockito.mock(ScrollReader.class));
+
+        Assert.assertTrue(scrollQuery.hasNext());
+        scrollQuery.next();
+        Assert.assertTrue(scrollQuery.hasNext());
+        scrollQuery.next();
+        // the limit is reached before the page is consumed
+        Assert.assertFalse(scrollQuery.hasNext());
+        Mockito.verify(client).deleteScroll("abcd");
+        Mockito.verify(repository, Mockito.never()).scroll(Matchers.anyString(), Matchers.any(ScrollReader.class));
+        scrollQuery.close();
+        Assert.assertEquals(2, scrollQuery.stats().docsReceived);
+    }
+
+    @Test
+    public void testSearchAfter() throws Exception {
+        Object[] hit = new Object[]{"1", Collections.singletonMap("field", "value")};
+        RestRepository repository = Mockito.mock(RestRepository.class);
+        ScrollReader.Scroll first = new ScrollReader.Scroll(null, 2, Lists.<Object[]>newArrayList(hit), 1, 0, new BytesArray("[7]"));
+        ScrollReader.Scroll second = new ScrollReader.Scroll(null, 2, Lists.<Object[]>newArrayList(hit), 1, 0, new BytesArray("[9]"));
+        ScrollReader.Scroll end = new ScrollReader.Scroll(null, 2, true);
+        Mockito.doReturn(first).doReturn(second).doReturn(end).when(repository)
+                .scroll(Matchers.anyString(), Matchers.any(BytesArray.class), Matchers.any(ScrollReader.class));
+        RestClient client = Mockito.mock(RestClient.class);
+        Mockito.doReturn(client).when(repository).getRestClient();
+        Mockito.doReturn("pit").when(client).openPointInTime(Matchers.anyString());
+
+        SearchRequestBuilder request = new SearchRequestBuilder(EsMajorVersion.LATEST, false).indices("index").searchAfter(true);
+        ScrollQuery scrollQuery = new ScrollQuery(ReadStrategy.searchAfter(repository, request), -1, Mockito.mock(ScrollReader.class), 0);
+
+        int count = 0;
+        while (scrollQuery.hasNext()) {
+            scrollQuery.next();
+            count++;
+        }
+        scrollQuery.close();
+        Assert.assertEquals(2, count);
+
+        ArgumentCaptor<String> uris = ArgumentCaptor.forClass(String.class);
+        ArgumentCaptor<BytesArray> bodies = ArgumentCaptor.forClass(BytesArray.class);
+        Mockito.verify(repository, Mockito.times(2)).scroll(uris.capture(), bodies.capture(), Matchers.any(ScrollReader.class));
+        // only the first page tracks the total hits
+        Assert.assertTrue(uris.getAllValues().get(0).contains("track_total_hits=true"));
+        Assert.assertTrue(uris.getAllValues().get(1).contains("track_total_hits=false"));
+        Assert.assertFalse(bodies.getAllValues().get(0).toString().contains("search_after"));
+        Assert.assertTrue(bodies.getAllValues().get(1).toString().contains("\"search_after\":[7]"));
+        // both pages within the same point in time
+        Assert.assertTrue(bodies.getAllValues().get(0).toString().contains("\"pit\":{\"id\":\"pit\""));
+        Assert.assertTrue(bodies.getAllValues().get(1).toString().contains("\"pit\":{\"id\":\"pit\""));
+        Mockito.verify(client).closePointInTime("pit");
+    }
+
+    @Test
+    public void testSearchAfterRequestsFailedPageAgain() throws Exception {
+        Object[] hit = new Object[]{"1", Collections.singletonMap("field", "value")};
+        RestRepository repository = Mockito.mock(RestRepository.class);
+        ScrollReader.Scroll first = new ScrollReader.Scroll(null, 2, Lists.<Object[]>newArrayList(hit), 1, 0, new BytesArray("[7]"));
+        ScrollReader.Scroll second = new ScrollReader.Scroll(null, 2, Lists.<Object[]>newArrayList(hit), 1, 0, new BytesArray("[9]"));
+        Mockito.doReturn(first).doThrow(new EsHadoopTransportException("node gone")).doReturn(second).when(repository)
+                .scroll(Matchers.anyString(), Matchers.any(BytesArray.class), Matchers.any(ScrollReader.class));
+        RestClient client = Mockito.mock(RestClient.class);
+        Mockito.doReturn(client).when(repository).getRestClient();
+        Mockito.doReturn("pit").when(client).openPointInTime(Matchers.anyString());
+
+        SearchRequestBuilder request = new SearchRequestBuilder(EsMajorVersion.LATEST, false).indices("index").searchAfter(true);
+        ReadStrategy strategy = ReadStrategy.searchAfter(repository, request);
+        ScrollReader reader = Mockito.mock(ScrollReader.class);
+        strategy.first(reader);
+        try {
+            strategy.next(reader);
+            Assert.fail("expected the page request to fail");
+        } catch (EsHadoopTransportException expected) {
+            // the position is left untouched
+        }
+        Assert.assertSame(second, strategy.next(reader));
+
+        ArgumentCaptor<BytesArray> bodies = ArgumentCaptor.forClass(BytesArray.class);
+        Mockito.verify(repository, Mockito.times(3)).scroll(Matchers.anyString(), bodies.capture(), Matchers.any(ScrollReader.class));
+        Assert.assertTrue(bodies.getAllValues().get(1).toString().contains("\"search_after\":[7]"));
+        Assert.assertTrue(bodies.getAllValues().get(2).toString().contains("\"search_after\":[7]"));
+    }
+
     private RestRepository mockRepository() throws Exception {
         Map<String, Object> data = new HashMap<String, Object>();
         data.put("field", "value");
@@ -18,10 +18,13 @@
  */
 package org.elasticsearch.hadoop.rest;
 
+import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
+import org.elasticsearch.hadoop.util.BytesArray;
 import org.elasticsearch.hadoop.util.EsMajorVersion;
 import org.elasticsearch.hadoop.util.encoding.HttpEncodingTools;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.assertFalse;
 
@@ -64,4 +67,48 @@ public class SearchRequestBuilderTest {
         assertFalse(localWithPreferenceString.contains("_local"));
         assertTrue(localWithPreferenceString.contains(encodedPreferenceString));
     }
+
+    @Test
+    public void testSearchAfterSortValues() {
+        SearchRequestBuilder builder = new SearchRequestBuilder(EsMajorVersion.LATEST, false)
+                .indices("artists")
+                .searchAfter(true);
+
+        String body = builder.assembleBody(null,
+                new BytesArray("[ 1.5, \"a\\\"b\", null, true, 9223372036854775807, 18446744073709551615 ]")).toString();
+        assertTrue(body, body.endsWith(",\"search_after\":[1.5,\"a\\\"b\",null,true,9223372036854775807,\"18446744073709551615\"]}"));
+    }
+
+    @Test
+    public void testSearchAfterWithinPointInTime() {
+        SearchRequestBuilder builder = new SearchRequestBuilder(EsMajorVersion.LATEST, false)
+                .indices("artists")
+                .shard("2")
+                .size(100)
+                .scroll(60000)
+                .searchAfter(true);
+
+        // the indices and preference belong to the point in time
+        String uri = builder.assemble();
+        assertEquals("_search?size=100&track_total_hits=true", uri);
+        String pit = builder.assemblePointInTime();
+        assertTrue(pit, pit.startsWith("artists/_pit?keep_alive=1m&preference=" + HttpEncodingTools.encode("_shards:2")));
+        // only the first page tracks the total hits
+        assertEquals("_search?size=100&track_total_hits=false", builder.assembleNextPage());
+
+        String body = builder.assembleBody("pit-id", null).toString();
+        assertTrue(body, body.contains("\"pit\":{\"id\":\"pit-id\",\"keep_alive\":\"1m\"},\"sort\":[\"_shard_doc\"]"));
+        assertFalse(body, body.contains("search_after"));
+
+        body = builder.assembleBody("pit-id", new BytesArray("[42]")).toString();
+        assertTrue(body, body.endsWith(",\"search_after\":[42]}"));
+    }
+
+    @Test(expected = EsHadoopIllegalArgumentException.class)
+    public void testSearchAfterRequiresPointInTime() {
+        new SearchRequestBuilder(EsMajorVersion.V_6_X, false)
+                .indices("artists")
+                .searchAfter(true)
+                .build(null, null);
+    }
 }
@@ -0,0 +1,98 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest.bulk;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AdaptiveBatchSizeTest {
+
+    @Test
+    public void testStartsAtConfiguredSize() {
+        AdaptiveBatchSize size = new AdaptiveBatchSize(1024, 100, 1000L);
+        assertEquals(1024, size.bytes());
+        assertEquals(100, size.entries());
+        assertEquals(0L, size.pause());
+        // cannot grow past the configured size
+        assertEquals(0, size.onBulkResponse(10L, 0));
+        assertEquals(1024, size.bytes());
+        assertEquals(100, size.entries());
+    }
+
+    @Test
+    public void testSlowRequestsShrinkDownToMinimum() {
+        AdaptiveBatchSize size = new AdaptiveBatchSize(1024, 100, 1000L);
+        assertEquals(-1, size.onBulkResponse(2000L, 0));
+        assertEquals(512, size.bytes());
+        assertEquals(50, size.entries());
+        // latency alone does not pause
+        assertEquals(0L, size.pause());
+
+        for (int i = 0; i < 10; i++) {
+            size.onBulkResponse(2000L, 0);
+        }
+        assertEquals(1024 / AdaptiveBatchSize.MIN_FRACTION, size.bytes());
+        assertEquals(100 / AdaptiveBatchSize.MIN_FRACTION, size.entries());
+        assertEquals(0, size.onBulkResponse(2000L, 0));
+    }
+
+    @Test
+    public void testFastRequestsGrowAdditively() {
+        AdaptiveBatchSize size = new AdaptiveBatchSize(1024, 100, 1000L);
+        size.onBulkResponse(2000L, 0);
+        size.onBulkResponse(2000L, 0);
+        assertEquals(256, size.bytes());
+        assertEquals(25, size.entries());
+
+        assertEquals(1, size.onBulkResponse(10L, 0));
+        assertEquals(256 + 1024 / AdaptiveBatchSize.STEP_FRACTION, size.bytes());
+        assertEquals(25 + 100 / AdaptiveBatchSize.STEP_FRACTION, size.entries());
+    }
+
+    @Test
+    public void testRejectionsPause() {
+        AdaptiveBatchSize size = new AdaptiveBatchSize(1024, 100, 1000L);
+        assertEquals(-1, size.onBulkResponse(10L, 3));
+        assertEquals(100L, size.pause());
+        size.onBulkResponse(10L, 1);
+        assertEquals(200L, size.pause());
+        for (int i = 0; i < 10; i++) {
+            size.onBulkResponse(10L, 1);
+        }
+        // never pauses for longer than the target latency
+        assertEquals(1000L, size.pause());
+
+        // decays once the requests go through
+        size.onBulkResponse(10L, 0);
+        assertEquals(500L, size.pause());
+        size.onBulkResponse(10L, 0);
+        size.onBulkResponse(10L, 0);
+        size.onBulkResponse(10L, 0);
+        assertEquals(0L, size.pause());
+    }
+
+    @Test
+    public void testUnboundedEntries() {
+        AdaptiveBatchSize size = new AdaptiveBatchSize(1024, 0, 1000L);
+        size.onBulkResponse(2000L, 0);
+        assertEquals(512, size.bytes());
+        assertEquals(0, size.entries());
+    }
+}
@@ -188,6 +188,36 @@ public class BulkProcessorTest {
         assertEquals(5, stats.docsAccepted);
     }
 
+    @Test
+    public void testBulk01_OneRetryThenEmptyResponse() throws Exception {
+        BulkProcessor processor = getBulkProcessor(
+                generator.setInfo(resource, 56)
+                        .addSuccess("index", 201)
+                        .addRejection("index")
+                        .addSuccess("index", 201)
+                        .addRejection("index")
+                        .addRejection("index")
+                        .generate(),
+                generator.setInfo(resource, 56)
+                        .generate()
+        );
+
+        processData(processor);
+
+        BulkResponse bulkResponse = processor.tryFlush();
+
+        assertEquals(5, bulkResponse.getDocsSent());
+        assertEquals(0, bulkResponse.getDocsSkipped());
+        assertEquals(0, bulkResponse.getDocsAborted());
+
+        processor.close();
+        Stats stats = processor.stats();
+
+        assertEquals(1, stats.bulkRetries);
+        assertEquals(3, stats.docsRetried);
+        assertEquals(5, stats.docsAccepted);
+    }
+
     @Test
     public void testBulk01_ThreeRetries() throws Exception {
         BulkProcessor processor = getBulkProcessor(
@@ -886,6 +916,170 @@ public class BulkProcessorTest {
         fail("This should fail since the retry handler returned garbage");
     }
 
+    @Test
+    public void testBulk10_PipelinedSuccess() throws Exception {
+        testSettings.setProperty(ConfigurationOptions.ES_BATCH_SIZE_ENTRIES, "2");
+        testSettings.setProperty(ConfigurationOptions.ES_BATCH_FLUSH_PIPELINE, "1");
+
+        BulkProcessor processor = getBulkProcessor(
+                generator.setInfo(resource, 56)
+                        .addSuccess("index", 201)
+                        .addSuccess("index", 201)
+                        .generate(),
+                generator.setInfo(resource, 56)
+                        .addSuccess("index", 201)
+                        .addRejection("index")
+                        .generate(),
+                generator.setInfo(resource, 56)
+                        .addSuccess("index", 201)
+                        .generate(),
+                generator.setInfo(resource, 56)
+                        .addSuccess("index", 201)
+                        .generate()
+        );
+
+        processData(processor);
+
+        processor.close();
+        Stats stats = processor.stats();
+
+        assertEquals(1, stats.bulkRetries);
+        assertEquals(1, stats.docsRetried);
+        assertEquals(5, stats.docsAccepted);
+    }
+
+    @Test(expected = EsHadoopException.class)
+    public void testBulk10_PipelinedFailureReportedOnNextWrite() throws Exception {
+        testSettings.setProperty(ConfigurationOptions.ES_BATCH_SIZE_ENTRIES, "1");
+        testSettings.setProperty(ConfigurationOptions.ES_BATCH_FLUSH_PIPELINE, "1");
+        testSettings.setProperty(ConfigurationOptions.ES_BATCH_WRITE_RETRY_COUNT, "0");
+
+        BulkProcessor processor = getBulkProcessor(
+                generator.setInfo(resource, 56)
+                        .addFailure("index", 401, "invalid", "some failure")
+                        .generate(),
+                generator.setInfo(resource, 56)
+                        .addSuccess("index", 201)
+                        .generate()
+        );
+
+        try {
+            processData(processor);
+            fail("The failed pipelined flush should surface on a subsequent write");
+        } finally {
+            processor.close();
+        }
+    }
+
+    @Test
+    public void testBulk10_PipelinedFailureSkipsQueuedBatches() throws Exception {
+        testSettings.setProperty(ConfigurationOptions.ES_BATCH_SIZE_ENTRIES, "1");
+        testSettings.setProperty(ConfigurationOptions.ES_BATCH_FLUSH_PIPELINE, "2");
+        testSettings.setProperty(ConfigurationOptions.ES_BATCH_WRITE_RETRY_COUNT, "0");
+
+        RestClient client = mockClientResponses(
+                generator.setInfo(resource, 56)
+                        .addFailure("index", 401, "invalid", "some failure")
+                        .generate(),
+                generator.setInfo(resource, 56)
+                        .addSuccess("index", 201)
+                        .generate(),
+                generator.setInfo(resource, 56)
+                        .addSuccess("index", 201)
+                        .generate()
+        );
+        BulkProcessor processor = new BulkProcessor(client, resource, testSettings);
+
+        try {
+            processData(processor);
+            fail("The failed pipelined flush should surface on a subsequent write");
+        } catch (EsHadoopException ex) {
+            // expected
+        } finally {
+            processor.close();
+        }
+
+        Mockito.verify(client, Mockito.times(1)).bulk(Mockito.eq(resource), Mockito.any(TrackingBytesArray.class));
+    }
+
+    @Test
+    public void testBulk10_PipelinedFailureReportedOnClose() throws Exception {
+        testSettings.setProperty(ConfigurationOptions.ES_BATCH_SIZE_ENTRIES, "1");
+        testSettings.setProperty(ConfigurationOptions.ES_BATCH_FLUSH_PIPELINE, "3");
+        testSettings.setProperty(ConfigurationOptions.ES_BATCH_WRITE_RETRY_COUNT, "0");
+
+        RestClient client = mockClientResponses(
+                generator.setInfo(resource, 56)
+                        .addFailure("index", 401, "invalid", "some failure")
+                        .generate(),
+                generator.setInfo(resource, 56)
+                        .addSuccess("index", 201)
+                        .generate()
+        );
+        BulkProcessor processor = new BulkProcessor(client, resource, testSettings);
+
+        BytesRef data = new BytesRef();
+        data.add(renderEntry("A"));
+        processor.add(data);
+        data.reset();
+        data.add(renderEntry("B"));
+        processor.add(data);
+
+        // let the flushing thread complete (and fail) the batches before closing
+        Mockito.verify(client, Mockito.timeout(5000)).bulk(Mockito.eq(resource), Mockito.any(TrackingBytesArray.class));
+        Thread.sleep(500);
+
+        try {
+            processor.close();
+            fail("The document errors of the pipelined flush should surface on close");
+        } catch (EsHadoopException ex) {
+            // expected
+        }
+
+        Mockito.verify(client, Mockito.times(1)).bulk(Mockito.eq(resource), Mockito.any(TrackingBytesArray.class));
+    }
+
+    @Test
+    public void testBulk11_AdaptiveBatchSize() throws Exception {
+        testSettings.setProperty(ConfigurationOptions.ES_BATCH_SIZE_ENTRIES, "4");
+        testSettings.setProperty(ConfigurationOptions.ES_BATCH_SIZE_ADAPTIVE, "true");
+        testSettings.setProperty(ConfigurationOptions.ES_BATCH_SIZE_ADAPTIVE_TARGET_LATENCY, "100ms");
+
+        BulkProcessor processor = getBulkProcessor(
+                // first batch of 4 entries - shrinks to 2 entries
+                generator.setInfo(resource, 10)
+                        .addSuccess("index", 201)
+                        .addRejection("index")
+                        .addSuccess("index", 201)
+                        .addSuccess("index", 201)
+                        .generate(),
+                // retry - shrinks to 1 entry
+                generator.setInfo(resource, 10)
+                        .addRejection("index")
+                        .generate(),
+                // retry - grows to 2 entries
+                generator.setInfo(resource, 10)
+                        .addSuccess("index", 201)
+                        .generate(),
+                // last entry - throttled, grows to 3 entries
+                generator.setInfo(resource, 10)
+                        .addSuccess("index", 201)
+                        .generate()
+        );
+
+        processData(processor);
+
+        processor.close();
+        Stats stats = processor.stats();
+
+        assertEquals(2, stats.bulkRetries);
+        assertEquals(5, stats.docsAccepted);
+        assertEquals(2, stats.bulkDocsRejected);
+        assertEquals(2, stats.bulkSizeDecreases);
+        assertEquals(2, stats.bulkSizeIncreases);
+        assertEquals(10, stats.bulkThrottleTotalTime);
+    }
+
     private BulkProcessor getBulkProcessor(RestClient.BulkActionResponse... responses) {
         return new BulkProcessor(mockClientResponses(responses), resource, testSettings);
     }
@@ -0,0 +1,63 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest.bulk;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.elasticsearch.hadoop.EsHadoopException;
+import org.elasticsearch.hadoop.rest.HttpStatus;
+import org.elasticsearch.hadoop.rest.bulk.BulkResponse.BulkError;
+import org.elasticsearch.hadoop.rest.bulk.BulkResponse.BulkStatus;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class BulkResponseTest {
+
+    @Test
+    public void testCombineSingleResponse() {
+        BulkResponse response = BulkResponse.complete(HttpStatus.OK, 5L, 2, 2, 0);
+        assertSame(response, BulkResponse.combine(Collections.singletonList(response)));
+    }
+
+    @Test
+    public void testCombineResponses() {
+        BulkError error = new BulkError(1, new BytesArray("{}"), 429, new EsHadoopException("rejected"));
+        BulkResponse response = BulkResponse.combine(Arrays.asList(
+                BulkResponse.complete(HttpStatus.OK, 5L, 2, 2, 0),
+                BulkResponse.partial(HttpStatus.OK, 7L, 3, 2, 0, 0, Collections.singletonList(error)),
+                BulkResponse.complete()));
+        assertEquals(BulkStatus.PARTIAL, response.getStatus());
+        assertEquals(12L, response.getClientTimeSpent());
+        assertEquals(5, response.getTotalDocs());
+        assertEquals(4, response.getDocsSent());
+        assertEquals(Collections.singletonList(error), response.getDocumentErrors());
+    }
+
+    @Test
+    public void testCombineCompleteResponses() {
+        BulkResponse response = BulkResponse.combine(Arrays.asList(BulkResponse.complete(), BulkResponse.complete(HttpStatus.OK, 1L, 1, 1, 0)));
+        assertEquals(BulkStatus.COMPLETE, response.getStatus());
+        assertEquals(1, response.getDocsSent());
+        assertEquals(0, response.getDocumentErrors().size());
+    }
+}
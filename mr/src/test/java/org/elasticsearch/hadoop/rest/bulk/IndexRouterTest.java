@@ -0,0 +1,61 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest.bulk;
+
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.BytesRef;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class IndexRouterTest {
+
+    @Test
+    public void testIndexPerAction() {
+        IndexRouter router = new IndexRouter();
+        assertEquals("logs-2024.01.01", router.index(entry("{\"index\":{\"_index\":\"logs-2024.01.01\",\"_id\":\"1\"}}\n{\"field\":\"value\"}\n")));
+        assertEquals("logs-a", router.index(entry("{\"create\":{\"_index\":\"logs-a\"}}\n{}\n")));
+        assertEquals("logs-b", router.index(entry("{\"update\":{\"_id\":\"1\",\"_index\":\"logs-b\",\"retry_on_conflict\":3}}\n{\"doc\":{}}\n")));
+        assertEquals("logs-c", router.index(entry("{\"delete\":{\"_index\":\"logs-c\",\"_id\":\"1\"}}\n")));
+    }
+
+    @Test
+    public void testIndexFromSplitEntry() {
+        IndexRouter router = new IndexRouter();
+        BytesRef ref = new BytesRef();
+        ref.add(new BytesArray("{\"index\":{\"_ind"));
+        ref.add(new BytesArray("ex\":\"split\"}}\n"));
+        ref.add(new BytesArray("{\"_index\":\"not-metadata\"}\n"));
+        assertEquals("split", router.index(ref));
+    }
+
+    @Test
+    public void testNoIndex() {
+        IndexRouter router = new IndexRouter();
+        assertNull(router.index(entry("{\"index\":{}}\n{\"_index\":\"not-metadata\"}\n")));
+        assertNull(router.index(entry("{\"index\":{\"_id\":\"1\",\"_index\":null}}\n{}\n")));
+    }
+
+    private static BytesRef entry(String entry) {
+        BytesRef ref = new BytesRef();
+        ref.add(new BytesArray(entry));
+        return ref;
+    }
+}
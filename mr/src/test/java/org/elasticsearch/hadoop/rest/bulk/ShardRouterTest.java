@@ -0,0 +1,116 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest.bulk;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.BytesRef;
+import org.elasticsearch.hadoop.util.Murmur3HashFunction;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ShardRouterTest {
+
+    @Test
+    public void testMurmur3Hash() {
+        // same values as the Elasticsearch Murmur3HashFunction tests
+        assertEquals(0x5a0cb7c3, Murmur3HashFunction.hash("hell"));
+        assertEquals(0xd7c31989, Murmur3HashFunction.hash("hello"));
+        assertEquals(0x22ab2984, Murmur3HashFunction.hash("hello w"));
+        assertEquals(0xdf0ca123, Murmur3HashFunction.hash("hello wo"));
+        assertEquals(0xe7744d61, Murmur3HashFunction.hash("hello wor"));
+        assertEquals(0xe07db09c, Murmur3HashFunction.hash("The quick brown fox jumps over the lazy dog"));
+        assertEquals(0x4e63d2ad, Murmur3HashFunction.hash("The quick brown fox jumps over the lazy cog"));
+    }
+
+    @Test
+    public void testShardId() {
+        ShardRouter router = new ShardRouter(5, 5, nodes(5));
+        for (String routing : new String[] { "hello", "1", "some-id", "" }) {
+            assertEquals(Math.floorMod(Murmur3HashFunction.hash(routing), 5), router.shardId(routing));
+        }
+    }
+
+    @Test
+    public void testShardIdWithRoutingShards() {
+        // 7.x default for 3 shards
+        ShardRouter router = new ShardRouter(3, 768, nodes(3));
+        for (String routing : new String[] { "hello", "1", "some-id", "" }) {
+            assertEquals(Math.floorMod(Murmur3HashFunction.hash(routing), 768) / 256, router.shardId(routing));
+        }
+    }
+
+    @Test(expected = EsHadoopIllegalArgumentException.class)
+    public void testInvalidRoutingShards() {
+        new ShardRouter(3, 10, nodes(3));
+    }
+
+    @Test
+    public void testRouteById() {
+        ShardRouter router = new ShardRouter(5, 5, nodes(5));
+        String node = "node-" + router.shardId("some-id");
+        assertEquals(node, router.node(entry("{\"index\":{\"_id\":\"some-id\"}}\n{\"field\":\"value\"}\n")));
+        assertEquals(node, router.node(entry("{\"update\":{\"_type\":\"doc\",\"_id\":\"some-id\",\"retry_on_conflict\":3}}\n{\"doc\":{}}\n")));
+    }
+
+    @Test
+    public void testRouteByRouting() {
+        ShardRouter router = new ShardRouter(5, 5, nodes(5));
+        assertEquals("routing", router.routingValue(entry("{\"index\":{\"_id\":\"1\",\"routing\":\"routing\"}}\n{}\n")));
+        assertEquals("routing", router.routingValue(entry("{\"index\":{\"_routing\":\"routing\",\"_id\":\"1\"}}\n{}\n")));
+        assertEquals("parent", router.routingValue(entry("{\"index\":{\"_id\":\"1\",\"_parent\":\"parent\"}}\n{}\n")));
+        assertEquals("123", router.routingValue(entry("{\"index\":{\"_id\":123}}\n{}\n")));
+    }
+
+    @Test
+    public void testNoRouting() {
+        ShardRouter router = new ShardRouter(5, 5, nodes(5));
+        assertNull(router.node(entry("{\"index\":{}}\n{\"_id\":\"not-metadata\"}\n")));
+        assertNull(router.node(entry("{\"index\":{\"pipeline\":\"p\",\"_id\":null}}\n{}\n")));
+    }
+
+    @Test
+    public void testRouteEntryInSeveralPieces() {
+        ShardRouter router = new ShardRouter(5, 5, nodes(5));
+        BytesRef ref = new BytesRef();
+        ref.add("{\"index\":{\"_id\":".getBytes());
+        ref.add(new BytesArray("\"some-id\"}}\n{\"routing\""));
+        ref.add(new BytesArray(":\"not-metadata\"}\n"));
+        assertEquals("some-id", router.routingValue(ref));
+    }
+
+    private static Map<Integer, String> nodes(int shards) {
+        Map<Integer, String> nodes = new HashMap<Integer, String>();
+        for (int i = 0; i < shards; i++) {
+            nodes.put(i, "node-" + i);
+        }
+        return nodes;
+    }
+
+    private static BytesRef entry(String entry) {
+        BytesRef ref = new BytesRef();
+        ref.add(new BytesArray(entry));
+        return ref;
+    }
+}
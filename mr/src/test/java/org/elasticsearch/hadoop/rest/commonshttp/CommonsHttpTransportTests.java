@@ -21,11 +21,18 @@ package org.elasticsearch.hadoop.rest.commonshttp;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.Socket;
 import java.net.UnknownHostException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
 import javax.net.ssl.SSLContext;
 import javax.net.ssl.SSLSocketFactory;
 
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
 import org.apache.commons.httpclient.ConnectTimeoutException;
 import org.apache.commons.httpclient.params.HttpConnectionParams;
 import org.apache.commons.httpclient.protocol.Protocol;
@@ -33,7 +40,13 @@ import org.apache.commons.httpclient.protocol.ProtocolSocketFactory;
 import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
 import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.rest.Request;
+import org.elasticsearch.hadoop.rest.Response;
 import org.elasticsearch.hadoop.rest.SimpleRequest;
+import org.elasticsearch.hadoop.rest.stats.Stats;
+import org.elasticsearch.hadoop.rest.stats.StatsAware;
+import org.elasticsearch.hadoop.util.BytesArray;
+import org.elasticsearch.hadoop.util.FastByteArrayOutputStream;
+import org.elasticsearch.hadoop.util.IOUtils;
 import org.elasticsearch.hadoop.util.TestSettings;
 import org.hamcrest.Matchers;
 import org.junit.After;
@@ -135,4 +148,49 @@ public class CommonsHttpTransportTests {
         }
         fail("Should not be able to connect to TEST_NET_1");
     }
+
+    @Test
+    public void testCompression() throws Exception {
+        final String payload = "{\"index\":{}}\n{\"field\":\"value\"}\n{\"index\":{}}\n{\"field\":\"value\"}\n";
+        final byte[] reply = "{\"took\":1,\"errors\":false,\"items\":[{},{}],\"padding\":\"aaaaaaaaaaaaaaaaaaaaaaaaaaaaaa\"}".getBytes("UTF-8");
+        final String[] received = new String[2];
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                received[0] = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+                received[1] = IOUtils.asString(new GZIPInputStream(exchange.getRequestBody()));
+                FastByteArrayOutputStream out = new FastByteArrayOutputStream();
+                GZIPOutputStream gzip = new GZIPOutputStream(out);
+                gzip.write(reply);
+                gzip.close();
+                exchange.getResponseHeaders().add("Content-Encoding", "gzip");
+                exchange.sendResponseHeaders(200, out.bytes().length());
+                out.bytes().writeTo(exchange.getResponseBody());
+                exchange.close();
+            }
+        });
+        server.start();
+        try {
+            Settings testSettings = new TestSettings();
+            testSettings.setProperty(ConfigurationOptions.ES_HTTP_COMPRESSION, "true");
+            CommonsHttpTransport transport = new CommonsHttpTransport(testSettings, "127.0.0.1:" + server.getAddress().getPort());
+            Response response = transport.execute(new SimpleRequest(Request.Method.POST, null, "/_bulk", new BytesArray(payload)));
+
+            assertEquals("gzip", received[0]);
+            assertEquals(payload, received[1]);
+            assertEquals(new String(reply, "UTF-8"), IOUtils.asString(response.body()));
+            assertTrue(transport.stats().compressedBytesSent > 0);
+            assertTrue(transport.stats().compressedBytesSent < payload.length());
+
+            Stats readStats = ((StatsAware) response.body()).stats();
+            assertEquals(reply.length, readStats.bytesReceived);
+            assertTrue(readStats.compressedBytesReceived > 0);
+            response.body().close();
+            transport.close();
+        } finally {
+            server.stop(0);
+        }
+    }
 }
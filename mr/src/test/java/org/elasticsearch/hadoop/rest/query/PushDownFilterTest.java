@@ -0,0 +1,78 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.rest.query;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class PushDownFilterTest {
+
+    @Test
+    public void testAndDropsUntranslatedConjuncts() throws Exception {
+        PushDownFilter filter = PushDownFilter.and(Arrays.asList(PushDownFilter.term("a", "1"), null));
+        assertThat(filter.dsl(), is("{\"term\":{\"a\":1}}"));
+        assertThat(filter.isExact(), is(false));
+    }
+
+    @Test
+    public void testAndOfExactFilters() throws Exception {
+        PushDownFilter filter = PushDownFilter.and(Arrays.asList(PushDownFilter.term("a", "1"), PushDownFilter.isNotNull("b")));
+        assertThat(filter.dsl(), is("{\"bool\":{\"filter\":[{\"term\":{\"a\":1}},{\"exists\":{\"field\":\"b\"}}]}}"));
+        assertThat(filter.isExact(), is(true));
+    }
+
+    @Test
+    public void testOrRequiresAllDisjuncts() throws Exception {
+        assertThat(PushDownFilter.or(Arrays.asList(PushDownFilter.term("a", "1"), null)), nullValue());
+    }
+
+    @Test
+    public void testNotOfSuperset() throws Exception {
+        assertThat(PushDownFilter.not(PushDownFilter.text("a", "\"foo\"", false)), nullValue());
+        PushDownFilter filter = PushDownFilter.not(PushDownFilter.text("a", "\"foo\"", true));
+        assertThat(filter.dsl(), is("{\"bool\":{\"must_not\":{\"term\":{\"a\":\"foo\"}}}}"));
+        assertThat(filter.isExact(), is(false));
+    }
+
+    @Test
+    public void testInOnAnalyzedText() throws Exception {
+        PushDownFilter filter = PushDownFilter.in("a", Arrays.asList("\"x\"", "\"y\""), true, false);
+        assertThat(filter.dsl(), is("{\"bool\":{\"should\":[{\"match\":{\"a\":\"x\"}},{\"match\":{\"a\":\"y\"}}]}}"));
+        assertThat(PushDownFilter.in("a", Collections.<String> emptyList(), false, false), nullValue());
+    }
+
+    @Test
+    public void testRanges() throws Exception {
+        assertThat(PushDownFilter.range("a", "gte", "1", "lte", "5").dsl(), is("{\"range\":{\"a\":{\"gte\":1,\"lte\":5}}}"));
+        assertThat(PushDownFilter.date("d", 42L).dsl(), is("{\"range\":{\"d\":{\"gte\":42,\"lte\":42,\"format\":\"epoch_millis\"}}}"));
+        assertThat(PushDownFilter.textRange("a", "gt", "\"m\"", null, null, false), nullValue());
+        assertThat(PushDownFilter.range("a", "gte", "1", "lte", null), nullValue());
+    }
+
+    @Test
+    public void testFieldNamesAreEscaped() throws Exception {
+        assertThat(PushDownFilter.wildcard("a\"b", "x*", true).dsl(), is("{\"wildcard\":{\"a\\\"b\":\"x*\"}}"));
+    }
+}
@@ -126,6 +126,25 @@ public class CommandTest {
         assertEquals(result, ba.toString());
     }
 
+    @Test
+    public void testJsonBytesReferencedAndLeftUntouched() throws Exception {
+        assumeTrue(jsonInput);
+        assumeFalse(ConfigurationOptions.ES_OPERATION_UPDATE.equals(operation));
+        BulkCommand command = create(settings());
+        String result = prefix() + "}}" + map();
+
+        // a slice of a larger array, big enough to fit the next document
+        String padded = "xx" + data + new String(new char[128]).replace('\0', ' ');
+        byte[] bytes = padded.getBytes(StringUtils.UTF_8);
+        command.write(new BytesArray(bytes, 2, data.toString().length())).copyTo(ba);
+        assertEquals(result, ba.toString());
+
+        ba.reset();
+        command.write("{\"n\":1,\"s\":\"v\"}").copyTo(ba);
+        assertEquals(result, ba.toString());
+        assertEquals(padded, new String(bytes, StringUtils.UTF_8));
+    }
+
     @Test
     // check user friendliness and escape the string if needed
     public void testConstantId() throws Exception {
@@ -0,0 +1,109 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.serialization;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.elasticsearch.hadoop.serialization.field.FieldFilter;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class FieldPathTrieTest {
+
+    private static Map<String, FieldType> mapping() {
+        Map<String, FieldType> mapping = new HashMap<String, FieldType>();
+        mapping.put("name", FieldType.KEYWORD);
+        mapping.put("address", FieldType.OBJECT);
+        mapping.put("address.zip", FieldType.INTEGER);
+        mapping.put("address.street", FieldType.TEXT);
+        return mapping;
+    }
+
+    @Test
+    public void testPathsAndTypes() {
+        FieldPathTrie trie = new FieldPathTrie(mapping(), false, Collections.<FieldFilter.NumberedInclude>emptyList(),
+                Collections.<String>emptyList(), Collections.<FieldFilter.NumberedInclude>emptyList());
+
+        FieldPathTrie.Node root = trie.root();
+        assertNull(root.path());
+        assertNull(root.type());
+        assertFalse(root.filtered());
+
+        FieldPathTrie.Node zip = root.child("address").child("zip");
+        assertEquals("address.zip", zip.path());
+        assertEquals(FieldType.INTEGER, zip.type());
+        assertFalse(zip.filtered());
+        assertFalse(zip.array());
+        // compiled only once
+        assertSame(zip, root.child("address").child("zip"));
+
+        FieldPathTrie.Node unmapped = root.child("address").child("unknown");
+        assertEquals("address.unknown", unmapped.path());
+        assertNull(unmapped.type());
+        assertFalse(unmapped.filtered());
+    }
+
+    @Test
+    public void testIncludeExcludeAndArrays() {
+        FieldPathTrie trie = new FieldPathTrie(mapping(), false, FieldFilter.toNumberedFilter(Arrays.asList("name", "address.*")),
+                Arrays.asList("address.street"), FieldFilter.toNumberedFilter(Arrays.asList("name")));
+
+        FieldPathTrie.Node root = trie.root();
+        assertFalse(root.child("name").filtered());
+        assertTrue(root.child("name").array());
+        assertFalse(root.child("address").child("zip").filtered());
+        assertFalse(root.child("address").child("zip").array());
+        assertTrue(root.child("address").child("street").filtered());
+        assertTrue(root.child("other").filtered());
+    }
+
+    @Test
+    public void testIgnoreUnmapped() {
+        FieldPathTrie trie = new FieldPathTrie(mapping(), true, Collections.<FieldFilter.NumberedInclude>emptyList(),
+                Collections.<String>emptyList(), Collections.<FieldFilter.NumberedInclude>emptyList());
+
+        assertFalse(trie.root().child("address").child("street").filtered());
+        assertTrue(trie.root().child("address").child("unknown").filtered());
+    }
+
+    @Test
+    public void testBoundedChildren() {
+        FieldPathTrie trie = new FieldPathTrie(Collections.<String, FieldType>emptyMap(), false,
+                Collections.<FieldFilter.NumberedInclude>emptyList(), Collections.<String>emptyList(),
+                Collections.<FieldFilter.NumberedInclude>emptyList());
+
+        FieldPathTrie.Node map = trie.root().child("map");
+        for (int i = 0; i < FieldPathTrie.MAX_CACHED_CHILDREN; i++) {
+            map.child("key" + i);
+        }
+        assertSame(map.child("key0"), map.child("key0"));
+        FieldPathTrie.Node extra = map.child("extra");
+        assertEquals("map.extra", extra.path());
+        assertNotSame(extra, map.child("extra"));
+    }
+}
@@ -23,6 +23,7 @@ import java.io.InputStream;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
@@ -585,6 +586,97 @@ public class ScrollReaderTest {
         assertEquals(4L, JsonUtils.query("number").apply(scroll.getHits().get(0)[1]));
     }
 
+    @Test
+    public void testSearchAfterWithinPointInTime() throws IOException {
+        reader = new ScrollReader(getScrollReaderCfg().setSearchAfter(true));
+        ScrollReader.Scroll scroll = reader.read(getClass().getResourceAsStream(scrollData("search-after")));
+
+        assertEquals("46ToAwMDaWR5BXV1aWQyKwZub2RlXzMAAAAAAAAAACoBYwADaWR4BXV1aWQxAgZub2RlXzEAAAAAAAAAAAEBYQ==", scroll.getScrollId());
+        assertEquals(196L, scroll.getTotalHits());
+        assertEquals(2, scroll.getHits().size());
+        assertEquals("last", JsonUtils.query("name").apply(scroll.getHits().get(1)[1]));
+        assertEquals("[ 4294967298 ]", scroll.getLastSort().toString());
+    }
+
+    @Test
+    public void testSearchAfterNextPageWithoutTotalHits() throws IOException {
+        reader = new ScrollReader(getScrollReaderCfg().setSearchAfter(true));
+        ScrollReader.Scroll scroll = reader.read(getClass().getResourceAsStream(scrollData("search-after-next")));
+
+        // the pages following the first one do not track the total hits
+        assertEquals(-1L, scroll.getTotalHits());
+        assertEquals(2, scroll.getHits().size());
+        assertEquals("first", JsonUtils.query("name").apply(scroll.getHits().get(0)[1]));
+        assertEquals("[ 4294967298 ]", scroll.getLastSort().toString());
+    }
+
+    @Test
+    public void testSearchAfterWithStreamedHits() throws IOException {
+        reader = new ScrollReader(getScrollReaderCfg().setSearchAfter(true).setStreamHits(true));
+        ScrollReader.Scroll scroll = reader.read(getClass().getResourceAsStream(scrollData("search-after")));
+
+        assertEquals("46ToAwMDaWR5BXV1aWQyKwZub2RlXzMAAAAAAAAAACoBYwADaWR4BXV1aWQxAgZub2RlXzEAAAAAAAAAAAEBYQ==", scroll.getScrollId());
+        Iterator<Object[]> hits = scroll.iterator();
+        int count = 0;
+        while (hits.hasNext()) {
+            hits.next();
+            count++;
+        }
+        assertEquals(2, count);
+        assertEquals("[ 4294967298 ]", scroll.getLastSort().toString());
+        scroll.close();
+    }
+
+    @Test
+    public void testScrollWithStreamedHits() throws IOException {
+        MappingSet fl = getMappingSet("source");
+
+        List<Object[]> expected = new ScrollReader(getScrollReaderCfg().setResolvedMapping(fl.getResolvedView()))
+                .read(getClass().getResourceAsStream(scrollData("source"))).getHits();
+
+        reader = new ScrollReader(getScrollReaderCfg().setResolvedMapping(fl.getResolvedView()).setStreamHits(true));
+        ScrollReader.Scroll scroll = reader.read(getClass().getResourceAsStream(scrollData("source")));
+
+        assertFalse(scroll.isConcluded());
+        Iterator<Object[]> hits = scroll.iterator();
+        for (Object[] hit : expected) {
+            assertTrue(hits.hasNext());
+            Object[] streamed = hits.next();
+            assertEquals(hit[0], streamed[0]);
+            assertEquals(hit[1], streamed[1]);
+        }
+        assertFalse(hits.hasNext());
+        assertEquals(expected.size(), scroll.getNumberOfHits());
+        scroll.close();
+    }
+
+    @Test
+    public void testScrollWithStreamedHitsAndHandlerThatCorrectsError() throws IOException {
+        MappingSet mappings = getMappingSet("numbers-as-strings");
+
+        InputStream stream = getClass().getResourceAsStream(scrollData("numbers-as-strings"));
+
+        Settings testSettings = new TestSettings();
+        testSettings.setProperty(ConfigurationOptions.ES_READ_METADATA, "" + readMetadata);
+        testSettings.setProperty(ConfigurationOptions.ES_READ_METADATA_FIELD, "" + metadataField);
+        testSettings.setProperty(ConfigurationOptions.ES_OUTPUT_JSON, "" + readAsJson);
+        testSettings.setProperty(ConfigurationOptions.ES_SCROLL_STREAM, "true");
+        testSettings.setProperty(DeserializationHandlerLoader.ES_READ_DATA_ERROR_HANDLERS , "fix");
+        testSettings.setProperty(DeserializationHandlerLoader.ES_READ_DATA_ERROR_HANDLER + ".fix" , CorrectingHandler.class.getName());
+
+        JdkValueReader valueReader = ObjectUtils.instantiate(JdkValueReader.class.getName(), testSettings);
+
+        ScrollReader reader = new ScrollReader(ScrollReaderConfigBuilder.builder(valueReader, mappings.getResolvedView(), testSettings));
+
+        ScrollReader.Scroll scroll = reader.read(stream);
+
+        assertThat(scroll.getTotalHits(), equalTo(196L));
+        Iterator<Object[]> hits = scroll.iterator();
+        assertTrue(hits.hasNext());
+        assertEquals(4L, JsonUtils.query("number").apply(hits.next()[1]));
+        assertFalse(hits.hasNext());
+    }
+
     /**
      * Case: Handler throws random Exceptions
      * Outcome: Processing fails fast.
@@ -55,8 +55,10 @@ import static org.elasticsearch.hadoop.serialization.FieldType.STRING;
 import static org.elasticsearch.hadoop.serialization.FieldType.TEXT;
 import static org.elasticsearch.hadoop.serialization.dto.mapping.MappingUtils.findTypos;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 
 import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.is;
@@ -192,6 +194,22 @@ public class MappingTest {
         assertEquals(1, mapping.getFields().length);
     }
 
+    @Test
+    public void testKeywordValues() throws Exception {
+        MappingSet mappings = getMappingsForResource("keyword-values.json");
+        Mapping mapping = ensureAndGet("index", "products", mappings);
+        Field[] props = mapping.getFields();
+        assertEquals(3, props.length);
+        assertEquals("sku", props[0].name());
+        assertTrue(props[0].verbatim());
+        // values past ignore_above are not indexed
+        assertEquals("title", props[1].name());
+        assertFalse(props[1].verbatim());
+        // normalized values differ from the source ones
+        assertEquals("brand", props[2].name());
+        assertFalse(props[2].verbatim());
+    }
+
     @Test
     public void testUnsupportedParsing() throws Exception {
         MappingSet mappings = getMappingsForResource("attachment.json");
@@ -18,6 +18,9 @@
  */
 package org.elasticsearch.hadoop.serialization.field;
 
+import java.time.ZoneOffset;
+
+import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
 import org.junit.Test;
 
 import static org.junit.Assert.*;
@@ -45,4 +48,47 @@ public class DateIndexFormatterTest {
         formatter.configure("MM-dd");
         assertThat(formatter.format("1969-08-20"), is("08-20"));
     }
+
+    @Test
+    public void testOffsetConvertedToTimeZone() {
+        IndexFormatter utc = new DateIndexFormatter(ZoneOffset.UTC);
+        utc.configure("yyyy.MM.dd");
+        assertThat(utc.format("2014-10-06T23:30:00+02:00"), is("2014.10.06"));
+        assertThat(utc.format("2014-10-06T01:30:00+0200"), is("2014.10.05"));
+        assertThat(utc.format("2014-10-06T22:30:00.123456-02"), is("2014.10.07"));
+        assertThat(utc.format("2014-10-06T22:30Z"), is("2014.10.06"));
+    }
+
+    @Test
+    public void testCachedBucket() {
+        IndexFormatter utc = new DateIndexFormatter(ZoneOffset.UTC);
+        utc.configure("yyyy.MM.dd-HH");
+        assertThat(utc.format("2014-10-06T19:20:25.000Z"), is("2014.10.06-19"));
+        assertThat(utc.format("2014-10-06T19:59:59.999Z"), is("2014.10.06-19"));
+        assertThat(utc.format("2014-10-06T20:00:00.000Z"), is("2014.10.06-20"));
+        assertThat(utc.format("2014-10-06T18:59:59.999Z"), is("2014.10.06-18"));
+        assertThat(utc.format("1969-12-31T23:00:00Z"), is("1969.12.31-23"));
+    }
+
+    @Test
+    public void testBucketSize() {
+        assertThat(DateIndexFormatter.bucketSize("yyyy.MM.dd"), is(24 * 3600 * 1000L));
+        assertThat(DateIndexFormatter.bucketSize("yyyy.MM.dd-HH"), is(3600 * 1000L));
+        assertThat(DateIndexFormatter.bucketSize("yyyy.MM.dd'T'HH:mm"), is(60 * 1000L));
+        assertThat(DateIndexFormatter.bucketSize("yyyy-'ss'"), is(24 * 3600 * 1000L));
+        assertThat(DateIndexFormatter.bucketSize("yyyy.MM.dd-Z"), is(0L));
+    }
+
+    @Test
+    public void testNonIsoDateFallback() {
+        IndexFormatter utc = new DateIndexFormatter(ZoneOffset.UTC);
+        utc.configure("yyyy.MM.dd");
+        // week date
+        assertThat(utc.format("2014-W41-1T12:00:00Z"), is("2014.10.06"));
+    }
+
+    @Test(expected = EsHadoopIllegalArgumentException.class)
+    public void testInvalidFormat() {
+        formatter.configure("yyyy.MM.dd-{b}");
+    }
 }
@@ -0,0 +1,143 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.serialization.json;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import org.elasticsearch.hadoop.serialization.EsHadoopSerializationException;
+import org.elasticsearch.hadoop.serialization.ParsingUtils;
+import org.elasticsearch.hadoop.serialization.bulk.RawJson;
+import org.elasticsearch.hadoop.util.IOUtils;
+import org.elasticsearch.hadoop.util.StringUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class JsonValueScannerTest {
+
+    private byte[] nested;
+
+    @Before
+    public void before() throws Exception {
+        nested = StringUtils.toUTF(IOUtils.asBytes(getClass().getResourceAsStream("/org/elasticsearch/hadoop/serialization/parser-test-nested.json")).toString());
+    }
+
+    private List<Object> values(String json, String... paths) {
+        byte[] bytes = StringUtils.toUTF(json);
+        return new JsonValueScanner(paths).values(bytes, 0, bytes.length);
+    }
+
+    @Test
+    public void testFirstLevel() throws Exception {
+        List<Object> vals = new JsonValueScanner("firstName", "foo", "age").values(nested, 0, nested.length);
+        assertEquals(3, vals.size());
+        assertEquals("John", vals.get(0));
+        assertSame(ParsingUtils.NOT_FOUND, vals.get(1));
+        assertEquals(25, vals.get(2));
+    }
+
+    @Test
+    public void testMixedLevels() throws Exception {
+        List<Object> vals = new JsonValueScanner("firstName", "address.building.floors", "address.decor.walls", "zzz", "state", "address.state")
+                .values(nested, 0, nested.length);
+        assertEquals("John", vals.get(0));
+        assertEquals(10, vals.get(1));
+        assertEquals("white", vals.get(2));
+        assertEquals("end", vals.get(3));
+        assertEquals("CA", vals.get(4));
+        assertEquals("NY", vals.get(5));
+    }
+
+    @Test
+    public void testRichObject() throws Exception {
+        List<Object> vals = new JsonValueScanner("small-object", "small-array").values(nested, 0, nested.length);
+        assertEquals(new RawJson("{\"foo\":\"bar\",\"nested\":{\"foo\":\"nested-bar\",\"foo1\":\"bar1\"}}"), vals.get(0));
+        assertEquals(new RawJson("[\"foo\",\"bar\"]"), vals.get(1));
+    }
+
+    @Test
+    public void testSameResultsAsParser() throws Exception {
+        String[] paths = { "firstName", "lastName", "age", "trap.building.flats", "address.postalCode", "address.decor", "phoneNumbers", "none" };
+        List<Object> scanned = new JsonValueScanner(paths).values(nested, 0, nested.length);
+        List<Object> parsed = ParsingUtils.values(new JacksonJsonParser(nested), paths);
+        assertEquals(parsed, scanned);
+    }
+
+    @Test
+    public void testValueTypes() throws Exception {
+        List<Object> vals = values("{\"i\":-3,\"l\":4294967296,\"b\":123456789012345678901234567890,\"d\":1.5e2,\"t\":true,\"f\":false,\"n\":null}",
+                "i", "l", "b", "d", "t", "f", "n");
+        assertEquals(-3, vals.get(0));
+        assertEquals(4294967296L, vals.get(1));
+        assertEquals(new BigInteger("123456789012345678901234567890"), vals.get(2));
+        assertEquals(150.0d, vals.get(3));
+        assertEquals(Boolean.TRUE, vals.get(4));
+        assertEquals(Boolean.FALSE, vals.get(5));
+        assertNull(vals.get(6));
+    }
+
+    @Test
+    public void testEscapedStrings() throws Exception {
+        List<Object> vals = values("{\"a\\\"b\":\"q\\\"uote\\\\d \\u00e9\\n\",\"s\":\"sm\\ud83d\\ude00le\",\"raw\":\"café\"}", "a\"b", "s", "raw");
+        assertEquals("q\"uote\\d é\n", vals.get(0));
+        assertEquals("sm😀le", vals.get(1));
+        assertEquals("café", vals.get(2));
+    }
+
+    @Test
+    public void testStopsOnceAllPathsFound() throws Exception {
+        // the rest of the document is never looked at
+        List<Object> vals = values("{ \"id\" : \"1\", \"skip\": {\"a\": [1, {\"b\":\"}\"}]}, \"routing\": 2, \"broken\": ", "id", "routing");
+        assertEquals("1", vals.get(0));
+        assertEquals(2, vals.get(1));
+    }
+
+    @Test
+    public void testSlice() throws Exception {
+        byte[] bytes = StringUtils.toUTF("xxx{\"id\":7}yyy");
+        List<Object> vals = new JsonValueScanner("id").values(bytes, 3, 8);
+        assertEquals(7, vals.get(0));
+    }
+
+    @Test(expected = EsHadoopSerializationException.class)
+    public void testTruncatedDocument() throws Exception {
+        values("{\"foo\": {\"bar\": 1}, \"id\"", "id");
+    }
+
+    @Test
+    public void testTruncatedValues() throws Exception {
+        String[] truncated = { "{\"id\": \"abc", "{\"id\": \"ab\\", "{\"skip\": \"abc", "{\"skip\": {\"a\": [1, 2",
+                "{\"skip\": {\"a\": \"}", "{\"id\": tr", "{\"id\": {\"a\": 1", "{\"sk" };
+        for (String json : truncated) {
+            // the slice ends within the value while the array itself carries on (and would terminate it)
+            byte[] bytes = StringUtils.toUTF(json + "\"]}}, \"id\": 1}");
+            try {
+                new JsonValueScanner("id").values(bytes, 0, StringUtils.toUTF(json).length);
+                fail("Expected parsing error for " + json);
+            } catch (EsHadoopSerializationException ex) {
+                // expected
+            }
+        }
+    }
+}
@@ -19,6 +19,7 @@
 package org.elasticsearch.hadoop.util;
 
 import java.io.ByteArrayOutputStream;
+import java.util.BitSet;
 
 import org.junit.After;
 import org.junit.Before;
@@ -113,4 +114,80 @@ public class TrackingBytesArrayTest {
         assertEquals(7, data.length());
         assertEquals(2, entry.length());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testRemoveWhileWalkingEntries() throws Exception {
+        data = new TrackingBytesArray(new BytesArray(1024));
+        for (int i = 0; i < 100; i++) {
+            data.copyFrom(new BytesArray(Integer.toString(i)));
+        }
+
+        // keep every third entry, as done when handling a bulk response
+        int position = 0;
+        for (int i = 0; i < 100; i++) {
+            assertEquals(Integer.toString(i), data.entry(position).toString());
+            if (i % 3 == 0) {
+                position++;
+            } else {
+                data.remove(position);
+            }
+        }
+        assertEquals(34, data.entries());
+        assertEquals("3", data.entry(1).toString());
+        assertEquals("0", data.entry(0).toString());
+        assertEquals(2, data.length(33));
+
+        BitSet leftovers = data.leftoversPosition();
+        assertEquals(34, leftovers.cardinality());
+        assertTrue(leftovers.get(99));
+        assertFalse(leftovers.get(98));
+
+        // appending after removals compacts the tracked entries
+        for (int i = 0; i < 100; i++) {
+            data.copyFrom(new BytesArray("x"));
+        }
+        assertEquals(134, data.entries());
+        assertEquals("99", data.entry(33).toString());
+        assertEquals("x", data.entry(34).toString());
+    }
+
+    @Test
+    public void testWriteGathersAdjacentEntries() throws Exception {
+        data.copyFrom(new BytesArray("a"));
+        data.copyFrom(new BytesArray("bb"));
+        data.copyFrom(new BytesArray("ccc"));
+        data.copyFrom(new BytesArray("dddd"));
+
+        final int[] writes = new int[1];
+        ByteArrayOutputStream out = new ByteArrayOutputStream() {
+            @Override
+            public synchronized void write(byte[] b, int off, int len) {
+                writes[0]++;
+                super.write(b, off, len);
+            }
+        };
+        data.writeTo(out);
+        assertEquals("abbcccdddd", out.toString());
+        assertEquals(1, writes[0]);
+
+        data.remove(1);
+        out.reset();
+        writes[0] = 0;
+        data.writeTo(out);
+        assertEquals("acccdddd", out.toString());
+        assertEquals(2, writes[0]);
+    }
+
+    @Test
+    public void testPopAll() throws Exception {
+        data.copyFrom(new BytesArray("a"));
+        data.copyFrom(new BytesArray("bb"));
+        assertEquals("a", data.pop().toString());
+        assertEquals("bb", data.pop().toString());
+        assertEquals(0, data.entries());
+        assertEquals(0, data.length());
+
+        data.copyFrom(new BytesArray("ccc"));
+        assertEquals("ccc", data.entry(0).toString());
+    }
+}
@@ -20,7 +20,9 @@ package org.elasticsearch.hadoop.pig;
 
 import java.io.IOException;
 import java.io.StringReader;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -39,8 +41,10 @@ import org.apache.hadoop.mapreduce.OutputFormat;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.RecordWriter;
 import org.apache.pig.Expression;
+import org.apache.pig.Expression.OpType;
 import org.apache.pig.LoadFunc;
 import org.apache.pig.LoadMetadata;
+import org.apache.pig.LoadPredicatePushdown;
 import org.apache.pig.LoadPushDown;
 import org.apache.pig.ResourceSchema;
 import org.apache.pig.ResourceStatistics;
@@ -54,16 +58,23 @@ import org.apache.pig.impl.util.UDFContext;
 import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException;
 import org.elasticsearch.hadoop.cfg.HadoopSettingsManager;
 import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.PropertiesSettings;
 import org.elasticsearch.hadoop.cfg.Settings;
 import org.elasticsearch.hadoop.mr.EsOutputFormat;
 import org.elasticsearch.hadoop.mr.security.HadoopUserProvider;
 import org.elasticsearch.hadoop.mr.security.TokenUtil;
 import org.elasticsearch.hadoop.rest.InitializationUtils;
 import org.elasticsearch.hadoop.rest.RestClient;
+import org.elasticsearch.hadoop.rest.RestRepository;
 import org.elasticsearch.hadoop.security.User;
 import org.elasticsearch.hadoop.security.UserProvider;
+import org.elasticsearch.hadoop.serialization.FieldType;
+import org.elasticsearch.hadoop.serialization.dto.mapping.Field;
+import org.elasticsearch.hadoop.serialization.dto.mapping.Mapping;
+import org.elasticsearch.hadoop.util.EsMajorVersion;
 import org.elasticsearch.hadoop.util.IOUtils;
 import org.elasticsearch.hadoop.util.ObjectUtils;
+import org.elasticsearch.hadoop.util.SettingsUtils;
 import org.elasticsearch.hadoop.util.StringUtils;
 
 /**
@@ -81,8 +92,10 @@ import org.elasticsearch.hadoop.util.StringUtils;
  *
  * The ElasticSearch host/port can be specified through Hadoop properties (see package description)
  * or passed to the {@link #EsStorage(String...)} constructor.
+ *
+ * Projections and filters applied right after loading are pushed down to ElasticSearch.
  */
-public class EsStorage extends LoadFunc implements LoadMetadata, LoadPushDown, StoreFuncInterface, StoreMetadata {
+public class EsStorage extends LoadFunc implements LoadMetadata, LoadPushDown, LoadPredicatePushdown, StoreFuncInterface, StoreMetadata {
 
     private static final Log log = LogFactory.getLog(EsStorage.class);
     private final boolean trace = log.isTraceEnabled();
@@ -271,6 +284,7 @@ public class EsStorage extends LoadFunc implements LoadMetadata, LoadPushDown, S
         if (settings.getScrollFields() == null) {
             extractProjection(cfg);
         }
+        extractFilters(cfg);
     }
 
     @Override
@@ -366,6 +380,64 @@ public class EsStorage extends LoadFunc implements LoadMetadata, LoadPushDown, S
         return new RequiredFieldResponse(true);
     }
 
+    //
+    // LoadPredicatePushdown
+    //
+    @Override
+    public List<String> getPredicateFields(String location, Job job) throws IOException {
+        init(location, job, true);
+        Settings settings = HadoopSettingsManager.loadFrom(job.getConfiguration());
+
+        if (isJSON || !PigPredicateTranslator.isEnabled(settings)
+                || settings.getClusterInfoOrThrow().getMajorVersion().before(EsMajorVersion.V_2_X)) {
+            return Collections.emptyList();
+        }
+
+        // the tuple fields are not known in advance so use the (top-level) fields declared in the mapping
+        Mapping mapping;
+        RestRepository repository = new RestRepository(settings);
+        try {
+            // nothing to push down to a missing index (read as empty or rejected later on)
+            if (!repository.resourceExists(true)) {
+                return Collections.emptyList();
+            }
+            mapping = repository.getMappings().getResolvedView();
+        } finally {
+            repository.close();
+        }
+
+        List<String> fields = new ArrayList<String>();
+        for (Field field : mapping.getFields()) {
+            if (!FieldType.isCompound(field.type())) {
+                fields.add(field.name());
+            }
+        }
+        // as well as their aliases
+        for (Entry<String, String> entry : SettingsUtils.aliases(settings.getProperty(PigUtils.MAPPING_NAMES), false).entrySet()) {
+            if (fields.contains(entry.getValue())) {
+                fields.add(entry.getKey());
+            }
+        }
+        return fields;
+    }
+
+    @Override
+    public List<OpType> getSupportedExpressionTypes() {
+        return PigPredicateTranslator.SUPPORTED_OPS;
+    }
+
+    @Override
+    public void setPushdownPredicate(Expression predicate) throws IOException {
+        String filter = new PigPredicateTranslator(new PropertiesSettings(properties)).translate(predicate);
+        if (filter == null) {
+            return;
+        }
+        SettingsUtils.setFilters(new PropertiesSettings(getUDFProperties()), filter);
+        if (log.isDebugEnabled()) {
+            log.debug(String.format("Given push down predicate [%s]; saving filter [%s]", predicate, filter));
+        }
+    }
+
     @Override
     public ResourceSchema getSchema(String location, Job job) throws IOException {
         return null;
@@ -412,6 +484,16 @@ public class EsStorage extends LoadFunc implements LoadMetadata, LoadPushDown, S
         }
     }
 
+    private void extractFilters(Configuration cfg) {
+        String filters = getUDFProperties().getProperty(InternalConfigurationOptions.INTERNAL_ES_QUERY_FILTERS);
+        if (filters != null) {
+            if (log.isDebugEnabled()) {
+                log.debug("Found pushed down filters in UDF properties");
+            }
+            cfg.set(InternalConfigurationOptions.INTERNAL_ES_QUERY_FILTERS, filters);
+        }
+    }
+
     private void extractProjection(Configuration cfg) throws IOException {
         String fields = getUDFProperties().getProperty(InternalConfigurationOptions.INTERNAL_ES_TARGET_FIELDS);
         if (fields != null) {
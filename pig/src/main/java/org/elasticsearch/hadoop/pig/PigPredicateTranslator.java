@@ -0,0 +1,225 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.pig;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.pig.Expression;
+import org.apache.pig.Expression.BetweenExpression;
+import org.apache.pig.Expression.BinaryExpression;
+import org.apache.pig.Expression.Column;
+import org.apache.pig.Expression.Const;
+import org.apache.pig.Expression.InExpression;
+import org.apache.pig.Expression.OpType;
+import org.apache.pig.Expression.UnaryExpression;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.Settings;
+import org.elasticsearch.hadoop.rest.query.PushDownFilter;
+import org.elasticsearch.hadoop.util.FieldAlias;
+import org.elasticsearch.hadoop.util.StringUtils;
+import org.elasticsearch.hadoop.util.unit.Booleans;
+import org.joda.time.DateTime;
+
+/**
+ * Translates Pig filter expressions into {es} query DSL (2.x and higher).
+ *
+ * Pig keeps evaluating the filter after pushing it down so the translation can (and does) return a superset
+ * of the matching tuples; sub-expressions that cannot be translated are dropped from conjunctions.
+ */
+final class PigPredicateTranslator {
+
+    static final List<OpType> SUPPORTED_OPS = Arrays.asList(OpType.OP_EQ, OpType.OP_NE, OpType.OP_GT, OpType.OP_GE,
+            OpType.OP_LT, OpType.OP_LE, OpType.OP_IN, OpType.OP_BETWEEN, OpType.OP_NULL, OpType.OP_NOT, OpType.OP_AND, OpType.OP_OR);
+
+    private final FieldAlias alias;
+    private final boolean strict;
+
+    PigPredicateTranslator(Settings settings) {
+        this.alias = PigUtils.alias(settings);
+        this.strict = Booleans.parseBoolean(settings.getProperty(ConfigurationOptions.ES_PIG_PUSHDOWN_STRICT, ConfigurationOptions.ES_PIG_PUSHDOWN_STRICT_DEFAULT));
+    }
+
+    static boolean isEnabled(Settings settings) {
+        return Booleans.parseBoolean(settings.getProperty(ConfigurationOptions.ES_PIG_PUSHDOWN, ConfigurationOptions.ES_PIG_PUSHDOWN_DEFAULT));
+    }
+
+    /**
+     * Translates the given expression into query DSL.
+     *
+     * @return the query DSL or null if the expression cannot be translated
+     */
+    String translate(Expression expression) {
+        PushDownFilter filter = filter(expression);
+        return (filter != null ? filter.dsl() : null);
+    }
+
+    private PushDownFilter filter(Expression expression) {
+        if (expression == null) {
+            return null;
+        }
+
+        switch (expression.getOpType()) {
+        case OP_AND:
+            return PushDownFilter.and(filters((BinaryExpression) expression));
+        case OP_OR:
+            return PushDownFilter.or(filters((BinaryExpression) expression));
+        case OP_NOT:
+            Expression negated = ((UnaryExpression) expression).getExpression();
+            if (negated != null && negated.getOpType() == OpType.OP_NULL) {
+                Expression operand = ((UnaryExpression) negated).getExpression();
+                return (operand instanceof Column ? PushDownFilter.isNotNull(field((Column) operand)) : null);
+            }
+            return PushDownFilter.not(filter(negated));
+        case OP_NULL:
+            Expression operand = ((UnaryExpression) expression).getExpression();
+            return (operand instanceof Column ? PushDownFilter.isNull(field((Column) operand)) : null);
+        case OP_IN:
+            return in((BinaryExpression) expression);
+        case OP_BETWEEN:
+            return between((BinaryExpression) expression);
+        case OP_EQ:
+        case OP_NE:
+        case OP_GT:
+        case OP_GE:
+        case OP_LT:
+        case OP_LE:
+            return compare((BinaryExpression) expression);
+        default:
+            return null;
+        }
+    }
+
+    private List<PushDownFilter> filters(BinaryExpression expression) {
+        return Arrays.asList(filter(expression.getLhs()), filter(expression.getRhs()));
+    }
+
+    private PushDownFilter compare(BinaryExpression expression) {
+        Expression left = expression.getLhs();
+        Expression right = expression.getRhs();
+        boolean flipped = false;
+        if (left instanceof Const && right instanceof Column) {
+            Expression tmp = left;
+            left = right;
+            right = tmp;
+            flipped = true;
+        }
+        if (!(left instanceof Column) || !(right instanceof Const)) {
+            return null;
+        }
+
+        Column column = (Column) left;
+        Object value = ((Const) right).getValue();
+        // comparisons against null are never true
+        if (value == null) {
+            return null;
+        }
+
+        switch (expression.getOpType()) {
+        case OP_EQ:
+            return equal(column, value);
+        case OP_NE:
+            return PushDownFilter.not(equal(column, value));
+        case OP_GT:
+            return range(column, (flipped ? "lt" : "gt"), value, null, null);
+        case OP_GE:
+            return range(column, (flipped ? "lte" : "gte"), value, null, null);
+        case OP_LT:
+            return range(column, (flipped ? "gt" : "lt"), value, null, null);
+        case OP_LE:
+            return range(column, (flipped ? "gte" : "lte"), value, null, null);
+        default:
+            return null;
+        }
+    }
+
+    private PushDownFilter equal(Column column, Object value) {
+        String field = field(column);
+        if (value instanceof String) {
+            return PushDownFilter.text(field, StringUtils.toJsonString(value), strict);
+        }
+        if (value instanceof DateTime) {
+            return PushDownFilter.date(field, ((DateTime) value).getMillis());
+        }
+        if (value instanceof Number || value instanceof Boolean) {
+            return PushDownFilter.term(field, value.toString());
+        }
+        return null;
+    }
+
+    private PushDownFilter range(Column column, String op, Object value, String otherOp, Object otherValue) {
+        // both bounds need to have the same type
+        if (otherOp != null && (otherValue == null || value.getClass() != otherValue.getClass())) {
+            return null;
+        }
+
+        String field = field(column);
+        if (value instanceof String) {
+            return PushDownFilter.textRange(field, op, StringUtils.toJsonString(value), otherOp,
+                    (otherOp != null ? StringUtils.toJsonString(otherValue) : null), strict);
+        }
+        if (value instanceof DateTime) {
+            return PushDownFilter.dateRange(field, op, ((DateTime) value).getMillis(), otherOp,
+                    (otherOp != null ? ((DateTime) otherValue).getMillis() : null));
+        }
+        if (value instanceof Number) {
+            return PushDownFilter.range(field, op, value.toString(), otherOp, (otherOp != null ? otherValue.toString() : null));
+        }
+        return null;
+    }
+
+    private PushDownFilter between(BinaryExpression expression) {
+        if (!(expression.getLhs() instanceof Column) || !(expression.getRhs() instanceof BetweenExpression)) {
+            return null;
+        }
+        BetweenExpression between = (BetweenExpression) expression.getRhs();
+        if (between.getLower() == null) {
+            return null;
+        }
+        return range((Column) expression.getLhs(), "gte", between.getLower(), "lte", between.getUpper());
+    }
+
+    private PushDownFilter in(BinaryExpression expression) {
+        if (!(expression.getLhs() instanceof Column) || !(expression.getRhs() instanceof InExpression)) {
+            return null;
+        }
+
+        List<String> values = new ArrayList<String>();
+        boolean strings = false;
+        for (Object value : ((InExpression) expression.getRhs()).getValues()) {
+            // null never matches
+            if (value == null) {
+                continue;
+            }
+            if (value instanceof String) {
+                strings = true;
+            }
+            else if (!(value instanceof Number || value instanceof Boolean)) {
+                return null;
+            }
+            values.add(StringUtils.toJsonString(value));
+        }
+        return PushDownFilter.in(field((Column) expression.getLhs()), values, strings, strict);
+    }
+
+    private String field(Column column) {
+        return alias.toES(column.getName());
+    }
+}
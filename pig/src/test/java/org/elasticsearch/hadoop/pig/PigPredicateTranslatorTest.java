@@ -0,0 +1,104 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.hadoop.pig;
+
+import java.util.Arrays;
+import java.util.Properties;
+
+import org.apache.pig.Expression;
+import org.apache.pig.Expression.BetweenExpression;
+import org.apache.pig.Expression.BinaryExpression;
+import org.apache.pig.Expression.Column;
+import org.apache.pig.Expression.Const;
+import org.apache.pig.Expression.InExpression;
+import org.apache.pig.Expression.OpType;
+import org.apache.pig.Expression.UnaryExpression;
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions;
+import org.elasticsearch.hadoop.cfg.PropertiesSettings;
+import org.joda.time.DateTime;
+import org.joda.time.DateTimeZone;
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PigPredicateTranslatorTest {
+
+    private static final Column ID = new Column("id");
+    private static final Column NAME = new Column("name");
+
+    private PigPredicateTranslator translator(boolean strict) {
+        Properties properties = new Properties();
+        properties.put(PigUtils.MAPPING_NAMES, "ts:@timestamp");
+        properties.put(ConfigurationOptions.ES_PIG_PUSHDOWN_STRICT, String.valueOf(strict));
+        return new PigPredicateTranslator(new PropertiesSettings(properties));
+    }
+
+    private static Expression binary(Expression left, OpType op, Object right) {
+        return new BinaryExpression(left, (right instanceof Expression ? (Expression) right : new Const(right)), op);
+    }
+
+    @Test
+    public void testComparisons() throws Exception {
+        PigPredicateTranslator translator = translator(false);
+        assertEquals("{\"term\":{\"id\":1}}", translator.translate(binary(ID, OpType.OP_EQ, 1)));
+        assertEquals("{\"range\":{\"id\":{\"gte\":1.5}}}", translator.translate(binary(ID, OpType.OP_GE, 1.5d)));
+        assertEquals("{\"range\":{\"id\":{\"gt\":1}}}", translator.translate(binary(new Const(1), OpType.OP_LT, ID)));
+        assertEquals("{\"bool\":{\"must_not\":{\"term\":{\"id\":1}}}}", translator.translate(binary(ID, OpType.OP_NE, 1)));
+        assertEquals("{\"bool\":{\"must_not\":{\"exists\":{\"field\":\"id\"}}}}", translator.translate(new UnaryExpression(ID, OpType.OP_NULL)));
+        assertEquals("{\"range\":{\"@timestamp\":{\"gte\":1000,\"lte\":1000,\"format\":\"epoch_millis\"}}}",
+                translator.translate(binary(new Column("ts"), OpType.OP_EQ, new DateTime(1000L, DateTimeZone.UTC))));
+        assertEquals("{\"range\":{\"id\":{\"gte\":1,\"lte\":10}}}", translator.translate(binary(ID, OpType.OP_BETWEEN, new BetweenExpression(1, 10))));
+        assertEquals("{\"terms\":{\"id\":[1,2]}}", translator.translate(binary(ID, OpType.OP_IN, new InExpression(Arrays.<Object> asList(1, null, 2)))));
+        assertNull(translator.translate(binary(ID, OpType.OP_EQ, ID)));
+    }
+
+    @Test
+    public void testStrings() throws Exception {
+        PigPredicateTranslator translator = translator(false);
+        assertEquals("{\"match\":{\"name\":\"Foo\"}}", translator.translate(binary(NAME, OpType.OP_EQ, "Foo")));
+        assertEquals("{\"bool\":{\"should\":[{\"match\":{\"name\":\"a\"}},{\"match\":{\"name\":\"b\"}}]}}",
+                translator.translate(binary(NAME, OpType.OP_IN, new InExpression(Arrays.<Object> asList("a", "b")))));
+        assertNull(translator.translate(binary(NAME, OpType.OP_NE, "Foo")));
+        assertNull(translator.translate(binary(NAME, OpType.OP_GT, "Foo")));
+
+        translator = translator(true);
+        assertEquals("{\"term\":{\"name\":\"Foo\"}}", translator.translate(binary(NAME, OpType.OP_EQ, "Foo")));
+        assertEquals("{\"range\":{\"name\":{\"gt\":\"Foo\"}}}", translator.translate(binary(NAME, OpType.OP_GT, "Foo")));
+        assertEquals("{\"bool\":{\"must_not\":{\"term\":{\"name\":\"Foo\"}}}}", translator.translate(binary(NAME, OpType.OP_NE, "Foo")));
+    }
+
+    @Test
+    public void testBooleanLogic() throws Exception {
+        PigPredicateTranslator translator = translator(false);
+        Expression idEq = binary(ID, OpType.OP_EQ, 1);
+        Expression nameEq = binary(NAME, OpType.OP_EQ, "Foo");
+        Expression untranslatable = binary(ID, OpType.OP_EQ, ID);
+
+        assertEquals("{\"bool\":{\"filter\":[{\"term\":{\"id\":1}},{\"match\":{\"name\":\"Foo\"}}]}}",
+                translator.translate(binary(idEq, OpType.OP_AND, nameEq)));
+        assertEquals("{\"term\":{\"id\":1}}", translator.translate(binary(untranslatable, OpType.OP_AND, idEq)));
+        assertNull(translator.translate(binary(untranslatable, OpType.OP_OR, idEq)));
+        assertEquals("{\"bool\":{\"should\":[{\"term\":{\"id\":1}},{\"match\":{\"name\":\"Foo\"}}]}}",
+                translator.translate(binary(idEq, OpType.OP_OR, nameEq)));
+        // is not null
+        assertEquals("{\"exists\":{\"field\":\"id\"}}", translator.translate(new UnaryExpression(new UnaryExpression(ID, OpType.OP_NULL), OpType.OP_NOT)));
+        // negating a partial translation would lose tuples
+        assertNull(translator.translate(new UnaryExpression(binary(untranslatable, OpType.OP_AND, idEq), OpType.OP_NOT)));
+    }
+}
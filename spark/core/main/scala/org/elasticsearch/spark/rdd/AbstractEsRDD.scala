@@ -25,6 +25,8 @@ import org.apache.commons.logging.LogFactory
 import org.apache.spark.Partition
 import org.apache.spark.SparkContext
 import org.apache.spark.rdd.RDD
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions
+import org.elasticsearch.hadoop.cfg.Settings
 import org.elasticsearch.hadoop.mr.security.HadoopUserProvider
 import org.elasticsearch.hadoop.rest.InitializationUtils
 import org.elasticsearch.hadoop.rest.RestService
@@ -55,6 +57,18 @@ private[spark] abstract class AbstractEsRDD[T: ClassTag](
     esSplit.esPartition.getHostNames
   }
 
+  // take() (and first()) needs only a handful of documents - pass the number to the partition scrolls
+  // so that they fetch small pages and are released as soon as enough documents are read
+  override def take(num: Int): Array[T] = {
+    val previous = sparkContext.getLocalProperty(AbstractEsRDD.SCROLL_LIMIT_PROPERTY)
+    sparkContext.setLocalProperty(AbstractEsRDD.SCROLL_LIMIT_PROPERTY, num.toString)
+    try {
+      super.take(num)
+    } finally {
+      sparkContext.setLocalProperty(AbstractEsRDD.SCROLL_LIMIT_PROPERTY, previous)
+    }
+  }
+
   override def checkpoint(): Unit = {
     // Do nothing. Elasticsearch RDD should not be checkpointed.
   }
@@ -80,6 +94,19 @@ private[spark] abstract class AbstractEsRDD[T: ClassTag](
   }
 }
 
+private[spark] object AbstractEsRDD {
+
+  val SCROLL_LIMIT_PROPERTY = "es.internal.spark.scroll.limit"
+
+  // caps the number of documents read by each partition (and thus the scroll page size)
+  def limitScroll(settings: Settings, limit: Long): Unit = {
+    val current = settings.getScrollLimit
+    if (limit > 0 && (current < 1 || limit < current)) {
+      settings.setProperty(ConfigurationOptions.ES_SCROLL_LIMIT, limit.toString)
+    }
+  }
+}
+
 private[spark] class EsPartition(rddId: Int, idx: Int, val esPartition: PartitionDefinition)
   extends Partition {
 
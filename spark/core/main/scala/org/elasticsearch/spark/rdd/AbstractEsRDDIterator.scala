@@ -43,6 +43,11 @@ private[spark] abstract class AbstractEsRDDIterator[T](
      initialized = true
      val settings = partition.settings()
 
+     val limit = CompatUtils.getLocalProperty(context, AbstractEsRDD.SCROLL_LIMIT_PROPERTY)
+     if (limit != null) {
+       AbstractEsRDD.limitScroll(settings, limit.toLong)
+     }
+
      // initialize mapping/ scroll reader
      initReader(settings, log)
 
@@ -35,6 +35,9 @@ abstract class CompatUtils {
 
     private static final Class<?> SCHEMA_RDD_LIKE_CLASS;
 
+    // Spark 2.0+
+    private static final Method GET_LOCAL_PROPERTY = ReflectionUtils.findMethod(TaskContext.class, "getLocalProperty", String.class);
+
     static {
         Class<?> clz = null;
         try {
@@ -118,6 +121,10 @@ abstract class CompatUtils {
         return taskContext.isInterrupted();
     }
 
+    static String getLocalProperty(TaskContext taskContext, String key) {
+        return (GET_LOCAL_PROPERTY != null ? ReflectionUtils.<String> invoke(GET_LOCAL_PROPERTY, taskContext, key) : null);
+    }
+
     static void warnSchemaRDD(Object rdd, Log log) {
         if (rdd != null && SCHEMA_RDD_LIKE_CLASS != null) {
             if (SCHEMA_RDD_LIKE_CLASS.isAssignableFrom(rdd.getClass())) {
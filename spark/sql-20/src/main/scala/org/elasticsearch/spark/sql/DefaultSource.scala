@@ -239,7 +239,10 @@ private[sql] case class ElasticsearchRelation(parameters: Map[String, String], @
   def buildScan(requiredColumns: Array[String]): RDD[Row] = buildScan(requiredColumns, Array.empty)
 
   // PrunedFilteredScan
-  def buildScan(requiredColumns: Array[String], filters: Array[Filter]) = {
+  def buildScan(requiredColumns: Array[String], filters: Array[Filter]): RDD[Row] = buildScan(requiredColumns, filters, None)
+
+  // limit pushed down through EsLimitPushDown
+  private[sql] def buildScan(requiredColumns: Array[String], filters: Array[Filter], limit: Option[Int]): RDD[Row] = {
     val paramWithScan = LinkedHashMap[String, String]() ++ parameters
 
     var filteredColumns = requiredColumns
@@ -288,6 +291,14 @@ private[sql] case class ElasticsearchRelation(parameters: Map[String, String], @
       }
     }
 
+    // each partition stops reading (and releases its scroll) once it returned enough documents
+    limit.filter(n => cfg.getScrollLimit < 1 || n < cfg.getScrollLimit).foreach { n =>
+      if (Utils.LOGGER.isDebugEnabled()) {
+        Utils.LOGGER.debug(s"Pushing down limit $n")
+      }
+      paramWithScan += (ConfigurationOptions.ES_SCROLL_LIMIT -> n.toString)
+    }
+
     new ScalaEsRowRDD(sqlContext.sparkContext, paramWithScan, lazySchema)
   }
 
@@ -332,6 +343,11 @@ private[sql] case class ElasticsearchRelation(parameters: Map[String, String], @
     }
   }
 
+  // used by the aggregation push down which translates the Catalyst predicates on its own
+  private[sql] def pushDownFilters(filters: Array[Filter]): Array[String] = {
+    createDSLFromFilters(filters, Utils.isPushDownStrict(cfg), isEs50(cfg))
+  }
+
   private def createDSLFromFilters(filters: Array[Filter], strictPushDown: Boolean, isES50: Boolean) = {
     filters.map(filter => translateFilter(filter, strictPushDown, isES50)).filter(query => StringUtils.hasText(query))
   }
@@ -0,0 +1,234 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.spark.sql
+
+import org.apache.spark.sql.catalyst.CatalystTypeConverters
+import org.apache.spark.sql.catalyst.expressions.{And => CAnd}
+import org.apache.spark.sql.catalyst.expressions.{EqualTo => CEqualTo}
+import org.apache.spark.sql.catalyst.expressions.{GreaterThan => CGreaterThan}
+import org.apache.spark.sql.catalyst.expressions.{GreaterThanOrEqual => CGreaterThanOrEqual}
+import org.apache.spark.sql.catalyst.expressions.{In => CIn}
+import org.apache.spark.sql.catalyst.expressions.{IsNotNull => CIsNotNull}
+import org.apache.spark.sql.catalyst.expressions.{IsNull => CIsNull}
+import org.apache.spark.sql.catalyst.expressions.{LessThan => CLessThan}
+import org.apache.spark.sql.catalyst.expressions.{LessThanOrEqual => CLessThanOrEqual}
+import org.apache.spark.sql.catalyst.expressions.{Not => CNot}
+import org.apache.spark.sql.catalyst.expressions.{Or => COr}
+import org.apache.spark.sql.catalyst.expressions.Alias
+import org.apache.spark.sql.catalyst.expressions.Attribute
+import org.apache.spark.sql.catalyst.expressions.AttributeReference
+import org.apache.spark.sql.catalyst.expressions.Cast
+import org.apache.spark.sql.catalyst.expressions.ExprId
+import org.apache.spark.sql.catalyst.expressions.Expression
+import org.apache.spark.sql.catalyst.expressions.Literal
+import org.apache.spark.sql.catalyst.expressions.NamedExpression
+import org.apache.spark.sql.catalyst.expressions.PredicateHelper
+import org.apache.spark.sql.catalyst.expressions.aggregate.AggregateExpression
+import org.apache.spark.sql.catalyst.expressions.aggregate.Average
+import org.apache.spark.sql.catalyst.expressions.aggregate.Count
+import org.apache.spark.sql.catalyst.expressions.aggregate.Max
+import org.apache.spark.sql.catalyst.expressions.aggregate.Min
+import org.apache.spark.sql.catalyst.expressions.aggregate.Sum
+import org.apache.spark.sql.catalyst.plans.logical.{Filter => LogicalFilter}
+import org.apache.spark.sql.catalyst.plans.logical.Aggregate
+import org.apache.spark.sql.catalyst.plans.logical.LogicalPlan
+import org.apache.spark.sql.catalyst.plans.logical.Project
+import org.apache.spark.sql.catalyst.rules.Rule
+import org.apache.spark.sql.execution.datasources.LogicalRelation
+import org.apache.spark.sql.sources.And
+import org.apache.spark.sql.sources.EqualTo
+import org.apache.spark.sql.sources.Filter
+import org.apache.spark.sql.sources.GreaterThan
+import org.apache.spark.sql.sources.GreaterThanOrEqual
+import org.apache.spark.sql.sources.In
+import org.apache.spark.sql.sources.IsNotNull
+import org.apache.spark.sql.sources.IsNull
+import org.apache.spark.sql.sources.LessThan
+import org.apache.spark.sql.sources.LessThanOrEqual
+import org.apache.spark.sql.sources.Not
+import org.apache.spark.sql.sources.Or
+import org.apache.spark.sql.types.DataType
+import org.apache.spark.sql.types.DateType
+import org.apache.spark.sql.types.NumericType
+import org.apache.spark.sql.types.StringType
+import org.apache.spark.sql.types.StructField
+import org.apache.spark.sql.types.StructType
+import org.apache.spark.sql.types.TimestampType
+import org.elasticsearch.hadoop.serialization.FieldType
+import org.elasticsearch.hadoop.serialization.FieldType._
+import org.elasticsearch.hadoop.util.EsMajorVersion
+import org.elasticsearch.spark.sql.EsAggregation._
+
+/**
+ * Optimizer rule replacing a Spark aggregation (GROUP BY with COUNT/MIN/MAX/SUM/AVG) over an Elasticsearch relation
+ * with an Elasticsearch (composite) aggregation so that only the buckets are returned instead of all the documents.
+ *
+ * The rule is conservative - whenever a grouping key, aggregate function or predicate cannot be translated exactly,
+ * the plan is left untouched and Spark aggregates the documents as usual.
+ */
+private[sql] object EsAggregatePushDown extends Rule[LogicalPlan] with PredicateHelper {
+
+  private val GROUPABLE_TYPES = Set[FieldType](KEYWORD, BOOLEAN, BYTE, SHORT, INTEGER, LONG, FLOAT, DOUBLE, HALF_FLOAT, SCALED_FLOAT, DATE, IP)
+  private val NUMERIC_TYPES = Set[FieldType](BYTE, SHORT, INTEGER, LONG, FLOAT, DOUBLE, HALF_FLOAT, SCALED_FLOAT)
+
+  override def apply(plan: LogicalPlan): LogicalPlan = plan transform {
+    case agg @ Aggregate(_, _, child) => {
+      scan(child) match {
+        case Some((logical, relation, predicates)) => pushDown(agg, logical, relation, predicates).getOrElse(agg)
+        case None                                  => agg
+      }
+    }
+  }
+
+  // walk through attribute-only projections and filters down to the Elasticsearch relation
+  private[sql] def scan(plan: LogicalPlan): Option[(LogicalRelation, ElasticsearchRelation, Seq[Expression])] = plan match {
+    case l: LogicalRelation if l.relation.isInstanceOf[ElasticsearchRelation]          => Some((l, l.relation.asInstanceOf[ElasticsearchRelation], Seq.empty))
+    case Project(projections, child) if projections.forall(_.isInstanceOf[Attribute]) => scan(child)
+    case LogicalFilter(condition, child) => scan(child).map { case (l, r, predicates) => (l, r, predicates ++ splitConjunctivePredicates(condition)) }
+    case _ => None
+  }
+
+  private def pushDown(agg: Aggregate, logical: LogicalRelation, relation: ElasticsearchRelation, predicates: Seq[Expression]): Option[LogicalPlan] = {
+    val cfg = relation.cfg
+    if (!cfg.getDataFramePushDownAggregations || !Utils.isPushDown(cfg)) {
+      return None
+    }
+
+    val names = exactNames(logical, relation)
+    val esTypes: Map[String, FieldType] = relation.lazySchema.mapping.getFields.map(f => (f.name(), f.`type`())).toMap
+
+    // only fields whose doc values match the source ones
+    def field(e: Expression): Option[(String, FieldType, DataType)] = e match {
+      case a: AttributeReference => for (name <- names.get(a.exprId); esType <- esTypes.get(name)) yield (name, esType, a.dataType)
+      case _ => None
+    }
+
+    // grouping keys
+    val groupBy = agg.groupingExpressions.map(e => field(e).filter { case (_, esType, dataType) => GROUPABLE_TYPES(esType) && isSupported(dataType) })
+    if (groupBy.exists(_.isEmpty)) {
+      return None
+    }
+    val groupFields = groupBy.flatten.map(_._1)
+    val groupIds = agg.groupingExpressions.map(_.asInstanceOf[AttributeReference].exprId).toSet
+
+    // composite aggregation with missing_bucket
+    if (groupFields.nonEmpty && !cfg.getInternalVersionOrThrow.onOrAfter(EsMajorVersion.V_7_X)) {
+      return None
+    }
+
+    // numeric metric over a (possibly widened) numeric field
+    def numeric(e: Expression, allowDates: Boolean): Option[String] = {
+      val target = e match {
+        case Cast(child, _: NumericType, _) => child
+        case other => other
+      }
+      field(target).filter { case (_, esType, dataType) =>
+        dataType match {
+          case _: NumericType               => NUMERIC_TYPES(esType)
+          case TimestampType | DateType     => allowDates && esType == DATE && target == e
+          case _                            => false
+        }
+      }.map(_._1)
+    }
+
+    def metric(e: Expression): Option[(String, String)] = e match {
+      case AggregateExpression(_, _, true, _)                           => None
+      // only COUNT(*) - value_count counts the values of multi-valued fields while Spark counts the (non-null) rows
+      case AggregateExpression(Count(Seq(Literal(v, _))), _, _, _) if v != null => Some((COUNT, null))
+      case AggregateExpression(Min(child), _, _, _)                     => numeric(child, true).map((MIN, _))
+      case AggregateExpression(Max(child), _, _, _)                     => numeric(child, true).map((MAX, _))
+      case AggregateExpression(Sum(child), _, _, _)                     => numeric(child, false).map((SUM, _))
+      case AggregateExpression(Average(child), _, _, _)                 => numeric(child, false).map((AVG, _))
+      case _                                                            => None
+    }
+
+    val columns = agg.aggregateExpressions.map {
+      case a: AttributeReference if groupIds(a.exprId)                     => Some(EsAggregateColumn(GROUP, names(a.exprId), a.dataType))
+      case Alias(a: AttributeReference, _) if groupIds(a.exprId)           => Some(EsAggregateColumn(GROUP, names(a.exprId), a.dataType))
+      case alias @ Alias(e: AggregateExpression, _) if isSupported(alias.dataType) => metric(e).map { case (function, name) => EsAggregateColumn(function, name, alias.dataType) }
+      case _                                                               => None
+    }
+    if (columns.exists(_.isEmpty)) {
+      return None
+    }
+
+    val strict = Utils.isPushDownStrict(cfg)
+    val filters = predicates.map(p => translate(p, names, strict))
+    if (filters.exists(_.isEmpty)) {
+      return None
+    }
+
+    val aggregation = EsAggregation(groupFields, columns.flatten)
+    val output = agg.output.map(_.asInstanceOf[AttributeReference])
+    val schema = StructType(output.map(a => StructField(a.name, a.dataType, a.nullable)))
+    val dsl = relation.pushDownFilters(filters.flatten.toArray)
+
+    if (Utils.LOGGER.isDebugEnabled()) {
+      Utils.LOGGER.debug(s"Pushing down aggregation $aggregation with filters ${dsl.mkString("[", ",", "]")}")
+    }
+
+    // copy rather than construct since the LogicalRelation signature differs across Spark versions
+    Some(logical.copy(relation = new ElasticsearchAggregationRelation(relation, aggregation, dsl, schema), output = output, catalogTable = None))
+  }
+
+  // attributes of the relation minus those whose indexed values differ from the source ones (keywords with a normalizer
+  // or ignore_above) - Elasticsearch groups, counts and filters these differently than Spark would
+  private[sql] def exactNames(logical: LogicalRelation, relation: ElasticsearchRelation): Map[ExprId, String] = {
+    val altered = relation.lazySchema.mapping.getFields.filterNot(_.verbatim()).map(_.name()).toSet
+    logical.output.filterNot(a => altered(a.name)).map(a => (a.exprId, a.name)).toMap
+  }
+
+  // Catalyst predicate -> data source filter; only predicates that Elasticsearch evaluates exactly are translated
+  // since, unlike regular scans, Spark does not get a chance to filter the results again
+  private[sql] def translate(predicate: Expression, names: Map[ExprId, String], strict: Boolean): Option[Filter] = {
+
+    def attribute(e: Expression): Option[String] = e match {
+      case a: AttributeReference if strict || a.dataType != StringType => names.get(a.exprId)
+      case _ => None
+    }
+
+    def value(l: Literal): Option[Any] = if (l.value == null) None else Some(CatalystTypeConverters.convertToScala(l.value, l.dataType))
+
+    def comparison(left: Expression, right: Expression, filter: (String, Any) => Filter, flipped: (String, Any) => Filter): Option[Filter] = (left, right) match {
+      case (_, l: Literal) => for (a <- attribute(left); v <- value(l)) yield filter(a, v)
+      case (l: Literal, _) => for (a <- attribute(right); v <- value(l)) yield flipped(a, v)
+      case _               => None
+    }
+
+    def references(e: Expression): Seq[Filter] = e.references.toSeq.flatMap(a => names.get(a.exprId)).map(IsNotNull(_))
+
+    predicate match {
+      case CEqualTo(left, right)            => comparison(left, right, EqualTo, EqualTo)
+      case CGreaterThan(left, right)        => comparison(left, right, GreaterThan, LessThan)
+      case CGreaterThanOrEqual(left, right) => comparison(left, right, GreaterThanOrEqual, LessThanOrEqual)
+      case CLessThan(left, right)           => comparison(left, right, LessThan, GreaterThan)
+      case CLessThanOrEqual(left, right)    => comparison(left, right, LessThanOrEqual, GreaterThanOrEqual)
+      case CIn(child, list) if list.nonEmpty && list.forall(e => e.isInstanceOf[Literal] && e.asInstanceOf[Literal].value != null) => {
+        attribute(child).map(a => In(a, list.map(l => value(l.asInstanceOf[Literal]).get).toArray))
+      }
+      case CIsNull(a: AttributeReference)    => names.get(a.exprId).map(IsNull)
+      case CIsNotNull(a: AttributeReference) => names.get(a.exprId).map(IsNotNull)
+      case CAnd(left, right) => for (l <- translate(left, names, strict); r <- translate(right, names, strict)) yield And(l, r)
+      case COr(left, right)  => for (l <- translate(left, names, strict); r <- translate(right, names, strict)) yield Or(l, r)
+      // in SQL, NOT does not match nulls while must_not does
+      case CNot(child)       => translate(child, names, strict).map(f => (references(child) :+ Not(f)).reduce(And))
+      case _                 => None
+    }
+  }
+}
@@ -0,0 +1,341 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.spark.sql
+
+import java.sql.Date
+import java.sql.Timestamp
+import java.util.{List => JList}
+import java.util.{Map => JMap}
+
+import scala.annotation.meta.param
+import scala.collection.JavaConverters.asScalaBufferConverter
+import scala.collection.JavaConverters.mapAsScalaMapConverter
+
+import org.apache.commons.logging.LogFactory
+import org.apache.spark.Partition
+import org.apache.spark.SparkContext
+import org.apache.spark.TaskContext
+import org.apache.spark.rdd.RDD
+import org.apache.spark.sql.Row
+import org.apache.spark.sql.SQLContext
+import org.apache.spark.sql.sources.BaseRelation
+import org.apache.spark.sql.sources.TableScan
+import org.apache.spark.sql.types.BooleanType
+import org.apache.spark.sql.types.ByteType
+import org.apache.spark.sql.types.DataType
+import org.apache.spark.sql.types.DateType
+import org.apache.spark.sql.types.DoubleType
+import org.apache.spark.sql.types.FloatType
+import org.apache.spark.sql.types.IntegerType
+import org.apache.spark.sql.types.LongType
+import org.apache.spark.sql.types.ShortType
+import org.apache.spark.sql.types.StringType
+import org.apache.spark.sql.types.StructType
+import org.apache.spark.sql.types.TimestampType
+import org.elasticsearch.hadoop.EsHadoopIllegalStateException
+import org.elasticsearch.hadoop.cfg.PropertiesSettings
+import org.elasticsearch.hadoop.cfg.Settings
+import org.elasticsearch.hadoop.mr.security.HadoopUserProvider
+import org.elasticsearch.hadoop.rest.InitializationUtils
+import org.elasticsearch.hadoop.rest.Resource
+import org.elasticsearch.hadoop.rest.RestClient
+import org.elasticsearch.hadoop.rest.query.QueryUtils
+import org.elasticsearch.hadoop.serialization.json.JacksonJsonGenerator
+import org.elasticsearch.hadoop.util.BytesArray
+import org.elasticsearch.hadoop.util.FastByteArrayOutputStream
+import org.elasticsearch.hadoop.util.SettingsUtils
+
+/**
+ * Output column of an aggregation pushed down to Elasticsearch.
+ *
+ * @param function one of group (grouping key), count (documents), min, max, sum or avg
+ * @param field the Elasticsearch field (none for counting documents)
+ * @param dataType the Spark type of the column
+ */
+private[sql] case class EsAggregateColumn(function: String, field: String, dataType: DataType)
+
+/**
+ * Spark aggregation (GROUP BY with COUNT/MIN/MAX/SUM/AVG) translated into an Elasticsearch composite aggregation
+ * (or a plain one when there is no grouping).
+ */
+private[sql] case class EsAggregation(groupBy: Seq[String], columns: Seq[EsAggregateColumn]) {
+
+  import EsAggregation._
+
+  def isGrouped = groupBy.nonEmpty
+
+  def body(settings: Settings, size: Int, after: JMap[String, Object]): BytesArray = {
+    val out = new FastByteArrayOutputStream(256)
+    val generator = new JacksonJsonGenerator(out)
+    try {
+      generator.writeBeginObject()
+      generator.writeFieldName("size").writeNumber(0)
+      generator.writeFieldName("query").writeBeginObject()
+      QueryUtils.parseQueryAndFilters(settings).toJson(generator)
+      generator.writeEndObject()
+
+      generator.writeFieldName("aggs").writeBeginObject()
+      generator.writeFieldName(AGG_NAME).writeBeginObject()
+
+      if (isGrouped) {
+        generator.writeFieldName("composite").writeBeginObject()
+        generator.writeFieldName("size").writeNumber(size)
+        generator.writeFieldName("sources").writeBeginArray()
+        for ((field, index) <- groupBy.zipWithIndex) {
+          generator.writeBeginObject()
+          generator.writeFieldName(GROUP_PREFIX + index).writeBeginObject()
+          generator.writeFieldName("terms").writeBeginObject()
+          generator.writeFieldName("field").writeString(field)
+          // Spark groups nulls together
+          generator.writeFieldName("missing_bucket").writeBoolean(true)
+          generator.writeEndObject()
+          generator.writeEndObject()
+          generator.writeEndObject()
+        }
+        generator.writeEndArray()
+        if (after != null) {
+          generator.writeFieldName("after").writeBeginObject()
+          for ((key, value) <- after.asScala) {
+            generator.writeFieldName(key)
+            value match {
+              case null         => generator.writeNull()
+              case s: String    => generator.writeString(s)
+              case b: java.lang.Boolean => generator.writeBoolean(b)
+              case i: java.lang.Integer => generator.writeNumber(i.intValue())
+              case l: java.lang.Long    => generator.writeNumber(l.longValue())
+              case n: Number    => generator.writeNumber(n.doubleValue())
+              case other        => generator.writeString(other.toString)
+            }
+          }
+          generator.writeEndObject()
+        }
+        generator.writeEndObject()
+      }
+      else {
+        // a single bucket holding all the matching documents
+        generator.writeFieldName("filter").writeBeginObject()
+        generator.writeFieldName("match_all").writeBeginObject().writeEndObject()
+        generator.writeEndObject()
+      }
+
+      generator.writeFieldName("aggs").writeBeginObject()
+      for ((column, index) <- columns.zipWithIndex) {
+        column.function match {
+          case GROUP | COUNT => // part of the bucket
+          case function      => {
+            metric(generator, METRIC_PREFIX + index, function, column.field)
+            // sum returns 0 instead of null when there are no values
+            if (function == SUM) {
+              metric(generator, METRIC_PREFIX + index + COUNT_SUFFIX, VALUE_COUNT, column.field)
+            }
+          }
+        }
+      }
+      generator.writeEndObject()
+
+      generator.writeEndObject()
+      generator.writeEndObject()
+      generator.writeEndObject()
+    } finally {
+      generator.close()
+    }
+    out.bytes()
+  }
+
+  private def metric(generator: JacksonJsonGenerator, name: String, function: String, field: String): Unit = {
+    generator.writeFieldName(name).writeBeginObject()
+    generator.writeFieldName(function).writeBeginObject()
+    generator.writeFieldName("field").writeString(field)
+    generator.writeEndObject()
+    generator.writeEndObject()
+  }
+
+  /**
+   * Converts the aggregation response into rows, returning the key to continue from (if any).
+   */
+  def rows(aggregations: JMap[String, Object]): (Seq[Row], JMap[String, Object]) = {
+    val agg = aggregations.get(AGG_NAME).asInstanceOf[JMap[String, Object]]
+    if (agg == null) {
+      throw new EsHadoopIllegalStateException(s"Invalid aggregation response $aggregations")
+    }
+
+    if (isGrouped) {
+      val buckets = agg.get("buckets").asInstanceOf[JList[JMap[String, Object]]]
+      val rows = if (buckets == null) Seq.empty else buckets.asScala.map(row)
+      val after = if (rows.isEmpty) null else agg.get("after_key").asInstanceOf[JMap[String, Object]]
+      (rows, after)
+    }
+    else {
+      (Seq(row(agg)), null)
+    }
+  }
+
+  private def row(bucket: JMap[String, Object]): Row = {
+    val key = bucket.get("key").asInstanceOf[JMap[String, Object]]
+    val values = new Array[Any](columns.size)
+    for ((column, index) <- columns.zipWithIndex) {
+      values(index) = column.function match {
+        case GROUP => toScala(key.get(GROUP_PREFIX + groupBy.indexOf(column.field)), column.dataType)
+        case COUNT => toScala(bucket.get("doc_count"), column.dataType)
+        case SUM   => {
+          val count = value(bucket, METRIC_PREFIX + index + COUNT_SUFFIX)
+          if (count == null || count.asInstanceOf[Number].longValue() == 0) null
+          else toScala(value(bucket, METRIC_PREFIX + index), column.dataType)
+        }
+        case _     => toScala(value(bucket, METRIC_PREFIX + index), column.dataType)
+      }
+    }
+    Row.fromSeq(values)
+  }
+
+  private def value(bucket: JMap[String, Object], name: String): Object = {
+    val metric = bucket.get(name).asInstanceOf[JMap[String, Object]]
+    if (metric == null) null else metric.get("value")
+  }
+}
+
+private[sql] object EsAggregation {
+
+  val AGG_NAME = "es-hadoop"
+  val GROUP_PREFIX = "g"
+  val METRIC_PREFIX = "m"
+  val COUNT_SUFFIX = "_count"
+
+  val GROUP = "group"
+  val COUNT = "count"
+  val VALUE_COUNT = "value_count"
+  val MIN = "min"
+  val MAX = "max"
+  val SUM = "sum"
+  val AVG = "avg"
+
+  def isSupported(dataType: DataType): Boolean = dataType match {
+    case BooleanType | ByteType | ShortType | IntegerType | LongType | FloatType | DoubleType => true
+    case StringType | TimestampType | DateType => true
+    case _ => false
+  }
+
+  def toScala(value: Any, dataType: DataType): Any = {
+    if (value == null) {
+      return null
+    }
+
+    (value, dataType) match {
+      case (s: String, StringType)         => s
+      case (other, StringType)             => other.toString
+      case (b: java.lang.Boolean, BooleanType) => b.booleanValue()
+      case (n: Number, BooleanType)        => n.longValue() != 0
+      case (s: String, BooleanType)        => s.toBoolean
+      case (n: Number, ByteType)           => n.byteValue()
+      case (n: Number, ShortType)          => n.shortValue()
+      case (n: Number, IntegerType)        => n.intValue()
+      case (n: Number, LongType)           => n.longValue()
+      case (n: Number, FloatType)          => n.floatValue()
+      case (n: Number, DoubleType)         => n.doubleValue()
+      case (n: Number, TimestampType)      => new Timestamp(n.longValue())
+      case (n: Number, DateType)           => new Date(n.longValue())
+      case _ => throw new EsHadoopIllegalStateException(s"Cannot convert aggregation value [$value] to $dataType")
+    }
+  }
+}
+
+/**
+ * Relation returning the (already aggregated) rows computed by Elasticsearch.
+ */
+private[sql] class ElasticsearchAggregationRelation(
+  val relation: ElasticsearchRelation,
+  val aggregation: EsAggregation,
+  val filters: Seq[String],
+  override val schema: StructType)
+  extends BaseRelation with TableScan {
+
+  override def sqlContext: SQLContext = relation.sqlContext
+
+  override def buildScan(): RDD[Row] = {
+    val settings = relation.cfg.copy()
+    SettingsUtils.setFilters(settings, filters: _*)
+    new EsAggregationRDD(sqlContext.sparkContext, settings.save(), aggregation)
+  }
+
+  override def toString = s"ElasticsearchAggregationRelation(${aggregation})"
+}
+
+/**
+ * Single partition RDD paging through the aggregation results.
+ */
+private[spark] class EsAggregationRDD(
+  @(transient @param) sc: SparkContext,
+  serializedSettings: String,
+  aggregation: EsAggregation)
+  extends RDD[Row](sc, Nil) {
+
+  override def getPartitions: Array[Partition] = Array(new Partition {
+    override def index: Int = 0
+  })
+
+  override def compute(split: Partition, context: TaskContext): Iterator[Row] = {
+    val log = LogFactory.getLog(classOf[EsAggregationRDD])
+    val settings = new PropertiesSettings().load(serializedSettings)
+    InitializationUtils.setUserProviderIfNotSet(settings, classOf[HadoopUserProvider], log)
+
+    val resource = new Resource(settings, true)
+    val size = settings.getDataFramePushDownAggregationsSize
+    val client = new RestClient(settings)
+    context.addTaskCompletionListener((TaskContext) => client.close())
+
+    if (log.isDebugEnabled()) {
+      log.debug(s"Paging through aggregation $aggregation")
+    }
+    new EsAggregationIterator(aggregation, settings, size, body => client.searchAggregations(resource, body))
+  }
+}
+
+/**
+ * Iterator over the aggregation rows, fetching each composite page (after the key of the previous one) only
+ * once the rows before it have been consumed.
+ */
+private[sql] class EsAggregationIterator(
+  aggregation: EsAggregation,
+  settings: Settings,
+  size: Int,
+  search: BytesArray => JMap[String, Object])
+  extends Iterator[Row] {
+
+  private var page: Iterator[Row] = Iterator.empty
+  private var after: JMap[String, Object] = null
+  private var exhausted = false
+
+  override def hasNext: Boolean = {
+    // pages might come back empty
+    while (!page.hasNext && !exhausted) {
+      val (rows, next) = aggregation.rows(search(aggregation.body(settings, size, after)))
+      page = rows.iterator
+      after = next
+      exhausted = !aggregation.isGrouped || next == null
+    }
+    page.hasNext
+  }
+
+  override def next(): Row = {
+    if (!hasNext) {
+      throw new NoSuchElementException("End of aggregation")
+    }
+    page.next()
+  }
+}
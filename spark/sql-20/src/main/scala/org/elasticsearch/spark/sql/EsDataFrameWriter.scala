@@ -19,6 +19,9 @@
 package org.elasticsearch.spark.sql
 
 import org.apache.spark.sql.Row
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.catalyst.encoders.ExpressionEncoder
+import org.apache.spark.sql.catalyst.encoders.RowEncoder
 import org.apache.spark.sql.types.StructType
 import org.elasticsearch.spark.rdd.EsRDDWriter
 import org.elasticsearch.hadoop.serialization.JdkBytesConverter
@@ -26,13 +29,28 @@ import org.elasticsearch.hadoop.serialization.builder.ValueWriter
 import org.elasticsearch.hadoop.serialization.field.FieldExtractor
 import org.elasticsearch.hadoop.serialization.BytesConverter
 
+/**
+ * Writes Catalyst rows as is through [[InternalRowValueWriter]]; rows are converted to external
+ * [[Row]]s only when a custom value writer has been configured.
+ */
 private[spark] class EsDataFrameWriter
   (schema: StructType, override val serializedSettings: String)
-  extends EsRDDWriter[Row](serializedSettings:String) {
+  extends EsRDDWriter[InternalRow](serializedSettings:String) {
 
-  override protected def valueWriter: Class[_ <: ValueWriter[_]] = classOf[DataFrameValueWriter]
+  override protected def valueWriter: Class[_ <: ValueWriter[_]] = classOf[InternalRowValueWriter]
   override protected def bytesConverter: Class[_ <: BytesConverter] = classOf[JdkBytesConverter]
-  override protected def fieldExtractor: Class[_ <: FieldExtractor] = classOf[DataFrameFieldExtractor]
+  override protected def fieldExtractor: Class[_ <: FieldExtractor] = classOf[InternalRowFieldExtractor]
+
+  @transient private lazy val encoder: ExpressionEncoder[Row] = {
+    if (classOf[InternalRowValueWriter].getName == settings.getSerializerValueWriterClassName) {
+      null
+    } else {
+      RowEncoder(schema).resolveAndBind()
+    }
+  }
 
-  override protected def processData(data: Iterator[Row]): Any = { (data.next, schema) }
-}
\ No newline at end of file
+  override protected def processData(data: Iterator[InternalRow]): Any = {
+    val row = data.next()
+    if (encoder == null) (row, schema) else (encoder.fromRow(row), schema)
+  }
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.spark.sql
+
+import org.apache.spark.rdd.RDD
+import org.apache.spark.sql.Row
+import org.apache.spark.sql.SQLContext
+import org.apache.spark.sql.catalyst.expressions.Expression
+import org.apache.spark.sql.catalyst.expressions.IntegerLiteral
+import org.apache.spark.sql.catalyst.plans.logical.LocalLimit
+import org.apache.spark.sql.catalyst.plans.logical.LogicalPlan
+import org.apache.spark.sql.catalyst.rules.Rule
+import org.apache.spark.sql.execution.datasources.LogicalRelation
+import org.apache.spark.sql.sources.BaseRelation
+import org.apache.spark.sql.sources.Filter
+import org.apache.spark.sql.sources.PrunedFilteredScan
+import org.apache.spark.sql.types.StructType
+
+/**
+ * Optimizer rule passing the (per partition) limit of a query, such as the one used by `show()` or `take()`,
+ * to the Elasticsearch relation underneath so each partition scrolls only through the documents it needs.
+ *
+ * The limit is pushed only when Elasticsearch evaluates all the filters in between exactly; otherwise Spark could
+ * discard some of the returned documents and end up with fewer rows than requested.
+ */
+private[sql] object EsLimitPushDown extends Rule[LogicalPlan] {
+
+  override def apply(plan: LogicalPlan): LogicalPlan = plan transform {
+    case limit @ LocalLimit(IntegerLiteral(n), child) if n > 0 => {
+      EsAggregatePushDown.scan(child) match {
+        case Some((logical, relation, predicates)) if pushDown(logical, relation, predicates) => {
+          limit.copy(child = child transform {
+            case l: LogicalRelation if l.relation eq relation => l.copy(relation = ElasticsearchLimitRelation(relation, n))
+          })
+        }
+        case _ => limit
+      }
+    }
+  }
+
+  private def pushDown(logical: LogicalRelation, relation: ElasticsearchRelation, predicates: Seq[Expression]): Boolean = {
+    val names = EsAggregatePushDown.exactNames(logical, relation)
+    val strict = Utils.isPushDownStrict(relation.cfg)
+    predicates.isEmpty || (Utils.isPushDown(relation.cfg) && predicates.forall(p => EsAggregatePushDown.translate(p, names, strict).isDefined))
+  }
+}
+
+/**
+ * Elasticsearch relation reading at most `limit` documents per partition.
+ */
+private[sql] case class ElasticsearchLimitRelation(relation: ElasticsearchRelation, limit: Int)
+  extends BaseRelation with PrunedFilteredScan {
+
+  override def sqlContext: SQLContext = relation.sqlContext
+
+  override def schema: StructType = relation.schema
+
+  override def needConversion: Boolean = relation.needConversion
+
+  override def unhandledFilters(filters: Array[Filter]): Array[Filter] = relation.unhandledFilters(filters)
+
+  override def buildScan(requiredColumns: Array[String], filters: Array[Filter]): RDD[Row] = relation.buildScan(requiredColumns, filters, Some(limit))
+
+  override def toString = s"${relation.toString} LIMIT $limit"
+}
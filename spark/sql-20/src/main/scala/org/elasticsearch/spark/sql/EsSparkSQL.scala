@@ -98,7 +98,7 @@ object EsSparkSQL {
       InitializationUtils.checkIdForOperation(esCfg)
       InitializationUtils.checkIndexExistence(esCfg)
 
-      sparkCtx.runJob(srdd.toDF().rdd, new EsDataFrameWriter(srdd.schema, esCfg.save()).write _)
+      sparkCtx.runJob(srdd.toDF().queryExecution.toRdd, new EsDataFrameWriter(srdd.schema, esCfg.save()).write _)
     }
   }
 }
\ No newline at end of file
@@ -0,0 +1,33 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.spark.sql
+
+import org.apache.spark.sql.SparkSessionExtensions
+
+/**
+ * Registers the elasticsearch-hadoop optimizer rules (aggregation and limit push down) with a Spark session.
+ * Enable it through `spark.sql.extensions=org.elasticsearch.spark.sql.EsSparkSessionExtensions`.
+ */
+class EsSparkSessionExtensions extends (SparkSessionExtensions => Unit) {
+
+  override def apply(extensions: SparkSessionExtensions): Unit = {
+    extensions.injectOptimizerRule(_ => EsAggregatePushDown)
+    extensions.injectOptimizerRule(_ => EsLimitPushDown)
+  }
+}
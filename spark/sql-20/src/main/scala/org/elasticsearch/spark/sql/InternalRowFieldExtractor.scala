@@ -0,0 +1,66 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.spark.sql
+
+import org.apache.spark.sql.catalyst.CatalystTypeConverters
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.types.StructType
+import org.elasticsearch.hadoop.serialization.field.FieldExtractor
+
+/**
+ * Extracts fields out of Catalyst rows; only the extracted values are converted to their external (Scala) form.
+ */
+class InternalRowFieldExtractor extends DataFrameFieldExtractor {
+
+  override protected def extractField(target: AnyRef): AnyRef = {
+    target match {
+      case (_: InternalRow, _: StructType) => extractInternalField(target)
+      case _ => super.extractField(target)
+    }
+  }
+
+  private def extractInternalField(target: AnyRef): AnyRef = {
+    var obj = target
+    for (in <- 0 until getFieldNames.size()) {
+      val field = getFieldNames.get(in)
+      obj = obj match {
+        case (row: InternalRow, struct: StructType) => {
+          val index = struct.fieldNames.indexOf(field)
+          if (index < 0) {
+            FieldExtractor.NOT_FOUND
+          } else if (row.isNullAt(index)) {
+            null
+          } else {
+            struct.fields(index).dataType match {
+              case nested: StructType => (row.getStruct(index, nested.size), nested)
+              case dataType => CatalystTypeConverters.convertToScala(row.get(index, dataType), dataType).asInstanceOf[AnyRef]
+            }
+          }
+        }
+        case _ => FieldExtractor.NOT_FOUND
+      }
+    }
+
+    // Return the value or convert the row if it's a row-schema tuple
+    obj match {
+      case (row: InternalRow, struct: StructType) => CatalystTypeConverters.convertToScala(row, struct).asInstanceOf[AnyRef]
+      case any => any
+    }
+  }
+}
@@ -0,0 +1,274 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.spark.sql
+
+import org.apache.spark.sql.catalyst.CatalystTypeConverters
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.catalyst.expressions.SpecializedGetters
+import org.apache.spark.sql.catalyst.util.DateTimeUtils
+import org.apache.spark.sql.types.ArrayType
+import org.apache.spark.sql.types.DataType
+import org.apache.spark.sql.types.DataTypes.BinaryType
+import org.apache.spark.sql.types.DataTypes.BooleanType
+import org.apache.spark.sql.types.DataTypes.ByteType
+import org.apache.spark.sql.types.DataTypes.DateType
+import org.apache.spark.sql.types.DataTypes.DoubleType
+import org.apache.spark.sql.types.DataTypes.FloatType
+import org.apache.spark.sql.types.DataTypes.IntegerType
+import org.apache.spark.sql.types.DataTypes.LongType
+import org.apache.spark.sql.types.DataTypes.ShortType
+import org.apache.spark.sql.types.DataTypes.StringType
+import org.apache.spark.sql.types.DataTypes.TimestampType
+import org.apache.spark.sql.types.DecimalType
+import org.apache.spark.sql.types.MapType
+import org.apache.spark.sql.types.StructType
+import org.apache.spark.unsafe.Platform
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions.ES_SPARK_DATAFRAME_WRITE_NULL_VALUES_DEFAULT
+import org.elasticsearch.hadoop.cfg.Settings
+import org.elasticsearch.hadoop.serialization.EsHadoopSerializationException
+import org.elasticsearch.hadoop.serialization.Generator
+import org.elasticsearch.hadoop.serialization.builder.FilteringValueWriter
+import org.elasticsearch.hadoop.serialization.builder.ValueWriter.Result
+import org.elasticsearch.hadoop.util.unit.Booleans
+
+/**
+ * Writes Catalyst rows directly, without converting them to external [[org.apache.spark.sql.Row]]s first.
+ * The writers for each column are bound once per schema and read the values through the
+ * specialized (unboxed) getters; the output is the same as the one of [[DataFrameValueWriter]].
+ */
+class InternalRowValueWriter(writeUnknownTypes: Boolean = false) extends FilteringValueWriter[(InternalRow, StructType)] {
+
+  def this() {
+    this(false)
+  }
+
+  private var writeNullValues = Booleans.parseBoolean(ES_SPARK_DATAFRAME_WRITE_NULL_VALUES_DEFAULT)
+
+  // a writer typically sees a single schema so only the last bound one is kept
+  private var boundSchema: StructType = _
+  private var boundWriter: StructWriter = _
+
+  override def setSettings(settings: Settings): Unit = {
+    super.setSettings(settings)
+    writeNullValues = settings.getDataFrameWriteNullValues
+  }
+
+  override def write(value: (InternalRow, StructType), generator: Generator): Result = {
+    val schema = value._2
+    if (boundSchema ne schema) {
+      boundWriter = new StructWriter(schema)
+      boundSchema = schema
+    }
+    boundWriter.writeRow(value._1, generator)
+  }
+
+  private abstract class FieldWriter {
+    // the value at the given ordinal is never null
+    def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result
+  }
+
+  private def fieldWriter(schema: DataType): FieldWriter = {
+    schema match {
+      case s: StructType => new StructWriter(s)
+      case a: ArrayType => new ArrayWriter(a)
+      case m: MapType => new MapWriter(m)
+      case BinaryType => new FieldWriter {
+        override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+          generator.writeBinary(data.getBinary(ordinal))
+          Result.SUCCESFUL()
+        }
+      }
+      case BooleanType => new FieldWriter {
+        override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+          generator.writeBoolean(data.getBoolean(ordinal))
+          Result.SUCCESFUL()
+        }
+      }
+      case ByteType => new FieldWriter {
+        override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+          generator.writeNumber(data.getByte(ordinal))
+          Result.SUCCESFUL()
+        }
+      }
+      case ShortType => new FieldWriter {
+        override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+          generator.writeNumber(data.getShort(ordinal))
+          Result.SUCCESFUL()
+        }
+      }
+      case IntegerType => new FieldWriter {
+        override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+          generator.writeNumber(data.getInt(ordinal))
+          Result.SUCCESFUL()
+        }
+      }
+      case LongType => new FieldWriter {
+        override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+          generator.writeNumber(data.getLong(ordinal))
+          Result.SUCCESFUL()
+        }
+      }
+      case DoubleType => new FieldWriter {
+        override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+          generator.writeNumber(data.getDouble(ordinal))
+          Result.SUCCESFUL()
+        }
+      }
+      case FloatType => new FieldWriter {
+        override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+          generator.writeNumber(data.getFloat(ordinal))
+          Result.SUCCESFUL()
+        }
+      }
+      case TimestampType => new FieldWriter {
+        override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+          // stored as micros; same value as java.sql.Timestamp#getTime()
+          generator.writeNumber(Math.floorDiv(data.getLong(ordinal), 1000L))
+          Result.SUCCESFUL()
+        }
+      }
+      case DateType => new FieldWriter {
+        override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+          // stored as days; same value as java.sql.Date#getTime()
+          generator.writeNumber(DateTimeUtils.daysToMillis(data.getInt(ordinal)))
+          Result.SUCCESFUL()
+        }
+      }
+      case StringType => new FieldWriter {
+        override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+          val string = data.getUTF8String(ordinal)
+          string.getBaseObject match {
+            // write the UTF-8 bytes in place, without decoding them
+            case bytes: Array[Byte] => generator.writeUTF8String(bytes, (string.getBaseOffset - Platform.BYTE_ARRAY_OFFSET).toInt, string.numBytes())
+            case _ => generator.writeUTF8String(string.getBytes)
+          }
+          Result.SUCCESFUL()
+        }
+      }
+      case _: DecimalType => new FieldWriter {
+        override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+          throw new EsHadoopSerializationException("Decimal types are not supported by Elasticsearch - consider using a different type (such as string)")
+        }
+      }
+      case _ => new FieldWriter {
+        private val converter = CatalystTypeConverters.createToScalaConverter(schema)
+
+        override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+          handleUnknown(converter(data.get(ordinal, schema)), generator)
+        }
+      }
+    }
+  }
+
+  private class StructWriter(schema: StructType) extends FieldWriter {
+    private val names = schema.fieldNames
+    private val writers = schema.fields.map(field => fieldWriter(field.dataType))
+
+    override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+      writeRow(data.getStruct(ordinal, names.length), generator)
+    }
+
+    def writeRow(row: InternalRow, generator: Generator): Result = {
+      generator.writeBeginObject()
+
+      var index = 0
+      while (index < names.length) {
+        val name = names(index)
+        if (shouldKeep(generator.getParentPath, name)) {
+          if (!row.isNullAt(index)) {
+            generator.writeFieldName(name)
+            val result = writers(index).write(row, index, generator)
+            if (!result.isSuccesful) {
+              return handleUnknown(row, generator)
+            }
+          } else if (writeNullValues) {
+            generator.writeFieldName(name)
+            generator.writeNull()
+          }
+        }
+        index += 1
+      }
+      generator.writeEndObject()
+
+      Result.SUCCESFUL()
+    }
+  }
+
+  private class ArrayWriter(schema: ArrayType) extends FieldWriter {
+    private val elementWriter = fieldWriter(schema.elementType)
+
+    override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+      val array = data.getArray(ordinal)
+      generator.writeBeginArray()
+      var index = 0
+      while (index < array.numElements()) {
+        if (array.isNullAt(index)) {
+          generator.writeNull()
+        } else {
+          val result = elementWriter.write(array, index, generator)
+          if (!result.isSuccesful) {
+            return handleUnknown(array, generator)
+          }
+        }
+        index += 1
+      }
+      generator.writeEndArray()
+      Result.SUCCESFUL()
+    }
+  }
+
+  private class MapWriter(schema: MapType) extends FieldWriter {
+    private val keyConverter = CatalystTypeConverters.createToScalaConverter(schema.keyType)
+    private val valueWriter = fieldWriter(schema.valueType)
+
+    override def write(data: SpecializedGetters, ordinal: Int, generator: Generator): Result = {
+      val map = data.getMap(ordinal)
+      val keys = map.keyArray()
+      val values = map.valueArray()
+      generator.writeBeginObject()
+      var index = 0
+      while (index < map.numElements()) {
+        val key = keyConverter(keys.get(index, schema.keyType)).toString
+        if (shouldKeep(generator.getParentPath, key)) {
+          generator.writeFieldName(key)
+          if (values.isNullAt(index)) {
+            generator.writeNull()
+          } else {
+            val result = valueWriter.write(values, index, generator)
+            if (!result.isSuccesful) {
+              return handleUnknown(values, generator)
+            }
+          }
+        }
+        index += 1
+      }
+      generator.writeEndObject()
+      Result.SUCCESFUL()
+    }
+  }
+
+  protected def handleUnknown(value: Any, generator: Generator): Result = {
+    if (!writeUnknownTypes) {
+      Result.FAILED(value)
+    } else {
+      generator.writeString(value.toString())
+      Result.SUCCESFUL()
+    }
+  }
+}
@@ -1,19 +1,10 @@
 package org.elasticsearch.spark.sql.streaming
 
 import org.apache.spark.TaskContext
-import org.apache.spark.sql.Row
 import org.apache.spark.sql.catalyst.InternalRow
-import org.apache.spark.sql.catalyst.encoders.ExpressionEncoder
-import org.apache.spark.sql.catalyst.encoders.RowEncoder
 import org.apache.spark.sql.types.StructType
 import org.elasticsearch.hadoop.EsHadoopIllegalArgumentException
-import org.elasticsearch.hadoop.serialization.BytesConverter
-import org.elasticsearch.hadoop.serialization.JdkBytesConverter
-import org.elasticsearch.hadoop.serialization.builder.ValueWriter
-import org.elasticsearch.hadoop.serialization.field.FieldExtractor
-import org.elasticsearch.spark.rdd.EsRDDWriter
-import org.elasticsearch.spark.sql.DataFrameFieldExtractor
-import org.elasticsearch.spark.sql.DataFrameValueWriter
+import org.elasticsearch.spark.sql.EsDataFrameWriter
 
 /**
  * Takes in iterator of
@@ -21,13 +12,7 @@ import org.elasticsearch.spark.sql.DataFrameValueWriter
 private [sql] class EsStreamQueryWriter(serializedSettings: String,
                                         schema: StructType,
                                         commitProtocol: EsCommitProtocol)
-  extends EsRDDWriter[InternalRow](serializedSettings) {
-
-  override protected def valueWriter: Class[_ <: ValueWriter[_]] = classOf[DataFrameValueWriter]
-  override protected def bytesConverter: Class[_ <: BytesConverter] = classOf[JdkBytesConverter]
-  override protected def fieldExtractor: Class[_ <: FieldExtractor] = classOf[DataFrameFieldExtractor]
-
-  private val encoder: ExpressionEncoder[Row] = RowEncoder(schema).resolveAndBind()
+  extends EsDataFrameWriter(schema, serializedSettings) {
 
   override def write(taskContext: TaskContext, data: Iterator[InternalRow]): Unit = {
     // Keep clients from using this method, doesn't return task commit information.
@@ -48,8 +33,8 @@ private [sql] class EsStreamQueryWriter(serializedSettings: String,
   }
 
   override protected def processData(data: Iterator[InternalRow]): Any = {
-    val row = encoder.fromRow(data.next())
+    val row = super.processData(data)
     commitProtocol.recordSeen()
-    (row, schema)
+    row
   }
 }
@@ -0,0 +1,123 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.spark.sql
+
+import java.sql.Timestamp
+import java.util.{Map => JMap}
+
+import scala.collection.mutable.ArrayBuffer
+
+import org.apache.spark.sql.Row
+import org.apache.spark.sql.types.DataTypes._
+import org.codehaus.jackson.map.ObjectMapper
+import org.elasticsearch.hadoop.util.TestSettings
+import org.junit.Assert.assertEquals
+import org.junit.Assert.assertFalse
+import org.junit.Assert.assertNull
+import org.junit.Assert.assertTrue
+import org.junit.Test
+
+import org.elasticsearch.spark.sql.EsAggregation._
+
+class EsAggregationTest {
+
+  val grouped = EsAggregation(Seq("city", "created"), Seq(
+    EsAggregateColumn(GROUP, "city", StringType),
+    EsAggregateColumn(GROUP, "created", TimestampType),
+    EsAggregateColumn(COUNT, null, LongType),
+    EsAggregateColumn(SUM, "price", LongType),
+    EsAggregateColumn(AVG, "price", DoubleType)))
+
+  @Test
+  def testGroupedBody(): Unit = {
+    val body = grouped.body(new TestSettings(), 100, null).toString
+    assertTrue(body, body.startsWith("""{"size":0,"query":"""))
+    assertTrue(body, body.contains(""""es-hadoop":{"composite":{"size":100,"sources":[{"g0":{"terms":{"field":"city","missing_bucket":true}}},{"g1":{"terms":{"field":"created","missing_bucket":true}}}]}"""))
+    assertTrue(body, body.contains(""""aggs":{"m3":{"sum":{"field":"price"}},"m3_count":{"value_count":{"field":"price"}},"m4":{"avg":{"field":"price"}}}"""))
+  }
+
+  @Test
+  def testGroupedBodyWithAfterKey(): Unit = {
+    val after = json("""{"g0":"Paris","g1":1407239910771}""")
+    val body = grouped.body(new TestSettings(), 100, after).toString
+    assertTrue(body, body.contains(""""after":{"g0":"Paris","g1":1407239910771}"""))
+  }
+
+  @Test
+  def testGlobalBody(): Unit = {
+    val body = EsAggregation(Seq.empty, Seq(EsAggregateColumn(MAX, "price", LongType))).body(new TestSettings(), 100, null).toString
+    assertTrue(body, body.contains(""""es-hadoop":{"filter":{"match_all":{}},"aggs":{"m0":{"max":{"field":"price"}}}}"""))
+  }
+
+  @Test
+  def testGroupedRows(): Unit = {
+    val (rows, after) = grouped.rows(json("""{"es-hadoop":{"after_key":{"g0":null,"g1":1407239910771},"buckets":[
+      {"key":{"g0":"Paris","g1":1407239910771},"doc_count":3,"m3":{"value":30.0},"m3_count":{"value":3},"m4":{"value":10.0}},
+      {"key":{"g0":null,"g1":1407239910771},"doc_count":1,"m3":{"value":0.0},"m3_count":{"value":0},"m4":{"value":null}}]}}"""))
+
+    assertEquals(Seq(
+      Row("Paris", new Timestamp(1407239910771L), 3L, 30L, 10.0d),
+      Row(null, new Timestamp(1407239910771L), 1L, null, null)), rows)
+    assertEquals("{g0=null, g1=1407239910771}", after.toString)
+  }
+
+  @Test
+  def testLastPage(): Unit = {
+    val (rows, after) = grouped.rows(json("""{"es-hadoop":{"buckets":[]}}"""))
+    assertTrue(rows.isEmpty)
+    assertNull(after)
+  }
+
+  @Test
+  def testGlobalRow(): Unit = {
+    val global = EsAggregation(Seq.empty, Seq(EsAggregateColumn(COUNT, null, LongType), EsAggregateColumn(MIN, "created", TimestampType)))
+    val (rows, after) = global.rows(json("""{"es-hadoop":{"doc_count":0,"m1":{"value":null}}}"""))
+    assertEquals(Seq(Row(0L, null)), rows)
+    assertNull(after)
+  }
+
+  @Test
+  def testPagesFetchedAsConsumed(): Unit = {
+    val pages = Iterator(
+      """{"es-hadoop":{"after_key":{"g0":"Paris","g1":1},"buckets":[{"key":{"g0":"Paris","g1":1},"doc_count":3}]}}""",
+      """{"es-hadoop":{"after_key":{"g0":"Rome","g1":1},"buckets":[{"key":{"g0":"Rome","g1":1},"doc_count":2}]}}""",
+      """{"es-hadoop":{"buckets":[]}}""")
+    val bodies = new ArrayBuffer[String]
+    val counted = EsAggregation(Seq("city", "created"), Seq(
+      EsAggregateColumn(GROUP, "city", StringType),
+      EsAggregateColumn(COUNT, null, LongType)))
+    val rows = new EsAggregationIterator(counted, new TestSettings(), 1, body => {
+      bodies += body.toString
+      json(pages.next())
+    })
+
+    assertTrue(bodies.isEmpty)
+    assertEquals(Row("Paris", 3L), rows.next())
+    assertEquals(1, bodies.size)
+    assertEquals(Row("Rome", 2L), rows.next())
+    assertEquals(2, bodies.size)
+    assertTrue(bodies(1), bodies(1).contains(""""after":{"g0":"Paris","g1":1}"""))
+    assertFalse(rows.hasNext)
+    assertEquals(3, bodies.size)
+  }
+
+  private def json(content: String): JMap[String, Object] = {
+    new ObjectMapper().readValue(content, classOf[JMap[String, Object]])
+  }
+}
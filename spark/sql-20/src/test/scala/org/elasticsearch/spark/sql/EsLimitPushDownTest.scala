@@ -0,0 +1,115 @@
+/*
+ * Licensed to Elasticsearch under one or more contributor
+ * license agreements. See the NOTICE file distributed with
+ * this work for additional information regarding copyright
+ * ownership. Elasticsearch licenses this file to you under
+ * the Apache License, Version 2.0 (the "License"); you may
+ * not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.elasticsearch.spark.sql
+
+import java.util.{Map => JMap}
+
+import org.apache.spark.SparkConf
+import org.apache.spark.SparkContext
+import org.apache.spark.sql.SQLContext
+import org.apache.spark.sql.catalyst.expressions.EqualTo
+import org.apache.spark.sql.catalyst.expressions.GreaterThan
+import org.apache.spark.sql.catalyst.expressions.Literal
+import org.apache.spark.sql.catalyst.expressions.StartsWith
+import org.apache.spark.sql.catalyst.plans.logical.{Filter => LogicalFilter}
+import org.apache.spark.sql.catalyst.plans.logical.LocalLimit
+import org.apache.spark.sql.catalyst.plans.logical.LogicalPlan
+import org.apache.spark.sql.execution.datasources.LogicalRelation
+import org.apache.spark.sql.types.DataTypes._
+import org.apache.spark.sql.types.StructField
+import org.apache.spark.sql.types.StructType
+import org.apache.spark.unsafe.types.UTF8String
+import org.codehaus.jackson.map.ObjectMapper
+import org.elasticsearch.hadoop.cfg.InternalConfigurationOptions
+import org.elasticsearch.hadoop.serialization.dto.mapping.FieldParser
+import org.junit.Assert.assertEquals
+import org.junit.Before
+import org.junit.Test
+import org.mockito.Mockito
+
+class EsLimitPushDownTest {
+
+  val schema = StructType(Seq(StructField("id", LongType), StructField("name", StringType), StructField("brand", StringType)))
+
+  val mapping = FieldParser.parseTypelessMappings(new ObjectMapper().readValue(
+    """{"index":{"mappings":{"properties":{"id":{"type":"long"},"name":{"type":"keyword"},"brand":{"type":"keyword","normalizer":"lowercase"}}}}}""",
+    classOf[JMap[String, Object]])).getResolvedView
+
+  var logical: LogicalRelation = _
+
+  @Before
+  def setup(): Unit = {
+    logical = relation(Map.empty)
+  }
+
+  private def relation(options: Map[String, String]): LogicalRelation = {
+    val sc = Mockito.mock(classOf[SparkContext])
+    Mockito.when(sc.getConf).thenReturn(new SparkConf(false))
+    val sqlContext = Mockito.mock(classOf[SQLContext])
+    Mockito.when(sqlContext.sparkContext).thenReturn(sc)
+
+    val relation = Mockito.spy(ElasticsearchRelation(Map(
+      "es.resource" -> "index/type",
+      InternalConfigurationOptions.INTERNAL_ES_VERSION -> "6.0.0",
+      InternalConfigurationOptions.INTERNAL_ES_CLUSTER_NAME -> "es") ++ options, sqlContext, Some(schema)))
+    // no cluster to discover the mapping from
+    Mockito.doReturn(SchemaUtils.Schema(mapping, schema)).when(relation).lazySchema
+    LogicalRelation(relation)
+  }
+
+  @Test
+  def testPushDownWithoutFilters(): Unit = {
+    assertEquals(Some(10), pushedLimit(LocalLimit(Literal(10), logical)))
+  }
+
+  @Test
+  def testPushDownWithExactFilters(): Unit = {
+    val id = logical.output.head
+    assertEquals(Some(10), pushedLimit(LocalLimit(Literal(10), LogicalFilter(GreaterThan(id, Literal(5L)), logical))))
+  }
+
+  @Test
+  def testNoPushDownWithAnalyzedFilters(): Unit = {
+    // non-strict string equality becomes a match query which can be looser than Spark's equality
+    val name = logical.output(1)
+    assertEquals(None, pushedLimit(LocalLimit(Literal(10), LogicalFilter(EqualTo(name, Literal(UTF8String.fromString("costin"), StringType)), logical))))
+  }
+
+  @Test
+  def testNoPushDownWithUntranslatableFilters(): Unit = {
+    val name = logical.output(1)
+    assertEquals(None, pushedLimit(LocalLimit(Literal(10), LogicalFilter(StartsWith(name, Literal(UTF8String.fromString("c"), StringType)), logical))))
+  }
+
+  @Test
+  def testNoPushDownWithNormalizedKeywordFilters(): Unit = {
+    val strict = relation(Map(Utils.DATA_SOURCE_PUSH_DOWN_STRICT -> "true"))
+    val name = strict.output(1)
+    assertEquals(Some(10), pushedLimit(LocalLimit(Literal(10), LogicalFilter(EqualTo(name, Literal(UTF8String.fromString("costin"), StringType)), strict))))
+    // the term query is normalized as well hence why it matches more than Spark's equality
+    val brand = strict.output(2)
+    assertEquals(None, pushedLimit(LocalLimit(Literal(10), LogicalFilter(EqualTo(brand, Literal(UTF8String.fromString("Acme"), StringType)), strict))))
+  }
+
+  private def pushedLimit(plan: LogicalPlan): Option[Int] = {
+    EsLimitPushDown(plan).collectFirst {
+      case l: LogicalRelation if l.relation.isInstanceOf[ElasticsearchLimitRelation] => l.relation.asInstanceOf[ElasticsearchLimitRelation].limit
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package org.elasticsearch.spark.sql
+
+import java.io.ByteArrayOutputStream
+import java.sql.Date
+import java.sql.Timestamp
+
+import org.apache.spark.sql.Row
+import org.apache.spark.sql.catalyst.InternalRow
+import org.apache.spark.sql.catalyst.encoders.RowEncoder
+import org.apache.spark.sql.types.ArrayType
+import org.apache.spark.sql.types.BinaryType
+import org.apache.spark.sql.types.BooleanType
+import org.apache.spark.sql.types.DateType
+import org.apache.spark.sql.types.DoubleType
+import org.apache.spark.sql.types.IntegerType
+import org.apache.spark.sql.types.LongType
+import org.apache.spark.sql.types.MapType
+import org.apache.spark.sql.types.StringType
+import org.apache.spark.sql.types.StructField
+import org.apache.spark.sql.types.StructType
+import org.apache.spark.sql.types.TimestampType
+import org.elasticsearch.hadoop.cfg.ConfigurationOptions
+import org.elasticsearch.hadoop.cfg.Settings
+import org.elasticsearch.hadoop.serialization.EsHadoopSerializationException
+import org.elasticsearch.hadoop.serialization.builder.ValueWriter
+import org.elasticsearch.hadoop.serialization.field.ConstantFieldExtractor
+import org.elasticsearch.hadoop.serialization.json.JacksonJsonGenerator
+import org.elasticsearch.hadoop.util.TestSettings
+import org.junit.Assert._
+import org.junit.Test
+
+class InternalRowValueWriterTest {
+
+  private def toInternal(value: Row, schema: StructType): InternalRow = {
+    RowEncoder(schema).resolveAndBind().toRow(value).copy()
+  }
+
+  private def serialize[T](writer: ValueWriter[(T, StructType)], value: T, schema: StructType): String = {
+    val out = new ByteArrayOutputStream()
+    val generator = new JacksonJsonGenerator(out)
+
+    val result = writer.write((value, schema), generator)
+    if (result.isSuccesful == false) {
+      throw new EsHadoopSerializationException("Could not serialize [" + result.getUnknownValue + "]")
+    }
+    generator.flush()
+
+    new String(out.toByteArray)
+  }
+
+  private def serialize(value: Row, schema: StructType, settings: Settings = null): String = {
+    val writer = new InternalRowValueWriter()
+    if (settings != null) {
+      writer.setSettings(settings)
+    }
+    serialize(writer, toInternal(value, schema), schema)
+  }
+
+  @Test
+  def testSimpleRow(): Unit = {
+    val schema = StructType(Seq(StructField("a", StringType)))
+    assertEquals("""{"a":"b"}""", serialize(Row("b"), schema))
+  }
+
+  @Test
+  def testPrimitiveArray(): Unit = {
+    val schema = StructType(Seq(StructField("a", ArrayType(IntegerType))))
+    assertEquals("""{"a":[1,2,3]}""", serialize(Row(Seq(1, 2, 3)), schema))
+  }
+
+  @Test
+  def testMapInArray(): Unit = {
+    val schema = StructType(Seq(StructField("s", ArrayType(MapType(StringType, StringType)))))
+    assertEquals("""{"s":[{"a":"b"}]}""", serialize(Row(Seq(Map("a" -> "b"))), schema))
+  }
+
+  @Test
+  def testNullValues(): Unit = {
+    val schema = StructType(Seq(StructField("a", StringType), StructField("b", IntegerType)))
+    assertEquals("""{"b":1}""", serialize(Row(null, 1), schema))
+
+    val settings = new TestSettings()
+    settings.setProperty(ConfigurationOptions.ES_SPARK_DATAFRAME_WRITE_NULL_VALUES, "true")
+    assertEquals("""{"a":null,"b":1}""", serialize(Row(null, 1), schema, settings))
+  }
+
+  @Test
+  def testFieldExclusion(): Unit = {
+    val settings = new TestSettings()
+    settings.setProperty(ConfigurationOptions.ES_MAPPING_EXCLUDE, "skey.ignoreme")
+
+    val schema = StructType(Seq(StructField("skey", StructType(Seq(StructField("jkey", StringType), StructField("ignoreme", StringType))))))
+    assertEquals("""{"skey":{"jkey":"value"}}""", serialize(Row(Row("value", "value")), schema, settings))
+  }
+
+  @Test
+  def testSameOutputAsDataFrameValueWriter(): Unit = {
+    val schema = StructType(Seq(
+      StructField("string", StringType),
+      StructField("int", IntegerType),
+      StructField("long", LongType),
+      StructField("double", DoubleType),
+      StructField("bool", BooleanType),
+      StructField("binary", BinaryType),
+      StructField("date", DateType),
+      StructField("timestamp", TimestampType),
+      StructField("array", ArrayType(StringType)),
+      StructField("map", MapType(StringType, LongType)),
+      StructField("struct", StructType(Seq(StructField("nested", StringType), StructField("values", ArrayType(IntegerType)))))
+    ))
+    val row = Row("café \"quoted\"", 1, Long.MaxValue, 1.5d, true, Array[Byte](1, 2, 3), Date.valueOf("2019-03-04"),
+      new Timestamp(-1234567L), Seq("a", null, "c"), Map("k" -> 2L), Row("n", Seq(4, 5)))
+
+    val expected = serialize(new DataFrameValueWriter(), row, schema)
+    assertEquals(expected, serialize(row, schema))
+  }
+
+  @Test
+  def testFieldExtraction(): Unit = {
+    val settings = new TestSettings()
+    settings.setProperty(ConstantFieldExtractor.PROPERTY, "test.test")
+    val extractor = new InternalRowFieldExtractor()
+    extractor.setSettings(settings)
+
+    val schema = StructType(Seq(
+      StructField("foo", StringType),
+      StructField("test", StructType(Seq(StructField("test", StringType))))))
+    assertEquals("target", extractor.field((toInternal(Row("value1", Row("target")), schema), schema)))
+
+    // external rows are still supported
+    assertEquals("target", extractor.field((Row("value1", Row("target")), schema)))
+  }
+}